@@ -44,6 +44,21 @@ public class Constants {
      * from 1st January 1970).
      */
     public static final String URI_PREFERRED_RECRAWL_ON = "recrawl-on";
+    /**
+     * The minimum delay (in ms) between two requests to the host of a URI as
+     * determined by the worker, e.g., based on the crawl-delay of the
+     * robots.txt file.
+     */
+    public static final String URI_CRAWL_DELAY = "crawl-delay";
+    /**
+     * The time (in ms) the worker needed to fetch a URI.
+     */
+    public static final String URI_FETCH_DURATION = "fetch-duration";
+    /**
+     * The id of the lease of the chunk a URI has been handed out with. It is
+     * needed to finish or extend the lease of the chunk.
+     */
+    public static final String URI_LEASE_ID = "lease-id";
 
     //////////////////////////////////////////////////
     // URIs
@@ -70,6 +85,11 @@ public class Constants {
 
     public static final String DEDUPLICATOR_QUEUE_NAME = "squirrel.deduplicator";
     public static final String FRONTIER_QUEUE_NAME = "squirrel.frontier";
+    /**
+     * Suffix of the queue that the frontier receives the requests of workers
+     * from, i.e., the URI requests, lease extensions and alive messages.
+     */
+    public static final String FRONTIER_REQUEST_QUEUE_SUFFIX = ".requests";
 
     //////////////////////////////////////////////////
     // General constants
@@ -46,5 +46,50 @@ public class Configuration {
         }
     }
 
+    /**
+     * Returns the integer value of the given environment variable.
+     *
+     * @param envVariableName
+     *            the name of the variable
+     * @param logger
+     *            the logger of the calling configuration
+     * @return the value or null if the variable is not defined or can not be
+     *         parsed
+     */
+    public static Integer getOptionalEnvInteger(String envVariableName, Logger logger) {
+        String value = getEnv(envVariableName, logger);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.error("Couldn't parse the value of " + envVariableName + ". It will be ignored.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the long value of the given environment variable.
+     *
+     * @param envVariableName
+     *            the name of the variable
+     * @param logger
+     *            the logger of the calling configuration
+     * @return the value or null if the variable is not defined or can not be
+     *         parsed
+     */
+    public static Long getOptionalEnvLong(String envVariableName, Logger logger) {
+        String value = getEnv(envVariableName, logger);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.error("Couldn't parse the value of " + envVariableName + ". It will be ignored.", e);
+            return null;
+        }
+    }
 
 }
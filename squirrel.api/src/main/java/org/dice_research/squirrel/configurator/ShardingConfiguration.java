@@ -0,0 +1,97 @@
+package org.dice_research.squirrel.configurator;
+
+import org.dice_research.squirrel.Constants;
+import org.dice_research.squirrel.frontier.sharding.ConsistentHashRing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Configuration of a sharded frontier. It is used by the frontier instances
+ * and by the workers, i.e., all of them have to be started with the same
+ * number of shards. All values are optional. Without configuration, a single
+ * frontier is used.
+ */
+public class ShardingConfiguration extends Configuration {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardingConfiguration.class);
+
+    private static final String FRONTIER_SHARDS_KEY = "FRONTIER_SHARDS";
+    private static final String FRONTIER_SHARD_ID_KEY = "FRONTIER_SHARD_ID";
+
+    private int numberOfShards = 1;
+    private int shardId = 0;
+
+    private ShardingConfiguration() {
+    }
+
+    public static ShardingConfiguration getShardingConfiguration() {
+        ShardingConfiguration configuration = new ShardingConfiguration();
+        Integer value = getOptionalEnvInteger(FRONTIER_SHARDS_KEY, LOGGER);
+        if ((value != null) && (value > 0)) {
+            configuration.numberOfShards = value;
+        }
+        value = getOptionalEnvInteger(FRONTIER_SHARD_ID_KEY, LOGGER);
+        if (value != null) {
+            if ((value < 0) || (value >= configuration.numberOfShards)) {
+                throw new IllegalArgumentException(FRONTIER_SHARD_ID_KEY + "=" + value + " is not in [0, "
+                        + configuration.numberOfShards + ").");
+            }
+            configuration.shardId = value;
+        }
+        return configuration;
+    }
+
+    /**
+     * @return the number of frontier instances the hosts are distributed over
+     */
+    public int getNumberOfShards() {
+        return numberOfShards;
+    }
+
+    /**
+     * @return the id of this frontier instance (only used by frontiers)
+     */
+    public int getShardId() {
+        return shardId;
+    }
+
+    /**
+     * @return true if more than one frontier instance is used
+     */
+    public boolean isSharded() {
+        return numberOfShards > 1;
+    }
+
+    /**
+     * @return a ring assigning the hosts to the shards
+     */
+    public ConsistentHashRing createRing() {
+        return new ConsistentHashRing(numberOfShards);
+    }
+
+    /**
+     * Returns the name of the queue the frontier with the given shard id
+     * listens to. Without sharding, this is
+     * {@link Constants#FRONTIER_QUEUE_NAME}.
+     *
+     * @param shardId
+     *            the id of the shard
+     * @return the name of the RabbitMQ queue of the shard
+     */
+    public String getFrontierQueueName(int shardId) {
+        return isSharded() ? (Constants.FRONTIER_QUEUE_NAME + "." + shardId) : Constants.FRONTIER_QUEUE_NAME;
+    }
+
+    /**
+     * Returns the name of the queue the frontier with the given shard id
+     * receives the requests of workers from. These requests are not queued
+     * behind the new URIs and crawling results of the queue with the name
+     * {@link #getFrontierQueueName(int)}.
+     *
+     * @param shardId
+     *            the id of the shard
+     * @return the name of the RabbitMQ request queue of the shard
+     */
+    public String getFrontierRequestQueueName(int shardId) {
+        return getFrontierQueueName(shardId) + Constants.FRONTIER_REQUEST_QUEUE_SUFFIX;
+    }
+}
@@ -3,6 +3,7 @@ package org.dice_research.squirrel.data.uri.filter;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.dice_research.squirrel.data.uri.CrawleableUri;
 
@@ -28,16 +29,36 @@ public abstract class AbstractKnownUriFilterDecorator implements KnownUriFilterD
         decorated.add(uri, nextCrawlTimestamp);
     }
 
+    @Override
+    public List<CrawleableUri> filterGood(List<CrawleableUri> uris) {
+        return decorated.filterGood(uris);
+    }
+
+    @Override
+    public void addAll(List<CrawleableUri> uris, long nextCrawlTimestamp) {
+        decorated.addAll(uris, nextCrawlTimestamp);
+    }
+
     @Override
     public List<CrawleableUri> getOutdatedUris() {
         return decorated.getOutdatedUris();
     }
 
+    @Override
+    public List<CrawleableUri> getOutdatedUris(int maxUris) {
+        return decorated.getOutdatedUris(maxUris);
+    }
+
     @Override
     public long count() {
         return decorated.count();
     }
 
+    @Override
+    public boolean forEachKnownUri(Consumer<String> consumer) {
+        return decorated.forEachKnownUri(consumer);
+    }
+
     @Override
     public boolean isUriGood(CrawleableUri uri) {
         return decorated.isUriGood(uri);
@@ -0,0 +1,343 @@
+package org.dice_research.squirrel.data.uri.filter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A {@link KnownUriFilterDecorator} that keeps a {@link ScalableBloomFilter} of
+ * all known URIs in memory. If the Bloom filter does not contain a URI,
+ * {@link #isUriGood(CrawleableUri)} returns <code>true</code> without asking
+ * the decorated filter. Only possible hits are checked by the decorated
+ * (typically database based) filter, which should be the filter that stores
+ * the URIs.
+ * </p>
+ *
+ * <p>
+ * If a snapshot file is given, the Bloom filter is written to it periodically
+ * and when this filter is closed, and it is loaded on start up. If no snapshot
+ * matches the number of URIs of the decorated filter, the Bloom filter is
+ * rebuilt using
+ * {@link KnownUriFilter#forEachKnownUri(java.util.function.Consumer)}. If the
+ * decorated filter does not support this, all requests are forwarded to it and
+ * no snapshots are written.
+ * </p>
+ */
+public class BloomFilterKnownUriFilter extends AbstractKnownUriFilterDecorator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BloomFilterKnownUriFilter.class);
+
+    /**
+     * The default number of URIs the first stage of the Bloom filter can take.
+     */
+    public static final long DEFAULT_INITIAL_CAPACITY = 1000000;
+    /**
+     * The default false positive probability, i.e., the probability that a new
+     * URI has to be checked by the decorated filter.
+     */
+    public static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.01;
+    /**
+     * The default time (in ms) between two snapshots.
+     */
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 1000L * 60L * 5L;
+    /**
+     * Magic number at the beginning of a snapshot file.
+     */
+    private static final int SNAPSHOT_MAGIC = 0x4B554631; // "KUF1"
+
+    private final ScalableBloomFilter bloomFilter;
+    private final File snapshotFile;
+    /**
+     * Flag indicating whether the Bloom filter contains all URIs of the decorated
+     * filter, i.e., whether it can be used to identify new URIs.
+     */
+    private final boolean complete;
+    /**
+     * Lock ensuring that a snapshot does not count a URI of the decorated
+     * filter that has not been added to the Bloom filter, yet. Adding URIs
+     * takes the read lock while counting the URIs for a snapshot takes the
+     * write lock.
+     */
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private Timer snapshotTimer = null;
+
+    /**
+     * Constructor for a filter without snapshots using the default capacity and
+     * false positive probability.
+     *
+     * @param decorated
+     *            the decorated filter that stores the URIs
+     */
+    public BloomFilterKnownUriFilter(KnownUriFilter decorated) {
+        this(decorated, DEFAULT_INITIAL_CAPACITY, DEFAULT_FALSE_POSITIVE_PROBABILITY, null, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param decorated
+     *            the decorated filter that stores the URIs
+     * @param initialCapacity
+     *            the number of URIs the first stage of the Bloom filter can
+     *            take. It is ignored if a snapshot is loaded and raised to the
+     *            number of URIs of the decorated filter if the Bloom filter is
+     *            rebuilt.
+     * @param falsePositiveProbability
+     *            the false positive probability of the Bloom filter. It is
+     *            ignored if a snapshot is loaded.
+     * @param snapshotFile
+     *            the file the Bloom filter is loaded from and written to or
+     *            <code>null</code> if no snapshots should be used
+     * @param snapshotInterval
+     *            the time (in ms) between two snapshots. Values &lt;= 0 disable
+     *            the periodic snapshots.
+     */
+    public BloomFilterKnownUriFilter(KnownUriFilter decorated, long initialCapacity, double falsePositiveProbability,
+            File snapshotFile, long snapshotInterval) {
+        super(decorated);
+        this.snapshotFile = snapshotFile;
+        long count = decorated.count();
+        ScalableBloomFilter loadedFilter = loadSnapshot(snapshotFile, count);
+        if (loadedFilter != null) {
+            bloomFilter = loadedFilter;
+            complete = true;
+        } else {
+            bloomFilter = new ScalableBloomFilter(Math.max(initialCapacity, count), falsePositiveProbability);
+            complete = (count == 0) || rebuild(decorated, bloomFilter, count);
+        }
+        if (complete && (snapshotFile != null) && (snapshotInterval > 0)) {
+            snapshotTimer = new Timer("known-uri-bloom-filter-snapshot", true);
+            snapshotTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    writeSnapshot();
+                }
+            }, snapshotInterval, snapshotInterval);
+        }
+    }
+
+    @Override
+    public boolean isUriGood(CrawleableUri uri) {
+        if (complete && !bloomFilter.mightContain(uri.getUri().toString())) {
+            return true;
+        }
+        return super.isUriGood(uri);
+    }
+
+    @Override
+    public List<CrawleableUri> filterGood(List<CrawleableUri> uris) {
+        if (!complete) {
+            return super.filterGood(uris);
+        }
+        // only the possibly known URIs are sent to the decorated filter
+        List<CrawleableUri> candidates = new ArrayList<>();
+        for (CrawleableUri uri : uris) {
+            if (bloomFilter.mightContain(uri.getUri().toString())) {
+                candidates.add(uri);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return new ArrayList<>(uris);
+        }
+        Set<CrawleableUri> goodCandidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        goodCandidates.addAll(super.filterGood(candidates));
+        Set<CrawleableUri> badCandidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (CrawleableUri uri : candidates) {
+            if (!goodCandidates.contains(uri)) {
+                badCandidates.add(uri);
+            }
+        }
+        List<CrawleableUri> goodUris = new ArrayList<>(uris.size());
+        for (CrawleableUri uri : uris) {
+            if (!badCandidates.contains(uri)) {
+                goodUris.add(uri);
+            }
+        }
+        return goodUris;
+    }
+
+    @Override
+    public void addAll(List<CrawleableUri> uris, long nextCrawlTimestamp) {
+        snapshotLock.readLock().lock();
+        try {
+            super.addAll(uris, nextCrawlTimestamp);
+            for (CrawleableUri uri : uris) {
+                bloomFilter.put(uri.getUri().toString());
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(CrawleableUri uri, long nextCrawlTimestamp) {
+        snapshotLock.readLock().lock();
+        try {
+            super.add(uri, nextCrawlTimestamp);
+            bloomFilter.put(uri.getUri().toString());
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(CrawleableUri uri, long lastCrawlTimestamp, long nextCrawlTimestamp) {
+        snapshotLock.readLock().lock();
+        try {
+            decorated.add(uri, lastCrawlTimestamp, nextCrawlTimestamp);
+            bloomFilter.put(uri.getUri().toString());
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the Bloom filter to the snapshot file (if a file has been
+     * defined). The snapshot is written to a temporary file first which
+     * replaces the old snapshot, i.e., a crash while writing does not destroy
+     * the old snapshot. An incomplete filter does not write snapshots.
+     *
+     * @return <code>true</code> if the snapshot has been written successfully
+     */
+    public synchronized boolean writeSnapshot() {
+        if ((snapshotFile == null) || !complete) {
+            return false;
+        }
+        // all URIs that are counted have been added to the Bloom filter. URIs
+        // added while the filter is written are contained in the Bloom filter
+        // but not counted, which leads to a mismatch after a crash.
+        long count;
+        snapshotLock.writeLock().lock();
+        try {
+            count = decorated.count();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+        File tempFile = new File(snapshotFile.getAbsolutePath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(count);
+            bloomFilter.writeTo(out);
+        } catch (IOException e) {
+            LOGGER.error("Couldn't write snapshot of the Bloom filter to " + tempFile.getAbsolutePath() + ".", e);
+            return false;
+        }
+        try {
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.error("Couldn't replace the snapshot " + snapshotFile.getAbsolutePath() + ".", e);
+            return false;
+        }
+        LOGGER.debug("Wrote snapshot of the Bloom filter with {} URIs.", bloomFilter.size());
+        return true;
+    }
+
+    /**
+     * Adds all URIs of the decorated filter to the given Bloom filter.
+     *
+     * @return <code>true</code> if the Bloom filter contains all URIs of the
+     *         decorated filter
+     */
+    private static boolean rebuild(KnownUriFilter decorated, ScalableBloomFilter bloomFilter, long count) {
+        LOGGER.info("There is no matching snapshot of the Bloom filter. Rebuilding it from {} known URIs.", count);
+        long start = System.currentTimeMillis();
+        try {
+            if (decorated.forEachKnownUri(uri -> bloomFilter.put(uri))) {
+                LOGGER.info("Rebuilt the Bloom filter with {} URIs in {}ms.", bloomFilter.size(),
+                        System.currentTimeMillis() - start);
+                return true;
+            }
+            LOGGER.warn(
+                    "The decorated filter can not list its URIs. All requests will be forwarded to the decorated filter.");
+        } catch (Exception e) {
+            LOGGER.error(
+                    "Couldn't rebuild the Bloom filter. All requests will be forwarded to the decorated filter.", e);
+        }
+        return false;
+    }
+
+    /**
+     * Loads the snapshot from the given file if the number of URIs it has been
+     * created for matches the given number of URIs of the decorated filter.
+     *
+     * @param snapshotFile
+     *            the file containing the snapshot
+     * @param count
+     *            the current number of URIs of the decorated filter
+     * @return the loaded Bloom filter or <code>null</code> if there is no
+     *         (matching) snapshot
+     */
+    private static ScalableBloomFilter loadSnapshot(File snapshotFile, long count) {
+        if ((snapshotFile == null) || !snapshotFile.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("The given file does not contain a snapshot of a known URI filter.");
+            }
+            long snapshotCount = in.readLong();
+            if (snapshotCount != count) {
+                LOGGER.warn(
+                        "The snapshot of the Bloom filter has been created for {} URIs but the decorated filter contains {} URIs. It will be ignored.",
+                        snapshotCount, count);
+                return null;
+            }
+            ScalableBloomFilter filter = ScalableBloomFilter.readFrom(in);
+            LOGGER.info("Loaded snapshot of the Bloom filter with {} URIs.", filter.size());
+            return filter;
+        } catch (IOException e) {
+            LOGGER.error("Couldn't load snapshot of the Bloom filter from " + snapshotFile.getAbsolutePath()
+                    + ". It will be ignored.", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the Bloom filter is used to identify new
+     *         URIs, <code>false</code> if all requests are forwarded to the
+     *         decorated filter
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return the Bloom filter of this decorator
+     */
+    public ScalableBloomFilter getBloomFilter() {
+        return bloomFilter;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (snapshotTimer != null) {
+            snapshotTimer.cancel();
+            snapshotTimer = null;
+        }
+        writeSnapshot();
+        super.close();
+    }
+}
@@ -0,0 +1,425 @@
+package org.dice_research.squirrel.data.uri.filter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A compact in-memory implementation of the {@link KnownUriFilter} interface.
+ * It stores a 64 bit fingerprint of every known URI together with its last and
+ * next crawl time stamp in the primitive arrays of an open addressing hash
+ * table. The in process flag is packed into the highest bit of the last crawl
+ * time stamp.
+ * </p>
+ *
+ * <p>
+ * Optionally, the URIs themselves are stored as well. They tell URIs with the
+ * same fingerprint apart and are needed by {@link #getOutdatedUris()}, which
+ * uses an index of the URIs sorted by their recrawl time. Reading methods do
+ * not lock, writing methods are synchronized.
+ * </p>
+ *
+ * <p>
+ * The entries can be written to a stream with {@link #writeTo(DataOutputStream)}
+ * and added to a new filter with {@link #readFrom(DataInputStream)}.
+ * </p>
+ */
+public class FingerprintKnownUriFilter implements KnownUriFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FingerprintKnownUriFilter.class);
+
+    /**
+     * The default number of slots of the table.
+     */
+    public static final int DEFAULT_INITIAL_CAPACITY = 1 << 16;
+    /**
+     * The table is doubled if more than this fraction of its slots is used.
+     */
+    private static final double MAX_LOAD_FACTOR = 0.75;
+    /**
+     * Marks an empty slot. No fingerprint can have this value.
+     */
+    private static final long EMPTY = 0;
+    private static final long IN_PROCESS_FLAG = Long.MIN_VALUE;
+
+    /**
+     * The current table. It is replaced by a larger table if it is full.
+     */
+    private volatile Table table;
+    private volatile int size = 0;
+    /**
+     * Indicates whether the {@link org.dice_research.squirrel.frontier.Frontier}
+     * using this filter does recrawling.
+     */
+    private final boolean frontierDoesRecrawling;
+    private final long defaultRecrawlTime;
+    private final boolean storeUris;
+    /**
+     * The stored URIs sorted by the time stamp at which they might have to be
+     * recrawled. The URI strings are shared with the table. Guarded by the
+     * lock of this filter.
+     */
+    private final TreeMap<Long, List<String>> recrawlIndex = new TreeMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param frontierDoesRecrawling
+     *            Value for {@link #frontierDoesRecrawling}.
+     * @param defaultRecrawlTime
+     *            the general recrawl time of the frontier
+     * @param storeUris
+     *            flag indicating whether the URIs should be stored in addition
+     *            to their fingerprints
+     */
+    public FingerprintKnownUriFilter(boolean frontierDoesRecrawling, long defaultRecrawlTime, boolean storeUris) {
+        this(frontierDoesRecrawling, defaultRecrawlTime, storeUris, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param frontierDoesRecrawling
+     *            Value for {@link #frontierDoesRecrawling}.
+     * @param defaultRecrawlTime
+     *            the general recrawl time of the frontier
+     * @param storeUris
+     *            flag indicating whether the URIs should be stored in addition
+     *            to their fingerprints
+     * @param initialCapacity
+     *            the initial number of slots of the table
+     */
+    public FingerprintKnownUriFilter(boolean frontierDoesRecrawling, long defaultRecrawlTime, boolean storeUris,
+            int initialCapacity) {
+        this.frontierDoesRecrawling = frontierDoesRecrawling;
+        this.defaultRecrawlTime = defaultRecrawlTime;
+        this.storeUris = storeUris;
+        int capacity = Integer.highestOneBit(Math.max(2, initialCapacity - 1)) << 1;
+        table = new Table(capacity, storeUris);
+    }
+
+    @Override
+    public boolean isUriGood(CrawleableUri uri) {
+        return isUriGood(uri, System.currentTimeMillis());
+    }
+
+    private boolean isUriGood(CrawleableUri uri, long now) {
+        String uriString = uri.getUri().toString();
+        Table table = this.table;
+        int slot = table.find(fingerprint(uriString), uriString);
+        if (slot < 0) {
+            return true;
+        }
+        if (!frontierDoesRecrawling) {
+            return false;
+        }
+        return table.nextCrawl.get(slot) < now;
+    }
+
+    @Override
+    public List<CrawleableUri> filterGood(List<CrawleableUri> uris) {
+        List<CrawleableUri> goodUris = new ArrayList<>(uris.size());
+        long now = System.currentTimeMillis();
+        for (CrawleableUri uri : uris) {
+            if (isUriGood(uri, now)) {
+                goodUris.add(uri);
+            }
+        }
+        return goodUris;
+    }
+
+    @Override
+    public void add(CrawleableUri uri, long nextCrawlTimestamp) {
+        add(uri, System.currentTimeMillis(), nextCrawlTimestamp);
+    }
+
+    @Override
+    public synchronized void add(CrawleableUri uri, long lastCrawlTimestamp, long nextCrawlTimestamp) {
+        put(uri.getUri().toString(), lastCrawlTimestamp, nextCrawlTimestamp);
+    }
+
+    @Override
+    public synchronized void addAll(List<CrawleableUri> uris, long nextCrawlTimestamp) {
+        long now = System.currentTimeMillis();
+        for (CrawleableUri uri : uris) {
+            put(uri.getUri().toString(), now, nextCrawlTimestamp);
+        }
+    }
+
+    /**
+     * Adds the given URI or updates its entry. Has to be called while holding
+     * the lock of this filter.
+     */
+    private void put(String uriString, long lastCrawlTimestamp, long nextCrawlTimestamp) {
+        put(fingerprint(uriString), uriString, lastCrawlTimestamp & ~IN_PROCESS_FLAG, nextCrawlTimestamp);
+    }
+
+    /**
+     * Adds the given entry or updates it. The last crawl time stamp is stored
+     * as it is, i.e., it might contain the {@link #IN_PROCESS_FLAG}. Has to be
+     * called while holding the lock of this filter.
+     */
+    private void put(long fingerprint, String uriString, long lastCrawl, long nextCrawlTimestamp) {
+        int slot = table.find(fingerprint, uriString);
+        if (slot >= 0) {
+            table.nextCrawl.set(slot, nextCrawlTimestamp);
+            table.lastCrawl.set(slot, lastCrawl);
+        } else {
+            if ((size + 1) > (table.length() * MAX_LOAD_FACTOR)) {
+                resize();
+                slot = table.find(fingerprint, uriString);
+            }
+            table.insert(~slot, fingerprint, uriString, lastCrawl, nextCrawlTimestamp);
+            ++size;
+        }
+        if (storeUris) {
+            index(uriString, recrawlTimestamp(lastCrawl, nextCrawlTimestamp));
+        }
+    }
+
+    /**
+     * Adds the given URI to the {@link #recrawlIndex}. Has to be called while
+     * holding the lock of this filter.
+     */
+    private void index(String uriString, long timestamp) {
+        recrawlIndex.computeIfAbsent(timestamp, k -> new ArrayList<>()).add(uriString);
+    }
+
+    /**
+     * Determines the point in time after which an entry with the given time
+     * stamps has to be recrawled. A claimed URI might have to be recrawled if
+     * its crawling is not finished in time.
+     */
+    private long recrawlTimestamp(long lastCrawl, long nextCrawl) {
+        if ((lastCrawl & IN_PROCESS_FLAG) != 0) {
+            return Math.max(nextCrawl, (lastCrawl & ~IN_PROCESS_FLAG) + defaultRecrawlTime * 3 + 1);
+        }
+        return nextCrawl;
+    }
+
+    /**
+     * Replaces the current table with a table of the double size. Has to be
+     * called while holding the lock of this filter.
+     */
+    private void resize() {
+        Table oldTable = table;
+        Table newTable = new Table(oldTable.length() << 1, storeUris);
+        long fingerprint;
+        String uriString;
+        for (int i = 0; i < oldTable.length(); ++i) {
+            fingerprint = oldTable.fingerprints.get(i);
+            if (fingerprint != EMPTY) {
+                uriString = storeUris ? oldTable.uris.get(i) : null;
+                newTable.insert(~newTable.find(fingerprint, uriString), fingerprint, uriString,
+                        oldTable.lastCrawl.get(i), oldTable.nextCrawl.get(i));
+            }
+        }
+        table = newTable;
+    }
+
+    @Override
+    public List<CrawleableUri> getOutdatedUris() {
+        return getOutdatedUris(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized List<CrawleableUri> getOutdatedUris(int maxUris) {
+        // get all uris with the following property:
+        // (nextCrawlTimestamp has passed) AND (crawlingInProcess==false OR lastCrawlTimestamp is 3 times older than generalRecrawlTime)
+        List<CrawleableUri> urisToRecrawl = new ArrayList<>();
+        if (!storeUris) {
+            LOGGER.warn("The URIs are not stored. Outdated URIs can not be determined.");
+            return urisToRecrawl;
+        }
+        // Only the URIs with a passed time stamp in the index have to be checked.
+        long now = System.currentTimeMillis();
+        Iterator<List<String>> iterator = recrawlIndex.headMap(now, false).values().iterator();
+        List<String> indexedUris;
+        List<String> claimedUris = new ArrayList<>();
+        String uriString;
+        int slot;
+        while (iterator.hasNext() && (urisToRecrawl.size() < maxUris)) {
+            indexedUris = iterator.next();
+            while (!indexedUris.isEmpty() && (urisToRecrawl.size() < maxUris)) {
+                uriString = indexedUris.remove(indexedUris.size() - 1);
+                slot = table.find(fingerprint(uriString), uriString);
+                // the entry is outdated if the URI has been added with a later time stamp or has been claimed
+                if ((slot >= 0) && (recrawlTimestamp(table.lastCrawl.get(slot), table.nextCrawl.get(slot)) < now)) {
+                    try {
+                        urisToRecrawl.add(new CrawleableUri(new URI(uriString)));
+                        table.lastCrawl.set(slot, now | IN_PROCESS_FLAG);
+                        claimedUris.add(uriString);
+                    } catch (URISyntaxException e) {
+                        LOGGER.warn("Couldn't recreate known URI. It will be ignored.", e);
+                    }
+                }
+            }
+            if (indexedUris.isEmpty()) {
+                iterator.remove();
+            }
+        }
+        // the claimed URIs might have to be recrawled if the crawling is not finished in time
+        for (String claimedUri : claimedUris) {
+            index(claimedUri, now + defaultRecrawlTime * 3 + 1);
+        }
+        return urisToRecrawl;
+    }
+
+    @Override
+    public long count() {
+        return size;
+    }
+
+    /**
+     * Writes all entries of this filter to the given stream without locking
+     * the filter. Entries that are added or updated concurrently might be
+     * missing or outdated.
+     *
+     * @param out
+     *            the stream to which the entries are written
+     * @throws IOException
+     *             if the stream throws an exception
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        Table table = this.table;
+        out.writeBoolean(storeUris);
+        long fingerprint;
+        byte[] uriBytes;
+        for (int i = 0; i < table.length(); ++i) {
+            // the fingerprint is read first since it publishes the slot
+            fingerprint = table.fingerprints.get(i);
+            if (fingerprint != EMPTY) {
+                out.writeBoolean(true);
+                out.writeLong(fingerprint);
+                out.writeLong(table.lastCrawl.get(i));
+                out.writeLong(table.nextCrawl.get(i));
+                if (storeUris) {
+                    uriBytes = table.uris.get(i).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(uriBytes.length);
+                    out.write(uriBytes);
+                }
+            }
+        }
+        out.writeBoolean(false);
+    }
+
+    /**
+     * Adds the entries that have been written with
+     * {@link #writeTo(DataOutputStream)} to this filter. Existing entries are
+     * overwritten.
+     *
+     * @param in
+     *            the stream from which the entries are read
+     * @throws IOException
+     *             if the stream throws an exception or if the stream does not
+     *             contain the URIs although this filter stores them
+     */
+    public synchronized void readFrom(DataInputStream in) throws IOException {
+        boolean urisStored = in.readBoolean();
+        if (storeUris && !urisStored) {
+            throw new IOException("The entries do not contain the URIs that have to be stored by this filter.");
+        }
+        long fingerprint;
+        long lastCrawl;
+        long nextCrawl;
+        byte[] uriBytes;
+        String uriString = null;
+        while (in.readBoolean()) {
+            fingerprint = in.readLong();
+            lastCrawl = in.readLong();
+            nextCrawl = in.readLong();
+            if (urisStored) {
+                uriBytes = new byte[in.readInt()];
+                in.readFully(uriBytes);
+                if (storeUris) {
+                    uriString = new String(uriBytes, StandardCharsets.UTF_8);
+                }
+            }
+            put(fingerprint, uriString, lastCrawl, nextCrawl);
+        }
+    }
+
+    /**
+     * Creates the fingerprint of the given URI.
+     *
+     * @param uriString
+     *            the URI
+     * @return a 64 bit fingerprint that is not {@link #EMPTY}
+     */
+    protected long fingerprint(String uriString) {
+        long fingerprint = ScalableBloomFilter.hash(uriString)[0];
+        return (fingerprint == EMPTY) ? 1 : fingerprint;
+    }
+
+    /**
+     * The arrays of the open addressing hash table.
+     */
+    private static class Table {
+        private final AtomicLongArray fingerprints;
+        private final AtomicLongArray lastCrawl;
+        private final AtomicLongArray nextCrawl;
+        private final AtomicReferenceArray<String> uris;
+        private final int mask;
+
+        public Table(int capacity, boolean storeUris) {
+            fingerprints = new AtomicLongArray(capacity);
+            lastCrawl = new AtomicLongArray(capacity);
+            nextCrawl = new AtomicLongArray(capacity);
+            uris = storeUris ? new AtomicReferenceArray<String>(capacity) : null;
+            mask = capacity - 1;
+        }
+
+        public int length() {
+            return mask + 1;
+        }
+
+        /**
+         * Searches the slot of the given URI.
+         *
+         * @return the slot of the URI or the bitwise complement of the empty
+         *         slot at which it would have to be inserted
+         */
+        public int find(long fingerprint, String uriString) {
+            int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+            long current;
+            while (true) {
+                current = fingerprints.get(slot);
+                if (current == EMPTY) {
+                    return ~slot;
+                }
+                if ((current == fingerprint) && ((uris == null) || uriString.equals(uris.get(slot)))) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        /**
+         * Writes the entry to the given empty slot. The fingerprint is written
+         * last to publish the slot to readers.
+         */
+        public void insert(int slot, long fingerprint, String uriString, long lastCrawlTimestamp,
+                long nextCrawlTimestamp) {
+            if (uris != null) {
+                uris.set(slot, uriString);
+            }
+            lastCrawl.set(slot, lastCrawlTimestamp);
+            nextCrawl.set(slot, nextCrawlTimestamp);
+            fingerprints.set(slot, fingerprint);
+        }
+    }
+}
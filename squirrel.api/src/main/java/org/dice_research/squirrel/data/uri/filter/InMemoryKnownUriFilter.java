@@ -2,7 +2,11 @@ package org.dice_research.squirrel.data.uri.filter;
 
 import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 import org.dice_research.squirrel.data.uri.CrawleableUri;
 
@@ -17,6 +21,13 @@ public class InMemoryKnownUriFilter implements KnownUriFilter {
      * - value: the info about the URI (see {@link UriInfo}), including the reference list
      */
     protected Hashtable<CrawleableUri, UriInfo> uris;
+    /**
+     * Index of the URIs ordered by the time stamp from which on they might have
+     * to be recrawled. Outdated entries (e.g., of URIs that have been added again
+     * with a new time stamp) are removed when they are reached. Guarded by the
+     * lock of {@link #uris}.
+     */
+    protected TreeMap<Long, List<CrawleableUri>> recrawlIndex = new TreeMap<>();
     /**
      * Indicates whether the {@link org.dice_research.squirrel.frontier.Frontier} using this filter does recrawling.
      */
@@ -50,6 +61,11 @@ public class InMemoryKnownUriFilter implements KnownUriFilter {
     public InMemoryKnownUriFilter(Hashtable<CrawleableUri, UriInfo> uris, boolean frontierDoesRecrawling) {
         this.uris = uris;
         this.frontierDoesRecrawling = frontierDoesRecrawling;
+        synchronized (uris) {
+            for (Entry<CrawleableUri, UriInfo> entry : uris.entrySet()) {
+                index(entry.getKey(), entry.getValue().nextCrawlTimestamp);
+            }
+        }
     }
 
     @Override
@@ -60,7 +76,10 @@ public class InMemoryKnownUriFilter implements KnownUriFilter {
     @Override
     public void add(CrawleableUri uri, long lastCrawlTimestamp, long nextCrawlTimestamp) {
         UriInfo uriInfo = new UriInfo(lastCrawlTimestamp, nextCrawlTimestamp, false);
-        uris.put(uri, uriInfo);
+        synchronized (uris) {
+            uris.put(uri, uriInfo);
+            index(uri, nextCrawlTimestamp);
+        }
     }
 
     @Override
@@ -75,18 +94,76 @@ public class InMemoryKnownUriFilter implements KnownUriFilter {
         }
     }
 
+    @Override
+    public List<CrawleableUri> filterGood(List<CrawleableUri> uris) {
+        List<CrawleableUri> goodUris = new ArrayList<>(uris.size());
+        long now = System.currentTimeMillis();
+        UriInfo info;
+        for (CrawleableUri uri : uris) {
+            info = this.uris.get(uri);
+            if ((info == null) || (frontierDoesRecrawling && (info.nextCrawlTimestamp < now))) {
+                goodUris.add(uri);
+            }
+        }
+        return goodUris;
+    }
+
+    @Override
+    public void addAll(List<CrawleableUri> uris, long nextCrawlTimestamp) {
+        long now = System.currentTimeMillis();
+        synchronized (this.uris) {
+            for (CrawleableUri uri : uris) {
+                this.uris.put(uri, new UriInfo(now, nextCrawlTimestamp, false));
+                index(uri, nextCrawlTimestamp);
+            }
+        }
+    }
+
+    /**
+     * Adds the given URI to the {@link #recrawlIndex}. Has to be called while
+     * holding the lock of {@link #uris}.
+     */
+    private void index(CrawleableUri uri, long timestamp) {
+        recrawlIndex.computeIfAbsent(timestamp, k -> new ArrayList<>()).add(uri);
+    }
+
     @Override
     public List<CrawleableUri> getOutdatedUris() {
+        return getOutdatedUris(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<CrawleableUri> getOutdatedUris(int maxUris) {
         // get all uris with the following property:
         // (nextCrawlTimestamp has passed) AND (crawlingInProcess==false OR lastCrawlTimestamp is 3 times older than generalRecrawlTime)
-
+        // Only the URIs with a passed time stamp in the index have to be checked.
         List<CrawleableUri> urisToRecrawl = new ArrayList<>();
-
-        for (CrawleableUri uri : uris.keySet()) {
-            if (uris.get(uri).nextCrawlTimestamp < System.currentTimeMillis() &&
-                (!uris.get(uri).crawlingInProcess || uris.get(uri).lastCrawlTimestamp < System.currentTimeMillis() - defaultRecrawlTime * 3)) {
-                urisToRecrawl.add(uri);
-                uris.get(uri).crawlingInProcess = true;
+        long now = System.currentTimeMillis();
+        synchronized (uris) {
+            Iterator<List<CrawleableUri>> iterator = recrawlIndex.headMap(now, false).values().iterator();
+            List<CrawleableUri> indexedUris;
+            CrawleableUri uri;
+            UriInfo info;
+            while (iterator.hasNext() && (urisToRecrawl.size() < maxUris)) {
+                indexedUris = iterator.next();
+                while (!indexedUris.isEmpty() && (urisToRecrawl.size() < maxUris)) {
+                    uri = indexedUris.remove(indexedUris.size() - 1);
+                    info = uris.get(uri);
+                    // the entry is outdated if the URI has been added with a later time stamp
+                    if ((info != null) && (info.nextCrawlTimestamp < now)
+                            && (!info.crawlingInProcess || info.lastCrawlTimestamp < now - defaultRecrawlTime * 3)) {
+                        info.crawlingInProcess = true;
+                        info.lastCrawlTimestamp = now;
+                        urisToRecrawl.add(uri);
+                    }
+                }
+                if (indexedUris.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+            // the claimed URIs might have to be recrawled if the crawling is not finished in time
+            for (CrawleableUri claimedUri : urisToRecrawl) {
+                index(claimedUri, now + defaultRecrawlTime * 3 + 1);
             }
         }
         return urisToRecrawl;
@@ -97,6 +174,16 @@ public class InMemoryKnownUriFilter implements KnownUriFilter {
         return uris.size();
     }
 
+    @Override
+    public boolean forEachKnownUri(Consumer<String> consumer) {
+        synchronized (uris) {
+            for (CrawleableUri uri : uris.keySet()) {
+                consumer.accept(uri.getUri().toString());
+            }
+        }
+        return true;
+    }
+
 
     private class UriInfo {
         long lastCrawlTimestamp;
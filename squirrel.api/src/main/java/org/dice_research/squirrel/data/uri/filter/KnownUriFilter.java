@@ -1,6 +1,8 @@
 package org.dice_research.squirrel.data.uri.filter;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.dice_research.squirrel.data.uri.CrawleableUri;
 
@@ -29,6 +31,36 @@ public interface KnownUriFilter extends UriFilter {
      */
     void add(CrawleableUri uri, long lastCrawlTimestamp, long nextCrawlTimestamp);
 
+    /**
+     * Returns those URIs of the given list for which {@link #isUriGood(CrawleableUri)} would return true.
+     * Implementations should check the complete batch at once, e.g., with a single request to their database.
+     *
+     * @param uris the URIs that should be checked
+     * @return the good URIs in the order in which they have been given
+     */
+    public default List<CrawleableUri> filterGood(List<CrawleableUri> uris) {
+        List<CrawleableUri> goodUris = new ArrayList<>(uris.size());
+        for (CrawleableUri uri : uris) {
+            if (isUriGood(uri)) {
+                goodUris.add(uri);
+            }
+        }
+        return goodUris;
+    }
+
+    /**
+     * Adds all given URIs to the list of already known URIs. Works like calling {@link #add(CrawleableUri, long)}
+     * for every single URI but implementations should add the complete batch at once.
+     *
+     * @param uris the URIs that should be added to the list.
+     * @param nextCrawlTimestamp The time at which the given URIs should be crawled next.
+     */
+    public default void addAll(List<CrawleableUri> uris, long nextCrawlTimestamp) {
+        for (CrawleableUri uri : uris) {
+            add(uri, nextCrawlTimestamp);
+        }
+    }
+
     /**
      * Returns all {@link CrawleableUri}s which have to be recrawled. This means their time to next crawl has passed.
      *
@@ -36,9 +68,34 @@ public interface KnownUriFilter extends UriFilter {
      */
     public List<CrawleableUri> getOutdatedUris();
 
+    /**
+     * Returns at most the given number of {@link CrawleableUri}s which have to be recrawled and marks them as being
+     * in process. Hence, it can be called repeatedly to stream all outdated URIs in batches until it returns less
+     * URIs than requested. Implementations should use an index on the time stamp of the next crawl. The default
+     * implementation ignores the limit and returns all outdated URIs.
+     *
+     * @param maxUris the maximum number of URIs that should be returned
+     * @return The outdated {@link CrawleableUri}s.
+     */
+    public default List<CrawleableUri> getOutdatedUris(int maxUris) {
+        return getOutdatedUris();
+    }
+
     /**
      * count the numbers of known URIs
      * @return the number of lines in that database
      */
     long count();
+
+    /**
+     * Hands all known URIs to the given consumer. This enables decorators to
+     * rebuild an in-memory index of the known URIs. The default implementation
+     * does not support this and returns false.
+     *
+     * @param consumer the consumer that gets the String representations of the known URIs
+     * @return true if all known URIs have been handed to the consumer
+     */
+    public default boolean forEachKnownUri(Consumer<String> consumer) {
+        return false;
+    }
 }
\ No newline at end of file
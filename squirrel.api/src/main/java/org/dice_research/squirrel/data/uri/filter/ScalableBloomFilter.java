@@ -0,0 +1,289 @@
+package org.dice_research.squirrel.data.uri.filter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A thread-safe, scalable Bloom filter for strings (Almeida et al., "Scalable
+ * Bloom Filters", 2007). The filter consists of a growing list of classic Bloom
+ * filters. If the current stage is full, a new stage with
+ * {@link #GROWTH_FACTOR} times the capacity and a false positive probability
+ * tightened by {@link #TIGHTENING_RATIO} is added.
+ * </p>
+ *
+ * <p>
+ * {@link #mightContain(String)} never returns <code>false</code> for a string
+ * that has been added before.
+ * </p>
+ */
+public class ScalableBloomFilter {
+
+    /**
+     * Factor with which the capacity of a new stage grows.
+     */
+    public static final int GROWTH_FACTOR = 2;
+    /**
+     * Factor with which the false positive probability of a new stage is
+     * multiplied.
+     */
+    public static final double TIGHTENING_RATIO = 0.8;
+
+    private static final int SNAPSHOT_MAGIC = 0x53424631; // "SBF1"
+
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+    private final double falsePositiveProbability;
+
+    /**
+     * Constructor.
+     *
+     * @param initialCapacity
+     *            the number of elements the first stage can take
+     * @param falsePositiveProbability
+     *            the overall false positive probability the filter should not
+     *            exceed
+     */
+    public ScalableBloomFilter(long initialCapacity, double falsePositiveProbability) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("The initial capacity has to be positive.");
+        }
+        if ((falsePositiveProbability <= 0) || (falsePositiveProbability >= 1)) {
+            throw new IllegalArgumentException("The false positive probability has to be in (0,1).");
+        }
+        this.falsePositiveProbability = falsePositiveProbability;
+        // the sum of the stage probabilities (a geometric series) has to stay below
+        // the given probability
+        stages.add(new Stage(initialCapacity, falsePositiveProbability * (1 - TIGHTENING_RATIO)));
+    }
+
+    private ScalableBloomFilter(double falsePositiveProbability, List<Stage> stages) {
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.stages.addAll(stages);
+    }
+
+    /**
+     * Adds the given string to the filter.
+     *
+     * @param value
+     *            the string that should be added
+     */
+    public void put(String value) {
+        long hashes[] = hash(value);
+        Stage stage = stages.get(stages.size() - 1);
+        if (stage.isFull()) {
+            synchronized (stages) {
+                stage = stages.get(stages.size() - 1);
+                if (stage.isFull()) {
+                    stage = new Stage(stage.capacity * GROWTH_FACTOR, stage.falsePositiveProbability * TIGHTENING_RATIO);
+                    stages.add(stage);
+                }
+            }
+        }
+        stage.put(hashes[0], hashes[1]);
+    }
+
+    /**
+     * Checks whether the given string might have been added before.
+     *
+     * @param value
+     *            the string that should be checked
+     * @return <code>false</code> if the string definitely has not been added,
+     *         else <code>true</code>
+     */
+    public boolean mightContain(String value) {
+        long hashes[] = hash(value);
+        for (Stage stage : stages) {
+            if (stage.mightContain(hashes[0], hashes[1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the (approximated) number of strings that have been added
+     */
+    public long size() {
+        long size = 0;
+        for (Stage stage : stages) {
+            size += stage.count.get();
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of stages of this filter
+     */
+    public int getNumberOfStages() {
+        return stages.size();
+    }
+
+    /**
+     * @return the size of the bit arrays of all stages in bytes
+     */
+    public long getSizeInBytes() {
+        long bytes = 0;
+        for (Stage stage : stages) {
+            bytes += stage.bits.length() * 8L;
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the filter to the given stream. Concurrent additions might or
+     * might not be part of the written filter.
+     *
+     * @param out
+     *            the stream the filter is written to
+     * @throws IOException
+     *             if the stream throws an exception
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        List<Stage> stages = new ArrayList<>(this.stages);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeDouble(falsePositiveProbability);
+        out.writeInt(stages.size());
+        for (Stage stage : stages) {
+            out.writeLong(stage.capacity);
+            out.writeDouble(stage.falsePositiveProbability);
+            out.writeLong(stage.count.get());
+            out.writeInt(stage.bits.length());
+            for (int i = 0; i < stage.bits.length(); ++i) {
+                out.writeLong(stage.bits.get(i));
+            }
+        }
+    }
+
+    /**
+     * Reads a filter that has been written with {@link #writeTo(DataOutputStream)}.
+     *
+     * @param in
+     *            the stream the filter is read from
+     * @return the filter
+     * @throws IOException
+     *             if the stream throws an exception or does not contain a
+     *             filter
+     */
+    public static ScalableBloomFilter readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("The given stream does not contain a bloom filter.");
+        }
+        double falsePositiveProbability = in.readDouble();
+        int numberOfStages = in.readInt();
+        List<Stage> stages = new ArrayList<>(numberOfStages);
+        for (int s = 0; s < numberOfStages; ++s) {
+            Stage stage = new Stage(in.readLong(), in.readDouble());
+            stage.count.set(in.readLong());
+            int length = in.readInt();
+            if (length != stage.bits.length()) {
+                throw new IOException("The stored stage has an unexpected size.");
+            }
+            for (int i = 0; i < length; ++i) {
+                stage.bits.set(i, in.readLong());
+            }
+            stages.add(stage);
+        }
+        if (stages.isEmpty()) {
+            throw new IOException("The stored filter does not contain any stage.");
+        }
+        return new ScalableBloomFilter(falsePositiveProbability, stages);
+    }
+
+    /**
+     * Creates two independent 64 bit hashes of the given string (FNV-1a and a
+     * murmur3 like mixing of the UTF-8 bytes) which are combined to the hash
+     * functions of a stage using double hashing.
+     */
+    protected static long[] hash(String value) {
+        byte bytes[] = value.getBytes(StandardCharsets.UTF_8);
+        long h1 = 0xcbf29ce484222325L;
+        long h2 = 0x9e3779b97f4a7c15L ^ bytes.length;
+        for (int i = 0; i < bytes.length; ++i) {
+            h1 ^= bytes[i];
+            h1 *= 0x100000001b3L;
+            h2 = Long.rotateLeft(h2 ^ (bytes[i] * 0x87c37b91114253d5L), 31) * 0x4cf5ad432745937fL;
+        }
+        return new long[] { mix(h1), mix(h2) | 1L };
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * A classic Bloom filter with a fixed capacity.
+     */
+    protected static class Stage {
+        protected final long capacity;
+        protected final double falsePositiveProbability;
+        protected final int numberOfHashes;
+        protected final long numberOfBits;
+        protected final AtomicLongArray bits;
+        protected final AtomicLong count = new AtomicLong();
+
+        public Stage(long capacity, double falsePositiveProbability) {
+            this.capacity = capacity;
+            this.falsePositiveProbability = falsePositiveProbability;
+            // m = -n ln(p) / ln(2)^2 and k = m/n ln(2)
+            double bitsPerElement = -Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+            long longs = (long) Math.ceil((capacity * bitsPerElement) / 64);
+            if (longs > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("The capacity of a single stage is too large.");
+            }
+            bits = new AtomicLongArray((int) Math.max(1, longs));
+            numberOfBits = bits.length() * 64L;
+            numberOfHashes = Math.max(1, (int) Math.round(bitsPerElement * Math.log(2)));
+        }
+
+        public boolean isFull() {
+            return count.get() >= capacity;
+        }
+
+        public void put(long h1, long h2) {
+            boolean changed = false;
+            long combined = h1;
+            for (int i = 0; i < numberOfHashes; ++i) {
+                long bit = (combined & Long.MAX_VALUE) % numberOfBits;
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current = bits.get(index);
+                while ((current & mask) == 0) {
+                    if (bits.compareAndSet(index, current, current | mask)) {
+                        changed = true;
+                        break;
+                    }
+                    current = bits.get(index);
+                }
+                combined += h2;
+            }
+            // only count the string if it hasn't been in this stage before
+            if (changed) {
+                count.incrementAndGet();
+            }
+        }
+
+        public boolean mightContain(long h1, long h2) {
+            long combined = h1;
+            for (int i = 0; i < numberOfHashes; ++i) {
+                long bit = (combined & Long.MAX_VALUE) % numberOfBits;
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+                combined += h2;
+            }
+            return true;
+        }
+    }
+}
@@ -58,6 +58,19 @@ public interface Frontier extends Closeable {
      */
     void crawlingDone(List<CrawleableUri> uris);
 
+    /**
+     * (optional) Informs the {@link Frontier} that the given URIs, which have
+     * been requested using the {@link #getNextUris()} method, are still
+     * crawled. The {@link Frontier} won't hand them to another worker for
+     * another lease period. The default implementation does nothing.
+     *
+     * @param uris
+     *            URIs that are still crawled
+     */
+    default void extendLease(List<CrawleableUri> uris) {
+        // nothing to do
+    }
+
     /**
      * (optional) Returns the number of URIs that have been requested from the
      * Frontier using {@link Frontier#getNextUris()} and have not been marked as
@@ -0,0 +1,176 @@
+package org.dice_research.squirrel.frontier.sharding;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+
+/**
+ * <p>
+ * Assigns IP addresses and hosts to the shards of a sharded frontier using
+ * consistent hashing. Every shard is placed at several points (virtual nodes)
+ * of a ring of 64 bit hash values. A key belongs to the shard of the first
+ * point that follows the hash value of the key.
+ * </p>
+ *
+ * <p>
+ * A URI is assigned by its IP address if it is known and by its host
+ * otherwise. The shard receiving a URI without IP address has to resolve its
+ * host and forward it to the owner of its IP address. The ring is immutable
+ * and its points depend only on the number of shards.
+ * </p>
+ */
+public class ConsistentHashRing {
+
+    /**
+     * The default number of points per shard.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final int numberOfShards;
+    /**
+     * The points of the ring in ascending order.
+     */
+    private final long[] points;
+    /**
+     * The shard of the point with the same index.
+     */
+    private final int[] owners;
+
+    /**
+     * Constructor using {@link #DEFAULT_VIRTUAL_NODES} points per shard.
+     *
+     * @param numberOfShards
+     *            the number of shards
+     */
+    public ConsistentHashRing(int numberOfShards) {
+        this(numberOfShards, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param numberOfShards
+     *            the number of shards
+     * @param virtualNodes
+     *            the number of points per shard. More points lead to a more
+     *            even distribution of the hosts.
+     */
+    public ConsistentHashRing(int numberOfShards, int virtualNodes) {
+        if ((numberOfShards < 1) || (virtualNodes < 1)) {
+            throw new IllegalArgumentException("The number of shards and virtual nodes have to be positive.");
+        }
+        this.numberOfShards = numberOfShards;
+        long[][] entries = new long[numberOfShards * virtualNodes][];
+        int pos = 0;
+        for (int shard = 0; shard < numberOfShards; ++shard) {
+            for (int node = 0; node < virtualNodes; ++node) {
+                entries[pos++] = new long[] { hash("shard-" + shard + "#" + node), shard };
+            }
+        }
+        Arrays.sort(entries, (e1, e2) -> Long.compare(e1[0], e2[0]));
+        points = new long[entries.length];
+        owners = new int[entries.length];
+        for (int i = 0; i < entries.length; ++i) {
+            points[i] = entries[i][0];
+            owners[i] = (int) entries[i][1];
+        }
+    }
+
+    /**
+     * Returns the shard that owns the given host.
+     *
+     * @param host
+     *            the host (might be <code>null</code>)
+     * @return the id of the shard (between 0 and the number of shards - 1)
+     */
+    public int getShard(String host) {
+        if (numberOfShards == 1) {
+            return 0;
+        }
+        long hash = hash((host == null) ? "" : host.toLowerCase());
+        int pos = Arrays.binarySearch(points, hash);
+        if (pos < 0) {
+            pos = -pos - 1;
+            if (pos == points.length) {
+                // wrap around
+                pos = 0;
+            }
+        }
+        return owners[pos];
+    }
+
+    /**
+     * Returns the shard that owns the given IP address.
+     *
+     * @param ip
+     *            the IP address
+     * @return the id of the shard (between 0 and the number of shards - 1)
+     */
+    public int getShard(InetAddress ip) {
+        // the prefix separates IP addresses from host names like "127.0.0.1"
+        return getShard("ip:" + ip.getHostAddress());
+    }
+
+    /**
+     * Returns the shard that owns the IP address of the given URI or, if the
+     * IP address is not known, the shard that owns its host.
+     *
+     * @param uri
+     *            the URI
+     * @return the id of the shard (between 0 and the number of shards - 1)
+     */
+    public int getShard(CrawleableUri uri) {
+        if (uri.getIpAddress() != null) {
+            return getShard(uri.getIpAddress());
+        }
+        return getShard(uri.getUri().getHost());
+    }
+
+    /**
+     * Splits the given URIs by their shards.
+     *
+     * @param uris
+     *            the URIs that should be partitioned
+     * @return a list containing the URIs of every shard (at the index of the
+     *         shard). The list of a shard without URIs is empty.
+     */
+    public List<List<CrawleableUri>> partition(List<CrawleableUri> uris) {
+        List<List<CrawleableUri>> partitions = new ArrayList<>(numberOfShards);
+        if (numberOfShards == 1) {
+            partitions.add(uris);
+            return partitions;
+        }
+        for (int i = 0; i < numberOfShards; ++i) {
+            partitions.add(new ArrayList<>());
+        }
+        for (CrawleableUri uri : uris) {
+            partitions.get(getShard(uri)).add(uri);
+        }
+        return partitions;
+    }
+
+    public int getNumberOfShards() {
+        return numberOfShards;
+    }
+
+    /**
+     * A 64 bit FNV-1a hash of the given string, followed by the finalization
+     * step of MurmurHash3 to spread similar strings over the complete ring.
+     */
+    protected static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); ++i) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+}
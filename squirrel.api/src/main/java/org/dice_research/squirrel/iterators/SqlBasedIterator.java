@@ -13,6 +13,11 @@ public class SqlBasedIterator implements Iterator<byte[]> {
     private static final Logger LOGGER = LoggerFactory.getLogger(SqlBasedIterator.class);
 
     protected PreparedStatement ps;
+    /**
+     * The object the access to the statement and its results is synchronized
+     * on.
+     */
+    protected final Object lock;
     protected ResultSet rs;
     protected boolean consumed = true;
     protected boolean hasNext = true;
@@ -21,7 +26,21 @@ public class SqlBasedIterator implements Iterator<byte[]> {
     private int page = 100;
 
     public SqlBasedIterator(PreparedStatement ps) {
+        this(ps, ps);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param ps
+     *            the statement used to query the pages of the result
+     * @param lock
+     *            the object the access to the statement is synchronized on,
+     *            e.g., the lock of a connection shared by several threads
+     */
+    public SqlBasedIterator(PreparedStatement ps, Object lock) {
         this.ps = ps;
+        this.lock = lock;
         try {
             ps.setInt(1, start);
             ps.setInt(2, next);
@@ -35,14 +54,14 @@ public class SqlBasedIterator implements Iterator<byte[]> {
 
     @Override
     public boolean hasNext() {
-        synchronized (ps) {
+        synchronized (lock) {
             return hasNext_unsecured();
         }
     }
 
     @Override
     public byte[] next() {
-        synchronized (ps) {
+        synchronized (lock) {
             try {
                 if (hasNext_unsecured()) {
                     start = start + 1;
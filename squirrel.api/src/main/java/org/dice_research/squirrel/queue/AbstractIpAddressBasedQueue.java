@@ -1,20 +1,81 @@
 package org.dice_research.squirrel.queue;
 
 import java.net.InetAddress;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.concurrent.Semaphore;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.dice_research.squirrel.Constants;
 import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.queue.scheduling.SchedulingPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This abstract class manages two important aspects of an IpAddressBasedQueue.
- * It uses a mutex to access the queue and it manages a set containing IPs that
- * are currently blocked by one of the workers.
+ * It guards the access to the queue with a set of locks that are striped by IP
+ * address and it manages a set containing IPs that are currently blocked by
+ * one of the workers.
+ *
+ * <p>
+ * Adding URIs and retrieving chunks of URIs only synchronize on the lock of
+ * the IP address they are working on. Hence, adds and dispatches for different
+ * IPs can run in parallel. Blocking an IP is done with an atomic
+ * check-and-add on a concurrent set, i.e., two threads can never retrieve a
+ * chunk for the same IP at the same time. Note that this requires
+ * {@link #getIterator()} to return an iterator that tolerates concurrent
+ * modifications of the queue.
+ * </p>
+ *
+ * <p>
+ * The size of the chunks can be bounded using {@link #setMaxChunkSize(int)}.
+ * Implementations of {@link #getUris(IpUriTypePair)} should return at most
+ * {@link #getMaxChunkSize()} URIs and keep the remaining URIs of the pair in
+ * the queue.
+ * </p>
+ *
+ * <p>
+ * The order in which the pairs are served can be defined with a
+ * {@link SchedulingPolicy}. If a policy is given, the queue keeps track of the
+ * pairs that have URIs. Pairs of IPs that are not blocked are handed to the
+ * policy while the pairs of blocked IPs are parked until their IP is marked as
+ * accessible again. Hence, the policy only contains pairs that can be served
+ * directly. If no policy is given, the pairs are served in the order of
+ * {@link #getIterator()}.
+ * </p>
+ *
+ * <p>
+ * An IP can be released with a politeness delay using
+ * {@link #markIpAddressAsAccessible(InetAddress, long)}. Until its next allowed
+ * fetch time has been reached, the IP is not served. If a scheduling policy is
+ * used, the delayed IPs are kept per lock stripe ordered by their fetch times,
+ * i.e., waiting IPs are released without scanning them and stripes without
+ * waiting IPs are skipped without locking them.
+ * </p>
+ *
+ * <p>
+ * Every returned chunk comes with a lease. If the chunk has not been finished
+ * before the lease expires, e.g., because the worker crashed, the URIs of the
+ * chunk are added to the queue again and the IP is released. Each lease has an
+ * id that is stored in the URIs of the chunk (see
+ * {@link Constants#URI_LEASE_ID}). {@link #finishChunk(List, long)},
+ * {@link #extendLease(List)} and {@link #returnChunk(List)} only have an
+ * effect if the chunk still holds the lease of its IP, i.e., a worker whose
+ * lease expired can not release an IP that has been handed out again. The
+ * leases are kept per lock stripe ordered by their deadlines. Expired leases
+ * are handled when the next chunk is requested or when
+ * {@link #releaseExpiredLeases()} is called. The duration of the leases can be
+ * set with {@link #setLeaseDuration(long)}.
+ * </p>
  *
  * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
  *
@@ -23,62 +84,881 @@ public abstract class AbstractIpAddressBasedQueue implements IpAddressBasedQueue
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractIpAddressBasedQueue.class);
 
-    private Semaphore queueMutex = new Semaphore(1);
-    private Set<InetAddress> blockedIps = new HashSet<>();
+    /**
+     * The default number of lock stripes.
+     */
+    public static final int DEFAULT_NUMBER_OF_STRIPES = 64;
+    /**
+     * The default maximum number of URIs in a single chunk. By default, chunks
+     * are not bounded, i.e., a worker receives all URIs of an IP with a single
+     * chunk. A limit has to be set explicitly using
+     * {@link #setMaxChunkSize(int)}.
+     */
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 0;
+    /**
+     * The default duration (in ms) of a lease.
+     */
+    public static final long DEFAULT_LEASE_DURATION = 600000;
+
+    /**
+     * Locks that guard the access to the queue. The lock of a single IP is
+     * chosen based on the hash code of the IP.
+     */
+    private final ReentrantLock[] ipLocks;
+    private Set<InetAddress> blockedIps = ConcurrentHashMap.newKeySet();
+    /**
+     * The maximum number of URIs returned as a single chunk. A value &lt;= 0
+     * means that the chunks are not bounded.
+     */
+    private volatile int maxChunkSize = DEFAULT_MAX_CHUNK_SIZE;
+    /**
+     * The policy that decides which pair is served next or null if the pairs
+     * should be served in the order of {@link #getIterator()}.
+     */
+    private final SchedulingPolicy schedulingPolicy;
+    /**
+     * The pairs that have URIs, i.e., that are either known to the
+     * {@link #schedulingPolicy} or parked.
+     */
+    private final Set<IpUriTypePair> scheduledPairs = ConcurrentHashMap.newKeySet();
+    /**
+     * The pairs of blocked IPs that wait for their IP to be released. A list is
+     * only accessed while holding the lock of its IP.
+     */
+    private final Map<InetAddress, List<IpUriTypePair>> parkedPairs = new ConcurrentHashMap<>();
+    /**
+     * The next allowed fetch times of IPs that have been released with a
+     * politeness delay.
+     */
+    private final Map<InetAddress, Long> delayedIps = new ConcurrentHashMap<>();
+    /**
+     * The delayed IPs of every lock stripe ordered by their next allowed fetch
+     * time. Only used if a scheduling policy is given. A queue is only accessed
+     * while holding the lock of its stripe.
+     */
+    private final PriorityQueue<DelayedIp>[] delayQueues;
+    /**
+     * The earliest next allowed fetch time of the delayed IPs of every lock
+     * stripe or {@link Long#MAX_VALUE} if a stripe has no delayed IPs.
+     */
+    private final AtomicLongArray earliestFetchTimes;
+    /**
+     * The current leases of the blocked IPs.
+     */
+    private final Map<InetAddress, Lease> leases = new ConcurrentHashMap<>();
+    /**
+     * The current leases of every lock stripe ordered by their deadlines. A
+     * queue is only accessed while holding the lock of its stripe.
+     */
+    private final PriorityQueue<Lease>[] leaseQueues;
+    /**
+     * The earliest deadline of the leases of every lock stripe or
+     * {@link Long#MAX_VALUE} if a stripe has no leases. Enables
+     * {@link #releaseExpiredLeases()} to skip stripes without locking them.
+     */
+    private final AtomicLongArray earliestDeadlines;
+    /**
+     * The source of the lease ids. It starts at a random value to make sure
+     * that the ids of a restarted queue do not match the ids of chunks that
+     * are still processed.
+     */
+    private final AtomicLong leaseIds = new AtomicLong(ThreadLocalRandom.current().nextLong());
+    /**
+     * The duration (in ms) of a lease. A value &lt;= 0 means that chunks are
+     * returned without a lease.
+     */
+    private volatile long leaseDuration = DEFAULT_LEASE_DURATION;
+
+    /**
+     * Constructor using {@link #DEFAULT_NUMBER_OF_STRIPES} locks.
+     */
+    public AbstractIpAddressBasedQueue() {
+        this(DEFAULT_NUMBER_OF_STRIPES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param numberOfStripes
+     *            the number of locks the IP addresses are distributed over. A
+     *            value of 1 serializes the complete access to the queue.
+     */
+    public AbstractIpAddressBasedQueue(int numberOfStripes) {
+        this(numberOfStripes, null);
+    }
+
+    /**
+     * Constructor using {@link #DEFAULT_NUMBER_OF_STRIPES} locks.
+     *
+     * @param schedulingPolicy
+     *            the policy that decides which pair is served next or null if
+     *            the pairs should be served in the order of
+     *            {@link #getIterator()}
+     */
+    public AbstractIpAddressBasedQueue(SchedulingPolicy schedulingPolicy) {
+        this(DEFAULT_NUMBER_OF_STRIPES, schedulingPolicy);
+    }
 
+    /**
+     * Constructor.
+     *
+     * @param numberOfStripes
+     *            the number of locks the IP addresses are distributed over. A
+     *            value of 1 serializes the complete access to the queue.
+     * @param schedulingPolicy
+     *            the policy that decides which pair is served next or null if
+     *            the pairs should be served in the order of
+     *            {@link #getIterator()}
+     */
+    @SuppressWarnings("unchecked")
+    public AbstractIpAddressBasedQueue(int numberOfStripes, SchedulingPolicy schedulingPolicy) {
+        if (numberOfStripes < 1) {
+            throw new IllegalArgumentException("The number of stripes has to be positive.");
+        }
+        ipLocks = new ReentrantLock[numberOfStripes];
+        leaseQueues = new PriorityQueue[numberOfStripes];
+        earliestDeadlines = new AtomicLongArray(numberOfStripes);
+        delayQueues = new PriorityQueue[numberOfStripes];
+        earliestFetchTimes = new AtomicLongArray(numberOfStripes);
+        for (int i = 0; i < ipLocks.length; ++i) {
+            ipLocks[i] = new ReentrantLock();
+            leaseQueues[i] = new PriorityQueue<Lease>();
+            earliestDeadlines.set(i, Long.MAX_VALUE);
+            delayQueues[i] = new PriorityQueue<DelayedIp>();
+            earliestFetchTimes.set(i, Long.MAX_VALUE);
+        }
+        this.schedulingPolicy = schedulingPolicy;
+    }
 
     @Override
     public void addUri(CrawleableUri uri) {
-        try {
-            queueMutex.acquire();
-        } catch (InterruptedException e) {
-            LOGGER.error("Interrupted while waiting for mutex. Throwing exception.", e);
-            throw new IllegalStateException("Interrupted while waiting for mutex.", e);
-        }
+        ReentrantLock lock = getLock(uri.getIpAddress());
+        lockInterruptibly(lock);
         try {
             addToQueue(uri);
+            pairAdded(new IpUriTypePair(uri.getIpAddress(), uri.getType()));
         } finally {
-            queueMutex.release();
+            lock.unlock();
         }
     }
 
     protected abstract void addToQueue(CrawleableUri uri);
 
+    /**
+     * Has to be called after URIs of the given pair have been added to the
+     * queue. {@link #addUri(CrawleableUri)} calls this method after
+     * {@link #addToQueue(CrawleableUri)}. Implementations that add URIs in a
+     * different way (e.g., with batch writes) have to call it for every pair
+     * of the written URIs.
+     *
+     * @param pair
+     *            the pair for which URIs have been added
+     */
+    protected void pairAdded(IpUriTypePair pair) {
+        if (schedulingPolicy == null) {
+            return;
+        }
+        ReentrantLock lock = getLock(pair.ip);
+        lockInterruptibly(lock);
+        try {
+            schedule(pair);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands all pairs of {@link #getIterator()} to the scheduling policy. This
+     * method can be used by implementations that already contain URIs when
+     * they are opened. It does nothing if no scheduling policy is used.
+     */
+    protected void scheduleQueuedPairs() {
+        if (schedulingPolicy == null) {
+            return;
+        }
+        Iterator<IpUriTypePair> iterator = getIterator();
+        IpUriTypePair pair;
+        while (iterator.hasNext()) {
+            pair = iterator.next();
+            if (pair != null) {
+                ReentrantLock lock = getLock(pair.ip);
+                lockInterruptibly(lock);
+                try {
+                    schedule(pair);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes sure that the given pair is either known to the scheduling policy
+     * or parked. Has to be called while holding the lock of the pair's IP.
+     */
+    private void schedule(IpUriTypePair pair) {
+        if (scheduledPairs.add(pair)) {
+            if (blockedIps.contains(pair.ip) || delayedIps.containsKey(pair.ip)) {
+                park(pair);
+            } else {
+                schedulingPolicy.offer(pair);
+            }
+        }
+    }
+
+    /**
+     * Parks the given pair until its IP is released. Has to be called while
+     * holding the lock of the pair's IP.
+     */
+    private void park(IpUriTypePair pair) {
+        parkedPairs.computeIfAbsent(pair.ip, ip -> new ArrayList<IpUriTypePair>()).add(pair);
+    }
+
     @Override
     public List<CrawleableUri> getNextUris() {
+        releaseExpiredLeases();
+        if (schedulingPolicy != null) {
+            return getNextScheduledUris();
+        }
+        Iterator<IpUriTypePair> iterator = getIterator();
+        IpUriTypePair pair;
+        List<CrawleableUri> uris;
+        while (iterator.hasNext()) {
+            pair = iterator.next();
+            if (pair != null) {
+                uris = claimIpAndGetUris(pair);
+                if (uris != null) {
+                    return uris;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tries to block the IP of the given pair and, if successful, retrieves
+     * the URIs of the pair using {@link #getUris(IpUriTypePair)}.
+     *
+     * @param pair
+     *            the pair for which the URIs should be retrieved
+     * @return the URIs of the given pair or null if the IP is already blocked
+     *         or there are no URIs for the pair
+     */
+    protected List<CrawleableUri> claimIpAndGetUris(IpUriTypePair pair) {
+        Long nextAllowedFetchTime = delayedIps.get(pair.ip);
+        if (nextAllowedFetchTime != null) {
+            if (nextAllowedFetchTime > System.currentTimeMillis()) {
+                return null;
+            }
+            delayedIps.remove(pair.ip, nextAllowedFetchTime);
+        }
+        // try to claim the IP; if another thread has already blocked it, give up
+        if (!blockedIps.add(pair.ip)) {
+            return null;
+        }
+        List<CrawleableUri> uris;
+        ReentrantLock lock = getLock(pair.ip);
+        lockInterruptibly(lock);
         try {
-            queueMutex.acquire();
-        } catch (InterruptedException e) {
-            LOGGER.error("Interrupted while waiting for mutex. Throwing exception.", e);
-            throw new IllegalStateException("Interrupted while waiting for mutex.", e);
+            uris = getUris(pair);
+            if ((uris != null) && !uris.isEmpty()) {
+                grantLease(pair.ip, uris);
+                return uris;
+            }
+        } catch (RuntimeException e) {
+            blockedIps.remove(pair.ip);
+            throw e;
+        } finally {
+            lock.unlock();
         }
+        // the pair has been removed concurrently, release the IP again
+        markIpAddressAsAccessible(pair.ip);
+        return null;
+    }
+
+    /**
+     * Retrieves the next chunk of URIs using the scheduling policy.
+     *
+     * @return the next chunk of URIs or null if there is no pair that can be
+     *         served
+     */
+    protected List<CrawleableUri> getNextScheduledUris() {
+        releaseDelayedIps();
         IpUriTypePair pair;
+        List<CrawleableUri> uris;
+        while ((pair = schedulingPolicy.poll()) != null) {
+            uris = getScheduledUris(pair);
+            if (uris != null) {
+                return uris;
+            }
+        }
+        return null;
+    }
+
+    private List<CrawleableUri> getScheduledUris(IpUriTypePair pair) {
+        ReentrantLock lock = getLock(pair.ip);
+        lockInterruptibly(lock);
         try {
-            Iterator<IpUriTypePair> iterator = getIterator();
-            do {
-                if (!iterator.hasNext()) {
-                    return null;
-                }
-                pair = iterator.next();
-            } while (blockedIps.contains(pair.ip));
-            blockedIps.add(pair.ip);
+            if (delayedIps.containsKey(pair.ip) || !blockedIps.add(pair.ip)) {
+                // another pair of this IP has been served in the meantime
+                park(pair);
+                return null;
+            }
+            List<CrawleableUri> uris;
+            try {
+                uris = getUris(pair);
+            } catch (RuntimeException e) {
+                release(pair.ip);
+                schedulingPolicy.offer(pair);
+                throw e;
+            }
+            if ((uris == null) || uris.isEmpty()) {
+                scheduledPairs.remove(pair);
+                schedulingPolicy.removed(pair);
+                release(pair.ip);
+                return null;
+            }
+            schedulingPolicy.served(pair, uris.size());
+            grantLease(pair.ip, uris);
+            int maxChunkSize = getMaxChunkSize();
+            if ((maxChunkSize > 0) && (uris.size() >= maxChunkSize)) {
+                // there might be URIs left, wait until the IP is released
+                park(pair);
+            } else {
+                scheduledPairs.remove(pair);
+                schedulingPolicy.removed(pair);
+            }
+            return uris;
         } finally {
-            queueMutex.release();
+            lock.unlock();
         }
-        return getUris(pair);
     }
 
     protected abstract Iterator<IpUriTypePair> getIterator();
 
     protected abstract List<CrawleableUri> getUris(IpUriTypePair pair);
 
+    /**
+     * Releases the given IP and ends its current lease regardless of the chunk
+     * that holds it. Callers that finish a certain chunk should use
+     * {@link #finishChunk(List, long)}.
+     */
     @Override
     public void markIpAddressAsAccessible(InetAddress ip) {
+        // the IP is still blocked, i.e., no other chunk of it has been handed out
+        chunkFinished(ip);
+        ReentrantLock lock = getLock(ip);
+        lockInterruptibly(lock);
+        try {
+            if (schedulingPolicy == null) {
+                endLease(ip);
+                blockedIps.remove(ip);
+                delayedIps.remove(ip);
+            } else {
+                release(ip);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void markIpAddressAsAccessible(InetAddress ip, long nextAllowedFetchTime) {
+        if (nextAllowedFetchTime <= System.currentTimeMillis()) {
+            markIpAddressAsAccessible(ip);
+            return;
+        }
+        chunkFinished(ip);
+        ReentrantLock lock = getLock(ip);
+        lockInterruptibly(lock);
+        try {
+            // add the delay before unblocking the IP
+            endLease(ip);
+            delayedIps.put(ip, nextAllowedFetchTime);
+            if (schedulingPolicy != null) {
+                // the parked pairs stay parked until the delay has passed
+                int stripe = getStripe(ip);
+                delayQueues[stripe].add(new DelayedIp(ip, nextAllowedFetchTime));
+                earliestFetchTimes.accumulateAndGet(stripe, nextAllowedFetchTime, Math::min);
+            }
+            blockedIps.remove(ip);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the IP of the given chunk if the chunk still holds the lease of
+     * the IP. The chunk finishes like with
+     * {@link #markIpAddressAsAccessible(InetAddress, long)}, i.e.,
+     * {@link #chunkFinished(InetAddress)} is only called for the chunk that
+     * holds the lease. Chunks without a lease id release their IP directly.
+     */
+    @Override
+    public boolean finishChunk(List<CrawleableUri> chunk, long nextAllowedFetchTime) {
+        InetAddress ip = chunk.get(0).getIpAddress();
+        Long leaseId = IpAddressBasedQueue.getLeaseId(chunk);
+        if (leaseId == null) {
+            markIpAddressAsAccessible(ip, nextAllowedFetchTime);
+            return true;
+        }
+        ReentrantLock lock = getLock(ip);
+        lockInterruptibly(lock);
+        try {
+            if (!holdsLease(ip, leaseId)) {
+                LOGGER.info("Got a finished chunk of {} whose lease already ended. It is ignored.", ip);
+                return false;
+            }
+            markIpAddressAsAccessible(ip, nextAllowedFetchTime);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether the given IP is currently blocked by a chunk.
+     *
+     * @param ip
+     *            the IP that should be checked
+     * @return true if the IP is blocked
+     */
+    protected boolean isIpBlocked(InetAddress ip) {
+        return blockedIps.contains(ip);
+    }
+
+    /**
+     * Returns the point in time from which on the given IP may be fetched
+     * again if it has been released with a politeness delay.
+     *
+     * @param ip
+     *            the IP that should be checked
+     * @return the next allowed fetch time of the IP or 0 if the IP is not
+     *         delayed
+     */
+    protected long getNextAllowedFetchTime(InetAddress ip) {
+        Long nextAllowedFetchTime = delayedIps.get(ip);
+        return nextAllowedFetchTime != null ? nextAllowedFetchTime : 0;
+    }
+
+    /**
+     * Releases all delayed IPs whose next allowed fetch time has been reached.
+     */
+    private void releaseDelayedIps() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < delayQueues.length; ++i) {
+            if (earliestFetchTimes.get(i) <= now) {
+                releaseDelayedIps(i, now);
+            }
+        }
+    }
+
+    private void releaseDelayedIps(int stripe, long now) {
+        ReentrantLock lock = ipLocks[stripe];
+        lockInterruptibly(lock);
+        try {
+            PriorityQueue<DelayedIp> queue = delayQueues[stripe];
+            DelayedIp delayedIp;
+            while (((delayedIp = queue.peek()) != null) && (delayedIp.nextAllowedFetchTime <= now)) {
+                queue.poll();
+                // make sure that the IP has not been released or delayed again
+                if (delayedIps.remove(delayedIp.ip, delayedIp.nextAllowedFetchTime)) {
+                    release(delayedIp.ip);
+                }
+            }
+            earliestFetchTimes.set(stripe, (delayedIp == null) ? Long.MAX_VALUE : delayedIp.nextAllowedFetchTime);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Creates a lease for the given chunk of URIs if leases are enabled and
+     * stores its id in the URIs. Has to be called while holding the lock of
+     * the IP.
+     */
+    private void grantLease(InetAddress ip, List<CrawleableUri> uris) {
+        long leaseDuration = this.leaseDuration;
+        if (leaseDuration > 0) {
+            long leaseId = leaseIds.incrementAndGet();
+            for (CrawleableUri uri : uris) {
+                uri.addData(Constants.URI_LEASE_ID, leaseId);
+            }
+            addLease(new Lease(leaseId, ip, new ArrayList<>(uris), System.currentTimeMillis() + leaseDuration));
+        } else {
+            // requeued URIs may still carry the id of an old lease
+            for (CrawleableUri uri : uris) {
+                uri.getData().remove(Constants.URI_LEASE_ID);
+            }
+        }
+    }
+
+    /**
+     * Adds the given lease. Has to be called while holding the lock of its IP.
+     */
+    private void addLease(Lease lease) {
+        int stripe = getStripe(lease.ip);
+        leases.put(lease.ip, lease);
+        leaseQueues[stripe].add(lease);
+        updateEarliestDeadline(stripe);
+    }
+
+    /**
+     * Removes the current lease of the given IP (if there is one). Has to be
+     * called while holding the lock of the IP.
+     *
+     * @return the removed lease or null if the IP had no lease
+     */
+    private Lease endLease(InetAddress ip) {
+        Lease lease = leases.remove(ip);
+        if (lease != null) {
+            int stripe = getStripe(ip);
+            leaseQueues[stripe].remove(lease);
+            updateEarliestDeadline(stripe);
+        }
+        return lease;
+    }
+
+    private void updateEarliestDeadline(int stripe) {
+        Lease first = leaseQueues[stripe].peek();
+        earliestDeadlines.set(stripe, (first == null) ? Long.MAX_VALUE : first.deadline);
+    }
+
+    /**
+     * Returns whether the current lease of the given IP has the given id. Has
+     * to be called while holding the lock of the IP.
+     */
+    private boolean holdsLease(InetAddress ip, long leaseId) {
+        Lease lease = leases.get(ip);
+        return (lease != null) && (lease.id == leaseId);
+    }
+
+    /**
+     * Extends the current lease of the given IP regardless of the chunk that
+     * holds it. The new deadline is the current time plus the lease duration of
+     * this queue.
+     */
+    @Override
+    public boolean extendLease(InetAddress ip) {
+        ReentrantLock lock = getLock(ip);
+        lockInterruptibly(lock);
+        try {
+            Lease lease = leases.get(ip);
+            if (lease == null) {
+                return false;
+            }
+            renewLease(lease);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Extends the lease of the given chunk if it still holds the lease of its
+     * IP. The new deadline is the current time plus the lease duration of this
+     * queue.
+     */
+    @Override
+    public boolean extendLease(List<CrawleableUri> chunk) {
+        Long leaseId = IpAddressBasedQueue.getLeaseId(chunk);
+        if (leaseId == null) {
+            return false;
+        }
+        InetAddress ip = chunk.get(0).getIpAddress();
+        ReentrantLock lock = getLock(ip);
+        lockInterruptibly(lock);
+        try {
+            if (!holdsLease(ip, leaseId)) {
+                return false;
+            }
+            renewLease(leases.get(ip));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the given lease by a lease with the same id and a new deadline.
+     * Has to be called while holding the lock of its IP.
+     */
+    private void renewLease(Lease lease) {
+        endLease(lease.ip);
+        addLease(new Lease(lease.id, lease.ip, lease.uris, System.currentTimeMillis() + leaseDuration));
+    }
+
+    /**
+     * Adds the URIs of all expired leases to the queue again and releases
+     * their IPs. Only the lock stripes whose earliest deadline has passed are
+     * locked. {@link #getNextUris()} calls this method before retrieving the
+     * next chunk. Implementations that override {@link #getNextUris()} should
+     * do the same.
+     */
+    @Override
+    public void releaseExpiredLeases() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < leaseQueues.length; ++i) {
+            if (earliestDeadlines.get(i) <= now) {
+                releaseExpiredLeases(i, now);
+            }
+        }
+    }
+
+    private void releaseExpiredLeases(int stripe, long now) {
+        List<Lease> expired = new ArrayList<>();
+        ReentrantLock lock = ipLocks[stripe];
+        lockInterruptibly(lock);
+        try {
+            PriorityQueue<Lease> queue = leaseQueues[stripe];
+            Lease lease;
+            while (((lease = queue.peek()) != null) && (lease.deadline <= now)) {
+                endLease(lease.ip);
+                requeueChunk(lease.ip, lease.uris);
+                markIpAddressAsAccessible(lease.ip);
+                expired.add(lease);
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Lease lease : expired) {
+            LOGGER.warn("The lease of {} URIs of {} expired. They have been added to the queue again.",
+                    lease.uris.size(), lease.ip);
+        }
+    }
+
+    /**
+     * Removes the lease of the given chunk, puts its URIs back into the queue
+     * and releases the IP. Nothing is changed if the chunk does not hold the
+     * lease of its IP anymore, since its URIs have already been added to the
+     * queue again when the lease expired.
+     */
+    @Override
+    public void returnChunk(List<CrawleableUri> chunk) {
+        InetAddress ip = chunk.get(0).getIpAddress();
+        Long leaseId = IpAddressBasedQueue.getLeaseId(chunk);
+        ReentrantLock lock = getLock(ip);
+        lockInterruptibly(lock);
+        try {
+            if ((leaseId != null) && !holdsLease(ip, leaseId)) {
+                LOGGER.info("Got a returned chunk of {} whose lease already ended. It is ignored.", ip);
+                return;
+            }
+            endLease(ip);
+            requeueChunk(ip, chunk);
+            markIpAddressAsAccessible(ip);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts the URIs of a chunk that won't be finished (e.g., because its lease
+     * expired) back into the queue. The default implementation adds copies of
+     * the single URIs without their lease id with
+     * {@link #addToQueue(CrawleableUri)}, since the handed out URIs might still
+     * be used together with the old lease id. Implementations that keep
+     * the URIs of handed out chunks (see {@link #chunkFinished(InetAddress)})
+     * should make them available again instead. Has to be called while holding
+     * the lock of the IP.
+     *
+     * @param ip
+     *            the IP of the chunk
+     * @param uris
+     *            the URIs of the chunk
+     */
+    protected void requeueChunk(InetAddress ip, List<CrawleableUri> uris) {
+        CrawleableUri copy;
+        for (CrawleableUri uri : uris) {
+            copy = new CrawleableUri(uri.getUri(), uri.getIpAddress(), uri.getType());
+            copy.setData(new TreeMap<>(uri.getData()));
+            copy.getData().remove(Constants.URI_LEASE_ID);
+            copy.setTimestampNextCrawl(uri.getTimestampNextCrawl());
+            addToQueue(copy);
+            if (schedulingPolicy != null) {
+                schedule(new IpUriTypePair(uri.getIpAddress(), uri.getType()));
+            }
+        }
+    }
+
+    /**
+     * Called when the chunk of the given IP has been finished, i.e., right
+     * before the IP is released. Persistent implementations can keep the URIs
+     * of handed out chunks as leased until this method is called. This makes
+     * sure that the URIs of chunks that are crawled (or prefetched) survive a
+     * crash of the frontier. The default implementation does nothing.
+     *
+     * @param ip
+     *            the IP whose chunk has been finished
+     */
+    protected void chunkFinished(InetAddress ip) {
+    }
+
+    /**
+     * @return the number of IPs that wait for their politeness delay to pass
+     */
+    public int getNumberOfDelayedIps() {
+        return delayedIps.size();
+    }
+
+    /**
+     * Unblocks the given IP and hands its parked pairs back to the scheduling
+     * policy. Has to be called while holding the lock of the IP.
+     */
+    private void release(InetAddress ip) {
+        endLease(ip);
         blockedIps.remove(ip);
+        delayedIps.remove(ip);
+        List<IpUriTypePair> pairs = parkedPairs.remove(ip);
+        if (pairs != null) {
+            for (IpUriTypePair pair : pairs) {
+                schedulingPolicy.offer(pair);
+            }
+        }
     }
 
     @Override
     public int getNumberOfBlockedIps() {
         return blockedIps.size();
     }
+
+    /**
+     * @return the maximum number of URIs returned as a single chunk. A value
+     *         &lt;= 0 means that the chunks are not bounded.
+     */
+    public int getMaxChunkSize() {
+        return maxChunkSize;
+    }
+
+    /**
+     * Sets the maximum number of URIs returned as a single chunk. The
+     * remaining URIs of an IP stay in the queue and are returned with one of
+     * the next chunks.
+     *
+     * @param maxChunkSize
+     *            the maximum chunk size. A value &lt;= 0 means that the chunks
+     *            are not bounded.
+     */
+    public void setMaxChunkSize(int maxChunkSize) {
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    /**
+     * @return the number of chunks that currently have a lease
+     */
+    public int getNumberOfLeases() {
+        return leases.size();
+    }
+
+    /**
+     * Returns the URIs of all chunks that currently have a lease, i.e., URIs
+     * that have been handed out but have not been finished yet.
+     *
+     * @return a copy of the URIs of the current leases
+     */
+    public List<CrawleableUri> getLeasedUris() {
+        List<CrawleableUri> uris = new ArrayList<>();
+        for (Lease lease : leases.values()) {
+            // the URI list of a lease is never changed
+            uris.addAll(lease.uris);
+        }
+        return uris;
+    }
+
+    /**
+     * @return the duration (in ms) of a lease. A value &lt;= 0 means that
+     *         chunks are returned without a lease.
+     */
+    public long getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    /**
+     * Sets the duration of the leases of chunks that are returned in the
+     * future.
+     *
+     * @param leaseDuration
+     *            the duration (in ms) of a lease. A value &lt;= 0 means that
+     *            chunks are returned without a lease, i.e., an IP stays
+     *            blocked until it is marked as accessible.
+     */
+    public void setLeaseDuration(long leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    /**
+     * @return the scheduling policy of this queue or null if the pairs are
+     *         served in the order of {@link #getIterator()}
+     */
+    public SchedulingPolicy getSchedulingPolicy() {
+        return schedulingPolicy;
+    }
+
+    /**
+     * Returns the lock that guards the access to the URIs of the given IP.
+     *
+     * @param ip
+     *            the IP address for which the lock should be returned
+     * @return the lock of the given IP
+     */
+    protected ReentrantLock getLock(InetAddress ip) {
+        return ipLocks[getStripe(ip)];
+    }
+
+    private int getStripe(InetAddress ip) {
+        int hash = (ip == null) ? 0 : ip.hashCode();
+        // spread the bits since IPv4 hash codes of a single subnet are close to each other
+        hash ^= (hash >>> 16);
+        return (hash & 0x7fffffff) % ipLocks.length;
+    }
+
+    /**
+     * An IP together with its next allowed fetch time.
+     */
+    private static class DelayedIp implements Comparable<DelayedIp> {
+        private final InetAddress ip;
+        private final long nextAllowedFetchTime;
+
+        public DelayedIp(InetAddress ip, long nextAllowedFetchTime) {
+            this.ip = ip;
+            this.nextAllowedFetchTime = nextAllowedFetchTime;
+        }
+
+        @Override
+        public int compareTo(DelayedIp o) {
+            return Long.compare(nextAllowedFetchTime, o.nextAllowedFetchTime);
+        }
+    }
+
+    /**
+     * A chunk of URIs of an IP that has been handed out until the given
+     * deadline.
+     */
+    private static class Lease implements Comparable<Lease> {
+        private final long id;
+        private final InetAddress ip;
+        private final List<CrawleableUri> uris;
+        private final long deadline;
+
+        public Lease(long id, InetAddress ip, List<CrawleableUri> uris, long deadline) {
+            this.id = id;
+            this.ip = ip;
+            this.uris = uris;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int compareTo(Lease o) {
+            return Long.compare(deadline, o.deadline);
+        }
+    }
+
+    private static void lockInterruptibly(ReentrantLock lock) {
+        try {
+            lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted while waiting for mutex. Throwing exception.", e);
+            throw new IllegalStateException("Interrupted while waiting for mutex.", e);
+        }
+    }
 }
@@ -2,54 +2,146 @@ package org.dice_research.squirrel.queue;
 
 import java.net.InetAddress;
 import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
 import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.queue.scheduling.RoundRobinSchedulingPolicy;
+import org.dice_research.squirrel.queue.scheduling.SchedulingPolicy;
 
+/**
+ * A simple in-memory implementation of the {@link IpAddressBasedQueue}. The
+ * URIs are stored in a concurrent sorted map. The URIs of the single
+ * {@link IpUriTypePair}s are kept in deques which are only modified while
+ * holding the lock of the IP (see {@link AbstractIpAddressBasedQueue}). Hence,
+ * taking a bounded chunk from the head of a pair only costs the size of the
+ * chunk.
+ * 
+ * <p>
+ * By default, the pairs are served using a {@link RoundRobinSchedulingPolicy}.
+ * If the queue is created without a policy, the pairs are served in a rotating
+ * order. The iteration over the pairs starts behind the pair that has been
+ * served last. Hence, a pair that still has URIs left after a chunk has been
+ * retrieved is served again only after all other pairs had their turn.
+ * </p>
+ */
 public class InMemoryQueue extends AbstractIpAddressBasedQueue {
 
-    protected SortedMap<IpUriTypePair, List<CrawleableUri>> queue;
+    protected NavigableMap<IpUriTypePair, Deque<CrawleableUri>> queue;
     private static final int LIMITFORITERATOR = 50;
+    /**
+     * The pair that has been served last.
+     */
+    private volatile IpUriTypePair lastServedPair = null;
 
     public InMemoryQueue() {
-        queue = new TreeMap<IpUriTypePair, List<CrawleableUri>>();
+        this(new RoundRobinSchedulingPolicy());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param schedulingPolicy
+     *            the policy that decides which pair is served next or null if
+     *            the pairs should be served in a rotating order
+     */
+    public InMemoryQueue(SchedulingPolicy schedulingPolicy) {
+        super(schedulingPolicy);
+        queue = new ConcurrentSkipListMap<IpUriTypePair, Deque<CrawleableUri>>();
     }
 
     public InMemoryQueue(Comparator<IpUriTypePair> comparator) {
-        queue = new TreeMap<IpUriTypePair, List<CrawleableUri>>(comparator);
+        super(new RoundRobinSchedulingPolicy());
+        queue = new ConcurrentSkipListMap<IpUriTypePair, Deque<CrawleableUri>>(comparator);
     }
 
     @Override
     protected void addToQueue(CrawleableUri uri) {
         IpUriTypePair pair = new IpUriTypePair(uri.getIpAddress(), uri.getType());
-        if (queue.containsKey(pair)) {
-            queue.get(pair).add(uri);
-        } else {
-            List<CrawleableUri> uris = new ArrayList<CrawleableUri>();
-            uris.add(uri);
+        Deque<CrawleableUri> uris = queue.get(pair);
+        if (uris == null) {
+            uris = new ArrayDeque<CrawleableUri>();
             queue.put(pair, uris);
         }
+        uris.add(uri);
     }
 
     @Override
     protected Iterator<IpUriTypePair> getIterator() {
-        return queue.keySet().iterator();
+        IpUriTypePair lastPair = lastServedPair;
+        if (lastPair == null) {
+            return queue.keySet().iterator();
+        }
+        // start behind the last served pair and wrap around
+        return Stream.concat(queue.tailMap(lastPair, false).keySet().stream(),
+                queue.headMap(lastPair, true).keySet().stream()).iterator();
     }
 
     @Override
     protected List<CrawleableUri> getUris(IpUriTypePair pair) {
-        List<CrawleableUri> uris = null;
-        if (queue.containsKey(pair)) {
-            uris = queue.remove(pair);
+        Deque<CrawleableUri> uris = queue.get(pair);
+        if (uris == null) {
+            return null;
+        }
+        lastServedPair = pair;
+        int maxChunkSize = getMaxChunkSize();
+        if ((maxChunkSize <= 0) || (uris.size() <= maxChunkSize)) {
+            queue.remove(pair);
+            return new ArrayList<CrawleableUri>(uris);
+        }
+        // take the head and leave the remaining URIs in the queue
+        List<CrawleableUri> chunk = new ArrayList<CrawleableUri>(maxChunkSize);
+        for (int i = 0; i < maxChunkSize; ++i) {
+            chunk.add(uris.poll());
+        }
+        return chunk;
+    }
+
+    /**
+     * Returns a copy of all URIs that are currently waiting in this queue. The
+     * URIs of a single pair are copied while holding the lock of its IP, i.e.,
+     * the queue does not have to be blocked.
+     *
+     * @return the URIs of the queue
+     */
+    public List<CrawleableUri> getQueuedUris() {
+        List<CrawleableUri> uris = new ArrayList<CrawleableUri>();
+        for (IpUriTypePair pair : queue.keySet()) {
+            uris.addAll(copyUris(pair));
         }
         return uris;
     }
 
+    /**
+     * Returns a copy of the URIs of the given pair while holding the lock of
+     * its IP.
+     *
+     * @param pair
+     *            the pair for which the URIs should be copied
+     * @return a copy of the URIs of the pair (might be empty)
+     */
+    protected List<CrawleableUri> copyUris(IpUriTypePair pair) {
+        ReentrantLock lock = getLock(pair.ip);
+        lock.lock();
+        try {
+            Deque<CrawleableUri> pairUris = queue.get(pair);
+            if (pairUris != null) {
+                return new ArrayList<CrawleableUri>(pairUris);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return new ArrayList<CrawleableUri>(0);
+    }
+
     @Override
     public void open() {
     }
@@ -60,7 +152,7 @@ public class InMemoryQueue extends AbstractIpAddressBasedQueue {
     
     @Override
     public Iterator<AbstractMap.SimpleEntry<InetAddress, List<CrawleableUri>>> getIPURIIterator() {
-        return queue.entrySet().stream().limit(LIMITFORITERATOR).map(e -> new AbstractMap.SimpleEntry<>(e.getKey().ip, e.getValue())).iterator();
+        return queue.keySet().stream().limit(LIMITFORITERATOR).map(p -> new AbstractMap.SimpleEntry<>(p.ip, copyUris(p))).iterator();
     }
 
 	@Override
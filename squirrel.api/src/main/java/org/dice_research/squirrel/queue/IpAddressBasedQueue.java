@@ -5,6 +5,7 @@ import java.util.AbstractMap;
 import java.util.Iterator;
 import java.util.List;
 
+import org.dice_research.squirrel.Constants;
 import org.dice_research.squirrel.data.uri.CrawleableUri;
 
 /**
@@ -13,7 +14,11 @@ import org.dice_research.squirrel.data.uri.CrawleableUri;
  * addresses. If a chunk is returned by this queue, the IP addresses are marked
  * as blocked. No other chunk will contain URIs of these IP addresses until the
  * method {@link #markIpAddressAsAccessible(InetAddress)} is called to free the
- * IP address.
+ * IP address. A queue may free the IP address on its own if the chunk has not
+ * been finished within a certain time (i.e., if its lease expired). In this
+ * case, the methods that take a chunk ({@link #finishChunk(List, long)},
+ * {@link #extendLease(List)} and {@link #returnChunk(List)}) do not change the
+ * IP address anymore, since it might have been handed out with a new chunk.
  * 
  * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
  *
@@ -28,12 +33,126 @@ public interface IpAddressBasedQueue extends UriQueue {
      */
     public void markIpAddressAsAccessible(InetAddress ip);
 
+    /**
+     * Marks the given IP address as accessible as soon as the given point in
+     * time has been reached. Until then, no chunk will contain URIs of this IP
+     * address. This enables the queue to enforce politeness delays between two
+     * chunks of the same IP address. Note that the queue only delays whole
+     * chunks. The delay between two URIs of the same chunk has to be kept by
+     * the worker that crawls the chunk. The default implementation ignores the
+     * given time and marks the IP address as accessible directly.
+     * 
+     * @param ip
+     *            the IP address that should be marked as accessible.
+     * @param nextAllowedFetchTime
+     *            the point in time (in ms since 1st January 1970) from which on
+     *            URIs of the given IP address may be fetched again.
+     */
+    public default void markIpAddressAsAccessible(InetAddress ip, long nextAllowedFetchTime) {
+        markIpAddressAsAccessible(ip);
+    }
+
+    /**
+     * Extends the lease of the chunk that blocks the given IP address, i.e.,
+     * the IP address will not be freed automatically for another lease period.
+     * The default implementation does not support leases and returns false.
+     * 
+     * @param ip
+     *            the IP address of the chunk that is still processed.
+     * @return true if the lease has been extended or false if there is no
+     *         lease for the given IP address (anymore).
+     */
+    public default boolean extendLease(InetAddress ip) {
+        return false;
+    }
+
+    /**
+     * Marks the IP address of the given chunk as accessible (see
+     * {@link #markIpAddressAsAccessible(InetAddress, long)}) if the chunk still
+     * holds the lease of its IP address. The lease is identified by the id the
+     * queue stored in the URIs of the chunk (see
+     * {@link Constants#URI_LEASE_ID}). The default implementation does not
+     * support leases and marks the IP address as accessible directly.
+     * 
+     * @param chunk
+     *            the chunk that has been crawled
+     * @param nextAllowedFetchTime
+     *            the point in time (in ms since 1st January 1970) from which on
+     *            URIs of the IP address may be fetched again.
+     * @return true if the chunk has been finished or false if its lease already
+     *         ended
+     */
+    public default boolean finishChunk(List<CrawleableUri> chunk, long nextAllowedFetchTime) {
+        markIpAddressAsAccessible(chunk.get(0).getIpAddress(), nextAllowedFetchTime);
+        return true;
+    }
+
+    /**
+     * Extends the lease of the given chunk if it still holds the lease of its
+     * IP address. The default implementation does not support leases and
+     * returns false.
+     * 
+     * @param chunk
+     *            the chunk that is still processed
+     * @return true if the lease has been extended or false if the chunk does
+     *         not hold a lease (anymore).
+     */
+    public default boolean extendLease(List<CrawleableUri> chunk) {
+        return false;
+    }
+
+    /**
+     * Adds the URIs of chunks whose lease expired to the queue again and
+     * releases their IP addresses. Queues check their leases when the next
+     * chunk is requested. This method makes sure that expired leases are
+     * handled while no chunks are requested. The default implementation does
+     * nothing.
+     */
+    public default void releaseExpiredLeases() {
+    }
+
+    /**
+     * Gives a chunk that has been retrieved from this queue but will not be
+     * crawled back to the queue. Its URIs will be part of one of the next
+     * chunks and its IP address is marked as accessible. Queues that support
+     * leases ignore the chunk if its lease already ended. The default
+     * implementation adds the URIs again and marks the IP address as
+     * accessible.
+     * 
+     * @param chunk
+     *            the chunk that has been retrieved from this queue
+     */
+    public default void returnChunk(List<CrawleableUri> chunk) {
+        addUris(chunk);
+        markIpAddressAsAccessible(chunk.get(0).getIpAddress());
+    }
+
     /**
      * Returns the number of IP addresses that are currently blocked.
      * 
      * @return the number of IP addresses that are currently blocked.
      */
     public int getNumberOfBlockedIps();
+
+    /**
+     * Returns the id of the lease the given chunk has been handed out with.
+     * 
+     * @param chunk
+     *            a chunk that has been retrieved from a queue
+     * @return the lease id of the chunk or null if it has been handed out
+     *         without a lease
+     */
+    public static Long getLeaseId(List<CrawleableUri> chunk) {
+        Object value;
+        for (CrawleableUri uri : chunk) {
+            value = uri.getData(Constants.URI_LEASE_ID);
+            if (value instanceof Number) {
+                return ((Number) value).longValue();
+            }
+        }
+        return null;
+    }
+
     /**
      * Goes through the queue und collects all IP-address with their URIs
      *
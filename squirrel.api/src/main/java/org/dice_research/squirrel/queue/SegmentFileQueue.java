@@ -0,0 +1,717 @@
+package org.dice_research.squirrel.queue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.data.uri.serialize.Serializer;
+import org.dice_research.squirrel.data.uri.serialize.java.SnappyJavaUriSerializer;
+import org.dice_research.squirrel.queue.scheduling.RoundRobinSchedulingPolicy;
+import org.dice_research.squirrel.queue.scheduling.SchedulingPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A local {@link IpAddressBasedQueue} that keeps the serialized URIs in
+ * memory-mapped, append-only segment files instead of the heap. The URIs of a
+ * single {@link IpUriTypePair} form a linked list of records inside the
+ * segments. Only the heads and tails of these lists are kept on the heap.
+ * </p>
+ *
+ * <p>
+ * A record comprises the length of the serialized URI (written last), the
+ * position of the next record of the same pair, a state flag and the
+ * serialized URI. Records are marked as leased when they are retrieved and as
+ * consumed when their chunk has been finished. A sealed segment file is
+ * deleted when all its records have been consumed.
+ * </p>
+ *
+ * <p>
+ * The segment files are kept when the queue is closed and the lists are
+ * rebuilt from the records that have not been consumed when it is opened
+ * again, i.e., leased records are handed out again. The files are synced to
+ * the disk when the queue is closed. Sealed segments with less than
+ * {@link #COMPACTION_THRESHOLD} live data are compacted (see
+ * {@link #compact()}).
+ * </p>
+ */
+public class SegmentFileQueue extends AbstractIpAddressBasedQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentFileQueue.class);
+
+    /**
+     * The default size of a single segment file (64 MB).
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_SUFFIX = ".dat";
+    /**
+     * A sealed segment is compacted if the share of its live data is below
+     * this threshold.
+     */
+    public static final double COMPACTION_THRESHOLD = 0.25;
+
+    /**
+     * The size of a record header comprising the length of the data (int), the
+     * position of the next record (long) and the state of the record (byte).
+     */
+    private static final int RECORD_HEADER_SIZE = 13;
+    private static final int NEXT_OFFSET = 4;
+    private static final int STATE_OFFSET = 12;
+    private static final byte STATE_LIVE = 1;
+    private static final byte STATE_CONSUMED = 2;
+    private static final byte STATE_LEASED = 3;
+    private static final long NO_RECORD = -1;
+    private static final int LIMITFORITERATOR = 50;
+
+    private final File directory;
+    private final int segmentSize;
+    private final Serializer serializer;
+    /**
+     * The pointers of the single pairs. The pointers of a pair are only
+     * accessed while holding the lock of its IP.
+     */
+    private final Map<IpUriTypePair, PairPointers> pairs = new ConcurrentHashMap<>();
+    private final Map<Long, Segment> segments = new ConcurrentHashMap<>();
+    /**
+     * The positions of the leased records of the blocked IPs.
+     */
+    private final Map<InetAddress, List<Long>> leasedRecords = new ConcurrentHashMap<>();
+    private final AtomicLong length = new AtomicLong();
+    private final Object appendMutex = new Object();
+    /**
+     * The segment to which new records are appended. Guarded by
+     * {@link #appendMutex}.
+     */
+    private Segment appendSegment = null;
+    private long nextSegmentId = 0;
+    /**
+     * Set to true when a segment has been sealed since the last compaction.
+     */
+    private final AtomicBoolean compactionNeeded = new AtomicBoolean(false);
+    /**
+     * Makes sure that only a single thread compacts the segments.
+     */
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+
+    /**
+     * Constructor using a {@link SnappyJavaUriSerializer}.
+     *
+     * @param directory
+     *            the directory in which the segment files are stored
+     */
+    public SegmentFileQueue(File directory) {
+        this(directory, new SnappyJavaUriSerializer());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory
+     *            the directory in which the segment files are stored
+     * @param serializer
+     *            the serializer used to store the URIs
+     */
+    public SegmentFileQueue(File directory, Serializer serializer) {
+        this(directory, serializer, DEFAULT_SEGMENT_SIZE, new RoundRobinSchedulingPolicy());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory
+     *            the directory in which the segment files are stored
+     * @param serializer
+     *            the serializer used to store the URIs
+     * @param segmentSize
+     *            the size of a single segment file in bytes
+     * @param schedulingPolicy
+     *            the policy that decides which pair is served next or null if
+     *            the pairs should be served in the order of
+     *            {@link #getIterator()}
+     */
+    public SegmentFileQueue(File directory, Serializer serializer, int segmentSize,
+            SchedulingPolicy schedulingPolicy) {
+        super(schedulingPolicy);
+        if (segmentSize <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("The segment size is too small.");
+        }
+        this.directory = directory;
+        this.serializer = serializer;
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    public void open() {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IllegalStateException("Couldn't create the directory " + directory.getAbsolutePath());
+        }
+        loadSegmentFiles();
+        // hand the pairs of the loaded URIs to the scheduling policy
+        scheduleQueuedPairs();
+    }
+
+    /**
+     * Syncs the segment files to the disk and clears the in-memory state of
+     * the queue. The segment files are kept, i.e., the queue can be opened
+     * again with its remaining URIs.
+     */
+    @Override
+    public void close() {
+        synchronized (appendMutex) {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+            }
+            appendSegment = null;
+            segments.clear();
+            pairs.clear();
+            leasedRecords.clear();
+            length.set(0);
+        }
+    }
+
+    /**
+     * Closes the queue and deletes all its segment files.
+     */
+    public void purge() {
+        close();
+        deleteSegmentFiles();
+    }
+
+    @Override
+    protected void addToQueue(CrawleableUri uri) {
+        byte[] data;
+        try {
+            data = serializer.serialize(uri);
+        } catch (IOException e) {
+            LOGGER.error("Couldn't serialize URI " + uri.getUri() + ". It will be ignored.", e);
+            return;
+        }
+        long position = append(data);
+        link(new IpUriTypePair(uri.getIpAddress(), uri.getType()), position);
+        length.incrementAndGet();
+    }
+
+    /**
+     * Appends the record at the given position to the list of the given pair.
+     * Has to be called while holding the lock of the pair's IP (or before the
+     * queue is used by other threads).
+     */
+    private void link(IpUriTypePair pair, long position) {
+        PairPointers pointers = pairs.get(pair);
+        if (pointers == null) {
+            pairs.put(pair, new PairPointers(position));
+        } else {
+            setNextPosition(pointers.tail, position);
+            pointers.tail = position;
+            ++pointers.size;
+        }
+    }
+
+    @Override
+    public List<CrawleableUri> getNextUris() {
+        if (compactionNeeded.get()) {
+            compact();
+        }
+        return super.getNextUris();
+    }
+
+    @Override
+    protected Iterator<IpUriTypePair> getIterator() {
+        return pairs.keySet().iterator();
+    }
+
+    @Override
+    protected List<CrawleableUri> getUris(IpUriTypePair pair) {
+        PairPointers pointers = pairs.get(pair);
+        if (pointers == null) {
+            return null;
+        }
+        int maxChunkSize = getMaxChunkSize();
+        int count = ((maxChunkSize > 0) && (maxChunkSize < pointers.size)) ? maxChunkSize : pointers.size;
+        List<CrawleableUri> uris = new ArrayList<CrawleableUri>(count);
+        List<Long> leased = leasedRecords.computeIfAbsent(pair.ip, ip -> new ArrayList<Long>());
+        long position = pointers.head;
+        Segment segment;
+        int offset;
+        byte[] data;
+        for (int i = 0; i < count; ++i) {
+            segment = getSegment(position);
+            offset = getOffset(position);
+            data = readData(segment, offset);
+            // keep the record until the chunk has been finished
+            segment.buffer.put(offset + STATE_OFFSET, STATE_LEASED);
+            leased.add(position);
+            position = segment.buffer.getLong(offset + NEXT_OFFSET);
+            try {
+                uris.add(serializer.deserialize(data));
+            } catch (IOException e) {
+                LOGGER.error("Couldn't deserialize URI. It will be ignored.", e);
+            }
+        }
+        if (count == pointers.size) {
+            pairs.remove(pair);
+        } else {
+            pointers.head = position;
+            pointers.size -= count;
+        }
+        length.addAndGet(-count);
+        return uris;
+    }
+
+    /**
+     * Consumes the leased records of the given IP.
+     */
+    @Override
+    protected void chunkFinished(InetAddress ip) {
+        List<Long> leased = leasedRecords.remove(ip);
+        if (leased != null) {
+            for (long position : leased) {
+                releaseRecord(getSegment(position), getOffset(position));
+            }
+        }
+    }
+
+    /**
+     * Appends the URIs of the chunk again and consumes its leased records.
+     */
+    @Override
+    protected void requeueChunk(InetAddress ip, List<CrawleableUri> uris) {
+        super.requeueChunk(ip, uris);
+        chunkFinished(ip);
+    }
+
+    @Override
+    public Iterator<AbstractMap.SimpleEntry<InetAddress, List<CrawleableUri>>> getIPURIIterator() {
+        List<AbstractMap.SimpleEntry<InetAddress, List<CrawleableUri>>> entries = new ArrayList<>();
+        Iterator<IpUriTypePair> iterator = pairs.keySet().iterator();
+        while (iterator.hasNext() && (entries.size() < LIMITFORITERATOR)) {
+            IpUriTypePair pair = iterator.next();
+            ReentrantLock lock = getLock(pair.ip);
+            lock.lock();
+            try {
+                List<CrawleableUri> uris = peekUris(pair, LIMITFORITERATOR);
+                if (!uris.isEmpty()) {
+                    entries.add(new AbstractMap.SimpleEntry<>(pair.ip, uris));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return entries.iterator();
+    }
+
+    /**
+     * Reads the first URIs of the given pair without removing them. Has to be
+     * called while holding the lock of the pair's IP.
+     */
+    private List<CrawleableUri> peekUris(IpUriTypePair pair, int limit) {
+        List<CrawleableUri> uris = new ArrayList<CrawleableUri>();
+        PairPointers pointers = pairs.get(pair);
+        if (pointers == null) {
+            return uris;
+        }
+        long position = pointers.head;
+        for (int i = 0; (i < pointers.size) && (i < limit); ++i) {
+            Segment segment = getSegment(position);
+            int offset = getOffset(position);
+            uris.add(serializer.deserializeSafely(readData(segment, offset)));
+            position = segment.buffer.getLong(offset + NEXT_OFFSET);
+        }
+        return uris;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return pairs.isEmpty();
+    }
+
+    /**
+     * @return the number of URIs in this queue
+     */
+    public long length() {
+        return length.get();
+    }
+
+    /**
+     * @return the number of segment files that are currently in use
+     */
+    public int getNumberOfSegments() {
+        return segments.size();
+    }
+
+    /**
+     * Moves the live records of sparse segments, i.e., sealed segments with
+     * less than {@link #COMPACTION_THRESHOLD} live data, to the current segment.
+     * The records of a single pair are moved while holding the lock of its IP.
+     * If another thread is already compacting the segments, the method returns
+     * directly.
+     *
+     * @return the number of records that have been moved
+     */
+    public int compact() {
+        if (!compacting.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            compactionNeeded.set(false);
+            if (!hasSparseSegments()) {
+                return 0;
+            }
+            int movedRecords = 0;
+            for (IpUriTypePair pair : pairs.keySet()) {
+                ReentrantLock lock = getLock(pair.ip);
+                lock.lock();
+                try {
+                    movedRecords += compact(pair);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            LOGGER.debug("Moved {} records during compaction.", movedRecords);
+            return movedRecords;
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * Moves the records of the given pair that are stored in sparse segments.
+     * Has to be called while holding the lock of the pair's IP.
+     *
+     * @return the number of records that have been moved
+     */
+    private int compact(IpUriTypePair pair) {
+        PairPointers pointers = pairs.get(pair);
+        if (pointers == null) {
+            return 0;
+        }
+        int movedRecords = 0;
+        long previous = NO_RECORD;
+        long position = pointers.head;
+        long next;
+        long newPosition;
+        Segment segment;
+        int offset;
+        for (int i = 0; i < pointers.size; ++i) {
+            segment = getSegment(position);
+            offset = getOffset(position);
+            next = segment.buffer.getLong(offset + NEXT_OFFSET);
+            if (isSparse(segment)) {
+                newPosition = append(readData(segment, offset));
+                setNextPosition(newPosition, next);
+                if (previous == NO_RECORD) {
+                    pointers.head = newPosition;
+                } else {
+                    setNextPosition(previous, newPosition);
+                }
+                if (position == pointers.tail) {
+                    pointers.tail = newPosition;
+                }
+                releaseRecord(segment, offset);
+                position = newPosition;
+                ++movedRecords;
+            }
+            previous = position;
+            position = next;
+        }
+        return movedRecords;
+    }
+
+    private boolean hasSparseSegments() {
+        for (Segment segment : segments.values()) {
+            if (isSparse(segment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSparse(Segment segment) {
+        return segment.sealed && (segment.liveBytes.get() < (segmentSize * COMPACTION_THRESHOLD));
+    }
+
+    /**
+     * Appends a record with the given data to the current segment.
+     *
+     * @return the position of the new record
+     */
+    private long append(byte[] data) {
+        int recordSize = RECORD_HEADER_SIZE + data.length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException(
+                    "The serialized URI (" + data.length + " bytes) does not fit into a single segment.");
+        }
+        synchronized (appendMutex) {
+            if ((appendSegment == null) || ((appendSegment.writePosition + recordSize) > segmentSize)) {
+                Segment oldSegment = appendSegment;
+                appendSegment = createSegment(nextSegmentId++);
+                if (oldSegment != null) {
+                    seal(oldSegment);
+                }
+            }
+            ByteBuffer buffer = appendSegment.buffer.duplicate();
+            int offset = appendSegment.writePosition;
+            buffer.position(offset + NEXT_OFFSET);
+            buffer.putLong(NO_RECORD);
+            buffer.put(STATE_LIVE);
+            buffer.put(data);
+            // the length is written last to mark the record as complete
+            appendSegment.buffer.putInt(offset, data.length);
+            long position = (appendSegment.id * segmentSize) + offset;
+            appendSegment.writePosition += recordSize;
+            appendSegment.liveRecords.incrementAndGet();
+            appendSegment.liveBytes.addAndGet(recordSize);
+            return position;
+        }
+    }
+
+    /**
+     * Marks the given segment as sealed, i.e., no further records will be
+     * appended to it.
+     */
+    private void seal(Segment segment) {
+        segment.sealed = true;
+        if (segment.liveRecords.get() == 0) {
+            deleteSegment(segment);
+        } else {
+            compactionNeeded.set(true);
+        }
+    }
+
+    private void setNextPosition(long recordPosition, long nextPosition) {
+        getSegment(recordPosition).buffer.putLong(getOffset(recordPosition) + NEXT_OFFSET, nextPosition);
+    }
+
+    private byte[] readData(Segment segment, int offset) {
+        byte[] data = new byte[segment.buffer.getInt(offset)];
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(offset + RECORD_HEADER_SIZE);
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * Marks the record at the given offset as consumed, decrements the number
+     * of live records of the given segment and deletes it if it is not used
+     * anymore.
+     */
+    private void releaseRecord(Segment segment, int offset) {
+        segment.buffer.put(offset + STATE_OFFSET, STATE_CONSUMED);
+        segment.liveBytes.addAndGet(-(RECORD_HEADER_SIZE + segment.buffer.getInt(offset)));
+        if ((segment.liveRecords.decrementAndGet() == 0) && segment.sealed) {
+            deleteSegment(segment);
+        }
+    }
+
+    private Segment getSegment(long position) {
+        Segment segment = segments.get(position / segmentSize);
+        if (segment == null) {
+            throw new IllegalStateException("The segment of position " + position + " does not exist.");
+        }
+        return segment;
+    }
+
+    private int getOffset(long position) {
+        return (int) (position % segmentSize);
+    }
+
+    private Segment createSegment(long id) {
+        File file = new File(directory, SEGMENT_FILE_PREFIX + id + SEGMENT_FILE_SUFFIX);
+        Segment segment = mapSegment(id, file);
+        segments.put(id, segment);
+        LOGGER.debug("Created segment file {}.", file);
+        return segment;
+    }
+
+    private Segment mapSegment(long id, File file) {
+        // The mapping stays valid after the file has been closed
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(segmentSize);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            return new Segment(id, file, buffer);
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't map segment file " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Loads the existing segment files of the {@link #directory} in the order
+     * of their ids and rebuilds the lists of the pairs from their live records.
+     * All loaded segments are sealed, i.e., new records are appended to a new
+     * segment.
+     */
+    private void loadSegmentFiles() {
+        File files[] = listSegmentFiles();
+        if ((files == null) || (files.length == 0)) {
+            return;
+        }
+        long ids[] = new long[files.length];
+        for (int i = 0; i < files.length; ++i) {
+            String name = files[i].getName();
+            try {
+                ids[i] = Long.parseLong(
+                        name.substring(SEGMENT_FILE_PREFIX.length(), name.length() - SEGMENT_FILE_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException("Couldn't parse the id of segment file " + files[i].getAbsolutePath(),
+                        e);
+            }
+            if (files[i].length() != segmentSize) {
+                throw new IllegalStateException("The segment file " + files[i].getAbsolutePath()
+                        + " has been created with a different segment size.");
+            }
+        }
+        Arrays.sort(ids);
+        long loadedUris = 0;
+        synchronized (appendMutex) {
+            for (long id : ids) {
+                Segment segment = mapSegment(id,
+                        new File(directory, SEGMENT_FILE_PREFIX + id + SEGMENT_FILE_SUFFIX));
+                segments.put(id, segment);
+                loadedUris += loadRecords(segment);
+                nextSegmentId = id + 1;
+                seal(segment);
+            }
+        }
+        length.addAndGet(loadedUris);
+        LOGGER.info("Loaded {} URIs from {} segment files.", loadedUris, ids.length);
+    }
+
+    /**
+     * Scans the given segment and links its live records to the lists of their
+     * pairs.
+     *
+     * @return the number of live records
+     */
+    private int loadRecords(Segment segment) {
+        int liveRecords = 0;
+        int offset = 0;
+        int dataLength;
+        byte state;
+        byte[] data;
+        CrawleableUri uri;
+        while ((offset + RECORD_HEADER_SIZE) <= segmentSize) {
+            dataLength = segment.buffer.getInt(offset);
+            if ((dataLength <= 0) || ((offset + RECORD_HEADER_SIZE + dataLength) > segmentSize)) {
+                // end of the written part of the segment
+                break;
+            }
+            state = segment.buffer.get(offset + STATE_OFFSET);
+            if ((state == STATE_LIVE) || (state == STATE_LEASED)) {
+                segment.liveRecords.incrementAndGet();
+                segment.liveBytes.addAndGet(RECORD_HEADER_SIZE + dataLength);
+                data = readData(segment, offset);
+                uri = null;
+                try {
+                    uri = serializer.deserialize(data);
+                } catch (IOException e) {
+                    LOGGER.error("Couldn't deserialize URI. It will be ignored.", e);
+                }
+                if ((uri != null) && (uri.getIpAddress() != null)) {
+                    // the list is rebuilt in the order of the records
+                    segment.buffer.put(offset + STATE_OFFSET, STATE_LIVE);
+                    segment.buffer.putLong(offset + NEXT_OFFSET, NO_RECORD);
+                    link(new IpUriTypePair(uri.getIpAddress(), uri.getType()),
+                            (segment.id * segmentSize) + offset);
+                    ++liveRecords;
+                } else {
+                    releaseRecord(segment, offset);
+                }
+            }
+            offset += RECORD_HEADER_SIZE + dataLength;
+        }
+        segment.writePosition = offset;
+        return liveRecords;
+    }
+
+    private File[] listSegmentFiles() {
+        return directory.listFiles(
+                (dir, name) -> name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX));
+    }
+
+    private void deleteSegment(Segment segment) {
+        // make sure that the segment is deleted only once
+        if (segments.remove(segment.id, segment)) {
+            // The mapped memory is freed when the buffer is garbage collected
+            if (!segment.file.delete()) {
+                LOGGER.warn("Couldn't delete segment file {}.", segment.file);
+            }
+        }
+    }
+
+    private void deleteSegmentFiles() {
+        File files[] = listSegmentFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    LOGGER.warn("Couldn't delete segment file {}.", file);
+                }
+            }
+        }
+    }
+
+    /**
+     * The positions of the first and the last record of a pair.
+     */
+    private static class PairPointers {
+        private long head;
+        private long tail;
+        private int size;
+
+        public PairPointers(long position) {
+            head = position;
+            tail = position;
+            size = 1;
+        }
+    }
+
+    /**
+     * A single memory-mapped segment file.
+     */
+    private static class Segment {
+        private final long id;
+        private final File file;
+        private final MappedByteBuffer buffer;
+        /**
+         * The position at which the next record is appended. Guarded by
+         * {@link SegmentFileQueue#appendMutex}.
+         */
+        private int writePosition = 0;
+        /**
+         * The number of records that have not been retrieved, yet.
+         */
+        private final AtomicInteger liveRecords = new AtomicInteger();
+        /**
+         * The number of bytes of the records that have not been retrieved, yet.
+         */
+        private final AtomicLong liveBytes = new AtomicLong();
+        /**
+         * Set to true if no further records will be appended.
+         */
+        private volatile boolean sealed = false;
+
+        public Segment(long id, File file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+}
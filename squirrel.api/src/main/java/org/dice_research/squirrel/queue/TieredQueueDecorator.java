@@ -0,0 +1,476 @@
+package org.dice_research.squirrel.queue;
+
+import java.net.InetAddress;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A decorator that puts a small in-memory hot tier in front of a (typically
+ * persistent) {@link IpAddressBasedQueue}. A background thread prefetches the
+ * chunks of up to {@link #hotTierSize} IPs from the decorated queue. The
+ * decorated queue is only asked directly if the hot tier is empty.
+ * </p>
+ *
+ * <p>
+ * Prefetched chunks are retrieved like the chunks of the workers, i.e., their
+ * IPs are blocked and their URIs are leased. Their leases are extended while
+ * they are prefetched and a chunk whose lease ended nevertheless is dropped.
+ * Prefetched chunks are given back to the decorated queue when this queue is
+ * closed.
+ * </p>
+ *
+ * <p>
+ * Concurrent calls of {@link #addUri(CrawleableUri)} and
+ * {@link #addUris(List)} are written to the decorated queue with a single
+ * {@link IpAddressBasedQueue#addUris(List)} call. A call returns after its URIs
+ * have been written.
+ * </p>
+ */
+public class TieredQueueDecorator implements IpAddressBasedQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TieredQueueDecorator.class);
+
+    /**
+     * The default number of IPs whose chunks are kept in the hot tier.
+     */
+    public static final int DEFAULT_HOT_TIER_SIZE = 16;
+    /**
+     * The default time (in ms) the refill thread waits before asking an empty
+     * decorated queue again.
+     */
+    public static final long DEFAULT_REFILL_INTERVAL = 1000;
+
+    private final IpAddressBasedQueue decorated;
+    private final int hotTierSize;
+    private final long refillInterval;
+    /**
+     * The prefetched chunks of the single IPs in the order in which they have
+     * been prefetched. Guarded by itself.
+     */
+    private final Map<InetAddress, List<CrawleableUri>> hotTier = new LinkedHashMap<>();
+    /**
+     * The chunks that have been handed out and have not been finished, yet,
+     * mapped by their IPs.
+     */
+    private final Map<InetAddress, List<CrawleableUri>> handedOutChunks = new ConcurrentHashMap<>();
+    /**
+     * Used to wake up the refill thread if new URIs might be available.
+     */
+    private final Semaphore refillSignal = new Semaphore(0);
+    private Thread refillThread = null;
+    private volatile boolean running = false;
+    /**
+     * Mutex guarding {@link #pendingWrites} and {@link #writing}.
+     */
+    private final Object writeMutex = new Object();
+    /**
+     * The writes that wait for the next batch.
+     */
+    private List<PendingWrite> pendingWrites = new ArrayList<>();
+    /**
+     * Set to true while a thread writes a batch to the decorated queue.
+     */
+    private boolean writing = false;
+
+    /**
+     * Constructor using {@link #DEFAULT_HOT_TIER_SIZE} and
+     * {@link #DEFAULT_REFILL_INTERVAL}.
+     *
+     * @param decorated
+     *            the queue that is decorated
+     */
+    public TieredQueueDecorator(IpAddressBasedQueue decorated) {
+        this(decorated, DEFAULT_HOT_TIER_SIZE, DEFAULT_REFILL_INTERVAL);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param decorated
+     *            the queue that is decorated
+     * @param hotTierSize
+     *            the maximum number of IPs whose chunks are kept in memory
+     * @param refillInterval
+     *            the time (in ms) the refill thread waits before asking an
+     *            empty decorated queue again
+     */
+    public TieredQueueDecorator(IpAddressBasedQueue decorated, int hotTierSize, long refillInterval) {
+        if (hotTierSize < 1) {
+            throw new IllegalArgumentException("The size of the hot tier has to be positive.");
+        }
+        this.decorated = decorated;
+        this.hotTierSize = hotTierSize;
+        this.refillInterval = refillInterval;
+    }
+
+    @Override
+    public synchronized void open() {
+        if (refillThread != null) {
+            LOGGER.warn("The queue has already been opened. The call will be ignored.");
+            return;
+        }
+        decorated.open();
+        running = true;
+        refillThread = new Thread(this::refill, "queue-hot-tier-refill");
+        refillThread.setDaemon(true);
+        refillThread.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (refillThread != null) {
+            refillThread.interrupt();
+            try {
+                refillThread.join();
+            } catch (InterruptedException e) {
+                LOGGER.warn("Interrupted while waiting for the refill thread.", e);
+            }
+            refillThread = null;
+        }
+        // give the prefetched chunks back
+        List<List<CrawleableUri>> chunks;
+        synchronized (hotTier) {
+            chunks = new ArrayList<>(hotTier.values());
+            hotTier.clear();
+        }
+        for (List<CrawleableUri> chunk : chunks) {
+            try {
+                decorated.returnChunk(chunk);
+            } catch (Exception e) {
+                LOGGER.error("Couldn't give a prefetched chunk of " + chunk.get(0).getIpAddress()
+                        + " back to the decorated queue. A persistent queue will hand it out again after a restart.",
+                        e);
+            }
+        }
+        decorated.close();
+    }
+
+    /**
+     * Keeps the hot tier filled until {@link #running} is set to false.
+     */
+    protected void refill() {
+        List<CrawleableUri> chunk;
+        while (running) {
+            try {
+                chunk = null;
+                if (getNumberOfPrefetchedChunks() < hotTierSize) {
+                    chunk = decorated.getNextUris();
+                }
+                if ((chunk != null) && !chunk.isEmpty()) {
+                    addToHotTier(chunk);
+                } else {
+                    // the hot tier is full or the decorated queue has nothing to offer
+                    extendPrefetchedLeases();
+                    refillSignal.tryAcquire(refillInterval, TimeUnit.MILLISECONDS);
+                    refillSignal.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                if (running) {
+                    LOGGER.warn("The refill thread has been interrupted.", e);
+                }
+            } catch (Exception e) {
+                LOGGER.error("Exception while refilling the hot tier. Trying again later.", e);
+                try {
+                    Thread.sleep(refillInterval);
+                } catch (InterruptedException e1) {
+                    // nothing to do
+                }
+            }
+        }
+    }
+
+    private void addToHotTier(List<CrawleableUri> chunk) {
+        InetAddress ip = chunk.get(0).getIpAddress();
+        synchronized (hotTier) {
+            // if there is a prefetched chunk of the IP, its lease expired and the
+            // decorated queue added its URIs to the new chunk
+            hotTier.put(ip, chunk);
+        }
+    }
+
+    /**
+     * Makes sure that the leases of the prefetched chunks do not expire while
+     * the chunks wait in the hot tier.
+     */
+    private void extendPrefetchedLeases() {
+        List<List<CrawleableUri>> chunks;
+        synchronized (hotTier) {
+            chunks = new ArrayList<>(hotTier.values());
+        }
+        for (List<CrawleableUri> chunk : chunks) {
+            if (!renewLease(chunk)) {
+                synchronized (hotTier) {
+                    hotTier.remove(chunk.get(0).getIpAddress(), chunk);
+                }
+            }
+        }
+    }
+
+    /**
+     * Extends the lease of the given chunk in the decorated queue.
+     *
+     * @return false if the lease of the chunk ended, i.e., the chunk must not
+     *         be handed out
+     */
+    private boolean renewLease(List<CrawleableUri> chunk) {
+        if (IpAddressBasedQueue.getLeaseId(chunk) == null) {
+            // the decorated queue hands out chunks without leases
+            return true;
+        }
+        if (decorated.extendLease(chunk)) {
+            return true;
+        }
+        LOGGER.info("The lease of the prefetched chunk of {} ended. The chunk is dropped.",
+                chunk.get(0).getIpAddress());
+        return false;
+    }
+
+    @Override
+    public void addUri(CrawleableUri uri) {
+        List<CrawleableUri> uris = new ArrayList<>(1);
+        uris.add(uri);
+        write(uris);
+    }
+
+    @Override
+    public void addUris(List<CrawleableUri> uris) {
+        write(uris);
+    }
+
+    /**
+     * Writes the given URIs together with the URIs of all other threads that
+     * are waiting at the same time as a single batch to the decorated queue.
+     * The method returns after the batch containing the given URIs has been
+     * written.
+     *
+     * @param uris
+     *            the URIs that should be written
+     * @throws RuntimeException
+     *             the exception of the decorated queue if the batch couldn't
+     *             be written
+     */
+    protected void write(List<CrawleableUri> uris) {
+        PendingWrite write = new PendingWrite(uris);
+        List<PendingWrite> batch;
+        boolean interrupted = false;
+        synchronized (writeMutex) {
+            pendingWrites.add(write);
+            while (writing && !write.done) {
+                try {
+                    writeMutex.wait();
+                } catch (InterruptedException e) {
+                    // the write is already pending, i.e., we have to wait for it
+                    interrupted = true;
+                }
+            }
+            if (!write.done) {
+                // this thread writes the next batch
+                writing = true;
+                batch = pendingWrites;
+                pendingWrites = new ArrayList<>();
+            } else {
+                batch = null;
+            }
+        }
+        if (batch != null) {
+            writeBatch(batch);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (write.error != null) {
+            throw write.error;
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        RuntimeException error = null;
+        try {
+            if (batch.size() == 1) {
+                decorated.addUris(batch.get(0).uris);
+            } else {
+                List<CrawleableUri> uris = new ArrayList<>();
+                for (PendingWrite pendingWrite : batch) {
+                    uris.addAll(pendingWrite.uris);
+                }
+                decorated.addUris(uris);
+            }
+        } catch (RuntimeException e) {
+            error = e;
+        } finally {
+            synchronized (writeMutex) {
+                for (PendingWrite pendingWrite : batch) {
+                    pendingWrite.error = error;
+                    pendingWrite.done = true;
+                }
+                writing = false;
+                writeMutex.notifyAll();
+            }
+        }
+        refillSignal.release();
+    }
+
+    @Override
+    public List<CrawleableUri> getNextUris() {
+        List<CrawleableUri> chunk;
+        do {
+            chunk = null;
+            synchronized (hotTier) {
+                Iterator<List<CrawleableUri>> iterator = hotTier.values().iterator();
+                if (iterator.hasNext()) {
+                    chunk = iterator.next();
+                    iterator.remove();
+                }
+            }
+            // make room for the next chunk
+            refillSignal.release();
+            // the worker gets the complete lease period
+        } while ((chunk != null) && !renewLease(chunk));
+        if (chunk == null) {
+            chunk = decorated.getNextUris();
+        }
+        if (chunk != null) {
+            handedOutChunks.put(chunk.get(0).getIpAddress(), chunk);
+        }
+        return chunk;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        synchronized (hotTier) {
+            if (!hotTier.isEmpty()) {
+                return false;
+            }
+        }
+        return decorated.isEmpty();
+    }
+
+    @Override
+    public void markIpAddressAsAccessible(InetAddress ip) {
+        handedOutChunks.remove(ip);
+        decorated.markIpAddressAsAccessible(ip);
+        refillSignal.release();
+    }
+
+    @Override
+    public void markIpAddressAsAccessible(InetAddress ip, long nextAllowedFetchTime) {
+        handedOutChunks.remove(ip);
+        decorated.markIpAddressAsAccessible(ip, nextAllowedFetchTime);
+        refillSignal.release();
+    }
+
+    @Override
+    public boolean finishChunk(List<CrawleableUri> chunk, long nextAllowedFetchTime) {
+        removeHandedOutChunk(chunk);
+        boolean finished = decorated.finishChunk(chunk, nextAllowedFetchTime);
+        refillSignal.release();
+        return finished;
+    }
+
+    @Override
+    public void returnChunk(List<CrawleableUri> chunk) {
+        removeHandedOutChunk(chunk);
+        decorated.returnChunk(chunk);
+        refillSignal.release();
+    }
+
+    /**
+     * Forgets the handed out chunk of the IP of the given chunk if both have
+     * the same lease id, i.e., the chunk of a worker whose lease expired does
+     * not remove the chunk that has been handed out with a new lease.
+     */
+    private void removeHandedOutChunk(List<CrawleableUri> chunk) {
+        Long leaseId = IpAddressBasedQueue.getLeaseId(chunk);
+        handedOutChunks.computeIfPresent(chunk.get(0).getIpAddress(),
+                (ip, handedOut) -> Objects.equals(leaseId, IpAddressBasedQueue.getLeaseId(handedOut)) ? null
+                        : handedOut);
+    }
+
+    @Override
+    public boolean extendLease(InetAddress ip) {
+        return decorated.extendLease(ip);
+    }
+
+    @Override
+    public boolean extendLease(List<CrawleableUri> chunk) {
+        return decorated.extendLease(chunk);
+    }
+
+    @Override
+    public void releaseExpiredLeases() {
+        decorated.releaseExpiredLeases();
+    }
+
+    /**
+     * Returns the number of IPs whose chunks have been handed out by this
+     * queue and have not been finished, yet. The IPs of the prefetched chunks
+     * are blocked in the decorated queue but they are not counted.
+     */
+    @Override
+    public int getNumberOfBlockedIps() {
+        return handedOutChunks.size();
+    }
+
+    @Override
+    public Iterator<AbstractMap.SimpleEntry<InetAddress, List<CrawleableUri>>> getIPURIIterator() {
+        return decorated.getIPURIIterator();
+    }
+
+    /**
+     * @return the number of IPs whose chunks are currently kept in memory
+     */
+    public int getNumberOfPrefetchedChunks() {
+        synchronized (hotTier) {
+            return hotTier.size();
+        }
+    }
+
+    /**
+     * @return the decorated queue
+     */
+    public IpAddressBasedQueue getDecorated() {
+        return decorated;
+    }
+
+    /**
+     * @return the maximum number of IPs whose chunks are kept in memory
+     */
+    public int getHotTierSize() {
+        return hotTierSize;
+    }
+
+    /**
+     * URIs of a single call that wait to be written.
+     */
+    private static class PendingWrite {
+        private final List<CrawleableUri> uris;
+        /**
+         * Set to true after the batch containing the URIs has been written.
+         * Guarded by {@link TieredQueueDecorator#writeMutex}.
+         */
+        private boolean done = false;
+        /**
+         * The exception of the decorated queue if the batch couldn't be
+         * written. Guarded by {@link TieredQueueDecorator#writeMutex}.
+         */
+        private RuntimeException error = null;
+
+        public PendingWrite(List<CrawleableUri> uris) {
+            this.uris = uris;
+        }
+    }
+}
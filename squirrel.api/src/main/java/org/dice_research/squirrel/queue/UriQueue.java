@@ -21,6 +21,23 @@ public interface UriQueue {
      */
     public void addUri(CrawleableUri uri);
 
+    /**
+     * Adds the given {@link CrawleableUri} instances to the queue. The default
+     * implementation simply calls {@link #addUri(CrawleableUri)} for every
+     * single URI. Implementations that can make use of batches (e.g., by
+     * reducing the number of round trips to a database) should override this
+     * method.
+     * 
+     * @param uris
+     *            the {@link CrawleableUri} instances that should be added to the
+     *            queue.
+     */
+    public default void addUris(List<CrawleableUri> uris) {
+        for (CrawleableUri uri : uris) {
+            addUri(uri);
+        }
+    }
+
     /**
      * Returns the next chunk of URIs that should be crawled or null. Note that
      * this method removes the URIs from the queue.
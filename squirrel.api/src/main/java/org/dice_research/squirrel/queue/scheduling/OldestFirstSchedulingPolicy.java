@@ -0,0 +1,63 @@
+package org.dice_research.squirrel.queue.scheduling;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.dice_research.squirrel.queue.IpUriTypePair;
+
+/**
+ * A policy that serves the pair that has been waiting the longest. The
+ * position of a pair is determined when it is offered for the first time and
+ * kept until the pair has been removed from the queue, i.e., a pair that has
+ * been served only partially keeps its position. Offering and polling take
+ * O(log n).
+ */
+public class OldestFirstSchedulingPolicy implements SchedulingPolicy {
+
+    private PriorityQueue<ScheduledPair> pairs = new PriorityQueue<ScheduledPair>();
+    /**
+     * The enqueue position of the pairs that have not been removed.
+     */
+    private Map<IpUriTypePair, Long> enqueuePositions = new HashMap<IpUriTypePair, Long>();
+    private long nextPosition = 0;
+
+    @Override
+    public synchronized void offer(IpUriTypePair pair) {
+        Long position = enqueuePositions.get(pair);
+        if (position == null) {
+            position = nextPosition++;
+            enqueuePositions.put(pair, position);
+        }
+        pairs.add(new ScheduledPair(pair, position));
+    }
+
+    @Override
+    public synchronized IpUriTypePair poll() {
+        ScheduledPair scheduledPair = pairs.poll();
+        return (scheduledPair == null) ? null : scheduledPair.pair;
+    }
+
+    @Override
+    public synchronized void removed(IpUriTypePair pair) {
+        enqueuePositions.remove(pair);
+    }
+
+    /**
+     * A pair together with its enqueue position.
+     */
+    private static class ScheduledPair implements Comparable<ScheduledPair> {
+        private final IpUriTypePair pair;
+        private final long position;
+
+        public ScheduledPair(IpUriTypePair pair, long position) {
+            this.pair = pair;
+            this.position = position;
+        }
+
+        @Override
+        public int compareTo(ScheduledPair o) {
+            return Long.compare(position, o.position);
+        }
+    }
+}
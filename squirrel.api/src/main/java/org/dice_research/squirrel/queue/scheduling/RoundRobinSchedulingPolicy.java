@@ -0,0 +1,27 @@
+package org.dice_research.squirrel.queue.scheduling;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.dice_research.squirrel.queue.IpUriTypePair;
+
+/**
+ * A simple round-robin policy. The pairs are served in the order in which they
+ * have been offered. Since a pair that still has URIs left is offered again
+ * after its IP has been released, it is appended behind all other waiting
+ * pairs.
+ */
+public class RoundRobinSchedulingPolicy implements SchedulingPolicy {
+
+    private Queue<IpUriTypePair> pairs = new ConcurrentLinkedQueue<IpUriTypePair>();
+
+    @Override
+    public void offer(IpUriTypePair pair) {
+        pairs.add(pair);
+    }
+
+    @Override
+    public IpUriTypePair poll() {
+        return pairs.poll();
+    }
+}
@@ -0,0 +1,58 @@
+package org.dice_research.squirrel.queue.scheduling;
+
+import org.dice_research.squirrel.queue.AbstractIpAddressBasedQueue;
+import org.dice_research.squirrel.queue.IpUriTypePair;
+
+/**
+ * A scheduling policy decides which {@link IpUriTypePair} of an
+ * {@link AbstractIpAddressBasedQueue} is served next. The queue only offers
+ * pairs that have URIs and whose IP is not blocked, i.e., every pair returned
+ * by {@link #poll()} can be served directly. A pair is contained at most once
+ * in a policy.
+ *
+ * <p>
+ * Implementations have to be thread-safe and should offer and poll pairs in
+ * O(1) or O(log n).
+ * </p>
+ */
+public interface SchedulingPolicy {
+
+    /**
+     * Adds the given pair to the set of pairs that can be served.
+     *
+     * @param pair
+     *            the pair that can be served
+     */
+    public void offer(IpUriTypePair pair);
+
+    /**
+     * Removes the pair that should be served next and returns it.
+     *
+     * @return the pair that should be served next or null if there is no pair
+     *         that can be served
+     */
+    public IpUriTypePair poll();
+
+    /**
+     * Informs the policy that the given number of URIs has been retrieved for
+     * the given pair. The default implementation does nothing.
+     *
+     * @param pair
+     *            the pair that has been served
+     * @param numberOfUris
+     *            the number of URIs that have been retrieved
+     */
+    public default void served(IpUriTypePair pair, int numberOfUris) {
+    }
+
+    /**
+     * Informs the policy that the given pair does not have any URIs left,
+     * i.e., the policy can forget all information it has about this pair. The
+     * default implementation does nothing.
+     *
+     * @param pair
+     *            the pair that has been removed from the queue
+     */
+    public default void removed(IpUriTypePair pair) {
+    }
+}
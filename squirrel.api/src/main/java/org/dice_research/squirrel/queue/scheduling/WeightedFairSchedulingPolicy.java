@@ -0,0 +1,117 @@
+package org.dice_research.squirrel.queue.scheduling;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.ToDoubleFunction;
+
+import org.dice_research.squirrel.queue.IpUriTypePair;
+
+/**
+ * <p>
+ * A weighted fair queueing policy. Every pair has a virtual finish time that
+ * grows with the number of URIs that have been retrieved for it divided by the
+ * weight of the pair. The pair with the smallest virtual finish time is served
+ * next. A pair that is offered for the first time starts at the current
+ * virtual time.
+ * </p>
+ *
+ * <p>
+ * Offering and polling take O(log n).
+ * </p>
+ */
+public class WeightedFairSchedulingPolicy implements SchedulingPolicy {
+
+    /**
+     * The function that determines the (positive) weight of a pair.
+     */
+    private ToDoubleFunction<IpUriTypePair> weightFunction;
+    private PriorityQueue<ScheduledPair> pairs = new PriorityQueue<ScheduledPair>();
+    /**
+     * The virtual finish times of the pairs that have not been removed.
+     */
+    private Map<IpUriTypePair, Double> finishTimes = new HashMap<IpUriTypePair, Double>();
+    /**
+     * The finish time of the pair that has been polled last.
+     */
+    private double virtualTime = 0;
+    private long nextSequenceNumber = 0;
+
+    /**
+     * Constructor using the same weight for all pairs.
+     */
+    public WeightedFairSchedulingPolicy() {
+        this(p -> 1.0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param weightFunction
+     *            the function that determines the weight of a pair. The weights
+     *            have to be positive.
+     */
+    public WeightedFairSchedulingPolicy(ToDoubleFunction<IpUriTypePair> weightFunction) {
+        this.weightFunction = weightFunction;
+    }
+
+    @Override
+    public synchronized void offer(IpUriTypePair pair) {
+        Double finishTime = finishTimes.get(pair);
+        if ((finishTime == null) || (finishTime < virtualTime)) {
+            finishTime = virtualTime;
+            finishTimes.put(pair, finishTime);
+        }
+        pairs.add(new ScheduledPair(pair, finishTime, nextSequenceNumber++));
+    }
+
+    @Override
+    public synchronized IpUriTypePair poll() {
+        ScheduledPair scheduledPair = pairs.poll();
+        if (scheduledPair == null) {
+            return null;
+        }
+        virtualTime = Math.max(virtualTime, scheduledPair.finishTime);
+        return scheduledPair.pair;
+    }
+
+    @Override
+    public synchronized void served(IpUriTypePair pair, int numberOfUris) {
+        double weight = weightFunction.applyAsDouble(pair);
+        if (weight <= 0) {
+            weight = Double.MIN_NORMAL;
+        }
+        Double finishTime = finishTimes.get(pair);
+        finishTimes.put(pair, ((finishTime == null) ? virtualTime : finishTime) + (numberOfUris / weight));
+    }
+
+    @Override
+    public synchronized void removed(IpUriTypePair pair) {
+        finishTimes.remove(pair);
+    }
+
+    /**
+     * A pair together with its virtual finish time at the time it has been
+     * offered. The sequence number breaks ties in the order of the offers.
+     */
+    private static class ScheduledPair implements Comparable<ScheduledPair> {
+        private final IpUriTypePair pair;
+        private final double finishTime;
+        private final long sequenceNumber;
+
+        public ScheduledPair(IpUriTypePair pair, double finishTime, long sequenceNumber) {
+            this.pair = pair;
+            this.finishTime = finishTime;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public int compareTo(ScheduledPair o) {
+            int diff = Double.compare(finishTime, o.finishTime);
+            if (diff == 0) {
+                diff = Long.compare(sequenceNumber, o.sequenceNumber);
+            }
+            return diff;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.dice_research.squirrel.rabbit.msgs;
+
+import java.util.List;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+
+/**
+ * New URIs that a frontier shard forwards to the shard owning their IP
+ * addresses. The shards count these messages to detect that none of them is
+ * in transit when they terminate (see {@link ShardStatus}).
+ */
+public class ForwardedUriSet extends UriSet {
+
+    private static final long serialVersionUID = 1L;
+
+    public final int sourceShard;
+
+    public ForwardedUriSet(List<CrawleableUri> uris, int sourceShard) {
+        super(uris);
+        this.sourceShard = sourceShard;
+    }
+
+    @Override
+    public String toString() {
+        return "ForwardedUriSet [sourceShard=" + sourceShard + ", uris=" + uris.size() + "]";
+    }
+}
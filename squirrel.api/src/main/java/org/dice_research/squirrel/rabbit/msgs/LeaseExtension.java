@@ -0,0 +1,28 @@
+package org.dice_research.squirrel.rabbit.msgs;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+
+/**
+ * A message of a worker telling the frontier that the given URIs are still
+ * crawled and that their lease should be extended.
+ */
+public class LeaseExtension implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public final List<CrawleableUri> uris;
+    public final String idOfWorker;
+
+    public LeaseExtension(List<CrawleableUri> uris, String idOfWorker) {
+        this.uris = uris;
+        this.idOfWorker = idOfWorker;
+    }
+
+    @Override
+    public String toString() {
+        return "LeaseExtension [idOfWorker=" + idOfWorker + ", uris=" + uris.size() + "]";
+    }
+}
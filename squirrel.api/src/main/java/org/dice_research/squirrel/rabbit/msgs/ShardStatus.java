@@ -0,0 +1,61 @@
+package org.dice_research.squirrel.rabbit.msgs;
+
+import java.io.Serializable;
+
+/**
+ * A message that a frontier shard sends regularly to all other shards to
+ * decide together whether the crawling is finished.
+ */
+public class ShardStatus implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The id of the shard that sent the status.
+     */
+    public final int shardId;
+    /**
+     * The number of the status. It is increased with every status of a shard.
+     */
+    public final long sequenceNumber;
+    /**
+     * The shard neither has queued URIs nor chunks at workers nor messages it
+     * is processing.
+     */
+    public final boolean idle;
+    /**
+     * The local termination check of the shard has been fulfilled, i.e., the
+     * shard has crawled URIs before it became idle.
+     */
+    public final boolean finished;
+    /**
+     * The number of {@link ForwardedUriSet}s the shard sent to other shards.
+     */
+    public final long forwardedUriSets;
+    /**
+     * The number of {@link ForwardedUriSet}s the shard received and processed.
+     */
+    public final long receivedUriSets;
+    /**
+     * The shard detected that all shards are finished and terminates.
+     */
+    public final boolean terminating;
+
+    public ShardStatus(int shardId, long sequenceNumber, boolean idle, boolean finished, long forwardedUriSets,
+            long receivedUriSets, boolean terminating) {
+        this.shardId = shardId;
+        this.sequenceNumber = sequenceNumber;
+        this.idle = idle;
+        this.finished = finished;
+        this.forwardedUriSets = forwardedUriSets;
+        this.receivedUriSets = receivedUriSets;
+        this.terminating = terminating;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardStatus [shardId=" + shardId + ", sequenceNumber=" + sequenceNumber + ", idle=" + idle
+                + ", finished=" + finished + ", forwardedUriSets=" + forwardedUriSets + ", receivedUriSets="
+                + receivedUriSets + ", terminating=" + terminating + "]";
+    }
+}
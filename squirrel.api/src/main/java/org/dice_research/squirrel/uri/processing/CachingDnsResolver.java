@@ -0,0 +1,383 @@
+package org.dice_research.squirrel.uri.processing;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Resolves host names to IP addresses using a pool of resolver threads and a
+ * bounded cache. Resolved addresses are cached for {@link #ttl} ms and hosts
+ * that can not be resolved for {@link #negativeTtl} ms.
+ * </p>
+ *
+ * <p>
+ * {@link #resolveAll(Collection)} looks up all distinct hosts of a batch
+ * concurrently. Concurrent requests for the same host share a single lookup.
+ * A caller waits at most {@link #lookupTimeout} ms for its lookups.
+ * </p>
+ */
+public class CachingDnsResolver implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingDnsResolver.class);
+
+    /**
+     * Default time (in ms) a resolved address is cached (10 minutes).
+     */
+    public static final long DEFAULT_TTL = 1000L * 60L * 10L;
+    /**
+     * Default time (in ms) an unknown host is cached (1 minute).
+     */
+    public static final long DEFAULT_NEGATIVE_TTL = 1000L * 60L;
+    /**
+     * Default maximum number of cached hosts.
+     */
+    public static final int DEFAULT_MAX_CACHE_SIZE = 100000;
+    /**
+     * Default number of threads that resolve host names in parallel.
+     */
+    public static final int DEFAULT_NUMBER_OF_THREADS = 16;
+    /**
+     * Default time (in ms) a caller waits for its lookups (30 seconds).
+     */
+    public static final long DEFAULT_LOOKUP_TIMEOUT = 1000L * 30L;
+
+    /**
+     * Time (in ms) a resolved address is cached.
+     */
+    private final long ttl;
+    /**
+     * Time (in ms) an unknown host is cached.
+     */
+    private final long negativeTtl;
+    /**
+     * The cache of host names. It is ordered by access, i.e., the least recently
+     * used host is removed if the cache exceeds its maximum size.
+     */
+    private final Map<String, CacheEntry> cache;
+    /**
+     * The lookups that are currently running.
+     */
+    private final ConcurrentMap<String, Lookup> runningLookups = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    /**
+     * Time (in ms) a caller waits for its lookups. The hosts whose lookups
+     * are not done within this time are treated as unknown by this caller.
+     */
+    private volatile long lookupTimeout = DEFAULT_LOOKUP_TIMEOUT;
+
+    /**
+     * Constructor using the default values.
+     */
+    public CachingDnsResolver() {
+        this(DEFAULT_TTL, DEFAULT_NEGATIVE_TTL, DEFAULT_MAX_CACHE_SIZE, DEFAULT_NUMBER_OF_THREADS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param ttl
+     *            time (in ms) a resolved address is cached
+     * @param negativeTtl
+     *            time (in ms) an unknown host is cached
+     * @param maxCacheSize
+     *            maximum number of cached hosts
+     * @param numberOfThreads
+     *            number of threads that resolve host names in parallel
+     */
+    public CachingDnsResolver(long ttl, long negativeTtl, final int maxCacheSize, int numberOfThreads) {
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Entry<String, CacheEntry> eldest) {
+                return size() > maxCacheSize;
+            }
+        };
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(numberOfThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "dns-resolver-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Resolves the given host name.
+     *
+     * @param host
+     *            the host name that should be resolved
+     * @return the IP address of the host
+     * @throws UnknownHostException
+     *             if the host could not be resolved (now or within the last
+     *             {@link #negativeTtl} ms)
+     */
+    public InetAddress resolve(String host) throws UnknownHostException {
+        if (host == null) {
+            throw new UnknownHostException("The URI has no host.");
+        }
+        CacheEntry entry = getCachedEntry(host);
+        if (entry != null) {
+            return entry.getAddress(host);
+        }
+        return awaitLookup(host, startLookup(host), System.currentTimeMillis() + lookupTimeout);
+    }
+
+    /**
+     * Resolves the given host names. The hosts that are not cached are resolved
+     * in parallel.
+     *
+     * @param hosts
+     *            the host names that should be resolved (may contain
+     *            duplicates)
+     * @return a mapping of the host names that could be resolved to their IP
+     *         addresses
+     */
+    public Map<String, InetAddress> resolveAll(Collection<String> hosts) {
+        Map<String, InetAddress> addresses = new HashMap<>();
+        Map<String, Future<InetAddress>> lookups = new HashMap<>();
+        CacheEntry entry;
+        for (String host : hosts) {
+            if ((host == null) || addresses.containsKey(host) || lookups.containsKey(host)) {
+                continue;
+            }
+            entry = getCachedEntry(host);
+            if (entry == null) {
+                lookups.put(host, startLookup(host));
+            } else if (entry.address != null) {
+                addresses.put(host, entry.address);
+            }
+        }
+        // all lookups run in parallel, i.e., they share a single deadline
+        long deadline = System.currentTimeMillis() + lookupTimeout;
+        for (Entry<String, Future<InetAddress>> lookup : lookups.entrySet()) {
+            try {
+                addresses.put(lookup.getKey(), awaitLookup(lookup.getKey(), lookup.getValue(), deadline));
+            } catch (UnknownHostException e) {
+                // the host is not part of the result
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * Sets the IP addresses of the given URIs. The distinct hosts of the URIs
+     * are resolved in parallel. If the host of a URI can not be resolved, its
+     * IP address is not changed.
+     *
+     * @param uris
+     *            the URIs whose IP addresses should be determined
+     */
+    public void resolveIpAddresses(Collection<CrawleableUri> uris) {
+        Map<CrawleableUri, String> hostsOfUris = new LinkedHashMap<>();
+        for (CrawleableUri uri : uris) {
+            if (uri.getUri() != null) {
+                hostsOfUris.put(uri, uri.getUri().getHost());
+            }
+        }
+        Map<String, InetAddress> addresses = resolveAll(hostsOfUris.values());
+        InetAddress address;
+        for (Entry<CrawleableUri, String> uriAndHost : hostsOfUris.entrySet()) {
+            address = addresses.get(uriAndHost.getValue());
+            if (address != null) {
+                uriAndHost.getKey().setIpAddress(address);
+            } else {
+                LOGGER.error("Could not recognize IP for {}, unknown host", uriAndHost.getKey().getUri());
+            }
+        }
+    }
+
+    /**
+     * Looks up the IP address of the given host. This method is executed by
+     * the resolver threads.
+     *
+     * @param host
+     *            the host name that should be resolved
+     * @return the IP address of the host
+     * @throws UnknownHostException
+     *             if the host can not be resolved
+     */
+    protected InetAddress lookup(String host) throws UnknownHostException {
+        return InetAddress.getByName(host);
+    }
+
+    private CacheEntry getCachedEntry(String host) {
+        synchronized (cache) {
+            CacheEntry entry = cache.get(host);
+            if ((entry != null) && (entry.expiresAt < System.currentTimeMillis())) {
+                cache.remove(host);
+                entry = null;
+            }
+            return entry;
+        }
+    }
+
+    private void cache(String host, InetAddress address) {
+        CacheEntry entry = new CacheEntry(address,
+                System.currentTimeMillis() + ((address != null) ? ttl : negativeTtl));
+        synchronized (cache) {
+            cache.put(host, entry);
+        }
+    }
+
+    /**
+     * Returns the running lookup of the given host or starts a new one.
+     */
+    private Future<InetAddress> startLookup(String host) {
+        Lookup lookup = runningLookups.get(host);
+        if (lookup == null) {
+            Lookup newLookup = new Lookup(host);
+            lookup = runningLookups.putIfAbsent(host, newLookup);
+            if (lookup == null) {
+                lookup = newLookup;
+                try {
+                    executor.execute(lookup);
+                } catch (RejectedExecutionException e) {
+                    // the resolver has been closed
+                    lookup.cancel(false);
+                }
+            }
+        }
+        return lookup;
+    }
+
+    private InetAddress awaitLookup(String host, Future<InetAddress> lookup, long deadline)
+            throws UnknownHostException {
+        try {
+            return lookup.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // the lookup keeps running and caches its result
+            throw new UnknownHostException(host + " (lookup timed out)");
+        } catch (CancellationException e) {
+            throw new UnknownHostException(host + " (the resolver has been closed)");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnknownHostException) {
+                throw (UnknownHostException) e.getCause();
+            }
+            UnknownHostException exception = new UnknownHostException(host);
+            exception.initCause(e.getCause());
+            throw exception;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnknownHostException(host + " (interrupted while waiting for the lookup)");
+        }
+    }
+
+    /**
+     * @return the number of cached hosts (including unknown hosts)
+     */
+    public int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * @return the time (in ms) a caller waits for its lookups
+     */
+    public long getLookupTimeout() {
+        return lookupTimeout;
+    }
+
+    /**
+     * @param lookupTimeout
+     *            the time (in ms) a caller waits for its lookups
+     */
+    public void setLookupTimeout(long lookupTimeout) {
+        this.lookupTimeout = lookupTimeout;
+    }
+
+    /**
+     * Stops the resolver threads. Lookups that have not been started are
+     * cancelled, i.e., callers waiting for them get an
+     * {@link UnknownHostException} instead of waiting forever.
+     */
+    @Override
+    public void close() {
+        List<Runnable> pendingLookups = executor.shutdownNow();
+        for (Runnable lookup : pendingLookups) {
+            if (lookup instanceof Future) {
+                ((Future<?>) lookup).cancel(false);
+            }
+        }
+    }
+
+    /**
+     * A single lookup of a host. The result is cached before the lookup is
+     * removed from the {@link CachingDnsResolver#runningLookups}, i.e., there
+     * is no point in time at which a host is neither cached nor being looked
+     * up.
+     */
+    private class Lookup extends FutureTask<InetAddress> {
+
+        private final String host;
+
+        public Lookup(final String host) {
+            super(() -> {
+                try {
+                    InetAddress address = lookup(host);
+                    cache(host, address);
+                    return address;
+                } catch (UnknownHostException e) {
+                    cache(host, null);
+                    throw e;
+                }
+            });
+            this.host = host;
+        }
+
+        @Override
+        protected void done() {
+            runningLookups.remove(host, this);
+        }
+    }
+
+    /**
+     * A cached address or a cached unknown host (if {@link #address} is
+     * <code>null</code>).
+     */
+    private static class CacheEntry {
+        private final InetAddress address;
+        private final long expiresAt;
+
+        public CacheEntry(InetAddress address, long expiresAt) {
+            this.address = address;
+            this.expiresAt = expiresAt;
+        }
+
+        public InetAddress getAddress(String host) throws UnknownHostException {
+            if (address == null) {
+                throw new UnknownHostException(host);
+            }
+            return address;
+        }
+    }
+}
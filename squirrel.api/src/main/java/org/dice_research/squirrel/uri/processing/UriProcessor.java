@@ -2,7 +2,6 @@ package org.dice_research.squirrel.uri.processing;
 
 import org.dice_research.squirrel.data.uri.CrawleableUri;
 import org.dice_research.squirrel.data.uri.UriType;
-import org.dice_research.squirrel.data.uri.UriUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -22,40 +21,25 @@ public class UriProcessor implements UriProcessorInterface {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(UriProcessor.class);
 
-    public CrawleableUri recognizeUriType(CrawleableUri uri) {
-        LOGGER.debug("Recognizing type of {}", uri.toString());
-        URI uriString = uri.getUri();
-        String uriPath = uriString.getPath();
-        LOGGER.debug("uriPath is {}", uriPath);
+    /**
+     * The classifier that is used if no other classifier is given.
+     */
+    private static final UriTypeClassifier DEFAULT_CLASSIFIER = UriTypeClassifier.createDefault();
 
-        String[] refDumpRegexps = {".*\\.rdf.*", ".*\\.ttl.*", ".*\\.nt.*", ".*\\.n3.*", ".*\\.zip.*", ".*\\.tar.*"};
-        String[] snarlRegexps = {".*sparql.*"};
-        String[] differentiableRegexps = {".*htm.*", ".*page.*", ".*resource.*"};
+    private final UriTypeClassifier classifier;
 
-        try {
-            if ((uriPath != null) && (this.isStringMatchRegexps(uriPath, refDumpRegexps))) {
-                LOGGER.debug("uriPath is DUMP");
-                uri.setType(UriType.DUMP);
-            } else if ((uriPath != null) && (this.isStringMatchRegexps(uriPath, snarlRegexps))) {
-                LOGGER.debug("uriPath is SPARQL");
-                uri.setType(UriType.SPARQL);
-            } else if ((uriPath != null) && (this.isStringMatchRegexps(uriPath, differentiableRegexps))) {
-                LOGGER.debug("uriPath is DEREFERENCEABLE");
-                uri.setType(UriType.DEREFERENCEABLE);
-            } else {
-                LOGGER.debug("uriPath is DEREFERENCEABLE");
-                uri.setType(UriType.DEREFERENCEABLE);
-            }
-        } catch (Exception e) {
-            LOGGER.debug("Uri {} could not be parsed. Skipping...", uri);
-            e.printStackTrace();
-        }
-        LOGGER.debug("uri now is {}", uri.toString());
-        return uri;
+    public UriProcessor() {
+        this(DEFAULT_CLASSIFIER);
     }
 
-    private boolean isStringMatchRegexps(String string, String[] regexs) {
-        return UriUtils.isStringMatchRegexps(string, regexs);
+    public UriProcessor(UriTypeClassifier classifier) {
+        this.classifier = classifier;
+    }
+
+    public CrawleableUri recognizeUriType(CrawleableUri uri) {
+        uri.setType(classifier.classify(uri.getUri()));
+        LOGGER.trace("Type of {} is {}", uri, uri.getType());
+        return uri;
     }
 
     public CrawleableUri recognizeInetAddress(CrawleableUri uri) throws UnknownHostException {
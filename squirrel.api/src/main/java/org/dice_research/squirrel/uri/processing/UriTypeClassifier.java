@@ -0,0 +1,126 @@
+package org.dice_research.squirrel.uri.processing;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import org.dice_research.squirrel.data.uri.UriType;
+
+/**
+ * <p>
+ * Determines the {@link UriType} of a URI based on keywords in its path. The
+ * rules are checked in the order they have been added. The first rule with a
+ * keyword that is contained in the path determines the type. If no rule
+ * matches, the default type is used.
+ * </p>
+ *
+ * <p>
+ * A keyword like <code>".ttl"</code> behaves like the regular expression
+ * <code>".*\\.ttl.*"</code>. The classifier can be shared between threads once
+ * its rules have been added.
+ * </p>
+ */
+public class UriTypeClassifier {
+
+    /**
+     * Keywords of dump files.
+     */
+    public static final String[] DEFAULT_DUMP_KEYWORDS = { ".rdf", ".ttl", ".nt", ".n3", ".zip", ".tar" };
+    /**
+     * Keywords of SPARQL endpoints.
+     */
+    public static final String[] DEFAULT_SPARQL_KEYWORDS = { "sparql" };
+    /**
+     * Keywords of dereferenceable URIs.
+     */
+    public static final String[] DEFAULT_DEREFERENCEABLE_KEYWORDS = { "htm", "page", "resource" };
+
+    private final UriType defaultType;
+    private volatile Rule[] rules = new Rule[0];
+
+    /**
+     * Constructor.
+     *
+     * @param defaultType
+     *            the type of URIs that do not match any rule
+     */
+    public UriTypeClassifier(UriType defaultType) {
+        this.defaultType = defaultType;
+    }
+
+    /**
+     * Creates a classifier with the rules that have been used by the
+     * {@link UriProcessor} before.
+     *
+     * @return the default classifier
+     */
+    public static UriTypeClassifier createDefault() {
+        return new UriTypeClassifier(UriType.DEREFERENCEABLE).addRule(UriType.DUMP, DEFAULT_DUMP_KEYWORDS)
+                .addRule(UriType.SPARQL, DEFAULT_SPARQL_KEYWORDS)
+                .addRule(UriType.DEREFERENCEABLE, DEFAULT_DEREFERENCEABLE_KEYWORDS);
+    }
+
+    /**
+     * Adds a rule that assigns the given type to all URIs with a path that
+     * contains one of the given keywords.
+     *
+     * @param type
+     *            the type of the URIs matching the rule
+     * @param keywords
+     *            the keywords of the rule
+     * @return this classifier
+     */
+    public synchronized UriTypeClassifier addRule(UriType type, String... keywords) {
+        if (keywords.length == 0) {
+            throw new IllegalArgumentException("A rule needs at least one keyword.");
+        }
+        Rule[] newRules = Arrays.copyOf(rules, rules.length + 1);
+        newRules[rules.length] = new Rule(type, Arrays.copyOf(keywords, keywords.length));
+        rules = newRules;
+        return this;
+    }
+
+    /**
+     * Determines the type of the given URI.
+     *
+     * @param uri
+     *            the URI that should be classified
+     * @return the type of the URI
+     */
+    public UriType classify(URI uri) {
+        return classify(uri.getPath());
+    }
+
+    /**
+     * Determines the type of a URI with the given path.
+     *
+     * @param path
+     *            the path of the URI (might be <code>null</code>)
+     * @return the type of the URI
+     */
+    public UriType classify(String path) {
+        if (path == null) {
+            return defaultType;
+        }
+        Rule[] rules = this.rules;
+        String[] keywords;
+        for (int i = 0; i < rules.length; ++i) {
+            keywords = rules[i].keywords;
+            for (int j = 0; j < keywords.length; ++j) {
+                if (path.indexOf(keywords[j]) >= 0) {
+                    return rules[i].type;
+                }
+            }
+        }
+        return defaultType;
+    }
+
+    private static class Rule {
+        private final UriType type;
+        private final String[] keywords;
+
+        public Rule(UriType type, String[] keywords) {
+            this.type = type;
+            this.keywords = keywords;
+        }
+    }
+}
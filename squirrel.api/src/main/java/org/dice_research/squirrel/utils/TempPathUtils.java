@@ -1,6 +1,10 @@
 package org.dice_research.squirrel.utils;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -26,5 +30,26 @@ public class TempPathUtils {
         return listFiles;
     }
 
+    /**
+     * Writes the remaining data of the given stream into a new temporary file.
+     * The stream is not closed.
+     *
+     * @param data
+     *            the data that should be written
+     * @return the temporary file containing the data
+     * @throws IOException
+     *             if the file can not be created or written
+     */
+    public static File writeToTempFile(InputStream data) throws IOException {
+        File tempFile = File.createTempFile("fetched_", "");
+        try {
+            Files.copy(data, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+        return tempFile;
+    }
+
 
 }
@@ -4,20 +4,27 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.FileUtils;
-import org.dice_research.squirrel.Constants;
+import org.dice_research.squirrel.configurator.CheckpointConfiguration;
+import org.dice_research.squirrel.configurator.KnownUriFilterConfiguration;
+import org.dice_research.squirrel.configurator.MessageLaneConfiguration;
 import org.dice_research.squirrel.configurator.MongoConfiguration;
+import org.dice_research.squirrel.configurator.QueueConfiguration;
 import org.dice_research.squirrel.configurator.SeedConfiguration;
+import org.dice_research.squirrel.configurator.ShardingConfiguration;
 import org.dice_research.squirrel.configurator.WebConfiguration;
 import org.dice_research.squirrel.configurator.WhiteListConfiguration;
 import org.dice_research.squirrel.data.uri.CrawleableUri;
 import org.dice_research.squirrel.data.uri.UriUtils;
-import org.dice_research.squirrel.data.uri.filter.InMemoryKnownUriFilter;
+import org.dice_research.squirrel.data.uri.filter.BloomFilterKnownUriFilter;
+import org.dice_research.squirrel.data.uri.filter.FingerprintKnownUriFilter;
 import org.dice_research.squirrel.data.uri.filter.KnownUriFilter;
 import org.dice_research.squirrel.data.uri.filter.MongoDBKnowUriFilter;
 import org.dice_research.squirrel.data.uri.filter.RegexBasedWhiteListFilter;
@@ -25,25 +32,42 @@ import org.dice_research.squirrel.data.uri.info.URIReferences;
 import org.dice_research.squirrel.data.uri.norm.NormalizerImpl;
 import org.dice_research.squirrel.data.uri.serialize.Serializer;
 import org.dice_research.squirrel.data.uri.serialize.java.GzipJavaUriSerializer;
+import org.dice_research.squirrel.data.uri.serialize.java.SnappyJavaUriSerializer;
 import org.dice_research.squirrel.frontier.ExtendedFrontier;
 import org.dice_research.squirrel.frontier.Frontier;
 import org.dice_research.squirrel.frontier.impl.ExtendedFrontierImpl;
+import org.dice_research.squirrel.frontier.impl.FrontierCheckpoint;
 import org.dice_research.squirrel.frontier.impl.FrontierImpl;
 import org.dice_research.squirrel.frontier.impl.FrontierSenderToWebservice;
 import org.dice_research.squirrel.frontier.impl.QueueBasedTerminationCheck;
 import org.dice_research.squirrel.frontier.impl.TerminationCheck;
 import org.dice_research.squirrel.frontier.impl.WorkerGuard;
+import org.dice_research.squirrel.frontier.sharding.ConsistentHashRing;
+import org.dice_research.squirrel.frontier.sharding.ShardTerminationDetector;
+import org.dice_research.squirrel.queue.AbstractIpAddressBasedQueue;
 import org.dice_research.squirrel.queue.InMemoryQueue;
 import org.dice_research.squirrel.queue.IpAddressBasedQueue;
 import org.dice_research.squirrel.queue.MongoDBQueue;
+import org.dice_research.squirrel.queue.SegmentFileQueue;
+import org.dice_research.squirrel.queue.TieredQueueDecorator;
+import org.dice_research.squirrel.queue.scheduling.OldestFirstSchedulingPolicy;
+import org.dice_research.squirrel.queue.scheduling.RoundRobinSchedulingPolicy;
+import org.dice_research.squirrel.queue.scheduling.SchedulingPolicy;
+import org.dice_research.squirrel.queue.scheduling.WeightedFairSchedulingPolicy;
 import org.dice_research.squirrel.rabbit.RPCServer;
 import org.dice_research.squirrel.rabbit.RespondingDataHandler;
 import org.dice_research.squirrel.rabbit.ResponseHandler;
 import org.dice_research.squirrel.rabbit.msgs.CrawlingResult;
+import org.dice_research.squirrel.rabbit.msgs.ForwardedUriSet;
+import org.dice_research.squirrel.rabbit.msgs.LeaseExtension;
+import org.dice_research.squirrel.rabbit.msgs.ShardStatus;
 import org.dice_research.squirrel.rabbit.msgs.UriSet;
 import org.dice_research.squirrel.rabbit.msgs.UriSetRequest;
+import org.dice_research.squirrel.utils.Closer;
 import org.dice_research.squirrel.worker.AliveMessage;
 import org.hobbit.core.components.AbstractComponent;
+import org.hobbit.core.rabbit.DataSender;
+import org.hobbit.core.rabbit.DataSenderImpl;
 import org.hobbit.core.data.RabbitQueue;
 import org.hobbit.core.rabbit.DataReceiver;
 import org.slf4j.Logger;
@@ -59,29 +83,110 @@ public class FrontierComponent extends AbstractComponent implements RespondingDa
     private Frontier frontier;
     private RabbitQueue rabbitQueue;
     private DataReceiver receiver;
+    /**
+     * Queue and receiver for the requests of workers. They have their own
+     * receiver since the receiver of the main queue is blocked while the
+     * ingestion lane is full.
+     */
+    private RabbitQueue requestRabbitQueue;
+    private DataReceiver requestReceiver;
     private Serializer serializer;
+    /**
+     * Lane for requests of workers (requests for URIs, lease extensions and
+     * alive messages) and status messages of other shards.
+     */
+    private MessageLane requestLane;
+    /**
+     * Lane for new URIs and crawling results.
+     */
+    private MessageLane ingestionLane;
+    /**
+     * The id of this frontier if the hosts are distributed over several
+     * frontier instances.
+     */
+    private int shardId = 0;
+    /**
+     * Assigns the hosts to the frontier instances.
+     */
+    private ConsistentHashRing shardRing;
+    /**
+     * Senders used to forward new URIs to the other frontier instances (the
+     * sender of this instance is null).
+     */
+    private DataSender[] shardSenders;
+    /**
+     * Decides together with the other shards whether the crawling is finished
+     * or null if the frontier is not sharded.
+     */
+    private ShardTerminationDetector terminationDetector = null;
+    /**
+     * The number of {@link ForwardedUriSet}s this shard sent to other shards.
+     */
+    private final AtomicLong forwardedUriSets = new AtomicLong();
+    /**
+     * The number of {@link ForwardedUriSet}s this shard received and
+     * processed.
+     */
+    private final AtomicLong receivedUriSets = new AtomicLong();
+    /**
+     * Checkpoints of the in-memory queue and filter or null if no checkpoints
+     * are written.
+     */
+    private FrontierCheckpoint checkpoint = null;
     private final Semaphore terminationMutex = new Semaphore(0);
     private final WorkerGuard workerGuard = new WorkerGuard(this);
     private final boolean doRecrawling = true;
     private long recrawlingTime = 1000L * 60L * 60L * 24L * 30;
 
     public static final boolean RECRAWLING_ACTIVE = true;
+    /**
+     * Time (in ms) between two checks whether the white list file has been
+     * changed.
+     */
+    private static final long WHITE_LIST_RELOAD_PERIOD = 60000;
+    /**
+     * Time (in ms) between two log messages with the metrics of the message
+     * lanes.
+     */
+    private static final long LANE_METRICS_PERIOD = 60000;
 
     @Override
     public void init() throws Exception {
         super.init();
         serializer = new GzipJavaUriSerializer();
+        ShardingConfiguration shardingConfiguration = ShardingConfiguration.getShardingConfiguration();
+        shardId = shardingConfiguration.getShardId();
+        shardRing = shardingConfiguration.createRing();
         MongoConfiguration mongoConfiguration = MongoConfiguration.getMDBConfiguration();
+        QueueConfiguration queueConfiguration = QueueConfiguration.getQueueConfiguration();
         WebConfiguration webConfiguration = WebConfiguration.getWebConfiguration();
         if (mongoConfiguration != null) {
             String dbHostName = mongoConfiguration.getMDBHostName();
             Integer dbPort = mongoConfiguration.getMDBPort();
             queue = new MongoDBQueue(dbHostName, dbPort, serializer);
-            ((MongoDBQueue) queue).open();
+            if (queueConfiguration.getSchedulingPolicy() != null) {
+                LOGGER.warn("The MongoDBQueue does not support scheduling policies. {} will be ignored.",
+                        queueConfiguration.getSchedulingPolicy());
+            }
 
             knownUriFilter = new MongoDBKnowUriFilter(dbHostName, dbPort);
             ((MongoDBKnowUriFilter) knownUriFilter).open();
 
+            KnownUriFilterConfiguration filterConfiguration = KnownUriFilterConfiguration
+                    .getKnownUriFilterConfiguration();
+            if (filterConfiguration.isBloomFilterEnabled()) {
+                // the bloom filter has to be directly on top of the database
+                knownUriFilter = new BloomFilterKnownUriFilter(knownUriFilter,
+                        filterConfiguration.getBloomFilterCapacity() != null
+                                ? filterConfiguration.getBloomFilterCapacity()
+                                : BloomFilterKnownUriFilter.DEFAULT_INITIAL_CAPACITY,
+                        BloomFilterKnownUriFilter.DEFAULT_FALSE_POSITIVE_PROBABILITY,
+                        filterConfiguration.getBloomFilterSnapshotFile() != null
+                                ? new File(filterConfiguration.getBloomFilterSnapshotFile())
+                                : null,
+                        BloomFilterKnownUriFilter.DEFAULT_SNAPSHOT_INTERVAL);
+            }
+
             WhiteListConfiguration whiteListConfiguration = WhiteListConfiguration.getWhiteListConfiguration();
             if (whiteListConfiguration != null) {
                 File whitelistFile = new File(whiteListConfiguration.getWhiteListURI());
@@ -94,17 +199,76 @@ public class FrontierComponent extends AbstractComponent implements RespondingDa
             // uriReferences.open();
             // }
         } else {
-            LOGGER.warn("Couldn't get MDBConfiguration. An in-memory queue will be used.");
-            queue = new InMemoryQueue();
-            knownUriFilter = new InMemoryKnownUriFilter(doRecrawling, recrawlingTime);
+            SchedulingPolicy schedulingPolicy = createSchedulingPolicy(queueConfiguration.getSchedulingPolicy());
+            if (queueConfiguration.getSegmentDirectory() != null) {
+                LOGGER.warn("Couldn't get MDBConfiguration. A segment file based queue will be used.");
+                queue = new SegmentFileQueue(new File(queueConfiguration.getSegmentDirectory()), serializer,
+                        SegmentFileQueue.DEFAULT_SEGMENT_SIZE, schedulingPolicy);
+            } else {
+                LOGGER.warn("Couldn't get MDBConfiguration. An in-memory queue will be used.");
+                queue = new InMemoryQueue(schedulingPolicy);
+            }
+            // the URIs have to be stored if they should be recrawled
+            knownUriFilter = new FingerprintKnownUriFilter(doRecrawling, recrawlingTime, doRecrawling);
+            CheckpointConfiguration checkpointConfiguration = CheckpointConfiguration.getCheckpointConfiguration();
+            if (checkpointConfiguration.getDirectory() != null) {
+                if (queue instanceof InMemoryQueue) {
+                    checkpoint = new FrontierCheckpoint(new File(checkpointConfiguration.getDirectory()),
+                            (InMemoryQueue) queue, (FingerprintKnownUriFilter) knownUriFilter,
+                            new SnappyJavaUriSerializer(),
+                            checkpointConfiguration.getInterval() != null ? checkpointConfiguration.getInterval()
+                                    : FrontierCheckpoint.DEFAULT_SNAPSHOT_INTERVAL);
+                    // restore the state before the frontier starts to work
+                    checkpoint.open();
+                } else {
+                    LOGGER.warn("Checkpoints are only supported for the in-memory queue. They will be ignored.");
+                }
+            }
+        }
+        if ((queueConfiguration.getMaxChunkSize() != null) && (queue instanceof AbstractIpAddressBasedQueue)) {
+            ((AbstractIpAddressBasedQueue) queue).setMaxChunkSize(queueConfiguration.getMaxChunkSize());
+        }
+        if ((queueConfiguration.getLeaseDuration() != null) && (queue instanceof AbstractIpAddressBasedQueue)) {
+            ((AbstractIpAddressBasedQueue) queue).setLeaseDuration(queueConfiguration.getLeaseDuration());
         }
+        if (queueConfiguration.getHotTierSize() != null) {
+            queue = new TieredQueueDecorator(queue, queueConfiguration.getHotTierSize(),
+                    TieredQueueDecorator.DEFAULT_REFILL_INTERVAL);
+        }
+
+        // Build frontier (it opens the queue)
+        ExtendedFrontierImpl extendedFrontier = new ExtendedFrontierImpl(new NormalizerImpl(), knownUriFilter,
+                uriReferences, queue, doRecrawling);
+        extendedFrontier.setCheckpoint(checkpoint);
+        frontier = extendedFrontier;
 
-        // Build frontier
-        frontier = new ExtendedFrontierImpl(new NormalizerImpl(), knownUriFilter, uriReferences, queue, doRecrawling);
+        MessageLaneConfiguration laneConfiguration = MessageLaneConfiguration.getMessageLaneConfiguration();
+        requestLane = new MessageLane("request", laneConfiguration.getRequestLaneThreads(),
+                laneConfiguration.getRequestLaneCapacity());
+        ingestionLane = new MessageLane("ingestion", laneConfiguration.getIngestionLaneThreads(),
+                laneConfiguration.getIngestionLaneCapacity());
 
-        rabbitQueue = this.incomingDataQueueFactory.createDefaultRabbitQueue(Constants.FRONTIER_QUEUE_NAME);
+        rabbitQueue = this.incomingDataQueueFactory
+                .createDefaultRabbitQueue(shardingConfiguration.getFrontierQueueName(shardId));
+        shardSenders = new DataSender[shardRing.getNumberOfShards()];
+        if (shardingConfiguration.isSharded()) {
+            LOGGER.info("This frontier is shard {} of {}.", shardId, shardRing.getNumberOfShards());
+            terminationDetector = new ShardTerminationDetector(shardRing.getNumberOfShards());
+            for (int i = 0; i < shardSenders.length; ++i) {
+                if (i != shardId) {
+                    shardSenders[i] = DataSenderImpl.builder()
+                            .queue(outgoingDataQueuefactory, shardingConfiguration.getFrontierQueueName(i)).build();
+                }
+            }
+        }
         receiver = (new RPCServer.Builder()).responseQueueFactory(outgoingDataQueuefactory).dataHandler(this)
                 .maxParallelProcessedMsgs(100).queue(rabbitQueue).build();
+        requestRabbitQueue = this.incomingDataQueueFactory
+                .createDefaultRabbitQueue(shardingConfiguration.getFrontierRequestQueueName(shardId));
+        requestReceiver = (new RPCServer.Builder()).responseQueueFactory(outgoingDataQueuefactory).dataHandler(this)
+                .maxParallelProcessedMsgs(
+                        laneConfiguration.getRequestLaneThreads() + laneConfiguration.getRequestLaneCapacity())
+                .queue(requestRabbitQueue).build();
 
         SeedConfiguration seedConfiguration = SeedConfiguration.getSeedConfiguration();
         if (seedConfiguration != null) {
@@ -136,6 +300,23 @@ public class FrontierComponent extends AbstractComponent implements RespondingDa
         TimerTask terminatorTask = new TerminatorTask(queue, terminationMutex);
         Timer timer = new Timer();
         timer.schedule(terminatorTask, 10000,60000);
+        if (knownUriFilter instanceof RegexBasedWhiteListFilter) {
+            // check regularly whether the white list file has been changed
+            RegexBasedWhiteListFilter whiteListFilter = (RegexBasedWhiteListFilter) knownUriFilter;
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    whiteListFilter.reloadIfChanged();
+                }
+            }, WHITE_LIST_RELOAD_PERIOD, WHITE_LIST_RELOAD_PERIOD);
+        }
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                LOGGER.info("{}", requestLane);
+                LOGGER.info("{}", ingestionLane);
+            }
+        }, LANE_METRICS_PERIOD, LANE_METRICS_PERIOD);
         terminationMutex.acquire();
         timer.cancel();
     }
@@ -146,7 +327,22 @@ public class FrontierComponent extends AbstractComponent implements RespondingDa
         if (receiver != null)
             // Force the receiver to close
             receiver.close();
+        if (requestReceiver != null)
+            requestReceiver.close();
         // receiver.closeWhenFinished();
+        if (requestLane != null)
+            requestLane.close();
+        if (ingestionLane != null)
+            ingestionLane.close();
+        if (shardSenders != null) {
+            for (DataSender sender : shardSenders) {
+                Closer.close(sender, LOGGER);
+            }
+        }
+        if (checkpoint != null) {
+            // write a last snapshot after the lanes stopped changing the queue
+            Closer.close(checkpoint, LOGGER);
+        }
         if (queue != null)
             queue.close();
         if (uriReferences != null)
@@ -188,27 +384,126 @@ public class FrontierComponent extends AbstractComponent implements RespondingDa
 
         if (deserializedData != null) {
             LOGGER.warn("Got a message (\"{}\").", deserializedData.toString());
+            // Requests of workers are processed in their own lane, i.e., they
+            // do not have to wait for the processing of new URIs. Both
+            // receivers accept all messages to support workers that send their
+            // requests to the main queue.
             if (deserializedData instanceof UriSetRequest) {
-                responseToUriSetRequest(handler, responseQueueName, correlId, (UriSetRequest) deserializedData);
+                UriSetRequest request = (UriSetRequest) deserializedData;
+                requestLane.execute(() -> responseToUriSetRequest(handler, responseQueueName, correlId, request));
+            } else if (deserializedData instanceof ForwardedUriSet) {
+                ForwardedUriSet uriSet = (ForwardedUriSet) deserializedData;
+                LOGGER.debug("Received {} URIs from shard {}.", uriSet.uris.size(), uriSet.sourceShard);
+                ingestionLane.execute(() -> {
+                    try {
+                        // the URIs belong to this shard
+                        frontier.addNewUris(uriSet.uris);
+                    } finally {
+                        // count the set after it reached the queue
+                        receivedUriSets.incrementAndGet();
+                    }
+                });
+            } else if (deserializedData instanceof ShardStatus) {
+                ShardStatus status = (ShardStatus) deserializedData;
+                LOGGER.debug("Received {}.", status);
+                requestLane.execute(() -> handleShardStatus(status));
             } else if (deserializedData instanceof UriSet) {
-                LOGGER.warn("Received a set of URIs (size={}).", ((UriSet) deserializedData).uris.size());
-                frontier.addNewUris(((UriSet) deserializedData).uris);
+                UriSet uriSet = (UriSet) deserializedData;
+                LOGGER.warn("Received a set of URIs (size={}).", uriSet.uris.size());
+                ingestionLane.execute(() -> addNewUris(uriSet.uris));
             } else if (deserializedData instanceof CrawlingResult) {
                 CrawlingResult crawlingResult = (CrawlingResult) deserializedData;
                 LOGGER.warn("Received the message that the crawling for {} URIs is done.", crawlingResult.uris.size());
-                frontier.crawlingDone(crawlingResult.uris);
-                workerGuard.removeUrisForWorker(crawlingResult.idOfWorker, crawlingResult.uris);
+                ingestionLane.execute(() -> {
+                    frontier.crawlingDone(crawlingResult.uris);
+                    workerGuard.removeUrisForWorker(crawlingResult.idOfWorker, crawlingResult.uris);
+                });
+            } else if (deserializedData instanceof LeaseExtension) {
+                LeaseExtension extension = (LeaseExtension) deserializedData;
+                LOGGER.debug("Received a lease extension for {} URIs.", extension.uris.size());
+                requestLane.execute(() -> frontier.extendLease(extension.uris));
             } else if (deserializedData instanceof AliveMessage) {
-                AliveMessage message = (AliveMessage) deserializedData;
-                String idReceived = message.getWorkerId();
+                String idReceived = ((AliveMessage) deserializedData).getWorkerId();
                 LOGGER.warn("Received alive message from worker with id " + idReceived);
-                workerGuard.putNewTimestamp(idReceived);
+                requestLane.execute(() -> workerGuard.putNewTimestamp(idReceived));
             } else {
                 LOGGER.warn("Received an unknown object {}. It will be ignored.", deserializedData.toString());
             }
         }
     }
 
+    /**
+     * Adds the given URIs to the frontier. If the frontier is sharded, URIs of
+     * IP addresses that belong to other shards are forwarded to these shards.
+     *
+     * @param uris
+     *            the new URIs
+     */
+    protected void addNewUris(List<CrawleableUri> uris) {
+        if (shardRing.getNumberOfShards() == 1) {
+            frontier.addNewUris(uris);
+            return;
+        }
+        List<List<CrawleableUri>> partitions = partition(uris);
+        for (int i = 0; i < partitions.size(); ++i) {
+            if ((i != shardId) && !partitions.get(i).isEmpty()) {
+                try {
+                    shardSenders[i].sendData(serializer.serialize(new ForwardedUriSet(partitions.get(i), shardId)));
+                    forwardedUriSets.incrementAndGet();
+                } catch (IOException e) {
+                    LOGGER.error("Couldn't forward " + partitions.get(i).size() + " URIs to shard " + i
+                            + ". They will be ignored.", e);
+                }
+            }
+        }
+        if (!partitions.get(shardId).isEmpty()) {
+            frontier.addNewUris(partitions.get(shardId));
+        }
+    }
+
+    /**
+     * Resolves the IP addresses of the given URIs before they are assigned to
+     * the shards. The shards own IP addresses, i.e., all URIs of a server are
+     * crawled by the same shard and its politeness covers all host names of
+     * this server. URIs which IP address can not be resolved are assigned by
+     * their host.
+     *
+     * @param uris
+     *            the URIs that should be assigned to the shards
+     * @return the URIs of every shard
+     */
+    protected List<List<CrawleableUri>> partition(List<CrawleableUri> uris) {
+        if (frontier instanceof FrontierImpl) {
+            List<CrawleableUri> urisWithoutIp = new ArrayList<>();
+            for (CrawleableUri uri : uris) {
+                if (uri.getIpAddress() == null) {
+                    urisWithoutIp.add(uri);
+                }
+            }
+            if (!urisWithoutIp.isEmpty()) {
+                ((FrontierImpl) frontier).getDnsResolver().resolveIpAddresses(urisWithoutIp);
+            }
+        }
+        return shardRing.partition(uris);
+    }
+
+    /**
+     * Updates the {@link #terminationDetector} with the status of another
+     * shard. If this shard decided to terminate, this shard terminates as
+     * well.
+     */
+    private void handleShardStatus(ShardStatus status) {
+        if (terminationDetector == null) {
+            LOGGER.warn("Got {} although this frontier is not sharded. It will be ignored.", status);
+            return;
+        }
+        terminationDetector.update(status);
+        if (status.terminating) {
+            LOGGER.info("Shard {} decided that the crawling is finished. Terminating.", status.shardId);
+            terminationMutex.release();
+        }
+    }
+
     private void responseToUriSetRequest(ResponseHandler handler, String responseQueueName, String correlId,
             UriSetRequest uriSetRequest) {
         if (handler != null) {
@@ -233,12 +528,37 @@ public class FrontierComponent extends AbstractComponent implements RespondingDa
     protected void processSeedFile(String seedFile) {
         try {
             List<String> lines = FileUtils.readLines(new File(seedFile), StandardCharsets.UTF_8);
-            frontier.addNewUris(UriUtils.createCrawleableUriList(lines));
+            // every shard reads the seed file and keeps only its own URIs
+            List<CrawleableUri> seeds = UriUtils.createCrawleableUriList(lines);
+            if (shardRing.getNumberOfShards() > 1) {
+                seeds = partition(seeds).get(shardId);
+            }
+            frontier.addNewUris(seeds);
         } catch (Exception e) {
             LOGGER.error("Couldn't process seed file. It will be ignored.", e);
         }
     }
 
+    /**
+     * Creates the scheduling policy with the given name. If the name is null or
+     * unknown, a {@link RoundRobinSchedulingPolicy} is used.
+     */
+    protected static SchedulingPolicy createSchedulingPolicy(String name) {
+        if (name != null) {
+            switch (name.trim().toLowerCase()) {
+            case "weighted-fair":
+                return new WeightedFairSchedulingPolicy();
+            case "oldest-first":
+                return new OldestFirstSchedulingPolicy();
+            case "round-robin":
+                break;
+            default:
+                LOGGER.warn("Unknown scheduling policy \"{}\". Round-robin will be used.", name);
+            }
+        }
+        return new RoundRobinSchedulingPolicy();
+    }
+
     public void informFrontierAboutDeadWorker(String idOfWorker, List<CrawleableUri> lstUrisToReassign) {
         if (frontier instanceof ExtendedFrontier) {
             ((ExtendedFrontier) frontier).informAboutDeadWorker(idOfWorker, lstUrisToReassign);
@@ -253,11 +573,23 @@ public class FrontierComponent extends AbstractComponent implements RespondingDa
         return workerGuard;
     }
     
+    /**
+     * Checks regularly whether the crawling is finished. If the frontier is
+     * sharded, a single shard can not decide this on its own since the other
+     * shards may still forward new URIs to it. In this case, the task sends
+     * the status of this shard to all other shards and all shards terminate
+     * together if the {@link ShardTerminationDetector} allows it. Messages of
+     * workers that are still on their way are not covered by the detector.
+     * However, a worker only sends such messages while it has a chunk of URIs,
+     * i.e., while the IP address of the chunk is blocked and the shard is not
+     * idle.
+     */
     private class TerminatorTask extends TimerTask{
     	
     	private IpAddressBasedQueue queue;
     	private TerminationCheck terminationCheck = new QueueBasedTerminationCheck();
     	private Semaphore terminationMutex;
+    	private long sequenceNumber = 0;
     	
     	public TerminatorTask(IpAddressBasedQueue queue, Semaphore terminationMutex) {
     		this.queue = queue;
@@ -266,10 +598,43 @@ public class FrontierComponent extends AbstractComponent implements RespondingDa
 
 		@Override
 		public void run() {
-			if(terminationCheck.shouldFrontierTerminate(queue)) {
-	        	LOGGER.error("FRONTIER IS TERMINATING!", new Exception());
-	        	terminationMutex.release();
-	        }			
+			// handle expired leases even if no worker asks for URIs
+			queue.releaseExpiredLeases();
+			// the ingestion lane might still contain new URIs for the queue
+			boolean finished = ingestionLane.isIdle() && terminationCheck.shouldFrontierTerminate(queue);
+			if (terminationDetector == null) {
+			    if (finished) {
+			        LOGGER.info("The crawling is finished. Terminating.");
+			        terminationMutex.release();
+			    }
+			    return;
+			}
+			boolean idle = ingestionLane.isIdle() && queue.isEmpty() && (queue.getNumberOfBlockedIps() == 0);
+			long received = receivedUriSets.get();
+			long forwarded = forwardedUriSets.get();
+			ShardStatus status = new ShardStatus(shardId, ++sequenceNumber, idle, finished, forwarded, received,
+			        false);
+			terminationDetector.update(status);
+			if (terminationDetector.canTerminate()) {
+			    LOGGER.info("All shards finished the crawling. Terminating.");
+			    status = new ShardStatus(shardId, ++sequenceNumber, idle, finished, forwarded, received, true);
+			    sendStatus(status);
+			    terminationMutex.release();
+			} else {
+			    sendStatus(status);
+			}
+		}
+
+		private void sendStatus(ShardStatus status) {
+		    for (int i = 0; i < shardSenders.length; ++i) {
+		        if (shardSenders[i] != null) {
+		            try {
+		                shardSenders[i].sendData(serializer.serialize(status));
+		            } catch (IOException e) {
+		                LOGGER.error("Couldn't send status to shard " + i + ".", e);
+		            }
+		        }
+		    }
 		}
     	
     }
@@ -0,0 +1,253 @@
+package org.dice_research.squirrel.components;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A lane processes a certain kind of incoming messages with its own pool of
+ * threads. The lane counts the processed messages and measures how long they
+ * waited and how long their processing took.
+ *
+ * <p>
+ * Only a limited number of messages can wait in a lane. If the lane is full,
+ * {@link #execute(Runnable)} blocks the calling thread until a message has
+ * been processed. A receiver handing its messages to a full lane stops taking
+ * messages from its queue. Messages that should not wait for each other have
+ * to be received by different receivers.
+ * </p>
+ */
+public class MessageLane implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageLane.class);
+
+    /**
+     * The default time (in ms) {@link #close()} waits for the messages that
+     * have been added before.
+     */
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT = 60000;
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    /**
+     * Permits for the messages that are processed or wait in the lane. A
+     * message takes a permit before it is added and gives it back after its
+     * processing. The queue of the executor can take all permitted messages
+     * since a thread might not have taken the next message when the permit of
+     * its last message is released.
+     */
+    private final Semaphore permits;
+
+    private final AtomicLong processedMessages = new AtomicLong();
+    private final AtomicLong failedMessages = new AtomicLong();
+    private final AtomicLong waitingTimeSum = new AtomicLong();
+    private final AtomicLong maxWaitingTime = new AtomicLong();
+    private final AtomicLong processingTimeSum = new AtomicLong();
+
+    /**
+     * Constructor. The lane can hold as many waiting messages as it has
+     * threads.
+     *
+     * @param name
+     *            the name of the lane (used for its threads and its metrics)
+     * @param numberOfThreads
+     *            the number of messages this lane processes in parallel
+     */
+    public MessageLane(final String name, int numberOfThreads) {
+        this(name, numberOfThreads, numberOfThreads);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            the name of the lane (used for its threads and its metrics)
+     * @param numberOfThreads
+     *            the number of messages this lane processes in parallel
+     * @param capacity
+     *            the number of messages that can wait for a thread of this
+     *            lane
+     */
+    public MessageLane(final String name, int numberOfThreads, int capacity) {
+        if (numberOfThreads < 1) {
+            throw new IllegalArgumentException("A lane needs at least one thread.");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of a lane has to be positive.");
+        }
+        this.name = name;
+        // a fair semaphore keeps the order of blocked callers
+        permits = new Semaphore(numberOfThreads + capacity, true);
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(numberOfThreads + capacity), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, name + "-lane-" + threadCount.incrementAndGet());
+                    }
+                });
+    }
+
+    /**
+     * Adds the given task to this lane. Blocks if the lane is full.
+     *
+     * @param task
+     *            the processing of a single message
+     * @throws RejectedExecutionException
+     *             if the lane has been closed or if the calling thread has been
+     *             interrupted while waiting for the lane
+     */
+    public void execute(final Runnable task) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("The " + name + " lane has been closed.");
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the " + name + " lane.", e);
+        }
+        final long submitTime = System.currentTimeMillis();
+        try {
+            executor.execute(() -> process(task, submitTime));
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void process(Runnable task, long submitTime) {
+        long startTime = System.currentTimeMillis();
+        long waitingTime = startTime - submitTime;
+        waitingTimeSum.addAndGet(waitingTime);
+        maxWaitingTime.accumulateAndGet(waitingTime, Math::max);
+        try {
+            task.run();
+        } catch (Throwable e) {
+            failedMessages.incrementAndGet();
+            LOGGER.error("Exception while processing a message in the " + name + " lane.", e);
+        } finally {
+            processingTimeSum.addAndGet(System.currentTimeMillis() - startTime);
+            processedMessages.incrementAndGet();
+            permits.release();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of messages that wait for a thread of this lane
+     */
+    public int getNumberOfWaitingMessages() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of messages that are currently processed
+     */
+    public int getNumberOfActiveMessages() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return true if no message is waiting or processed
+     */
+    public boolean isIdle() {
+        return (executor.getQueue().size() == 0) && (executor.getActiveCount() == 0);
+    }
+
+    /**
+     * @return the number of messages that have been processed (including
+     *         failed messages)
+     */
+    public long getNumberOfProcessedMessages() {
+        return processedMessages.get();
+    }
+
+    /**
+     * @return the number of messages whose processing caused an exception
+     */
+    public long getNumberOfFailedMessages() {
+        return failedMessages.get();
+    }
+
+    /**
+     * @return the average time (in ms) a message waited for a thread of this
+     *         lane
+     */
+    public double getAverageWaitingTime() {
+        long processed = processedMessages.get();
+        return (processed == 0) ? 0 : ((double) waitingTimeSum.get() / processed);
+    }
+
+    /**
+     * @return the maximum time (in ms) a message waited for a thread of this
+     *         lane
+     */
+    public long getMaxWaitingTime() {
+        return maxWaitingTime.get();
+    }
+
+    /**
+     * @return the average time (in ms) the processing of a message took
+     */
+    public double getAverageProcessingTime() {
+        long processed = processedMessages.get();
+        return (processed == 0) ? 0 : ((double) processingTimeSum.get() / processed);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s lane: processed=%d, failed=%d, waiting=%d, active=%d, avgWaitingTime=%.1fms, maxWaitingTime=%dms, avgProcessingTime=%.1fms",
+                name, getNumberOfProcessedMessages(), getNumberOfFailedMessages(), getNumberOfWaitingMessages(),
+                getNumberOfActiveMessages(), getAverageWaitingTime(), getMaxWaitingTime(),
+                getAverageProcessingTime());
+    }
+
+    /**
+     * Stops this lane after the messages that have been added before have been
+     * processed. Waits at most {@link #DEFAULT_SHUTDOWN_TIMEOUT} ms.
+     */
+    @Override
+    public void close() {
+        shutdown(DEFAULT_SHUTDOWN_TIMEOUT);
+    }
+
+    /**
+     * Stops this lane. New messages are rejected while the messages that have
+     * been added before are processed. If they are not processed within the
+     * given time, the remaining messages are discarded and the running
+     * messages are interrupted.
+     *
+     * @param timeout
+     *            the maximum time (in ms) to wait for the messages
+     * @return true if all messages have been processed
+     */
+    public boolean shutdown(long timeout) {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for the messages of the " + name + " lane.", e);
+            Thread.currentThread().interrupt();
+        }
+        int discarded = executor.shutdownNow().size();
+        LOGGER.warn("The {} lane did not finish in time. {} waiting messages have been discarded.", name,
+                discarded);
+        return false;
+    }
+}
@@ -0,0 +1,44 @@
+package org.dice_research.squirrel.configurator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Configuration of the checkpoints of the in-memory frontier. All values are
+ * optional. Without a directory, no checkpoints are written.
+ */
+public class CheckpointConfiguration extends Configuration {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CheckpointConfiguration.class);
+
+    private static final String FRONTIER_CHECKPOINT_DIRECTORY_KEY = "FRONTIER_CHECKPOINT_DIRECTORY";
+    private static final String FRONTIER_CHECKPOINT_INTERVAL_KEY = "FRONTIER_CHECKPOINT_INTERVAL";
+
+    private String directory = null;
+    private Integer interval = null;
+
+    private CheckpointConfiguration() {
+    }
+
+    public static CheckpointConfiguration getCheckpointConfiguration() {
+        CheckpointConfiguration configuration = new CheckpointConfiguration();
+        configuration.directory = getEnv(FRONTIER_CHECKPOINT_DIRECTORY_KEY, LOGGER);
+        configuration.interval = getOptionalEnvInteger(FRONTIER_CHECKPOINT_INTERVAL_KEY, LOGGER);
+        return configuration;
+    }
+
+    /**
+     * @return the directory in which the snapshots and journals of the
+     *         frontier are stored or null if no checkpoints should be written
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the time (in ms) between two snapshots or null if it has not
+     *         been defined
+     */
+    public Integer getInterval() {
+        return interval;
+    }
+}
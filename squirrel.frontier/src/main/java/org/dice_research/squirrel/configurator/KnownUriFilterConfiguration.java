@@ -0,0 +1,56 @@
+package org.dice_research.squirrel.configurator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Configuration of the known URI filter of the frontier. All values are
+ * optional. If a value is not defined in the environment, the filter keeps its
+ * default.
+ */
+public class KnownUriFilterConfiguration extends Configuration {
+    private static final Logger LOGGER = LoggerFactory.getLogger(KnownUriFilterConfiguration.class);
+
+    private static final String BLOOM_FILTER_ENABLED_KEY = "KNOWN_URI_FILTER_BLOOM_FILTER";
+    private static final String BLOOM_FILTER_CAPACITY_KEY = "KNOWN_URI_FILTER_BLOOM_CAPACITY";
+    private static final String BLOOM_FILTER_SNAPSHOT_FILE_KEY = "KNOWN_URI_FILTER_BLOOM_SNAPSHOT_FILE";
+
+    private boolean bloomFilterEnabled = false;
+    private Long bloomFilterCapacity = null;
+    private String bloomFilterSnapshotFile = null;
+
+    private KnownUriFilterConfiguration() {
+    }
+
+    public static KnownUriFilterConfiguration getKnownUriFilterConfiguration() {
+        KnownUriFilterConfiguration configuration = new KnownUriFilterConfiguration();
+        configuration.bloomFilterEnabled = Boolean.parseBoolean(getEnv(BLOOM_FILTER_ENABLED_KEY, LOGGER));
+        configuration.bloomFilterCapacity = getOptionalEnvLong(BLOOM_FILTER_CAPACITY_KEY, LOGGER);
+        configuration.bloomFilterSnapshotFile = getEnv(BLOOM_FILTER_SNAPSHOT_FILE_KEY, LOGGER);
+        return configuration;
+    }
+
+    /**
+     * @return true if a Bloom filter should be put in front of the database
+     *         based known URI filter
+     */
+    public boolean isBloomFilterEnabled() {
+        return bloomFilterEnabled;
+    }
+
+    /**
+     * @return the number of URIs the first stage of the Bloom filter can take
+     *         or null if it has not been defined
+     */
+    public Long getBloomFilterCapacity() {
+        return bloomFilterCapacity;
+    }
+
+    /**
+     * @return the file the Bloom filter is stored in or null if no snapshots
+     *         should be written
+     */
+    public String getBloomFilterSnapshotFile() {
+        return bloomFilterSnapshotFile;
+    }
+}
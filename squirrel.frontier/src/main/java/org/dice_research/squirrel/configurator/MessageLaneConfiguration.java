@@ -0,0 +1,85 @@
+package org.dice_research.squirrel.configurator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Configuration of the lanes that process the incoming messages of the
+ * frontier. All values are optional. If a value is not defined in the
+ * environment, the default is used. The capacity of a lane defaults to its
+ * number of threads.
+ */
+public class MessageLaneConfiguration extends Configuration {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageLaneConfiguration.class);
+
+    private static final String REQUEST_LANE_THREADS_KEY = "FRONTIER_REQUEST_LANE_THREADS";
+    private static final String INGESTION_LANE_THREADS_KEY = "FRONTIER_INGESTION_LANE_THREADS";
+    private static final String REQUEST_LANE_CAPACITY_KEY = "FRONTIER_REQUEST_LANE_CAPACITY";
+    private static final String INGESTION_LANE_CAPACITY_KEY = "FRONTIER_INGESTION_LANE_CAPACITY";
+
+    /**
+     * Default number of threads that answer requests of workers.
+     */
+    public static final int DEFAULT_REQUEST_LANE_THREADS = 8;
+    /**
+     * Default number of threads that process new URIs and crawling results.
+     */
+    public static final int DEFAULT_INGESTION_LANE_THREADS = 32;
+
+    private int requestLaneThreads = DEFAULT_REQUEST_LANE_THREADS;
+    private int ingestionLaneThreads = DEFAULT_INGESTION_LANE_THREADS;
+    private int requestLaneCapacity = 0;
+    private int ingestionLaneCapacity = 0;
+
+    private MessageLaneConfiguration() {
+    }
+
+    public static MessageLaneConfiguration getMessageLaneConfiguration() {
+        MessageLaneConfiguration configuration = new MessageLaneConfiguration();
+        Integer value = getOptionalEnvInteger(REQUEST_LANE_THREADS_KEY, LOGGER);
+        if ((value != null) && (value > 0)) {
+            configuration.requestLaneThreads = value;
+        }
+        value = getOptionalEnvInteger(INGESTION_LANE_THREADS_KEY, LOGGER);
+        if ((value != null) && (value > 0)) {
+            configuration.ingestionLaneThreads = value;
+        }
+        value = getOptionalEnvInteger(REQUEST_LANE_CAPACITY_KEY, LOGGER);
+        configuration.requestLaneCapacity = ((value != null) && (value > 0)) ? value
+                : configuration.requestLaneThreads;
+        value = getOptionalEnvInteger(INGESTION_LANE_CAPACITY_KEY, LOGGER);
+        configuration.ingestionLaneCapacity = ((value != null) && (value > 0)) ? value
+                : configuration.ingestionLaneThreads;
+        return configuration;
+    }
+
+    /**
+     * @return the number of threads that answer requests for URIs and alive
+     *         messages of workers
+     */
+    public int getRequestLaneThreads() {
+        return requestLaneThreads;
+    }
+
+    /**
+     * @return the number of threads that process new URIs and crawling results
+     */
+    public int getIngestionLaneThreads() {
+        return ingestionLaneThreads;
+    }
+
+    /**
+     * @return the number of requests of workers that can wait for a thread
+     */
+    public int getRequestLaneCapacity() {
+        return requestLaneCapacity;
+    }
+
+    /**
+     * @return the number of messages with new URIs or crawling results that
+     *         can wait for a thread
+     */
+    public int getIngestionLaneCapacity() {
+        return ingestionLaneCapacity;
+    }
+}
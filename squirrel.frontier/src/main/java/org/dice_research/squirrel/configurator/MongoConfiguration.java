@@ -14,12 +14,16 @@ public class MongoConfiguration extends Configuration {
     private Integer connectionTimeout = null;
     private Integer socketTimeout = null;
     private Integer serverTimeout = null;
+    private Integer queueBatchSize = null;
+    private Long queueFlushInterval = null;
 
     private static final String MDB_HOST_NAME_KEY = "MDB_HOST_NAME";
     private static final String MDB_PORT_KEY = "MDB_PORT";
     private static final String CONNECTION_TIME_OUT_MS = "MDB_CONNECTION_TIME_OUT";
     private static final String SOCKET_TIME_OUT_MS = "MDB_SOCKET_TIME_OUT";
     private static final String SERVER_SELECTION_TIMEOUT_MS = "MDB_SERVER_TIME_OUT";
+    private static final String QUEUE_BATCH_SIZE_KEY = "MDB_QUEUE_BATCH_SIZE";
+    private static final String QUEUE_FLUSH_INTERVAL_MS_KEY = "MDB_QUEUE_FLUSH_INTERVAL";
 
 
     private MongoConfiguration(String MDBHostName, Integer MDBPort,Integer connectionTimeout, Integer socketTimeout,Integer serverTimeout) {
@@ -42,14 +46,17 @@ public class MongoConfiguration extends Configuration {
         Integer socketTimeout = getSoc_Timeout();
         Integer serverTimeout = getSrv_Timeout();
 
-
+        MongoConfiguration configuration;
         if(MDBHostName != null && MDBPort != 0 && connectionTimeout != 0 && socketTimeout != 0 && serverTimeout != 0) {
-            return new MongoConfiguration(MDBHostName, MDBPort,connectionTimeout,socketTimeout,serverTimeout);
+            configuration = new MongoConfiguration(MDBHostName, MDBPort,connectionTimeout,socketTimeout,serverTimeout);
         } else if(MDBHostName != null && MDBPort != null){
-        	return new MongoConfiguration(MDBHostName, MDBPort);
+            configuration = new MongoConfiguration(MDBHostName, MDBPort);
         } else {
             return null;
         }
+        configuration.queueBatchSize = getEnvQueueBatchSize();
+        configuration.queueFlushInterval = getEnvQueueFlushInterval();
+        return configuration;
     }
 
     private static String getEnvMDBHostName() {
@@ -75,6 +82,16 @@ public class MongoConfiguration extends Configuration {
 
     }
 
+    private static Integer getEnvQueueBatchSize() {
+        int batchSize = getEnvInteger(QUEUE_BATCH_SIZE_KEY, LOGGER);
+        return batchSize > 0 ? batchSize : null;
+    }
+
+    private static Long getEnvQueueFlushInterval() {
+        long flushInterval = getEnvLong(QUEUE_FLUSH_INTERVAL_MS_KEY, LOGGER);
+        return flushInterval > 0 ? flushInterval : null;
+    }
+
     public String getMDBHostName() {
         return MongoHostName;
     }
@@ -91,6 +108,23 @@ public class MongoConfiguration extends Configuration {
 		return serverTimeout;
 	}
 
+	/**
+	 * @return the maximum number of URIs the queue writes with a single bulk
+	 *         write or null if it has not been configured.
+	 */
+	public Integer getQueueBatchSize() {
+		return queueBatchSize;
+	}
+
+	/**
+	 * @return the time (in ms) after which buffered URIs are written to the
+	 *         queue or null if it has not been configured, i.e., URIs are
+	 *         written without buffering.
+	 */
+	public Long getQueueFlushInterval() {
+		return queueFlushInterval;
+	}
+
 	public Integer getMDBPort() {
         return MongoPort;
     }
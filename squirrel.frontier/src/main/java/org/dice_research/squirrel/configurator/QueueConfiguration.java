@@ -0,0 +1,83 @@
+package org.dice_research.squirrel.configurator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Configuration of the queue of the frontier. All values are optional. If a
+ * value is not defined in the environment, the queue keeps its default.
+ */
+public class QueueConfiguration extends Configuration {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueueConfiguration.class);
+
+    private static final String QUEUE_MAX_CHUNK_SIZE_KEY = "QUEUE_MAX_CHUNK_SIZE";
+    private static final String QUEUE_SCHEDULING_POLICY_KEY = "QUEUE_SCHEDULING_POLICY";
+    private static final String QUEUE_SEGMENT_DIRECTORY_KEY = "QUEUE_SEGMENT_DIRECTORY";
+    private static final String QUEUE_HOT_TIER_SIZE_KEY = "QUEUE_HOT_TIER_SIZE";
+    private static final String QUEUE_LEASE_DURATION_KEY = "QUEUE_LEASE_DURATION";
+
+    private Integer maxChunkSize = null;
+    private String schedulingPolicy = null;
+    private String segmentDirectory = null;
+    private Integer hotTierSize = null;
+    private Integer leaseDuration = null;
+
+    private QueueConfiguration() {
+    }
+
+    public static QueueConfiguration getQueueConfiguration() {
+        QueueConfiguration configuration = new QueueConfiguration();
+        configuration.maxChunkSize = getOptionalEnvInteger(QUEUE_MAX_CHUNK_SIZE_KEY, LOGGER);
+        Integer hotTierSize = getOptionalEnvInteger(QUEUE_HOT_TIER_SIZE_KEY, LOGGER);
+        configuration.hotTierSize = ((hotTierSize != null) && (hotTierSize > 0)) ? hotTierSize : null;
+        configuration.leaseDuration = getOptionalEnvInteger(QUEUE_LEASE_DURATION_KEY, LOGGER);
+        configuration.schedulingPolicy = getEnv(QUEUE_SCHEDULING_POLICY_KEY, LOGGER);
+        configuration.segmentDirectory = getEnv(QUEUE_SEGMENT_DIRECTORY_KEY, LOGGER);
+        return configuration;
+    }
+
+    /**
+     * @return the maximum number of URIs that are sent to a worker as a single
+     *         chunk (a value &lt;= 0 means that the chunks are not bounded) or
+     *         null if it has not been defined. Chunks are only bounded if this
+     *         value is set explicitly.
+     */
+    public Integer getMaxChunkSize() {
+        return maxChunkSize;
+    }
+
+    /**
+     * @return the name of the scheduling policy of the in-memory queue (one of
+     *         {@code round-robin}, {@code weighted-fair} and
+     *         {@code oldest-first}) or null if it has not been defined
+     */
+    public String getSchedulingPolicy() {
+        return schedulingPolicy;
+    }
+
+    /**
+     * @return the directory in which a local queue stores its segment files
+     *         instead of keeping the URIs on the heap or null if it has not been
+     *         defined
+     */
+    public String getSegmentDirectory() {
+        return segmentDirectory;
+    }
+
+    /**
+     * @return the number of chunks that are prefetched into memory from the
+     *         (persistent) queue or null if no prefetching should be used
+     */
+    public Integer getHotTierSize() {
+        return hotTierSize;
+    }
+
+    /**
+     * @return the time (in ms) a worker has to crawl a chunk before its URIs
+     *         are handed to another worker (a value &lt;= 0 means that chunks
+     *         never expire) or null if it has not been defined
+     */
+    public Integer getLeaseDuration() {
+        return leaseDuration;
+    }
+}
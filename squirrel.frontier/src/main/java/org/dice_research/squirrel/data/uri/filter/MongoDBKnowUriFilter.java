@@ -7,9 +7,11 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import org.bson.Document;
 import org.bson.conversions.Bson;
@@ -22,7 +24,6 @@ import org.dice_research.squirrel.frontier.impl.FrontierImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.mongodb.BasicDBObject;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.ServerAddress;
@@ -31,6 +32,9 @@ import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
 
 /**
  * 
@@ -61,6 +65,11 @@ public class MongoDBKnowUriFilter implements KnownUriFilter, Cloneable, Closeabl
      * Used as a default hash value for URIS, will be replaced by real hash value as soon as it has been computed.
      */
     private static final String DUMMY_HASH_VALUE = "dummyValue";
+    /**
+     * The maximum number of URIs that are sent to the database with a single
+     * request.
+     */
+    private static final int MAX_BATCH_SIZE = 1000;
 
     public MongoDBKnowUriFilter(String hostName, Integer port) {
     
@@ -105,17 +114,78 @@ public class MongoDBKnowUriFilter implements KnownUriFilter, Cloneable, Closeabl
 
     }
 
+    @Override
+    public List<CrawleableUri> filterGood(List<CrawleableUri> uris) {
+        List<CrawleableUri> goodUris = new ArrayList<>(uris.size());
+        MongoCollection<Document> collection = mongoDB.getCollection(COLLECTION_NAME);
+        for (int start = 0; start < uris.size(); start += MAX_BATCH_SIZE) {
+            List<CrawleableUri> batch = uris.subList(start, Math.min(start + MAX_BATCH_SIZE, uris.size()));
+            List<String> uriStrings = new ArrayList<>(batch.size());
+            for (CrawleableUri uri : batch) {
+                uriStrings.add(uri.getUri().toString());
+            }
+            // get the latest crawl time stamp of all known URIs of the batch with a single request
+            Map<String, Long> lastCrawlTimestamps = new HashMap<>();
+            MongoCursor<Document> cursor = collection.find(Filters.in(COLUMN_URI, uriStrings))
+                    .projection(Projections.include(COLUMN_URI, COLUMN_TIMESTAMP_LAST_CRAWL)).iterator();
+            try {
+                while (cursor.hasNext()) {
+                    Document doc = cursor.next();
+                    lastCrawlTimestamps.merge(doc.getString(COLUMN_URI),
+                            Long.parseLong(doc.get(COLUMN_TIMESTAMP_LAST_CRAWL).toString()), Math::max);
+                }
+            } finally {
+                cursor.close();
+            }
+            long now = System.currentTimeMillis();
+            Long timestampRetrieved;
+            for (int i = 0; i < batch.size(); ++i) {
+                timestampRetrieved = lastCrawlTimestamps.get(uriStrings.get(i));
+                if ((timestampRetrieved == null) || ((now - timestampRetrieved) >= recrawlEveryWeek)) {
+                    goodUris.add(batch.get(i));
+                }
+            }
+        }
+        return goodUris;
+    }
+
     @Override
     public void add(CrawleableUri uri, long nextCrawlTimestamp) {
     	add(uri, System.currentTimeMillis(), nextCrawlTimestamp);
     }
 
+    @Override
+    public void addAll(List<CrawleableUri> uris, long nextCrawlTimestamp) {
+        long now = System.currentTimeMillis();
+        MongoCollection<Document> collection = mongoDB.getCollection(COLLECTION_NAME);
+        for (int start = 0; start < uris.size(); start += MAX_BATCH_SIZE) {
+            List<Document> documents = new ArrayList<>();
+            for (CrawleableUri uri : uris.subList(start, Math.min(start + MAX_BATCH_SIZE, uris.size()))) {
+                documents.add(createDocument(uri, now, nextCrawlTimestamp));
+            }
+            collection.insertMany(documents);
+        }
+        LOGGER.debug("Added {} URIs to the known uri filter list", uris.size());
+    }
+
+    private Document createDocument(CrawleableUri uri, long lastCrawlTimestamp, long nextCrawlTimestamp) {
+        return crawleableUriToMongoDocument(uri)
+                .append(COLUMN_TIMESTAMP_LAST_CRAWL, lastCrawlTimestamp)
+                .append(COLUMN_TIMESTAMP_NEXT_CRAWL, nextCrawlTimestamp)
+                .append(COLUMN_CRAWLING_IN_PROCESS, false)
+                .append(COLUMN_HASH_VALUE, DUMMY_HASH_VALUE);
+    }
+
     public Document crawleableUriToMongoDocument(CrawleableUri uri) {
 
         @SuppressWarnings("deprecation")
         UriType uriType = uri.getType();
 
-        return new Document("uri", uri.getUri().toString()).append("type", uriType.toString());
+        Document document = new Document("uri", uri.getUri().toString()).append("type", uriType.toString());
+        if (uri.getIpAddress() != null) {
+            document.append(COLUMN_IP, uri.getIpAddress().getHostAddress());
+        }
+        return document;
 
     }
 
@@ -132,6 +202,8 @@ public class MongoDBKnowUriFilter implements KnownUriFilter, Cloneable, Closeabl
             MongoCollection<Document> mongoCollection = mongoDB.getCollection(COLLECTION_NAME);
             mongoCollection.createIndex(Indexes.compoundIndex(Indexes.ascending("uri")));
         }
+        // the recrawling relies on this index (it is only created if it does not exist)
+        mongoDB.getCollection(COLLECTION_NAME).createIndex(Indexes.ascending(COLUMN_TIMESTAMP_NEXT_CRAWL));
     }
 
     public boolean knowUriTableExists() {
@@ -148,12 +220,7 @@ public class MongoDBKnowUriFilter implements KnownUriFilter, Cloneable, Closeabl
     @Override
     public void add(CrawleableUri uri, long lastCrawlTimestamp, long nextCrawlTimestamp) {
     	 mongoDB.getCollection(COLLECTION_NAME)
-         .insertOne(crawleableUriToMongoDocument(uri)
-        		 .append(COLUMN_TIMESTAMP_LAST_CRAWL, lastCrawlTimestamp)
-        		 .append(COLUMN_TIMESTAMP_NEXT_CRAWL, nextCrawlTimestamp)
-        		 .append(COLUMN_CRAWLING_IN_PROCESS, false)
-        		 .append(COLUMN_HASH_VALUE, DUMMY_HASH_VALUE)
-        		 );
+         .insertOne(createDocument(uri, lastCrawlTimestamp, nextCrawlTimestamp));
     	 LOGGER.debug("Adding URI {} to the known uri filter list", uri.toString());
     }
     
@@ -172,53 +239,83 @@ public class MongoDBKnowUriFilter implements KnownUriFilter, Cloneable, Closeabl
 
     @Override
     public List<CrawleableUri> getOutdatedUris() {
+        return getOutdatedUris(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<CrawleableUri> getOutdatedUris(int maxUris) {
     	// get all uris with the following property:
         // (nextCrawlTimestamp has passed) AND (crawlingInProcess==false OR lastCrawlTimestamp is 3 times older than generalRecrawlTime)
     	
     	long generalRecrawlTime = Math.max(FrontierImpl.DEFAULT_GENERAL_RECRAWL_TIME, FrontierImpl.getGeneralRecrawlTime());
+    	long now = System.currentTimeMillis();
 
-    	Bson filter = Filters.and(Filters.eq("COLUMN_TIMESTAMP_NEXT_CRAWL", System.currentTimeMillis()),
+    	// the index on the next crawl time stamp is used to find the candidates
+    	Bson filter = Filters.and(Filters.lte(COLUMN_TIMESTAMP_NEXT_CRAWL, now),
     			Filters.or(
-	    			Filters.eq("COLUMN_CRAWLING_IN_PROCESS", false),
-	    			Filters.eq("COLUMN_TIMESTAMP_LAST_CRAWL", System.currentTimeMillis() - generalRecrawlTime * 3)
+	    			Filters.eq(COLUMN_CRAWLING_IN_PROCESS, false),
+	    			Filters.lte(COLUMN_TIMESTAMP_LAST_CRAWL, now - generalRecrawlTime * 3)
     			));
 
-        Iterator<Document> uriDocs = mongoDB.getCollection(COLLECTION_NAME).find(filter).iterator();
+        MongoCollection<Document> collection = mongoDB.getCollection(COLLECTION_NAME);
+        MongoCursor<Document> uriDocs = collection.find(filter)
+                .sort(Sorts.ascending(COLUMN_TIMESTAMP_NEXT_CRAWL))
+                .limit(maxUris)
+                .projection(Projections.include(COLUMN_URI, COLUMN_IP))
+                .iterator();
 
         List<CrawleableUri> urisToRecrawl = new ArrayList<>();
-        while (uriDocs.hasNext()) {
-            try {
+        List<Object> ids = new ArrayList<>();
+        try {
+            while (uriDocs.hasNext()) {
                 Document doc = uriDocs.next();
-                String ipString = (String) doc.get(COLUMN_IP);
-                if (ipString.contains("/")) {
-                    ipString = ipString.split("/")[1];
+                ids.add(doc.get("_id"));
+                try {
+                    String ipString = (String) doc.get(COLUMN_IP);
+                    if (ipString == null) {
+                        // the IP will be determined by the frontier
+                        urisToRecrawl.add(new CrawleableUri(new URI((String) doc.get(COLUMN_URI))));
+                    } else {
+                        if (ipString.contains("/")) {
+                            ipString = ipString.split("/")[1];
+                        }
+                        urisToRecrawl.add(new CrawleableUri(new URI((String) doc.get(COLUMN_URI)), InetAddress.getByName(ipString)));
+                    }
+                } catch (URISyntaxException | UnknownHostException e) {
+                    LOGGER.warn(e.toString());
                 }
-                urisToRecrawl.add(new CrawleableUri(new URI((String) doc.get(COLUMN_URI)), InetAddress.getByName(ipString)));
-            } catch (URISyntaxException | UnknownHostException e) {
-                LOGGER.warn(e.toString());
             }
+        } finally {
+            uriDocs.close();
         }
 
         // mark that the uris are in process now
-        for (CrawleableUri uri : urisToRecrawl) {
-        	
-        	BasicDBObject newDocument = new BasicDBObject();
-        	newDocument.append("$set", new BasicDBObject().append(COLUMN_CRAWLING_IN_PROCESS, true));
-        	
-        	BasicDBObject searchQuery = new BasicDBObject().append(COLUMN_URI,  uri.getUri().toString());
-        	
-        	 mongoDB.getCollection(COLLECTION_NAME).updateMany(searchQuery, newDocument);
-        	
+        Bson update = Updates.combine(Updates.set(COLUMN_CRAWLING_IN_PROCESS, true),
+                Updates.set(COLUMN_TIMESTAMP_LAST_CRAWL, now));
+        for (int start = 0; start < ids.size(); start += MAX_BATCH_SIZE) {
+            collection.updateMany(Filters.in("_id", ids.subList(start, Math.min(start + MAX_BATCH_SIZE, ids.size()))),
+                    update);
         }
-
-//        cursor.close();
         return urisToRecrawl;
     }
 
     @Override
     public long count() {
-        // TODO Auto-generated method stub
-        return 0;
+        return mongoDB.getCollection(COLLECTION_NAME).count();
+    }
+
+    @Override
+    public boolean forEachKnownUri(Consumer<String> consumer) {
+        MongoCursor<Document> cursor = mongoDB.getCollection(COLLECTION_NAME).find()
+                .projection(Projections.include(COLUMN_URI)).iterator();
+        try {
+            while (cursor.hasNext()) {
+                consumer.accept(cursor.next().getString(COLUMN_URI));
+            }
+        } finally {
+            cursor.close();
+        }
+        return true;
     }
 
 	@Override
@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.dice_research.squirrel.Constants;
@@ -62,6 +63,16 @@ public class RDBKnownUriFilter implements KnownUriFilter, Closeable, UriHashCust
      * Used as a default hash value for URIS, will be replaced by real hash value as soon as it has been computed.
      */
     private static final String DUMMY_HASH_VALUE = "dummyValue";
+    /**
+     * The maximum number of URIs that are sent to the database with a single request.
+     */
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    /**
+     * Flag indicating whether the existence of the index on
+     * {@link #COLUMN_TIMESTAMP_NEXT_CRAWL} has been ensured.
+     */
+    private boolean nextCrawlIndexChecked = false;
 
 
     /**
@@ -110,6 +121,23 @@ public class RDBKnownUriFilter implements KnownUriFilter, Closeable, UriHashCust
             r.db(DATABASE_NAME).table(TABLE_NAME).indexCreate(COLUMN_URI).run(this.connector.connection);
             r.db(DATABASE_NAME).table(TABLE_NAME).indexWait(COLUMN_URI).run(this.connector.connection);
         }
+        ensureNextCrawlIndex();
+    }
+
+    /**
+     * Creates the secondary index on {@link #COLUMN_TIMESTAMP_NEXT_CRAWL} that is
+     * used to find outdated URIs if it does not exist.
+     */
+    protected void ensureNextCrawlIndex() {
+        if (nextCrawlIndexChecked) {
+            return;
+        }
+        List<String> indexes = r.db(DATABASE_NAME).table(TABLE_NAME).indexList().run(this.connector.connection);
+        if (!indexes.contains(COLUMN_TIMESTAMP_NEXT_CRAWL)) {
+            r.db(DATABASE_NAME).table(TABLE_NAME).indexCreate(COLUMN_TIMESTAMP_NEXT_CRAWL).run(this.connector.connection);
+            r.db(DATABASE_NAME).table(TABLE_NAME).indexWait(COLUMN_TIMESTAMP_NEXT_CRAWL).run(this.connector.connection);
+        }
+        nextCrawlIndexChecked = true;
     }
 
     public void openConnector() {
@@ -120,40 +148,56 @@ public class RDBKnownUriFilter implements KnownUriFilter, Closeable, UriHashCust
 
     @Override
     public List<CrawleableUri> getOutdatedUris() {
+        return getOutdatedUris(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<CrawleableUri> getOutdatedUris(int maxUris) {
 
         // get all uris with the following property:
         // (nextCrawlTimestamp has passed) AND (crawlingInProcess==false OR lastCrawlTimestamp is 3 times older than generalRecrawlTime)
 
         long generalRecrawlTime = Math.max(FrontierImpl.DEFAULT_GENERAL_RECRAWL_TIME, FrontierImpl.getGeneralRecrawlTime());
+        long now = System.currentTimeMillis();
+        ensureNextCrawlIndex();
 
+        // the candidates are taken from the index on the next crawl time stamp
         Cursor<HashMap> cursor = r.db(DATABASE_NAME)
             .table(TABLE_NAME)
-            .filter(doc -> doc.getField(COLUMN_TIMESTAMP_NEXT_CRAWL).le(System.currentTimeMillis()).and(
-                (doc.getField(COLUMN_CRAWLING_IN_PROCESS).eq(false))
-                    .or(doc.getField(COLUMN_TIMESTAMP_LAST_CRAWL).le(System.currentTimeMillis() - generalRecrawlTime * 3))))
+            .between(r.minval(), now).optArg("index", COLUMN_TIMESTAMP_NEXT_CRAWL).optArg("right_bound", "closed")
+            .filter(doc -> (doc.getField(COLUMN_CRAWLING_IN_PROCESS).eq(false))
+                    .or(doc.getField(COLUMN_TIMESTAMP_LAST_CRAWL).le(now - generalRecrawlTime * 3)))
+            .limit(maxUris)
+            .pluck("id", COLUMN_URI, COLUMN_IP)
             .run(connector.connection);
 
         List<CrawleableUri> urisToRecrawl = new ArrayList<>();
-        while (cursor.hasNext()) {
-            try {
+        List<Object> ids = new ArrayList<>();
+        try {
+            while (cursor.hasNext()) {
                 HashMap row = cursor.next();
-                String ipString = (String) row.get(COLUMN_IP);
-                if (ipString.contains("/")) {
-                    ipString = ipString.split("/")[1];
+                ids.add(row.get("id"));
+                try {
+                    String ipString = (String) row.get(COLUMN_IP);
+                    if (ipString.contains("/")) {
+                        ipString = ipString.split("/")[1];
+                    }
+                    urisToRecrawl.add(new CrawleableUri(new URI((String) row.get(COLUMN_URI)), InetAddress.getByName(ipString)));
+                } catch (URISyntaxException | UnknownHostException e) {
+                    LOGGER.warn(e.toString());
                 }
-                urisToRecrawl.add(new CrawleableUri(new URI((String) row.get(COLUMN_URI)), InetAddress.getByName(ipString)));
-            } catch (URISyntaxException | UnknownHostException e) {
-                LOGGER.warn(e.toString());
             }
+        } finally {
+            cursor.close();
         }
 
         // mark that the uris are in process now
-        for (CrawleableUri uri : urisToRecrawl) {
-            r.db(DATABASE_NAME).table(TABLE_NAME).filter(doc -> doc.getField(COLUMN_URI).eq(uri.getUri().toString())).
-                update(r.hashMap(COLUMN_CRAWLING_IN_PROCESS, true)).run(connector.connection);
+        for (int start = 0; start < ids.size(); start += MAX_BATCH_SIZE) {
+            r.db(DATABASE_NAME).table(TABLE_NAME)
+                .getAll(ids.subList(start, Math.min(start + MAX_BATCH_SIZE, ids.size())).toArray())
+                .update(r.hashMap(COLUMN_CRAWLING_IN_PROCESS, true).with(COLUMN_TIMESTAMP_LAST_CRAWL, now))
+                .run(connector.connection);
         }
-
-        cursor.close();
         return urisToRecrawl;
     }
 
@@ -193,6 +237,29 @@ public class RDBKnownUriFilter implements KnownUriFilter, Closeable, UriHashCust
         }
     }
 
+    @Override
+    public void addAll(List<CrawleableUri> uris, long nextCrawlTimestamp) {
+        long now = System.currentTimeMillis();
+        for (int start = 0; start < uris.size(); start += MAX_BATCH_SIZE) {
+            List<MapObject> rows = new ArrayList<>();
+            for (CrawleableUri uri : uris.subList(start, Math.min(start + MAX_BATCH_SIZE, uris.size()))) {
+                try {
+                    rows.add(convertURITimestampToRDB(uri, now, nextCrawlTimestamp, false, DUMMY_HASH_VALUE));
+                } catch (Exception e) {
+                    LOGGER.error("Failed to add the URI \"" + uri.toString() + "\" to the known uri filter list", e);
+                }
+            }
+            if (!rows.isEmpty()) {
+                try {
+                    r.db(DATABASE_NAME).table(TABLE_NAME).insert(rows).run(connector.connection);
+                } catch (Exception e) {
+                    LOGGER.error("Failed to add " + rows.size() + " URIs to the known uri filter list", e);
+                }
+            }
+        }
+        LOGGER.debug("Added {} URIs to the known uri filter list", uris.size());
+    }
+
     @Override
     public Set<CrawleableUri> getUrisWithSameHashValues(Set<HashValue> hashValuesForComparison) {
 
@@ -280,6 +347,44 @@ public class RDBKnownUriFilter implements KnownUriFilter, Closeable, UriHashCust
         }
     }
 
+    @Override
+    public List<CrawleableUri> filterGood(List<CrawleableUri> uris) {
+        List<CrawleableUri> goodUris = new ArrayList<>(uris.size());
+        for (int start = 0; start < uris.size(); start += MAX_BATCH_SIZE) {
+            List<CrawleableUri> batch = uris.subList(start, Math.min(start + MAX_BATCH_SIZE, uris.size()));
+            Object uriStrings[] = new Object[batch.size()];
+            for (int i = 0; i < uriStrings.length; ++i) {
+                uriStrings[i] = batch.get(i).getUri().toString();
+            }
+            // get the next crawl time stamps of all known URIs of the batch with a single request
+            Map<String, Long> nextCrawlTimestamps = new HashMap<>();
+            Cursor<HashMap> cursor = r.db(DATABASE_NAME)
+                .table(TABLE_NAME)
+                .getAll(uriStrings)
+                .optArg("index", COLUMN_URI)
+                .pluck(COLUMN_URI, COLUMN_TIMESTAMP_NEXT_CRAWL)
+                .run(connector.connection);
+            try {
+                while (cursor.hasNext()) {
+                    HashMap row = cursor.next();
+                    nextCrawlTimestamps.merge((String) row.get(COLUMN_URI),
+                        ((Number) row.get(COLUMN_TIMESTAMP_NEXT_CRAWL)).longValue(), Math::max);
+                }
+            } finally {
+                cursor.close();
+            }
+            long now = System.currentTimeMillis();
+            Long timestampNextCrawl;
+            for (int i = 0; i < uriStrings.length; ++i) {
+                timestampNextCrawl = nextCrawlTimestamps.get(uriStrings[i]);
+                if ((timestampNextCrawl == null) || (frontierDoesRecrawling && (now > timestampNextCrawl))) {
+                    goodUris.add(batch.get(i));
+                }
+            }
+        }
+        return goodUris;
+    }
+
     public void purge() {
         r.db(DATABASE_NAME).table(TABLE_NAME).delete().run(connector.connection);
     }
@@ -8,16 +8,16 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class RDBRegexBasedWhiteListFilter extends RDBKnownUriFilter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RDBRegexBasedWhiteListFilter.class);
 
-    private Set<String> whiteList;
+    private WhiteListMatcher matcher = WhiteListMatcher.create(new ArrayList<String>());
 
     public RDBRegexBasedWhiteListFilter(String hostname, Integer port) {
         super(hostname, port);
@@ -30,7 +30,7 @@ public class RDBRegexBasedWhiteListFilter extends RDBKnownUriFilter {
     public RDBRegexBasedWhiteListFilter(String hostname, Integer port, boolean frontierDoesRecrawling, File whiteListFile) {
         super(hostname, port, frontierDoesRecrawling);
         try {
-            whiteList = loadWhiteList(whiteListFile);
+            matcher = WhiteListMatcher.create(loadWhiteList(whiteListFile));
         } catch (IOException e) {
             LOGGER.error("A problem was found when loading the WhiteList");
         }
@@ -38,19 +38,30 @@ public class RDBRegexBasedWhiteListFilter extends RDBKnownUriFilter {
 
     @Override
     public boolean isUriGood(CrawleableUri uri) {
-        if (super.isUriGood(uri) && whiteList != null && !whiteList.isEmpty()) {
-
-            for (String s : whiteList) {
+        // the white list is checked first since it is much cheaper than a look up
+        return isWhiteListed(uri) && super.isUriGood(uri);
+    }
 
-                Pattern p = Pattern.compile(s.toLowerCase());
-                Matcher m = p.matcher(uri.getUri().toString().toLowerCase());
+    @Override
+    public List<CrawleableUri> filterGood(List<CrawleableUri> uris) {
+        List<CrawleableUri> whiteListedUris = new ArrayList<>(uris.size());
+        for (CrawleableUri uri : uris) {
+            if (isWhiteListed(uri)) {
+                whiteListedUris.add(uri);
+            }
+        }
+        if (whiteListedUris.isEmpty()) {
+            return whiteListedUris;
+        }
+        return super.filterGood(whiteListedUris);
+    }
 
-                if (m.find()) {
-                    LOGGER.trace("The URI {} fits to the pattern " + p.pattern() + " of the whitelist", uri.getUri().toString());
-                    return true;
-                }
+    protected boolean isWhiteListed(CrawleableUri uri) {
+        if (!matcher.isEmpty()) {
+            if (matcher.matches(uri.getUri().toString())) {
+                return true;
             }
-            LOGGER.warn("The URI {} is itself a good URI, but no of the " + whiteList.size() + " patterns of the whitelist matches! (in " + this + ")", uri.getUri().toString());
+            LOGGER.trace("None of the {} patterns of the whitelist matches the URI {}.", matcher.size(), uri.getUri());
         }
         return false;
     }
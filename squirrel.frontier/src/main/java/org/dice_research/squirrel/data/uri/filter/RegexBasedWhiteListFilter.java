@@ -4,10 +4,10 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.dice_research.squirrel.data.uri.CrawleableUri;
 import org.dice_research.squirrel.data.uri.filter.AbstractKnownUriFilterDecorator;
@@ -15,6 +15,13 @@ import org.dice_research.squirrel.data.uri.filter.KnownUriFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * A decorator that accepts only URIs matching one of the regular expressions
+ * of a white list. The white list is compiled into a {@link WhiteListMatcher}
+ * and is checked before the decorated filter, i.e., URIs that do not match the
+ * white list do not cause a lookup in the decorated filter. An empty white list
+ * accepts all URIs. The white list can be reloaded at runtime.
+ */
 public class RegexBasedWhiteListFilter extends AbstractKnownUriFilterDecorator {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RegexBasedWhiteListFilter.class);
@@ -22,41 +29,80 @@ public class RegexBasedWhiteListFilter extends AbstractKnownUriFilterDecorator {
     public static RegexBasedWhiteListFilter create(KnownUriFilter decorated, File whitelistfile) {
         try {
             Set<String> whiteList = loadWhiteList(whitelistfile);
-            return new RegexBasedWhiteListFilter(decorated, whiteList);
+            RegexBasedWhiteListFilter filter = new RegexBasedWhiteListFilter(decorated, whiteList);
+            filter.whiteListFile = whitelistfile;
+            filter.whiteListFileModified = whitelistfile.lastModified();
+            return filter;
         } catch (IOException e) {
             LOGGER.error("A problem was found when loading the WhiteList");
         }
         return null;
     }
 
-    private Set<String> whiteList;
+    private volatile WhiteListMatcher matcher;
+    private File whiteListFile = null;
+    private long whiteListFileModified = 0;
 
     public RegexBasedWhiteListFilter(KnownUriFilter decorated, Set<String> whiteList) {
         super(decorated);
-        this.whiteList = whiteList;
+        setWhiteList(whiteList);
     }
 
-    @Override
-    public boolean isUriGood(CrawleableUri uri) {
-        if (super.isUriGood(uri) && (whiteList == null || whiteList.isEmpty())) {
+    /**
+     * Replaces the current white list.
+     *
+     * @param whiteList
+     *            the regular expressions of the new white list
+     */
+    public void setWhiteList(Set<String> whiteList) {
+        matcher = WhiteListMatcher.create(whiteList);
+        LOGGER.info("Using a white list with {} expressions.", matcher.size());
+    }
+
+    /**
+     * Reloads the white list from the file this filter has been created with
+     * if the file has been changed since it has been loaded.
+     *
+     * @return true if the white list has been reloaded
+     */
+    public synchronized boolean reloadIfChanged() {
+        if ((whiteListFile == null) || (whiteListFile.lastModified() == whiteListFileModified)) {
+            return false;
+        }
+        try {
+            long modified = whiteListFile.lastModified();
+            setWhiteList(loadWhiteList(whiteListFile));
+            whiteListFileModified = modified;
             return true;
+        } catch (IOException e) {
+            LOGGER.error("Couldn't reload the white list. The old white list will be kept.", e);
+            return false;
         }
+    }
 
-        else if (super.isUriGood(uri) && whiteList != null && !whiteList.isEmpty()) {
-
-            for (String s : whiteList) {
-
-                Pattern p = Pattern.compile(s.toLowerCase());
-                Matcher m = p.matcher(uri.getUri().toString().toLowerCase());
-
-                if (m.find()) {
-                    return true;
-                }
+    @Override
+    public boolean isUriGood(CrawleableUri uri) {
+        // the white list is checked first since it is much cheaper than a look up
+        return isWhiteListed(uri) && super.isUriGood(uri);
+    }
 
+    @Override
+    public List<CrawleableUri> filterGood(List<CrawleableUri> uris) {
+        List<CrawleableUri> whiteListedUris = new ArrayList<>(uris.size());
+        for (CrawleableUri uri : uris) {
+            if (isWhiteListed(uri)) {
+                whiteListedUris.add(uri);
             }
-
         }
-        return false;
+        if (whiteListedUris.isEmpty()) {
+            return whiteListedUris;
+        }
+        return super.filterGood(whiteListedUris);
+    }
+
+    protected boolean isWhiteListed(CrawleableUri uri) {
+        WhiteListMatcher matcher = this.matcher;
+        return matcher.isEmpty() || matcher.matches(uri.getUri().toString());
     }
 
     protected static Set<String> loadWhiteList(File whiteListFile) throws IOException {
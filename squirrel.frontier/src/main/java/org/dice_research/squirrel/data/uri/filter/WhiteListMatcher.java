@@ -0,0 +1,260 @@
+package org.dice_research.squirrel.data.uri.filter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A matcher for a white list of (lower cased) regular expressions that is
+ * compiled once. A URI matches the white list if one of the expressions can be
+ * found in the lower cased URI.
+ * </p>
+ *
+ * <p>
+ * Plain strings are searched with a single Aho-Corasick automaton. All other
+ * expressions are combined into a single alternation pattern, except for
+ * expressions with back references. If the combined pattern can not be
+ * compiled, all expressions are matched separately.
+ * </p>
+ */
+public class WhiteListMatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WhiteListMatcher.class);
+
+    private static final String REGEX_SPECIAL_CHARACTERS = "\\^$.|?*+()[]{}";
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\[1-9]|\\\\k<");
+
+    private final int size;
+    private final LiteralAutomaton literals;
+    private final Pattern combinedPattern;
+    private final Pattern[] separatePatterns;
+
+    private WhiteListMatcher(int size, LiteralAutomaton literals, Pattern combinedPattern,
+            Pattern[] separatePatterns) {
+        this.size = size;
+        this.literals = literals;
+        this.combinedPattern = combinedPattern;
+        this.separatePatterns = separatePatterns;
+    }
+
+    /**
+     * Compiles the given white list. Expressions that can not be compiled are
+     * logged and ignored.
+     *
+     * @param whiteList
+     *            the regular expressions of the white list
+     * @return the matcher for the given white list
+     */
+    public static WhiteListMatcher create(Collection<String> whiteList) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder combined = new StringBuilder();
+        List<Pattern> combinedPatterns = new ArrayList<>();
+        List<Pattern> separatePatterns = new ArrayList<>();
+        int size = 0;
+        String expression;
+        for (String line : whiteList) {
+            expression = line.toLowerCase();
+            if (isLiteral(expression)) {
+                literals.add(expression);
+                ++size;
+                continue;
+            }
+            try {
+                Pattern pattern = Pattern.compile(expression);
+                if (BACK_REFERENCE.matcher(expression).find()) {
+                    separatePatterns.add(pattern);
+                } else {
+                    if (combined.length() > 0) {
+                        combined.append('|');
+                    }
+                    combined.append("(?:").append(expression).append(')');
+                    combinedPatterns.add(pattern);
+                }
+                ++size;
+            } catch (PatternSyntaxException e) {
+                LOGGER.error("Couldn't compile the white list expression \"" + line + "\". It will be ignored.", e);
+            }
+        }
+        Pattern combinedPattern = null;
+        if (combined.length() > 0) {
+            try {
+                combinedPattern = Pattern.compile(combined.toString());
+            } catch (PatternSyntaxException e) {
+                LOGGER.warn("Couldn't combine the white list expressions. They will be matched separately.", e);
+                separatePatterns.addAll(combinedPatterns);
+            }
+        }
+        return new WhiteListMatcher(size, literals.isEmpty() ? null : new LiteralAutomaton(literals),
+                combinedPattern, separatePatterns.toArray(new Pattern[separatePatterns.size()]));
+    }
+
+    private static boolean isLiteral(String expression) {
+        char c;
+        for (int i = 0; i < expression.length(); ++i) {
+            c = expression.charAt(i);
+            if ((c >= 128) || (REGEX_SPECIAL_CHARACTERS.indexOf(c) >= 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether one of the expressions of the white list can be found in
+     * the given URI.
+     *
+     * @param uri
+     *            the URI that should be checked
+     * @return true if the URI matches the white list
+     */
+    public boolean matches(String uri) {
+        String lowerCasedUri = uri.toLowerCase();
+        if ((literals != null) && literals.isFoundIn(lowerCasedUri)) {
+            return true;
+        }
+        if ((combinedPattern != null) && combinedPattern.matcher(lowerCasedUri).find()) {
+            return true;
+        }
+        for (int i = 0; i < separatePatterns.length; ++i) {
+            if (separatePatterns[i].matcher(lowerCasedUri).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the white list does not contain any (valid) expression
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of (valid) expressions of the white list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * An Aho-Corasick automaton for ASCII strings. The transitions of a state
+     * are stored in sorted arrays.
+     */
+    protected static class LiteralAutomaton {
+        private char[][] transitionChars;
+        private int[][] transitionTargets;
+        private int[] failure;
+        private boolean[] output;
+
+        public LiteralAutomaton(List<String> literals) {
+            // build the trie
+            List<char[]> chars = new ArrayList<>();
+            List<int[]> targets = new ArrayList<>();
+            List<Boolean> outputs = new ArrayList<>();
+            chars.add(new char[0]);
+            targets.add(new int[0]);
+            outputs.add(false);
+            int state, next;
+            for (String literal : literals) {
+                state = 0;
+                for (int i = 0; i < literal.length(); ++i) {
+                    next = getTransition(chars.get(state), targets.get(state), literal.charAt(i));
+                    if (next < 0) {
+                        next = chars.size();
+                        chars.add(new char[0]);
+                        targets.add(new int[0]);
+                        outputs.add(false);
+                        addTransition(chars, targets, state, literal.charAt(i), next);
+                    }
+                    state = next;
+                }
+                outputs.set(state, true);
+            }
+            transitionChars = chars.toArray(new char[chars.size()][]);
+            transitionTargets = targets.toArray(new int[targets.size()][]);
+            output = new boolean[outputs.size()];
+            for (int i = 0; i < output.length; ++i) {
+                output[i] = outputs.get(i);
+            }
+            // determine the failure links (breadth first)
+            failure = new int[output.length];
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int child : transitionTargets[0]) {
+                queue.add(child);
+            }
+            int fallback;
+            while (!queue.isEmpty()) {
+                state = queue.poll();
+                for (int i = 0; i < transitionChars[state].length; ++i) {
+                    next = transitionTargets[state][i];
+                    fallback = failure[state];
+                    while ((fallback > 0)
+                            && (getTransition(transitionChars[fallback], transitionTargets[fallback],
+                                    transitionChars[state][i]) < 0)) {
+                        fallback = failure[fallback];
+                    }
+                    fallback = getTransition(transitionChars[fallback], transitionTargets[fallback],
+                            transitionChars[state][i]);
+                    failure[next] = (fallback < 0) ? 0 : fallback;
+                    // a state is an output state if one of its suffixes is a literal
+                    output[next] |= output[failure[next]];
+                    queue.add(next);
+                }
+            }
+        }
+
+        private static int getTransition(char[] chars, int[] targets, char c) {
+            int pos = Arrays.binarySearch(chars, c);
+            return (pos < 0) ? -1 : targets[pos];
+        }
+
+        private static void addTransition(List<char[]> chars, List<int[]> targets, int state, char c, int next) {
+            char[] oldChars = chars.get(state);
+            int[] oldTargets = targets.get(state);
+            int pos = -Arrays.binarySearch(oldChars, c) - 1;
+            char[] newChars = new char[oldChars.length + 1];
+            int[] newTargets = new int[oldTargets.length + 1];
+            System.arraycopy(oldChars, 0, newChars, 0, pos);
+            System.arraycopy(oldTargets, 0, newTargets, 0, pos);
+            newChars[pos] = c;
+            newTargets[pos] = next;
+            System.arraycopy(oldChars, pos, newChars, pos + 1, oldChars.length - pos);
+            System.arraycopy(oldTargets, pos, newTargets, pos + 1, oldTargets.length - pos);
+            chars.set(state, newChars);
+            targets.set(state, newTargets);
+        }
+
+        public boolean isFoundIn(String text) {
+            if (output[0]) {
+                // the empty string is part of the literals
+                return true;
+            }
+            int state = 0;
+            int next;
+            char c;
+            for (int i = 0; i < text.length(); ++i) {
+                c = text.charAt(i);
+                next = getTransition(transitionChars[state], transitionTargets[state], c);
+                while ((next < 0) && (state > 0)) {
+                    state = failure[state];
+                    next = getTransition(transitionChars[state], transitionTargets[state], c);
+                }
+                state = (next < 0) ? 0 : next;
+                if (output[state]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
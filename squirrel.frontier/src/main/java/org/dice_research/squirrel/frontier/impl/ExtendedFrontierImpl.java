@@ -1,9 +1,10 @@
 package org.dice_research.squirrel.frontier.impl;
 
 import java.net.InetAddress;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import org.dice_research.squirrel.data.uri.CrawleableUri;
 import org.dice_research.squirrel.data.uri.filter.KnownUriFilter;
@@ -69,13 +70,12 @@ public class ExtendedFrontierImpl extends FrontierImpl implements ExtendedFronti
     public void informAboutDeadWorker(String idOfWorker, List<CrawleableUri> lstUrisToReassign) {
         if (queue instanceof IpAddressBasedQueue) {
             IpAddressBasedQueue ipQueue = (IpAddressBasedQueue) queue;
-
-            Set<InetAddress> setIps = new HashSet<>();
+            Map<InetAddress, List<CrawleableUri>> chunks = new HashMap<>();
             for (CrawleableUri uri : lstUrisToReassign) {
-                InetAddress ip = uri.getIpAddress();
-                setIps.add(ip);
+                chunks.computeIfAbsent(uri.getIpAddress(), ip -> new ArrayList<>()).add(uri);
             }
-            setIps.forEach(ip -> ipQueue.markIpAddressAsAccessible(ip));
+            // the queue ignores chunks whose lease already expired
+            chunks.values().forEach(chunk -> ipQueue.returnChunk(chunk));
         }
     }
 }
\ No newline at end of file
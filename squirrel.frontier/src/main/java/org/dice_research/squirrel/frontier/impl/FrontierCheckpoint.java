@@ -0,0 +1,617 @@
+package org.dice_research.squirrel.frontier.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.data.uri.filter.FingerprintKnownUriFilter;
+import org.dice_research.squirrel.data.uri.serialize.Serializer;
+import org.dice_research.squirrel.data.uri.serialize.java.SnappyJavaUriSerializer;
+import org.dice_research.squirrel.queue.InMemoryQueue;
+import org.dice_research.squirrel.utils.Closer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Checkpoints of a frontier that keeps its state in an {@link InMemoryQueue}
+ * and a {@link FingerprintKnownUriFilter}. A checkpoint comprises a snapshot of
+ * the filter and the queue (including the URIs that have been handed out to
+ * workers), which is written periodically by a background thread, and a
+ * journal of the changes since the snapshot. The frontier reports its changes
+ * with {@link #journalKnownUris(List, long, long)},
+ * {@link #journalQueuedUris(List)} and
+ * {@link #journalCrawledUris(List, long, long)} after they have been applied.
+ * A new journal file is started before a snapshot is written and older
+ * journals are deleted when the snapshot is complete.
+ * </p>
+ *
+ * <p>
+ * {@link #open()} restores the queue and the filter from the snapshot and the
+ * journals. A journal is replayed up to its first incomplete record. URIs that
+ * have been handed out to workers are added to the queue again, i.e., they
+ * might be crawled twice.
+ * </p>
+ */
+public class FrontierCheckpoint implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FrontierCheckpoint.class);
+
+    /**
+     * The default time (in ms) between two snapshots.
+     */
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 1000L * 60L * 5L;
+
+    private static final String SNAPSHOT_FILE_NAME = "frontier-snapshot.bin";
+    private static final String JOURNAL_FILE_PREFIX = "frontier-journal-";
+    private static final String JOURNAL_FILE_SUFFIX = ".log";
+    private static final int SNAPSHOT_MAGIC = 0x53515243;
+    private static final int SNAPSHOT_VERSION = 1;
+    /**
+     * The maximum size of a region of a file that is mapped into memory at
+     * once.
+     */
+    private static final int MAX_MAPPED_REGION_SIZE = 1 << 30;
+
+    /**
+     * Record of URIs that have been marked as known.
+     */
+    private static final byte KNOWN_RECORD = 1;
+    /**
+     * Record of URIs that have been added to the queue.
+     */
+    private static final byte QUEUED_RECORD = 2;
+    /**
+     * Record of URIs that have been crawled, i.e., that have been marked as
+     * known and are not part of the queue anymore.
+     */
+    private static final byte CRAWLED_RECORD = 3;
+
+    private final File directory;
+    private final InMemoryQueue queue;
+    private final FingerprintKnownUriFilter knownUriFilter;
+    private final Serializer serializer;
+    private final long snapshotInterval;
+    private final Object journalMutex = new Object();
+    /**
+     * The current journal. Guarded by {@link #journalMutex}.
+     */
+    private DataOutputStream journal = null;
+    /**
+     * The id of the current journal. Guarded by {@link #journalMutex}.
+     */
+    private long journalId = 0;
+    private Timer snapshotTimer = null;
+
+    /**
+     * Constructor using a {@link SnappyJavaUriSerializer} and the
+     * {@link #DEFAULT_SNAPSHOT_INTERVAL}.
+     *
+     * @param directory
+     *            the directory in which the snapshot and the journals are
+     *            stored
+     * @param queue
+     *            the queue of the frontier
+     * @param knownUriFilter
+     *            the known URI filter of the frontier
+     */
+    public FrontierCheckpoint(File directory, InMemoryQueue queue, FingerprintKnownUriFilter knownUriFilter) {
+        this(directory, queue, knownUriFilter, new SnappyJavaUriSerializer(), DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory
+     *            the directory in which the snapshot and the journals are
+     *            stored
+     * @param queue
+     *            the queue of the frontier
+     * @param knownUriFilter
+     *            the known URI filter of the frontier
+     * @param serializer
+     *            the serializer used to store the queued URIs
+     * @param snapshotInterval
+     *            the time (in ms) between two snapshots. Values &lt;= 0 disable
+     *            the periodic snapshots, i.e., a snapshot is only written when
+     *            the checkpoint is opened and closed.
+     */
+    public FrontierCheckpoint(File directory, InMemoryQueue queue, FingerprintKnownUriFilter knownUriFilter,
+            Serializer serializer, long snapshotInterval) {
+        this.directory = directory;
+        this.queue = queue;
+        this.knownUriFilter = knownUriFilter;
+        this.serializer = serializer;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Restores the state of the queue and the filter from the snapshot and the
+     * journals, writes a new snapshot and starts the periodic snapshots. Has
+     * to be called before the frontier starts to work.
+     *
+     * @throws IOException
+     *             if the state can not be restored or the first snapshot can
+     *             not be written
+     */
+    public void open() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IllegalStateException("Couldn't create the directory " + directory.getAbsolutePath());
+        }
+        restore();
+        // the restored state becomes the new snapshot and the replayed journals can be removed
+        if (!writeSnapshot()) {
+            throw new IOException("Couldn't write the first snapshot to " + directory.getAbsolutePath());
+        }
+        if (snapshotInterval > 0) {
+            snapshotTimer = new Timer("frontier-checkpoint", true);
+            snapshotTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    writeSnapshot();
+                }
+            }, snapshotInterval, snapshotInterval);
+        }
+    }
+
+    /**
+     * Reads the snapshot (if it exists), replays the journals that have been
+     * written after the snapshot and adds the queued URIs to the queue.
+     */
+    protected void restore() throws IOException {
+        Map<URI, CrawleableUri> queuedUris = new LinkedHashMap<>();
+        long firstJournalId = 0;
+        File snapshotFile = new File(directory, SNAPSHOT_FILE_NAME);
+        if (snapshotFile.exists()) {
+            try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+                DataInputStream in = new DataInputStream(new MappedInputStream(channel));
+                if ((in.readInt() != SNAPSHOT_MAGIC) || (in.readInt() != SNAPSHOT_VERSION)) {
+                    throw new IOException(snapshotFile.getAbsolutePath() + " is not a known snapshot format.");
+                }
+                firstJournalId = in.readLong();
+                knownUriFilter.readFrom(in);
+                byte[] data;
+                CrawleableUri uri;
+                while (in.readBoolean()) {
+                    data = new byte[in.readInt()];
+                    in.readFully(data);
+                    uri = serializer.deserializeSafely(data);
+                    if (uri != null) {
+                        queuedUris.put(uri.getUri(), uri);
+                    } else {
+                        LOGGER.warn("Couldn't deserialize a queued URI of the snapshot. It will be ignored.");
+                    }
+                }
+            }
+            LOGGER.info("Loaded snapshot with {} known and {} queued URIs.", knownUriFilter.count(),
+                    queuedUris.size());
+        }
+        long lastJournalId = firstJournalId;
+        for (long id : getJournalIds()) {
+            if (id < firstJournalId) {
+                // the journal is already part of the snapshot
+                deleteJournal(id);
+            } else {
+                replayJournal(getJournalFile(id), queuedUris);
+                lastJournalId = id;
+            }
+        }
+        synchronized (journalMutex) {
+            journalId = lastJournalId;
+        }
+        if (!queuedUris.isEmpty()) {
+            queue.addUris(new ArrayList<>(queuedUris.values()));
+        }
+        LOGGER.info("Restored {} known and {} queued URIs.", knownUriFilter.count(), queuedUris.size());
+    }
+
+    /**
+     * Applies the records of the given journal to the filter and the given map
+     * of queued URIs.
+     */
+    private void replayJournal(File journalFile, Map<URI, CrawleableUri> queuedUris) throws IOException {
+        int records = 0;
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ)) {
+            DataInputStream in = new DataInputStream(new MappedInputStream(channel));
+            int type;
+            byte[] payload;
+            while ((type = in.read()) >= 0) {
+                payload = new byte[in.readInt()];
+                in.readFully(payload);
+                applyRecord(type, new DataInputStream(new ByteArrayInputStream(payload)), queuedUris);
+                ++records;
+            }
+        } catch (EOFException e) {
+            LOGGER.warn("The journal {} ends with an incomplete record. It has been replayed up to this record.",
+                    journalFile.getAbsolutePath());
+        }
+        LOGGER.debug("Replayed {} records of {}.", records, journalFile.getAbsolutePath());
+    }
+
+    private void applyRecord(int type, DataInputStream in, Map<URI, CrawleableUri> queuedUris)
+            throws IOException {
+        switch (type) {
+        case KNOWN_RECORD: // falls through
+        case CRAWLED_RECORD: {
+            long lastCrawlTimestamp = in.readLong();
+            long nextCrawlTimestamp = in.readLong();
+            int count = in.readInt();
+            CrawleableUri uri;
+            for (int i = 0; i < count; ++i) {
+                uri = createUri(readString(in));
+                if (uri != null) {
+                    knownUriFilter.add(uri, lastCrawlTimestamp, nextCrawlTimestamp);
+                    if (type == CRAWLED_RECORD) {
+                        queuedUris.remove(uri.getUri());
+                    }
+                }
+            }
+            break;
+        }
+        case QUEUED_RECORD: {
+            int count = in.readInt();
+            byte[] data;
+            CrawleableUri uri;
+            for (int i = 0; i < count; ++i) {
+                data = new byte[in.readInt()];
+                in.readFully(data);
+                uri = serializer.deserializeSafely(data);
+                if (uri != null) {
+                    queuedUris.put(uri.getUri(), uri);
+                } else {
+                    LOGGER.warn("Couldn't deserialize a queued URI of the journal. It will be ignored.");
+                }
+            }
+            break;
+        }
+        default: {
+            LOGGER.warn("Got a journal record with the unknown type {}. It will be ignored.", type);
+        }
+        }
+    }
+
+    /**
+     * Records that the given URIs have been marked as known.
+     *
+     * @param uris
+     *            the URIs that have been added to the filter
+     * @param lastCrawlTimestamp
+     *            the last crawl time stamp with which they have been added
+     * @param nextCrawlTimestamp
+     *            the next crawl time stamp with which they have been added
+     */
+    public void journalKnownUris(List<CrawleableUri> uris, long lastCrawlTimestamp, long nextCrawlTimestamp) {
+        journalTimestampedUris(KNOWN_RECORD, uris, lastCrawlTimestamp, nextCrawlTimestamp);
+    }
+
+    /**
+     * Records that the given URIs have been crawled, i.e., they have been
+     * updated in the filter and are not part of the queue anymore.
+     *
+     * @param uris
+     *            the crawled URIs
+     * @param lastCrawlTimestamp
+     *            the last crawl time stamp with which they have been added to
+     *            the filter
+     * @param nextCrawlTimestamp
+     *            the next crawl time stamp with which they have been added to
+     *            the filter
+     */
+    public void journalCrawledUris(List<CrawleableUri> uris, long lastCrawlTimestamp, long nextCrawlTimestamp) {
+        journalTimestampedUris(CRAWLED_RECORD, uris, lastCrawlTimestamp, nextCrawlTimestamp);
+    }
+
+    private void journalTimestampedUris(byte type, List<CrawleableUri> uris, long lastCrawlTimestamp,
+            long nextCrawlTimestamp) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeLong(lastCrawlTimestamp);
+            out.writeLong(nextCrawlTimestamp);
+            out.writeInt(uris.size());
+            for (CrawleableUri uri : uris) {
+                writeString(out, uri.getUri().toString());
+            }
+        } catch (IOException e) {
+            // can not happen since the data is written to memory
+            throw new IllegalStateException(e);
+        }
+        appendRecord(type, payload.toByteArray());
+    }
+
+    /**
+     * Records that the given URIs have been added to the queue.
+     *
+     * @param uris
+     *            the URIs that have been added to the queue
+     */
+    public void journalQueuedUris(List<CrawleableUri> uris) {
+        List<byte[]> serializedUris = new ArrayList<>(uris.size());
+        byte[] data;
+        for (CrawleableUri uri : uris) {
+            data = serializer.serializeSafely(uri);
+            if (data != null) {
+                serializedUris.add(data);
+            } else {
+                LOGGER.error("Couldn't serialize URI {}. It won't be part of the journal.", uri.getUri());
+            }
+        }
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeInt(serializedUris.size());
+            for (byte[] serializedUri : serializedUris) {
+                out.writeInt(serializedUri.length);
+                out.write(serializedUri);
+            }
+        } catch (IOException e) {
+            // can not happen since the data is written to memory
+            throw new IllegalStateException(e);
+        }
+        appendRecord(QUEUED_RECORD, payload.toByteArray());
+    }
+
+    /**
+     * Appends the given record to the current journal and flushes the journal.
+     */
+    private void appendRecord(byte type, byte[] payload) {
+        synchronized (journalMutex) {
+            if (journal == null) {
+                LOGGER.debug("There is no open journal. The record will be ignored.");
+                return;
+            }
+            try {
+                journal.writeByte(type);
+                journal.writeInt(payload.length);
+                journal.write(payload);
+                journal.flush();
+            } catch (IOException e) {
+                LOGGER.error("Couldn't write to the journal. The change might be lost after a restart.", e);
+            }
+        }
+    }
+
+    /**
+     * Starts a new journal and writes a snapshot of the queue and the filter.
+     * The snapshot is written to a temporary file first which replaces the old
+     * snapshot, i.e., a crash while writing does not destroy the old snapshot.
+     * After that, the journals that are part of the snapshot are deleted.
+     *
+     * @return <code>true</code> if the snapshot has been written successfully
+     */
+    public synchronized boolean writeSnapshot() {
+        long firstJournalId;
+        try {
+            firstJournalId = startNewJournal();
+        } catch (IOException e) {
+            LOGGER.error("Couldn't start a new journal. The snapshot won't be written.", e);
+            return false;
+        }
+        File snapshotFile = new File(directory, SNAPSHOT_FILE_NAME);
+        File tempFile = new File(directory, SNAPSHOT_FILE_NAME + ".tmp");
+        int numberOfUris = 0;
+        try (FileOutputStream fileOut = new FileOutputStream(tempFile);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(firstJournalId);
+            knownUriFilter.writeTo(out);
+            // The leases are copied before and after the queue since URIs move
+            // between them while the queue is copied.
+            Set<CrawleableUri> uris = new LinkedHashSet<>(queue.getLeasedUris());
+            uris.addAll(queue.getQueuedUris());
+            uris.addAll(queue.getLeasedUris());
+            byte[] data;
+            for (CrawleableUri uri : uris) {
+                data = serializer.serializeSafely(uri);
+                if (data != null) {
+                    out.writeBoolean(true);
+                    out.writeInt(data.length);
+                    out.write(data);
+                    ++numberOfUris;
+                } else {
+                    LOGGER.error("Couldn't serialize URI {}. It won't be part of the snapshot.", uri.getUri());
+                }
+            }
+            out.writeBoolean(false);
+            out.flush();
+            // the journals are deleted afterwards, i.e., the snapshot has to be on the disk
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            LOGGER.error("Couldn't write snapshot of the frontier to " + tempFile.getAbsolutePath() + ".", e);
+            return false;
+        }
+        try {
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.error("Couldn't replace the snapshot " + snapshotFile.getAbsolutePath() + ".", e);
+            return false;
+        }
+        for (long id : getJournalIds()) {
+            if (id < firstJournalId) {
+                deleteJournal(id);
+            }
+        }
+        LOGGER.info("Wrote snapshot of the frontier with {} known and {} queued URIs.", knownUriFilter.count(),
+                numberOfUris);
+        return true;
+    }
+
+    /**
+     * Closes the current journal and starts a new one.
+     *
+     * @return the id of the new journal
+     */
+    private long startNewJournal() throws IOException {
+        synchronized (journalMutex) {
+            long newJournalId = journalId + 1;
+            DataOutputStream newJournal = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(getJournalFile(newJournalId))));
+            Closer.close(journal, LOGGER);
+            journal = newJournal;
+            journalId = newJournalId;
+            return newJournalId;
+        }
+    }
+
+    private File getJournalFile(long id) {
+        return new File(directory, JOURNAL_FILE_PREFIX + id + JOURNAL_FILE_SUFFIX);
+    }
+
+    /**
+     * @return the ids of the journal files in the directory in ascending order
+     */
+    private long[] getJournalIds() {
+        String[] names = directory.list();
+        if (names == null) {
+            return new long[0];
+        }
+        long[] ids = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(JOURNAL_FILE_PREFIX) && name.endsWith(JOURNAL_FILE_SUFFIX)) {
+                try {
+                    ids[count] = Long.parseLong(
+                            name.substring(JOURNAL_FILE_PREFIX.length(), name.length() - JOURNAL_FILE_SUFFIX.length()));
+                    ++count;
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("Got an unexpected journal file name \"{}\". It will be ignored.", name);
+                }
+            }
+        }
+        ids = Arrays.copyOf(ids, count);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private void deleteJournal(long id) {
+        File journalFile = getJournalFile(id);
+        if (!journalFile.delete()) {
+            LOGGER.warn("Couldn't delete the old journal {}.", journalFile.getAbsolutePath());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static CrawleableUri createUri(String uriString) {
+        try {
+            return new CrawleableUri(new URI(uriString));
+        } catch (URISyntaxException e) {
+            LOGGER.warn("Couldn't recreate URI of the journal. It will be ignored.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Stops the periodic snapshots, writes a last snapshot and closes the
+     * journal.
+     */
+    @Override
+    public void close() throws IOException {
+        if (snapshotTimer != null) {
+            snapshotTimer.cancel();
+            snapshotTimer = null;
+        }
+        writeSnapshot();
+        synchronized (journalMutex) {
+            Closer.close(journal, LOGGER);
+            journal = null;
+        }
+    }
+
+    /**
+     * An input stream reading a file that is mapped into memory region by
+     * region.
+     */
+    private static class MappedInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long size;
+        /**
+         * The position of the file at which the next region starts.
+         */
+        private long position = 0;
+        private MappedByteBuffer buffer = null;
+
+        public MappedInputStream(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        /**
+         * Maps the next region if the current region has been read completely.
+         *
+         * @return <code>false</code> if the end of the file has been reached
+         */
+        private boolean ensureData() throws IOException {
+            if ((buffer != null) && buffer.hasRemaining()) {
+                return true;
+            }
+            if (position >= size) {
+                return false;
+            }
+            long regionSize = Math.min(size - position, MAX_MAPPED_REGION_SIZE);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize);
+            position += regionSize;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return ensureData() ? (buffer.get() & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureData()) {
+                return -1;
+            }
+            int length = Math.min(len, buffer.remaining());
+            buffer.get(b, off, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            long available = ((buffer == null) ? 0 : buffer.remaining()) + (size - position);
+            return (int) Math.min(available, Integer.MAX_VALUE);
+        }
+    }
+}
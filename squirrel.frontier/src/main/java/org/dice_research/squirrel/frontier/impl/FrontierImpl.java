@@ -12,6 +12,7 @@ import org.dice_research.squirrel.frontier.Frontier;
 import org.dice_research.squirrel.graph.GraphLogger;
 import org.dice_research.squirrel.queue.IpAddressBasedQueue;
 import org.dice_research.squirrel.queue.UriQueue;
+import org.dice_research.squirrel.uri.processing.CachingDnsResolver;
 import org.dice_research.squirrel.uri.processing.UriProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,10 +61,24 @@ public class FrontierImpl implements Frontier {
      * SPARQL, DEREFERENCEABLE or UNKNOWN
      */
     protected UriProcessor uriProcessor;
+    /**
+     * {@link CachingDnsResolver} used to determine the IP addresses of the
+     * incoming URIs.
+     */
+    protected CachingDnsResolver dnsResolver;
+    /**
+     * {@link UriIngestionPipeline} used to add batches of new URIs.
+     */
+    protected UriIngestionPipeline ingestionPipeline;
     /**
      * {@link GraphLogger} that can be added to log the crawled graph.
      */
     protected GraphLogger graphLogger;
+    /**
+     * {@link FrontierCheckpoint} that records the changes of the queue and the
+     * {@link #knownUriFilter} or null if no checkpoints are written.
+     */
+    protected FrontierCheckpoint checkpoint;
 
 
     /**
@@ -95,6 +110,35 @@ public class FrontierImpl implements Frontier {
      * Default value for {@link #timerPeriod}.
      */
     private static final long DEFAULT_TIMER_PERIOD = 1000 * 60 * 60;
+
+    /**
+     * The maximum number of outdated URIs that are retrieved from the
+     * {@link #knownUriFilter} at once.
+     */
+    protected static final int RECRAWL_BATCH_SIZE = 1000;
+
+    /**
+     * Default value for {@link #responseTimeFactor}.
+     */
+    public static final double DEFAULT_RESPONSE_TIME_FACTOR = 2.0;
+
+    /**
+     * Default value for {@link #maxResponseTimeDelay} (30 seconds).
+     */
+    public static final long DEFAULT_MAX_RESPONSE_TIME_DELAY = 1000 * 30;
+
+    /**
+     * The average fetch duration of the URIs of an IP is multiplied with this
+     * factor to determine the politeness delay before the next chunk of this IP
+     * is handed out.
+     */
+    private double responseTimeFactor = DEFAULT_RESPONSE_TIME_FACTOR;
+
+    /**
+     * The maximum delay (in milliseconds) that is derived from the fetch
+     * durations. The crawl delay reported by the worker is not limited.
+     */
+    private long maxResponseTimeDelay = DEFAULT_MAX_RESPONSE_TIME_DELAY;
         
     /**
      * Constructor.
@@ -191,6 +235,8 @@ public class FrontierImpl implements Frontier {
         this.uriReferences = uriReferences;
         this.queue = queue;
         this.uriProcessor = new UriProcessor();
+        this.dnsResolver = new CachingDnsResolver();
+        this.ingestionPipeline = new UriIngestionPipeline(this);
         this.graphLogger = graphLogger;
         
         this.queue.open();
@@ -203,13 +249,49 @@ public class FrontierImpl implements Frontier {
             timerRecrawling.schedule(new TimerTask() {
                 @Override
                 public void run() {
-                    List<CrawleableUri> urisToRecrawl = knownUriFilter.getOutdatedUris();
-                    urisToRecrawl.forEach(uri -> queue.addUri(uriProcessor.recognizeUriType(uri)));
+                    try {
+                        recrawlOutdatedUris();
+                    } catch (Exception e) {
+                        LOGGER.error("Error while adding outdated URIs to the queue.", e);
+                    }
                 }
             }, this.timerPeriod, this.timerPeriod);
         }
     }
 
+    /**
+     * Streams the outdated URIs of the {@link #knownUriFilter} in batches of
+     * {@link #RECRAWL_BATCH_SIZE} URIs into the queue.
+     */
+    protected void recrawlOutdatedUris() {
+        List<CrawleableUri> urisToRecrawl;
+        do {
+            urisToRecrawl = knownUriFilter.getOutdatedUris(RECRAWL_BATCH_SIZE);
+            List<CrawleableUri> urisWithoutIp = new ArrayList<>();
+            for (CrawleableUri uri : urisToRecrawl) {
+                if (uri.getIpAddress() == null) {
+                    urisWithoutIp.add(uri);
+                }
+            }
+            if (!urisWithoutIp.isEmpty()) {
+                dnsResolver.resolveIpAddresses(urisWithoutIp);
+            }
+            List<CrawleableUri> urisToAdd = new ArrayList<>(urisToRecrawl.size());
+            for (CrawleableUri uri : urisToRecrawl) {
+                uri = recognizeUriType(uri);
+                if (uri != null) {
+                    urisToAdd.add(uri);
+                }
+            }
+            if (!urisToAdd.isEmpty()) {
+                queue.addUris(urisToAdd);
+                if (checkpoint != null) {
+                    checkpoint.journalQueuedUris(urisToAdd);
+                }
+            }
+        } while (urisToRecrawl.size() >= RECRAWL_BATCH_SIZE);
+    }
+
     @Override
     public List<CrawleableUri> getNextUris() {
 
@@ -222,44 +304,129 @@ public class FrontierImpl implements Frontier {
 
     @Override
     public void addNewUris(List<CrawleableUri> uris) {
-        for (CrawleableUri uri : uris) {
-            addNewUri(uri);
-        }
+        // normalize, filter, resolve and store the URIs batch-wise
+        ingestionPipeline.addUris(uris);
     }
 
     @Override
     public void addNewUri(CrawleableUri uri) {
         // Normalize the URI
         uri = normalizer.normalize(uri);
-        // After knownUriFilter uri should be classified according to
-        // UriProcessor
-        
-        if (knownUriFilter.isUriGood(uri)) {
-            LOGGER.debug("addNewUri(" + uri + "): URI is good [" + knownUriFilter + "]");
-            if (schemeUriFilter.isUriGood(uri)) {
-                LOGGER.trace("addNewUri(" + uri.getUri() + "): URI schemes is OK [" + schemeUriFilter + "]");
-                // Make sure that the IP is known
+        // Make sure that no other thread checks and adds the same URI at the
+        // same time. If the other thread fails, the pipeline adds it again.
+        if (!ingestionPipeline.reserve(uri.getUri())) {
+            LOGGER.debug("addNewUri({}): URI is currently added by another thread. Will not be added!", uri);
+            return;
+        }
+        boolean added = false;
+        try {
+            // After knownUriFilter uri should be classified according to
+            // UriProcessor
+            if (knownUriFilter.isUriGood(uri)) {
+                LOGGER.debug("addNewUri(" + uri + "): URI is good [" + knownUriFilter + "]");
+                CrawleableUri knownUri = prepareGoodUri(uri);
+                if (knownUri != null) {
+                    CrawleableUri uriToAdd = recognizeUriType(knownUri);
+                    if (uriToAdd != null) {
+                        queue.addUri(uriToAdd);
+                    }
+                    // The URI is marked as known only after the queue accepted it.
+                    // If the queue fails, the URI can be added again later on.
+                    long now = System.currentTimeMillis();
+                    knownUriFilter.add(knownUri, now);
+                    if (checkpoint != null) {
+                        checkpoint.journalKnownUris(Collections.singletonList(knownUri), now, now);
+                        if (uriToAdd != null) {
+                            checkpoint.journalQueuedUris(Collections.singletonList(uriToAdd));
+                        }
+                    }
+                }
+            } else {
+                LOGGER.debug("addNewUri(" + uri + "): URI is not good [" + knownUriFilter + "]. Will not be added!");
+            }
+            added = true;
+        } finally {
+            if (added) {
+                ingestionPipeline.release(uri.getUri());
+            } else {
+                ingestionPipeline.releaseFailed(uri);
+            }
+        }
+    }
+
+    /**
+     * Checks the scheme of the given (good) URI and determines its IP address
+     * if it is not known, yet. A known IP address is kept, since a sharded
+     * frontier forwards URIs to the owner of their IP address. The URIs that
+     * are returned by this method have to be marked as known, even if their
+     * host can not be resolved. Only the URIs for which
+     * {@link #recognizeUriType(CrawleableUri)} returns a URI are added to the
+     * queue. {@link #addNewUri(CrawleableUri)} and the
+     * {@link UriIngestionPipeline} follow this rule.
+     *
+     * @param uri the URI that has been accepted by the {@link #knownUriFilter}
+     * @return the URI that should be marked as known or null if its scheme is
+     *         not supported
+     */
+    protected CrawleableUri prepareGoodUri(CrawleableUri uri) {
+        if (schemeUriFilter.isUriGood(uri)) {
+            LOGGER.trace("addNewUri(" + uri.getUri() + "): URI schemes is OK [" + schemeUriFilter + "]");
+            // Make sure that the IP is known
+            if (uri.getIpAddress() == null) {
                 try {
-                    uri = this.uriProcessor.recognizeInetAddress(uri);
-                    
+                    uri.setIpAddress(dnsResolver.resolve(uri.getUri().getHost()));
                 } catch (UnknownHostException e) {
                     LOGGER.error("Could not recognize IP for {}, unknown host", uri.getUri());
                 }
-                if (uri.getIpAddress() != null) {
-                    queue.addUri(this.uriProcessor.recognizeUriType(uri));
-                } else {
-                    LOGGER.error("Couldn't determine the Inet address of \"{}\". It will be ignored.", uri.getUri());
-                }
-                knownUriFilter.add(uri, System.currentTimeMillis());
-            } else {
-                LOGGER.warn("addNewUri(" + uri + "): " + uri.getUri().getScheme() + " is not supported, only " + schemeUriFilter.getSchemes() + ". Will not added!");
             }
-            
+            return uri;
         } else {
-            LOGGER.debug("addNewUri(" + uri + "): URI is not good [" + knownUriFilter + "]. Will not be added!");
+            LOGGER.warn("addNewUri(" + uri + "): " + uri.getUri().getScheme() + " is not supported, only " + schemeUriFilter.getSchemes() + ". Will not added!");
+            return null;
         }
     }
 
+    /**
+     * Determines the type of the given URI.
+     *
+     * @param uri the URI that should be added to the queue
+     * @return the URI with its type or null if its IP address is not known
+     */
+    protected CrawleableUri recognizeUriType(CrawleableUri uri) {
+        if (uri.getIpAddress() != null) {
+            return this.uriProcessor.recognizeUriType(uri);
+        } else {
+            LOGGER.error("Couldn't determine the Inet address of \"{}\". It will be ignored.", uri.getUri());
+            return null;
+        }
+    }
+
+    @Override
+    public void extendLease(List<CrawleableUri> uris) {
+        if (queue instanceof IpAddressBasedQueue) {
+            for (List<CrawleableUri> chunk : groupByIp(uris).values()) {
+                if (!((IpAddressBasedQueue) queue).extendLease(chunk)) {
+                    LOGGER.debug("Couldn't extend the lease of {}.", chunk.get(0).getIpAddress());
+                }
+            }
+        }
+    }
+
+    /**
+     * Groups the given URIs by their IPs. URIs without an IP are ignored.
+     */
+    private static Map<InetAddress, List<CrawleableUri>> groupByIp(List<CrawleableUri> uris) {
+        Map<InetAddress, List<CrawleableUri>> urisOfIps = new HashMap<>();
+        InetAddress ip;
+        for (CrawleableUri uri : uris) {
+            ip = uri.getIpAddress();
+            if (ip != null) {
+                urisOfIps.computeIfAbsent(ip, k -> new ArrayList<>()).add(uri);
+            }
+        }
+        return urisOfIps;
+    }
+
     @Override
     public void crawlingDone(List<CrawleableUri> uris) {
         LOGGER.info("One worker finished his work and crawled " + uris.size() + " URIs.");
@@ -280,17 +447,13 @@ public class FrontierImpl implements Frontier {
 //        }
         // If we should give the crawled IPs to the queue
         if (queue instanceof IpAddressBasedQueue) {
-            Set<InetAddress> ips = new HashSet<>();
-            InetAddress ip;
-            for (CrawleableUri uri : uris) {
-                ip = uri.getIpAddress();
-                if (ip != null) {
-                    ips.add(ip);
-                }
-            }
-            ips.forEach(_ip -> ((IpAddressBasedQueue) queue).markIpAddressAsAccessible(_ip));
+            long now = System.currentTimeMillis();
+            // the IP is only released if the chunk still holds its lease
+            groupByIp(uris).forEach((_ip, _uris) -> ((IpAddressBasedQueue) queue).finishChunk(_uris,
+                    getNextAllowedFetchTime(_uris, now)));
         }
         // send list of crawled URIs to the knownUriFilter
+        List<CrawleableUri> crawledUris = new ArrayList<>(uris.size());
         for (CrawleableUri uri : uris) {
             Long recrawlOn = (Long) uri.getData(Constants.URI_PREFERRED_RECRAWL_ON);
             // If a recrawling is defined, check whether we can directly add it back to the queue
@@ -300,11 +463,92 @@ public class FrontierImpl implements Frontier {
                 recrawlUri.addData(Constants.URI_TYPE_KEY, uri.getData(Constants.URI_TYPE_KEY));
                 addNewUri(recrawlUri);
             }else {
-            	knownUriFilter.add(uri,System.currentTimeMillis());
+            	crawledUris.add(uri);
+            }
+        }
+        if (!crawledUris.isEmpty()) {
+            long now = System.currentTimeMillis();
+            knownUriFilter.addAll(crawledUris, now);
+            if (checkpoint != null) {
+                checkpoint.journalCrawledUris(crawledUris, now, now);
             }
         }
     }
 
+    /**
+     * Determines the point in time from which on the IP of the given URIs may be
+     * crawled again. The delay is the maximum of the crawl delays reported by
+     * the worker and the average fetch duration multiplied with
+     * {@link #responseTimeFactor} (limited by {@link #maxResponseTimeDelay}).
+     *
+     * @param uris
+     *            the crawled URIs of a single IP
+     * @param now
+     *            the current time
+     * @return the next allowed fetch time of the IP
+     */
+    protected long getNextAllowedFetchTime(List<CrawleableUri> uris, long now) {
+        long crawlDelay = 0;
+        long fetchDurationSum = 0;
+        int fetchDurationCount = 0;
+        Object value;
+        for (CrawleableUri uri : uris) {
+            value = uri.getData(Constants.URI_CRAWL_DELAY);
+            if (value instanceof Number) {
+                crawlDelay = Math.max(crawlDelay, ((Number) value).longValue());
+            }
+            value = uri.getData(Constants.URI_FETCH_DURATION);
+            if (value instanceof Number) {
+                fetchDurationSum += ((Number) value).longValue();
+                ++fetchDurationCount;
+            }
+        }
+        long delay = crawlDelay;
+        if (fetchDurationCount > 0) {
+            long responseTimeDelay = (long) (responseTimeFactor * fetchDurationSum / fetchDurationCount);
+            delay = Math.max(delay, Math.min(responseTimeDelay, maxResponseTimeDelay));
+        }
+        return now + delay;
+    }
+
+    public void setResponseTimeFactor(double responseTimeFactor) {
+        this.responseTimeFactor = responseTimeFactor;
+    }
+
+    public void setMaxResponseTimeDelay(long maxResponseTimeDelay) {
+        this.maxResponseTimeDelay = maxResponseTimeDelay;
+    }
+
+    /**
+     * @return the resolver used to determine the IP addresses of new URIs
+     */
+    public CachingDnsResolver getDnsResolver() {
+        return dnsResolver;
+    }
+
+    /**
+     * Replaces the {@link #dnsResolver}. The old resolver is closed.
+     *
+     * @param dnsResolver
+     *            the new resolver
+     */
+    public void setDnsResolver(CachingDnsResolver dnsResolver) {
+        CachingDnsResolver oldResolver = this.dnsResolver;
+        this.dnsResolver = dnsResolver;
+        oldResolver.close();
+    }
+
+    /**
+     * Sets the {@link #checkpoint} that records the changes of the queue and
+     * the {@link #knownUriFilter}. It has to be opened before it is set.
+     *
+     * @param checkpoint
+     *            the checkpoint or null if no checkpoints should be written
+     */
+    public void setCheckpoint(FrontierCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
     @Override
     public int getNumberOfPendingUris() {
         if (queue instanceof IpAddressBasedQueue) {
@@ -321,7 +565,11 @@ public class FrontierImpl implements Frontier {
 
     @Override
     public void close() {
-        timerRecrawling.cancel();
+        if (timerRecrawling != null) {
+            timerRecrawling.cancel();
+        }
+        ingestionPipeline.close();
+        dnsResolver.close();
     }
 
 
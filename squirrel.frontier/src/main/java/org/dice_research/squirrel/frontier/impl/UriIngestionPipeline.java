@@ -0,0 +1,507 @@
+package org.dice_research.squirrel.frontier.impl;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A pipeline that adds batches of new URIs to a {@link FrontierImpl}. Every
+ * batch passes the following stages:
+ * </p>
+ * <ol>
+ * <li>normalize the URIs and remove duplicates within the batch,</li>
+ * <li>check the URIs with the known URI filter,</li>
+ * <li>resolve the distinct hosts, check the schemes and determine the URI
+ * types,</li>
+ * <li>add the URIs to the queue and mark them as known.</li>
+ * </ol>
+ *
+ * <p>
+ * Each stage has its own threads and the stages are connected by bounded
+ * queues. The stages that access the database (2 and 4) merge the batches that
+ * are waiting in their queue. A URI that is part of several concurrent batches
+ * is added only once and is added again in the background if the batch adding
+ * it fails. Other code that adds URIs has to use {@link #reserve(URI)},
+ * {@link #release(URI)} and {@link #releaseFailed(CrawleableUri)}.
+ * </p>
+ *
+ * <p>
+ * {@link #close()} processes the accepted batches completely. Batches that are
+ * added afterwards fail with an {@link IllegalStateException}.
+ * </p>
+ */
+public class UriIngestionPipeline implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UriIngestionPipeline.class);
+
+    /**
+     * Default number of batches that can wait in front of a stage.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+    /**
+     * Default maximum number of URIs the database stages merge into a single
+     * request.
+     */
+    public static final int DEFAULT_MAX_MERGED_URIS = 5000;
+    /**
+     * Default number of threads of the resolving stage.
+     */
+    public static final int DEFAULT_RESOLVER_THREADS = 4;
+    /**
+     * Batch that tells a stage thread to stop.
+     */
+    private static final Batch POISON_PILL = new Batch(Collections.<CrawleableUri> emptyList());
+
+    private final FrontierImpl frontier;
+    private final int maxMergedUris;
+    private final BlockingQueue<Batch> normalizerQueue;
+    private final BlockingQueue<Batch> filterQueue;
+    private final BlockingQueue<Batch> resolverQueue;
+    private final BlockingQueue<Batch> storeQueue;
+    /**
+     * The URIs that passed the filter stage but have not been marked as known
+     * yet, mapped to a flag that shows whether somebody else tried to add the
+     * URI in the meantime.
+     */
+    private final Map<URI, Boolean> urisInProgress = new ConcurrentHashMap<>();
+    /**
+     * Adds the URIs of failed batches again that have been skipped by other
+     * batches.
+     */
+    private final ExecutorService retryExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "uri-ingestion-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<Stage> stages = new ArrayList<>();
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor using the default values.
+     *
+     * @param frontier
+     *            the frontier the URIs are added to
+     */
+    public UriIngestionPipeline(FrontierImpl frontier) {
+        this(frontier, Runtime.getRuntime().availableProcessors(), DEFAULT_RESOLVER_THREADS, DEFAULT_QUEUE_CAPACITY,
+                DEFAULT_MAX_MERGED_URIS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param frontier
+     *            the frontier the URIs are added to
+     * @param normalizerThreads
+     *            number of threads that normalize URIs
+     * @param resolverThreads
+     *            number of threads that resolve the hosts of the URIs
+     * @param queueCapacity
+     *            number of batches that can wait in front of a stage
+     * @param maxMergedUris
+     *            maximum number of URIs the database stages merge into a single
+     *            request
+     */
+    public UriIngestionPipeline(FrontierImpl frontier, int normalizerThreads, int resolverThreads, int queueCapacity,
+            int maxMergedUris) {
+        this.frontier = frontier;
+        this.maxMergedUris = maxMergedUris;
+        normalizerQueue = new ArrayBlockingQueue<>(queueCapacity);
+        filterQueue = new ArrayBlockingQueue<>(queueCapacity);
+        resolverQueue = new ArrayBlockingQueue<>(queueCapacity);
+        storeQueue = new ArrayBlockingQueue<>(queueCapacity);
+        startStage("normalize", normalizerThreads, normalizerQueue, false, this::normalize);
+        startStage("filter", 1, filterQueue, true, this::filter);
+        startStage("resolve", resolverThreads, resolverQueue, false, this::resolve);
+        startStage("store", 1, storeQueue, true, this::store);
+    }
+
+    /**
+     * Adds the given URIs to the frontier and waits until they have passed all
+     * stages.
+     *
+     * @param uris
+     *            the new URIs
+     */
+    public void addUris(List<CrawleableUri> uris) {
+        if (closed) {
+            throw new IllegalStateException("The pipeline has been closed.");
+        }
+        if (uris.isEmpty()) {
+            return;
+        }
+        Batch batch = new Batch(uris);
+        try {
+            normalizerQueue.put(batch);
+            // the first stage might have been stopped while we waited. Either
+            // close() or we take the batch out of the queue.
+            if (closed && normalizerQueue.remove(batch)) {
+                throw new IllegalStateException("The pipeline has been closed.");
+            }
+            batch.done.get();
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for the pipeline. The URIs might not have been added.");
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Couldn't add the URIs.", e.getCause());
+        }
+    }
+
+    /**
+     * Stage 1: normalizes the URIs and removes duplicates within the batch.
+     */
+    protected void normalize(List<Batch> batches) throws InterruptedException {
+        Batch batch = batches.get(0);
+        Set<CrawleableUri> normalizedUris = new LinkedHashSet<>();
+        for (CrawleableUri uri : batch.uris) {
+            normalizedUris.add(frontier.normalizer.normalize(uri));
+        }
+        batch.uris = new ArrayList<>(normalizedUris);
+        filterQueue.put(batch);
+    }
+
+    /**
+     * Stage 2: checks the URIs of all waiting batches with a single request to
+     * the known URI filter.
+     */
+    protected void filter(List<Batch> batches) throws InterruptedException {
+        // reserve the URIs before they are checked. URIs that are already
+        // reserved are part of another batch that is currently processed. They
+        // are added again if the other batch fails.
+        List<CrawleableUri> uris = new ArrayList<>();
+        for (Batch batch : batches) {
+            batch.goodUris = new ArrayList<>();
+            for (CrawleableUri uri : batch.uris) {
+                if (reserve(uri.getUri())) {
+                    batch.goodUris.add(uri);
+                    uris.add(uri);
+                }
+            }
+        }
+        Set<CrawleableUri> goodUris = new HashSet<>(frontier.knownUriFilter.filterGood(uris));
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{} of {} URIs of {} batch(es) are good [{}]", goodUris.size(), uris.size(), batches.size(),
+                    frontier.knownUriFilter);
+        }
+        for (Batch batch : batches) {
+            Iterator<CrawleableUri> iterator = batch.goodUris.iterator();
+            CrawleableUri uri;
+            while (iterator.hasNext()) {
+                uri = iterator.next();
+                if (!goodUris.contains(uri)) {
+                    release(uri.getUri());
+                    iterator.remove();
+                }
+            }
+            resolverQueue.put(batch);
+        }
+    }
+
+    /**
+     * Stage 3: resolves the distinct hosts of the good URIs in parallel, checks
+     * their schemes and determines their types.
+     */
+    protected void resolve(List<Batch> batches) throws InterruptedException {
+        Batch batch = batches.get(0);
+        List<String> hosts = new ArrayList<>(batch.goodUris.size());
+        for (CrawleableUri uri : batch.goodUris) {
+            if ((uri.getIpAddress() == null) && frontier.schemeUriFilter.isUriGood(uri)) {
+                hosts.add(uri.getUri().getHost());
+            }
+        }
+        frontier.dnsResolver.resolveAll(hosts);
+        batch.newKnownUris = new ArrayList<>(batch.goodUris.size());
+        batch.urisToAdd = new ArrayList<>(batch.goodUris.size());
+        for (CrawleableUri uri : batch.goodUris) {
+            uri = frontier.prepareGoodUri(uri);
+            if (uri != null) {
+                batch.newKnownUris.add(uri);
+                uri = frontier.recognizeUriType(uri);
+                if (uri != null) {
+                    batch.urisToAdd.add(uri);
+                }
+            }
+        }
+        storeQueue.put(batch);
+    }
+
+    /**
+     * Stage 4: adds the URIs of all waiting batches to the queue and marks
+     * them as known. The URIs are marked as known only after the queue has
+     * accepted them, i.e., if the queue fails, the URIs are not lost but can
+     * be added again.
+     */
+    protected void store(List<Batch> batches) {
+        List<CrawleableUri> newKnownUris = new ArrayList<>();
+        List<CrawleableUri> urisToAdd = new ArrayList<>();
+        for (Batch batch : batches) {
+            newKnownUris.addAll(batch.newKnownUris);
+            urisToAdd.addAll(batch.urisToAdd);
+        }
+        FrontierCheckpoint checkpoint = frontier.checkpoint;
+        // add all accepted URIs at once to make use of batch writes of the queue
+        if (!urisToAdd.isEmpty()) {
+            frontier.queue.addUris(urisToAdd);
+        }
+        if (!newKnownUris.isEmpty()) {
+            long now = System.currentTimeMillis();
+            frontier.knownUriFilter.addAll(newKnownUris, now);
+            if (checkpoint != null) {
+                checkpoint.journalKnownUris(newKnownUris, now, now);
+            }
+        }
+        if ((checkpoint != null) && !urisToAdd.isEmpty()) {
+            checkpoint.journalQueuedUris(urisToAdd);
+        }
+        for (Batch batch : batches) {
+            releaseUris(batch);
+            batch.done.complete(null);
+        }
+    }
+
+    /**
+     * Reserves the given URI for the caller. A URI has to be reserved before
+     * it is checked by the known URI filter and it has to be released after it
+     * has been marked as known. As long as a URI is reserved, nobody else can
+     * reserve it, i.e., checking and adding a URI becomes an atomic operation.
+     * A caller that can not reserve the URI can drop it, since the URI is
+     * added again if the current owner fails (see
+     * {@link #releaseFailed(CrawleableUri)}).
+     *
+     * @param uri
+     *            the URI that should be reserved
+     * @return <code>true</code> if the URI has been reserved or
+     *         <code>false</code> if it is already reserved by somebody else
+     */
+    public boolean reserve(URI uri) {
+        // an existing reservation is marked as skipped
+        return !urisInProgress.compute(uri, (u, skipped) -> skipped != null);
+    }
+
+    /**
+     * Releases a URI that has been reserved with {@link #reserve(URI)} after
+     * it has been handled successfully.
+     *
+     * @param uri
+     *            the URI that should be released
+     */
+    public void release(URI uri) {
+        urisInProgress.remove(uri);
+    }
+
+    /**
+     * Releases a URI that has been reserved with {@link #reserve(URI)} but
+     * could not be added. If somebody else tried to add the URI while it was
+     * reserved, it is added again in the background.
+     *
+     * @param uri
+     *            the URI that should be released
+     */
+    public void releaseFailed(CrawleableUri uri) {
+        if (Boolean.TRUE.equals(urisInProgress.remove(uri.getUri()))) {
+            retry(Collections.singletonList(uri));
+        }
+    }
+
+    private void releaseUris(Batch batch) {
+        if (batch.goodUris != null) {
+            for (CrawleableUri uri : batch.goodUris) {
+                release(uri.getUri());
+            }
+        }
+    }
+
+    /**
+     * Releases the URIs of a failed batch and adds the URIs again that have
+     * been skipped by other batches.
+     */
+    private void releaseFailedUris(Batch batch) {
+        if (batch.goodUris != null) {
+            List<CrawleableUri> skippedUris = new ArrayList<>();
+            for (CrawleableUri uri : batch.goodUris) {
+                if (Boolean.TRUE.equals(urisInProgress.remove(uri.getUri()))) {
+                    skippedUris.add(uri);
+                }
+            }
+            if (!skippedUris.isEmpty()) {
+                retry(skippedUris);
+            }
+        }
+    }
+
+    private void retry(List<CrawleableUri> uris) {
+        try {
+            retryExecutor.execute(() -> {
+                try {
+                    addUris(uris);
+                } catch (Exception e) {
+                    LOGGER.error("Couldn't add " + uris.size()
+                            + " URI(s) again that other batches skipped. They will be lost.", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("The pipeline has been closed. {} URI(s) that other batches skipped will be lost.",
+                    uris.size());
+        }
+    }
+
+    private void startStage(String name, int numberOfThreads, BlockingQueue<Batch> input, boolean mergeBatches,
+            StageFunction function) {
+        Stage stage = new Stage(name, input);
+        for (int i = 0; i < numberOfThreads; ++i) {
+            Thread thread = new Thread(() -> {
+                List<Batch> batches = new ArrayList<>();
+                boolean stop = false;
+                while (!stop) {
+                    batches.clear();
+                    try {
+                        Batch batch = input.take();
+                        if (batch == POISON_PILL) {
+                            return;
+                        }
+                        batches.add(batch);
+                        if (mergeBatches) {
+                            int size = batch.uris.size();
+                            while ((size < maxMergedUris) && ((batch = input.poll()) != null)) {
+                                if (batch == POISON_PILL) {
+                                    // process the merged batches before stopping
+                                    stop = true;
+                                    break;
+                                }
+                                batches.add(batch);
+                                size += batch.uris.size();
+                            }
+                        }
+                        function.process(batches);
+                    } catch (InterruptedException e) {
+                        for (Batch batch : batches) {
+                            releaseFailedUris(batch);
+                            batch.done.completeExceptionally(e);
+                        }
+                        return;
+                    } catch (Throwable e) {
+                        LOGGER.error("Exception in the " + name + " stage. The URIs of " + batches.size()
+                                + " batch(es) will be discarded.", e);
+                        for (Batch batch : batches) {
+                            releaseFailedUris(batch);
+                            batch.done.completeExceptionally(e);
+                        }
+                    }
+                }
+            }, "uri-ingestion-" + name + "-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            stage.threads.add(thread);
+        }
+        stages.add(stage);
+    }
+
+    /**
+     * Stops the threads of the given stage after they processed the batches
+     * that are already waiting in front of the stage. The subsequent stages
+     * have to be still running since the stopping stage might have to hand
+     * over its batches.
+     */
+    private void stopStage(Stage stage) {
+        try {
+            for (int i = 0; i < stage.threads.size(); ++i) {
+                stage.input.put(POISON_PILL);
+            }
+            for (Thread thread : stage.threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while stopping the {} stage. Its threads will be interrupted.", stage.name);
+            for (Thread thread : stage.threads) {
+                thread.interrupt();
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // the stages are stopped in the order of the pipeline
+        for (Stage stage : stages) {
+            stopStage(stage);
+        }
+        // callers that added their batches after the first stage stopped
+        // should not wait forever
+        List<Batch> remainingBatches = new ArrayList<>();
+        normalizerQueue.drainTo(remainingBatches);
+        filterQueue.drainTo(remainingBatches);
+        resolverQueue.drainTo(remainingBatches);
+        storeQueue.drainTo(remainingBatches);
+        for (Batch batch : remainingBatches) {
+            if (batch == POISON_PILL) {
+                continue;
+            }
+            releaseUris(batch);
+            batch.done.completeExceptionally(new IllegalStateException("The pipeline has been closed."));
+        }
+        retryExecutor.shutdown();
+    }
+
+    /**
+     * A function that is applied to the batches by a stage.
+     */
+    private static interface StageFunction {
+        public void process(List<Batch> batches) throws InterruptedException;
+    }
+
+    /**
+     * The input queue and the threads of a stage.
+     */
+    private static class Stage {
+        private final String name;
+        private final BlockingQueue<Batch> input;
+        private final List<Thread> threads = new ArrayList<>();
+
+        public Stage(String name, BlockingQueue<Batch> input) {
+            this.name = name;
+            this.input = input;
+        }
+    }
+
+    /**
+     * A batch of URIs that passes through the pipeline.
+     */
+    private static class Batch {
+        private List<CrawleableUri> uris;
+        private List<CrawleableUri> goodUris;
+        private List<CrawleableUri> newKnownUris;
+        private List<CrawleableUri> urisToAdd;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        public Batch(List<CrawleableUri> uris) {
+            this.uris = uris;
+        }
+    }
+}
@@ -8,40 +8,85 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 /**
  * This class checks whether some
  * {@link org.dice_research.squirrel.worker.Worker} has died and propagates the
  * information to the {@link FrontierComponent}.
  *
+ * <p>
+ * The deadlines of the workers are kept in a hashed timing wheel, i.e., an
+ * array of slots that is advanced by one slot per tick. An
+ * {@link AliveMessage} only updates the time stamp of its worker. The worker
+ * is moved to the slot of its new deadline when the wheel reaches its old
+ * slot. Hence, every worker is checked about once per
+ * {@link #DEFAULT_DEAD_TIMEOUT} instead of walking all workers with every
+ * tick. The URIs a worker is crawling are kept in a hash set, i.e., adding and
+ * removing a single URI has constant costs.
+ * </p>
+ *
  * @author Philip Frerk
- * 
+ *
  */
 public class WorkerGuard {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WorkerGuard.class);
 
-    /**
-     * A map from {@link org.dice_research.squirrel.worker.Worker} id to
-     * {@link WorkerInfo} containing information about the
-     * {@link org.dice_research.squirrel.worker.Worker}.
-     */
-    private Map<String, WorkerInfo> mapWorkerInfo = Collections.synchronizedMap(new HashMap<>());
-
     /**
      * After this period of time (in seconds), a worker is considered to be dead if
      * he has not sent an {@link AliveMessage} since.
      */
     public final static long TIME_WORKER_DEAD = 10;
 
+    /**
+     * The default time (in ms) without an {@link AliveMessage} after which a
+     * worker is considered to be dead.
+     */
+    public static final long DEFAULT_DEAD_TIMEOUT = TimeUnit.SECONDS.toMillis(TIME_WORKER_DEAD + 10);
+
+    /**
+     * The default duration (in ms) of a single tick of the timing wheel.
+     */
+    public static final long DEFAULT_TICK_DURATION = TimeUnit.SECONDS.toMillis(TIME_WORKER_DEAD) / 2;
+
+    /**
+     * A map from {@link org.dice_research.squirrel.worker.Worker} id to the
+     * state of the {@link org.dice_research.squirrel.worker.Worker}.
+     */
+    private final Map<String, WorkerState> workers = new ConcurrentHashMap<>();
+
+    /**
+     * The slots of the timing wheel. The wheel (including
+     * {@link #currentTick}) is guarded by its own monitor.
+     */
+    private final Set<WorkerState>[] wheel;
+
+    /**
+     * The number of ticks since {@link #startTime}.
+     */
+    private long currentTick = 0;
+
+    private final long startTime;
+    private final long deadTimeout;
+    private final long tickDuration;
+
+    /**
+     * Is informed about every worker that died together with the URIs it
+     * has not finished.
+     */
+    private final BiConsumer<String, List<CrawleableUri>> deadWorkerHandler;
+
     /**
      * Counting the number of workers that already died.
      */
-    private int numberOfDeadWorkers = 0;
+    private final AtomicInteger numberOfDeadWorkers = new AtomicInteger();
 
     /**
-     * The timer to check for dead or alive workers.
+     * The timer that advances the timing wheel.
      */
     private final Timer timer = new Timer();
 
@@ -53,37 +98,127 @@ public class WorkerGuard {
      *            The instance of {@link FrontierComponent}.
      */
     public WorkerGuard(FrontierComponent frontierComponent) {
+        this(frontierComponent::informFrontierAboutDeadWorker, DEFAULT_DEAD_TIMEOUT, DEFAULT_TICK_DURATION);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param deadWorkerHandler
+     *            is called with the id of a dead worker and the URIs it has not
+     *            finished
+     * @param deadTimeout
+     *            the time (in ms) without an {@link AliveMessage} after which a
+     *            worker is considered to be dead
+     * @param tickDuration
+     *            the duration (in ms) of a single tick of the timing wheel, i.e.,
+     *            the precision with which dead workers are detected
+     */
+    @SuppressWarnings("unchecked")
+    public WorkerGuard(BiConsumer<String, List<CrawleableUri>> deadWorkerHandler, long deadTimeout,
+            long tickDuration) {
+        if ((deadTimeout <= 0) || (tickDuration <= 0)) {
+            throw new IllegalArgumentException("The timeout and the tick duration have to be positive.");
+        }
+        this.deadWorkerHandler = deadWorkerHandler;
+        this.deadTimeout = deadTimeout;
+        this.tickDuration = tickDuration;
+        // a deadline is at most one timeout ahead of the current tick
+        wheel = new Set[(int) (deadTimeout / tickDuration) + 2];
+        for (int i = 0; i < wheel.length; ++i) {
+            wheel[i] = new HashSet<>();
+        }
+        startTime = System.currentTimeMillis();
         timer.schedule(new TimerTask() {
             @Override
             public void run() {
-                List<String> lstIdsToBeRemoved = new ArrayList<>();
-                for (String idWorker : mapWorkerInfo.keySet()) {
+                try {
+                    advance(System.currentTimeMillis());
+                } catch (Exception e) {
+                    LOGGER.error("Exception while checking for dead workers.", e);
+                }
+            }
+        }, tickDuration, tickDuration);
+    }
 
-                    if (mapWorkerInfo.get(idWorker).getDateLastAlive() == null) {
+    /**
+     * Advances the timing wheel to the given point in time and informs the
+     * handler about all workers whose deadline has passed.
+     *
+     * @param now
+     *            the current time (in ms)
+     */
+    protected void advance(long now) {
+        List<WorkerState> deadWorkers = new ArrayList<>();
+        synchronized (wheel) {
+            long targetTick = (now - startTime) / tickDuration;
+            // catch up if the timer has been delayed
+            while (currentTick < targetTick) {
+                ++currentTick;
+                Iterator<WorkerState> iterator = wheel[(int) (currentTick % wheel.length)].iterator();
+                WorkerState state;
+                while (iterator.hasNext()) {
+                    state = iterator.next();
+                    iterator.remove();
+                    if (workers.get(state.id) != state) {
+                        // the worker has been removed in the meantime
                         continue;
                     }
-
-                    boolean currentWorkerSendsAliveMessages = mapWorkerInfo.get(idWorker).workerSendsAliveMessages();
-                    // if a worker is not able to send alive messages he will not be removed
-                    if (currentWorkerSendsAliveMessages) {
-                        long duration = new Date().getTime() - mapWorkerInfo.get(idWorker).getDateLastAlive().getTime();
-                        if (TimeUnit.MILLISECONDS.toSeconds(duration) > TIME_WORKER_DEAD + 10) {
-                            // worker is dead
-                            lstIdsToBeRemoved.add(idWorker);
+                    long deadline = state.lastAlive + deadTimeout;
+                    if (deadline < now) {
+                        if (workers.remove(state.id, state)) {
+                            deadWorkers.add(state);
                         }
+                    } else {
+                        // the worker sent alive messages, move it to its new deadline
+                        schedule(state, deadline);
                     }
                 }
+            }
+        }
+        for (WorkerState state : deadWorkers) {
+            LOGGER.info("Worker {} seems to be dead.", state.id);
+            numberOfDeadWorkers.incrementAndGet();
+            deadWorkerHandler.accept(state.id, state.getUrisCrawling());
+        }
+    }
 
-                synchronized (this) {
-                    lstIdsToBeRemoved.forEach(id -> {
-                        frontierComponent.informFrontierAboutDeadWorker(id, mapWorkerInfo.get(id).getUrisCrawling());
-                        mapWorkerInfo.remove(id);
-                        numberOfDeadWorkers++;
-                    });
+    /**
+     * Adds the given worker to the slot of the given deadline. Has to be called
+     * while holding the monitor of the wheel.
+     */
+    private void schedule(WorkerState state, long deadline) {
+        long tick = (deadline - startTime + tickDuration - 1) / tickDuration;
+        if (tick <= currentTick) {
+            tick = currentTick + 1;
+        } else if (tick >= (currentTick + wheel.length)) {
+            // the worker will be checked earlier and moved again
+            tick = currentTick + wheel.length - 1;
+        }
+        wheel[(int) (tick % wheel.length)].add(state);
+    }
 
+    /**
+     * Returns the state of the given worker. If the worker is not known, it is
+     * registered.
+     */
+    private WorkerState getOrRegister(String idOfWorker, boolean workerSendsAliveMessages) {
+        WorkerState state = workers.get(idOfWorker);
+        if (state == null) {
+            WorkerState newState = new WorkerState(idOfWorker, workerSendsAliveMessages,
+                    System.currentTimeMillis());
+            state = workers.putIfAbsent(idOfWorker, newState);
+            if (state == null) {
+                state = newState;
+                // if a worker is not able to send alive messages he will not be removed
+                if (workerSendsAliveMessages) {
+                    synchronized (wheel) {
+                        schedule(state, state.lastAlive + deadTimeout);
+                    }
                 }
             }
-        }, 0, TimeUnit.SECONDS.toMillis(TIME_WORKER_DEAD) / 2);
+        }
+        return state;
     }
 
     /**
@@ -93,14 +228,12 @@ public class WorkerGuard {
      *            the given id.
      */
     public void putNewTimestamp(String idOfWorker) {
-        WorkerInfo workerInfo;
-        if (mapWorkerInfo.containsKey(idOfWorker)) {
-            workerInfo = mapWorkerInfo.get(idOfWorker);
-            workerInfo.setDateLastAlive(new Date());
+        WorkerState state = workers.get(idOfWorker);
+        if (state == null) {
+            getOrRegister(idOfWorker, true);
         } else {
-            workerInfo = new WorkerInfo(true, new ArrayList<>(), new Date());
+            state.lastAlive = System.currentTimeMillis();
         }
-        mapWorkerInfo.put(idOfWorker, workerInfo);
     }
 
     /**
@@ -112,16 +245,10 @@ public class WorkerGuard {
      *            The uris to put.
      */
     public void putUrisForWorker(String idOfWorker, boolean workerSendsAliveMessages, List<CrawleableUri> lstUris) {
-        WorkerInfo workerInfo;
-        if (mapWorkerInfo.containsKey(idOfWorker)) {
-            workerInfo = mapWorkerInfo.get(idOfWorker);
-            synchronized (workerInfo) {
-                workerInfo.getUrisCrawling().addAll(lstUris);
-            }
-        } else {
-            workerInfo = new WorkerInfo(workerSendsAliveMessages, lstUris, new Date());
+        WorkerState state = getOrRegister(idOfWorker, workerSendsAliveMessages);
+        synchronized (state) {
+            state.urisCrawling.addAll(lstUris);
         }
-        mapWorkerInfo.put(idOfWorker, workerInfo);
     }
 
     /**
@@ -133,20 +260,18 @@ public class WorkerGuard {
      *            The uris to be removed.
      */
     public void removeUrisForWorker(String idOfWorker, List<CrawleableUri> lstUrisToRemove) {
-        if (!mapWorkerInfo.containsKey(idOfWorker)) {
+        WorkerState state = (idOfWorker == null) ? null : workers.get(idOfWorker);
+        if (state == null) {
             LOGGER.warn("Got a message from an unknown worker ({}). The Guard will ignore it.", idOfWorker);
             return;
         }
-        if (mapWorkerInfo.get(idOfWorker) == null) {
-            LOGGER.error("Couldn't find a WorkerInfo instance for {}. The Guard will ignore it.", idOfWorker);
-            return;
-        }
-        WorkerInfo info = mapWorkerInfo.get(idOfWorker);
-        synchronized (info) {
-            if ((info.getUrisCrawling() == null) || (info.getUrisCrawling().size() == 0)) {
+        synchronized (state) {
+            if (state.urisCrawling.isEmpty()) {
                 return;
             }
-            info.getUrisCrawling().removeAll(lstUrisToRemove);
+            for (CrawleableUri uri : lstUrisToRemove) {
+                state.urisCrawling.remove(uri);
+            }
         }
     }
 
@@ -157,7 +282,18 @@ public class WorkerGuard {
         timer.cancel();
     }
 
+    /**
+     * Returns a snapshot of the information about the current workers.
+     *
+     * @return a map from worker id to a copy of the information about the
+     *         worker
+     */
     public Map<String, WorkerInfo> getMapWorkerInfo() {
+        Map<String, WorkerInfo> mapWorkerInfo = new HashMap<>();
+        for (WorkerState state : workers.values()) {
+            mapWorkerInfo.put(state.id, new WorkerInfo(state.sendsAliveMessages, state.getUrisCrawling(),
+                    new Date(state.lastAlive)));
+        }
         return mapWorkerInfo;
     }
 
@@ -167,7 +303,7 @@ public class WorkerGuard {
      * @return the number of running workers.
      */
     public int getNumberOfLiveWorkers() {
-        return mapWorkerInfo.size();
+        return workers.size();
     }
 
     /**
@@ -176,7 +312,33 @@ public class WorkerGuard {
      * @return {@link #numberOfDeadWorkers}..
      */
     public int getNumberOfDeadWorker() {
-        return numberOfDeadWorkers;
+        return numberOfDeadWorkers.get();
     }
 
+    /**
+     * The state of a single worker.
+     */
+    private static class WorkerState {
+        private final String id;
+        private final boolean sendsAliveMessages;
+        /**
+         * The time stamp of the last {@link AliveMessage}.
+         */
+        private volatile long lastAlive;
+        /**
+         * The URIs the worker is currently crawling. Guarded by the monitor of
+         * this state.
+         */
+        private final Set<CrawleableUri> urisCrawling = new HashSet<>();
+
+        public WorkerState(String id, boolean sendsAliveMessages, long lastAlive) {
+            this.id = id;
+            this.sendsAliveMessages = sendsAliveMessages;
+            this.lastAlive = lastAlive;
+        }
+
+        public synchronized List<CrawleableUri> getUrisCrawling() {
+            return new ArrayList<>(urisCrawling);
+        }
+    }
 }
@@ -0,0 +1,112 @@
+package org.dice_research.squirrel.frontier.sharding;
+
+import java.util.Arrays;
+
+import org.dice_research.squirrel.rabbit.msgs.ForwardedUriSet;
+import org.dice_research.squirrel.rabbit.msgs.ShardStatus;
+
+/**
+ * Decides whether the frontier shards can terminate together. The shards
+ * exchange their {@link ShardStatus} regularly and terminate if
+ * <ul>
+ * <li>all shards are idle,</li>
+ * <li>at least one shard has crawled URIs before it became idle,</li>
+ * <li>all {@link ForwardedUriSet}s that have been sent have been processed by
+ * their receivers and</li>
+ * <li>these conditions hold for two consecutive waves of status messages.</li>
+ * </ul>
+ */
+public class ShardTerminationDetector {
+
+    /**
+     * The latest status of every shard or null if the shard has not sent a
+     * status, yet.
+     */
+    private ShardStatus[] latestStatus;
+    /**
+     * The statuses of the first wave in which all shards were finished or null
+     * if there is no such wave.
+     */
+    private ShardStatus[] firstWave = null;
+
+    public ShardTerminationDetector(int numberOfShards) {
+        latestStatus = new ShardStatus[numberOfShards];
+    }
+
+    /**
+     * Updates the status of the shard that sent the given status. Status
+     * messages that are older than the known status of the shard are ignored.
+     *
+     * @param status
+     *            the status of a shard
+     */
+    public synchronized void update(ShardStatus status) {
+        if ((status.shardId < 0) || (status.shardId >= latestStatus.length)) {
+            throw new IllegalArgumentException("Got a status of the unknown shard " + status.shardId + ".");
+        }
+        ShardStatus known = latestStatus[status.shardId];
+        if ((known == null) || (known.sequenceNumber < status.sequenceNumber)) {
+            latestStatus[status.shardId] = status;
+        }
+    }
+
+    /**
+     * @return true if one of the shards already decided to terminate
+     */
+    public synchronized boolean isTerminating() {
+        for (int i = 0; i < latestStatus.length; ++i) {
+            if ((latestStatus[i] != null) && latestStatus[i].terminating) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether all shards can terminate based on the statuses that have
+     * been received. Should be called regularly after the shard updated its own
+     * status.
+     *
+     * @return true if all shards can terminate
+     */
+    public synchronized boolean canTerminate() {
+        if (!allShardsFinished()) {
+            firstWave = null;
+            return false;
+        }
+        if (firstWave == null) {
+            firstWave = Arrays.copyOf(latestStatus, latestStatus.length);
+            return false;
+        }
+        for (int i = 0; i < latestStatus.length; ++i) {
+            if ((latestStatus[i].forwardedUriSets != firstWave[i].forwardedUriSets)
+                    || (latestStatus[i].receivedUriSets != firstWave[i].receivedUriSets)) {
+                // URIs have been exchanged, start a new first wave
+                firstWave = Arrays.copyOf(latestStatus, latestStatus.length);
+                return false;
+            }
+        }
+        for (int i = 0; i < latestStatus.length; ++i) {
+            if (latestStatus[i].sequenceNumber <= firstWave[i].sequenceNumber) {
+                // wait for the second wave
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean allShardsFinished() {
+        boolean finished = false;
+        long forwarded = 0;
+        long received = 0;
+        for (int i = 0; i < latestStatus.length; ++i) {
+            if ((latestStatus[i] == null) || !latestStatus[i].idle) {
+                return false;
+            }
+            finished |= latestStatus[i].finished;
+            forwarded += latestStatus[i].forwardedUriSets;
+            received += latestStatus[i].receivedUriSets;
+        }
+        return finished && (forwarded == received);
+    }
+}
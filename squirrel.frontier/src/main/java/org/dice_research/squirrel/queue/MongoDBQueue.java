@@ -6,8 +6,13 @@ import java.net.UnknownHostException;
 import java.util.AbstractMap;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import org.bson.Document;
 import org.bson.types.Binary;
@@ -23,16 +28,79 @@ import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoWriteException;
 import com.mongodb.ServerAddress;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 
 
 /**
  * 
  * Queue implementation for use with MongoDB
  * 
+ * <p>
+ * URIs are written with unordered bulk upserts of at most {@link #batchSize}
+ * URIs. Single URIs added via {@link #addUri(CrawleableUri)} and lists of URIs
+ * added via {@link #addUris(List)} use the same write path. A failed bulk
+ * write is retried up to {@link #MAX_WRITE_ATTEMPTS} times before an
+ * {@link IllegalStateException} is thrown. Hence, if one of the add methods
+ * returns without an exception, the URIs have been written to the database
+ * and the caller can mark them as known.
+ * </p>
+ * 
+ * <p>
+ * Optionally, a {@link #flushInterval} can be set. In this case, lists of URIs
+ * added via {@link #addUris(List)} are buffered and only written if the buffer
+ * is full, every {@link #flushInterval} milliseconds and before the next chunk
+ * of URIs is retrieved. Note that this trades durability for fewer round
+ * trips: {@link #addUris(List)} returns before the URIs have been written,
+ * i.e., the URIs that are inside the flush window when the frontier crashes
+ * are lost although they have already been marked as known. The URIs of a
+ * failed flush are kept in the buffer and written with the next flush.
+ * </p>
+ * 
+ * <p>
+ * Every IP-type pair of the queue has a {@link #COLUMN_CLAIMED_UNTIL} field.
+ * The next pair is claimed atomically on the server with a
+ * <code>findOneAndUpdate</code> on this indexed field. The pairs of all IPs
+ * that are currently blocked are marked as claimed, i.e., retrieving the next
+ * chunk does not have to scan over them. An IP that is released with a
+ * politeness delay keeps its pairs claimed until its next allowed fetch time.
+ * The delay is additionally kept in memory by the
+ * {@link AbstractIpAddressBasedQueue}. Hence, a pair that is inserted after
+ * the IP has been released is written with the claim of its IP and, if it is
+ * claimed anyway, it is not served before the delay has passed.
+ * </p>
+ * 
+ * <p>
+ * Note that handing out a chunk still needs about six round trips: claiming
+ * the pair, blocking the other pairs of the IP, deleting the pair, reading
+ * the URIs, leasing them and, if URIs are left, re-inserting the pair.
+ * </p>
+ * 
+ * <p>
+ * The URIs of a chunk are not deleted when the chunk is retrieved. Instead,
+ * they are marked as {@link #COLUMN_LEASED} and deleted when the chunk has been
+ * finished, i.e., when its IP is released. When the queue is opened again
+ * after a crash, the leased URIs are made available again. Hence, chunks that
+ * are crawled or prefetched (see {@link TieredQueueDecorator}) survive a crash
+ * of the frontier.
+ * </p>
+ * 
+ * <p>
+ * Note that the pairs are always served in the order of the
+ * {@link #COLUMN_CLAIMED_UNTIL} index, i.e., this queue does not support a
+ * {@link org.dice_research.squirrel.queue.scheduling.SchedulingPolicy}.
+ * </p>
+ * 
  * * @author Geralod Souza Junior (gsjunior@mail.uni-paderborn.de)
  *
  */
@@ -49,6 +117,68 @@ public class MongoDBQueue extends AbstractIpAddressBasedQueue {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(MongoDBQueue.class);
 
+	/**
+	 * Field of a pair document containing the time until which the pair is
+	 * claimed. A value lower than the current time means that the pair is
+	 * available.
+	 */
+	public static final String COLUMN_CLAIMED_UNTIL = "claimedUntil";
+	/**
+	 * Field of a URI document that is set to true while the URI is part of a
+	 * chunk that has not been finished.
+	 */
+	public static final String COLUMN_LEASED = "leased";
+	/**
+	 * Value of {@link #COLUMN_CLAIMED_UNTIL} for pairs of blocked IPs.
+	 */
+	private static final long CLAIMED_UNTIL_RELEASED = Long.MAX_VALUE;
+	/**
+	 * Value of {@link #COLUMN_CLAIMED_UNTIL} for pairs that are available.
+	 */
+	private static final long NOT_CLAIMED = 0L;
+
+	/**
+	 * Default value of {@link #batchSize}.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	/**
+	 * Default value of {@link #flushInterval} (in milliseconds), i.e., URIs are
+	 * not buffered by default.
+	 */
+	public static final long DEFAULT_FLUSH_INTERVAL = 0;
+	/**
+	 * The number of attempts for writing a batch of URIs before the write is
+	 * considered as failed.
+	 */
+	public static final int MAX_WRITE_ATTEMPTS = 3;
+	/**
+	 * The time (in milliseconds) the queue waits before retrying a failed
+	 * write. It is doubled with every attempt.
+	 */
+	private static final long RETRY_DELAY = 500;
+
+	/**
+	 * The maximum number of URIs that are written with a single bulk write.
+	 */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	/**
+	 * The time (in milliseconds) after which buffered URIs are written to the
+	 * database. A value &lt;= 0 means that URIs are not buffered.
+	 */
+	private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+	/**
+	 * URIs that have been added but not yet written to the database.
+	 */
+	private List<CrawleableUri> writeBuffer = new ArrayList<>();
+	/**
+	 * Mutex guarding the access to the {@link #writeBuffer}.
+	 */
+	private final Object bufferMutex = new Object();
+	/**
+	 * The timer flushing the {@link #writeBuffer} regularly.
+	 */
+	private Timer flushTimer;
+
 	public MongoDBQueue(String hostName, Integer port,Serializer serializer) {
 		this.serializer = serializer;
 
@@ -56,6 +186,12 @@ public class MongoDBQueue extends AbstractIpAddressBasedQueue {
 		MongoClientOptions.Builder optionsBuilder = MongoClientOptions.builder();
         MongoConfiguration mongoConfiguration = MongoConfiguration.getMDBConfiguration();
 
+		if (mongoConfiguration.getQueueBatchSize() != null) {
+			batchSize = mongoConfiguration.getQueueBatchSize();
+		}
+		if (mongoConfiguration.getQueueFlushInterval() != null) {
+			flushInterval = mongoConfiguration.getQueueFlushInterval();
+		}
 		
 		if(mongoConfiguration.getConnectionTimeout() != null && mongoConfiguration.getSocketTimeout() != null && mongoConfiguration.getServerTimeout() != null) {
 			optionsBuilder.connectTimeout(mongoConfiguration.getConnectionTimeout());
@@ -89,6 +225,10 @@ public class MongoDBQueue extends AbstractIpAddressBasedQueue {
 
 	@Override
 	public void close() {
+		if (flushTimer != null) {
+			flushTimer.cancel();
+			flushTimer = null;
+		}
 		mongoDB.getCollection(COLLECTION_QUEUE).drop();
 		mongoDB.getCollection(COLLECTION_URIS).drop();
 		client.close();
@@ -106,8 +246,51 @@ public class MongoDBQueue extends AbstractIpAddressBasedQueue {
 					.createIndex(Indexes.compoundIndex(Indexes.ascending("ipAddress"), Indexes.ascending("type")));
 			mongoCollectionUris.createIndex(Indexes.compoundIndex(Indexes.ascending("uri"),
 					Indexes.ascending("ipAddress"), Indexes.ascending("type")));
+		} else {
+			// blocked IPs are not known after a restart, i.e., all claims have to be released
+			mongoDB.getCollection(COLLECTION_QUEUE).updateMany(new Document(),
+					Updates.set(COLUMN_CLAIMED_UNTIL, NOT_CLAIMED));
+			releaseLeasedUris();
 		}
+		mongoDB.getCollection(COLLECTION_QUEUE).createIndex(Indexes.ascending(COLUMN_CLAIMED_UNTIL));
+		if ((flushTimer == null) && (flushInterval > 0)) {
+			flushTimer = new Timer("MongoDBQueue flush", true);
+			flushTimer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					try {
+						flush();
+					} catch (Exception e) {
+						LOGGER.error(
+								"Error while flushing the write buffer of the MongoDBQueue. The URIs will be written with the next flush.",
+								e);
+					}
+				}
+			}, flushInterval, flushInterval);
+		}
+	}
 
+	/**
+	 * Makes the URIs of all chunks that have not been finished before the last
+	 * shutdown available again.
+	 */
+	protected void releaseLeasedUris() {
+		Set<Document> pairs = new HashSet<>();
+		for (Document doc : mongoDB.getCollection(COLLECTION_URIS).find(Filters.eq(COLUMN_LEASED, true))
+				.projection(Projections.include("ipAddress", "type"))) {
+			pairs.add(new Document("ipAddress", doc.get("ipAddress")).append("type", doc.get("type")));
+		}
+		if (pairs.isEmpty()) {
+			return;
+		}
+		mongoDB.getCollection(COLLECTION_URIS).updateMany(Filters.eq(COLUMN_LEASED, true),
+				Updates.set(COLUMN_LEASED, false));
+		UpdateOptions upsert = new UpdateOptions().upsert(true);
+		for (Document pair : pairs) {
+			mongoDB.getCollection(COLLECTION_QUEUE).updateOne(pair,
+					new Document("$setOnInsert", new Document(pair).append(COLUMN_CLAIMED_UNTIL, NOT_CLAIMED)), upsert);
+		}
+		LOGGER.info("Released the leased URIs of {} IP-type pairs.", pairs.size());
 	}
 
 	public boolean queueTableExists() {
@@ -119,18 +302,283 @@ public class MongoDBQueue extends AbstractIpAddressBasedQueue {
 		return false;
 	}
 
+	/**
+	 * Writes the given URI using the same bulk upsert as {@link #addUris(List)}.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the URI couldn't be written
+	 */
 	@Override
 	protected void addToQueue(CrawleableUri uri) {
-		List<?> ipAddressTypeKey = getIpAddressTypeKey(uri);
-		// if URI exists update the uris list
-		if (queueContainsIpAddressTypeKey(uri, ipAddressTypeKey)) {
-			LOGGER.debug("TypeKey is in the queue already");
-			addCrawleableUri(uri, ipAddressTypeKey);
-		} else {
-			LOGGER.debug("TypeKey is not in the queue, creating a new one");
-			addCrawleableUri(uri);
+		bulkWrite(Collections.singletonList(uri));
+	}
+
+	/**
+	 * Adds the given URIs to the queue. If no {@link #flushInterval} has been
+	 * set, the URIs are written before this method returns. Otherwise, they are
+	 * buffered (see the class description).
+	 * 
+	 * @throws IllegalStateException
+	 *             if the URIs couldn't be written
+	 */
+	@Override
+	public void addUris(List<CrawleableUri> uris) {
+		if (flushInterval <= 0) {
+			writeUris(uris);
+			return;
+		}
+		boolean bufferIsFull;
+		synchronized (bufferMutex) {
+			writeBuffer.addAll(uris);
+			bufferIsFull = writeBuffer.size() >= batchSize;
+		}
+		if (bufferIsFull) {
+			flush();
 		}
+	}
+
+	@Override
+	public List<CrawleableUri> getNextUris() {
+		try {
+			flush();
+		} catch (Exception e) {
+			LOGGER.error(
+					"Error while flushing the write buffer of the MongoDBQueue. The URIs will be written with the next flush.",
+					e);
+		}
+		releaseExpiredLeases();
+		Document pairDoc;
+		IpUriTypePair pair;
+		List<CrawleableUri> uris;
+		while ((pairDoc = claimNextPair()) != null) {
+			pair = documentToPair(pairDoc);
+			if (pair == null) {
+				mongoDB.getCollection(COLLECTION_QUEUE).deleteOne(Filters.eq("_id", pairDoc.get("_id")));
+				continue;
+			}
+			uris = claimIpAndGetUris(pair);
+			if (uris != null) {
+				return uris;
+			}
+			// The IP is blocked by another chunk (the pair stays claimed until the IP
+			// is released), it is delayed or the pair has been removed in the meantime.
+			long nextAllowedFetchTime = getNextAllowedFetchTime(pair.ip);
+			if (nextAllowedFetchTime > 0) {
+				// the pair must not be claimed before the delay of its IP has passed
+				mongoDB.getCollection(COLLECTION_QUEUE).updateOne(
+						Filters.and(Filters.eq("_id", pairDoc.get("_id")),
+								Filters.eq(COLUMN_CLAIMED_UNTIL, CLAIMED_UNTIL_RELEASED)),
+						Updates.set(COLUMN_CLAIMED_UNTIL, nextAllowedFetchTime));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Atomically claims the next available IP-type pair.
+	 * 
+	 * @return the document of the claimed pair or null if no pair is available
+	 */
+	protected Document claimNextPair() {
+		return mongoDB.getCollection(COLLECTION_QUEUE).findOneAndUpdate(
+				Filters.lt(COLUMN_CLAIMED_UNTIL, System.currentTimeMillis()),
+				Updates.set(COLUMN_CLAIMED_UNTIL, CLAIMED_UNTIL_RELEASED));
+	}
 
+	@Override
+	public void markIpAddressAsAccessible(InetAddress ip) {
+		// The IP has to be released in memory before its pairs are released.
+		// Otherwise, a dispatching thread could claim a pair and still see the
+		// IP as blocked, leaving the pair claimed forever.
+		super.markIpAddressAsAccessible(ip);
+		mongoDB.getCollection(COLLECTION_QUEUE).updateMany(Filters.eq("ipAddress", ip.getHostAddress()),
+				Updates.set(COLUMN_CLAIMED_UNTIL, NOT_CLAIMED));
+	}
+
+	/**
+	 * Releases the IP in memory and sets the next allowed fetch time as claim of
+	 * its pairs, i.e., the pairs can not be claimed before this time has been
+	 * reached.
+	 */
+	@Override
+	public void markIpAddressAsAccessible(InetAddress ip, long nextAllowedFetchTime) {
+		// keep the delay in memory as well, since pairs of the IP that are inserted
+		// later on may not know it
+		super.markIpAddressAsAccessible(ip, nextAllowedFetchTime);
+		mongoDB.getCollection(COLLECTION_QUEUE).updateMany(Filters.eq("ipAddress", ip.getHostAddress()),
+				Updates.set(COLUMN_CLAIMED_UNTIL, nextAllowedFetchTime));
+	}
+
+	/**
+	 * Writes all buffered URIs to the database using unordered bulk upserts of
+	 * at most {@link #batchSize} URIs. If the write fails, the URIs that have not
+	 * been written are put back into the buffer.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the URIs couldn't be written
+	 */
+	public void flush() {
+		List<CrawleableUri> uris;
+		synchronized (bufferMutex) {
+			if (writeBuffer.isEmpty()) {
+				return;
+			}
+			uris = writeBuffer;
+			writeBuffer = new ArrayList<>();
+		}
+		int start = 0;
+		try {
+			for (; start < uris.size(); start += batchSize) {
+				writeUris(uris.subList(start, Math.min(start + batchSize, uris.size())));
+			}
+		} catch (RuntimeException e) {
+			// keep the remaining URIs for the next flush
+			synchronized (bufferMutex) {
+				List<CrawleableUri> remaining = new ArrayList<>(uris.subList(start, uris.size()));
+				remaining.addAll(writeBuffer);
+				writeBuffer = remaining;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the given URIs in batches of at most {@link #batchSize} URIs and
+	 * hands their IP-type pairs to {@link #pairAdded(IpUriTypePair)}, i.e., they
+	 * are handled in the same way as URIs added via
+	 * {@link #addUri(CrawleableUri)}.
+	 * 
+	 * @param uris
+	 *            the URIs that should be written
+	 * @throws IllegalStateException
+	 *             if the URIs couldn't be written
+	 */
+	protected void writeUris(List<CrawleableUri> uris) {
+		for (int start = 0; start < uris.size(); start += batchSize) {
+			bulkWrite(uris.subList(start, Math.min(start + batchSize, uris.size())));
+		}
+		Set<IpUriTypePair> pairs = new HashSet<>();
+		IpUriTypePair pair;
+		for (CrawleableUri uri : uris) {
+			pair = new IpUriTypePair(uri.getIpAddress(), uri.getType());
+			if (pairs.add(pair)) {
+				pairAdded(pair);
+			}
+		}
+	}
+
+	/**
+	 * Writes the given URIs with two unordered bulk writes. The URIs are
+	 * written before their IP-type pairs are inserted into the queue to make
+	 * sure that {@link #getUris(IpUriTypePair)} does not miss them. Since both
+	 * writes are upserts, a failed write is retried up to
+	 * {@link #MAX_WRITE_ATTEMPTS} times.
+	 * 
+	 * @param uris
+	 *            the URIs that should be written
+	 * @throws IllegalStateException
+	 *             if the URIs couldn't be written
+	 */
+	protected void bulkWrite(List<CrawleableUri> uris) {
+		List<WriteModel<Document>> uriWrites = new ArrayList<>(uris.size());
+		List<WriteModel<Document>> pairWrites = new ArrayList<>();
+		Set<Document> pairs = new HashSet<>();
+		UpdateOptions upsert = new UpdateOptions().upsert(true);
+		Document docs[];
+		for (CrawleableUri uri : uris) {
+			try {
+				docs = crawleableUriToMongoDocument(uri);
+			} catch (Exception e) {
+				LOGGER.error("Couldn't serialize uri " + uri.getUri() + ". It will be ignored.", e);
+				continue;
+			}
+			Object id = docs[1].remove("_id");
+			uriWrites.add(new UpdateOneModel<Document>(Filters.eq("_id", id), new Document("$setOnInsert", docs[1]),
+					upsert));
+			if (pairs.add(docs[0])) {
+				pairWrites.add(new UpdateOneModel<Document>(docs[0], new Document("$setOnInsert",
+						new Document(docs[0]).append(COLUMN_CLAIMED_UNTIL, getClaimOfIp(uri.getIpAddress()))),
+						upsert));
+			}
+		}
+		if (uriWrites.isEmpty()) {
+			return;
+		}
+		BulkWriteOptions options = new BulkWriteOptions().ordered(false);
+		long retryDelay = RETRY_DELAY;
+		for (int attempt = 1;; ++attempt) {
+			try {
+				mongoDB.getCollection(COLLECTION_URIS).bulkWrite(uriWrites, options);
+				mongoDB.getCollection(COLLECTION_QUEUE).bulkWrite(pairWrites, options);
+				LOGGER.debug("Added {} URIs to the queue", uriWrites.size());
+				return;
+			} catch (Exception e) {
+				if (attempt >= MAX_WRITE_ATTEMPTS) {
+					throw new IllegalStateException("Couldn't add a batch of " + uriWrites.size()
+							+ " URIs to the MongoDBQueue after " + attempt + " attempts.", e);
+				}
+				LOGGER.warn("Error while adding a batch of uris to MongoDBQueue. Retrying in " + retryDelay + "ms.",
+						e);
+			}
+			try {
+				Thread.sleep(retryDelay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while retrying to add URIs to the MongoDBQueue.", e);
+			}
+			retryDelay *= 2;
+		}
+	}
+
+	/**
+	 * Deletes the leased URIs of the given IP. The URIs of a chunk whose lease
+	 * expired have already been made available again by
+	 * {@link #requeueChunk(InetAddress, List)} and a late finish of such a chunk
+	 * does not reach this method, i.e., the URIs of a newer chunk of the IP are
+	 * not deleted.
+	 */
+	@Override
+	protected void chunkFinished(InetAddress ip) {
+		mongoDB.getCollection(COLLECTION_URIS)
+				.deleteMany(Filters.and(Filters.eq("ipAddress", ip.getHostAddress()), Filters.eq(COLUMN_LEASED, true)));
+	}
+
+	/**
+	 * Makes the leased URIs of the given IP available again. Since the IP is
+	 * still blocked, the pairs are inserted as claimed and are released together
+	 * with the IP.
+	 */
+	@Override
+	protected void requeueChunk(InetAddress ip, List<CrawleableUri> uris) {
+		mongoDB.getCollection(COLLECTION_URIS).updateMany(
+				Filters.and(Filters.eq("ipAddress", ip.getHostAddress()), Filters.eq(COLUMN_LEASED, true)),
+				Updates.set(COLUMN_LEASED, false));
+		Set<Document> pairs = new HashSet<>();
+		for (CrawleableUri uri : uris) {
+			pairs.add(new Document("ipAddress", ip.getHostAddress()).append("type", uri.getType().toString()));
+		}
+		UpdateOptions upsert = new UpdateOptions().upsert(true);
+		for (Document pair : pairs) {
+			mongoDB.getCollection(COLLECTION_QUEUE).updateOne(pair, new Document("$setOnInsert",
+					new Document(pair).append(COLUMN_CLAIMED_UNTIL, getClaimOfIp(ip))), upsert);
+		}
+	}
+
+	/**
+	 * Returns the value of {@link #COLUMN_CLAIMED_UNTIL} a new pair of the given
+	 * IP should get, i.e., the pairs of blocked or delayed IPs are inserted as
+	 * claimed.
+	 * 
+	 * @param ip
+	 *            the IP of the new pair
+	 * @return the claim of the new pair
+	 */
+	protected long getClaimOfIp(InetAddress ip) {
+		if (isIpBlocked(ip)) {
+			return CLAIMED_UNTIL_RELEASED;
+		}
+		long nextAllowedFetchTime = getNextAllowedFetchTime(ip);
+		return nextAllowedFetchTime > System.currentTimeMillis() ? nextAllowedFetchTime : NOT_CLAIMED;
 	}
 
 	@Override
@@ -146,36 +594,60 @@ public class MongoDBQueue extends AbstractIpAddressBasedQueue {
 
 			@Override
 			public IpUriTypePair next() {
-				Document doc = (Document) cursor.next();
-				try {
-					InetAddress ipAddress = InetAddress.getByName(doc.get("ipAddress").toString());
-					UriType uriType = UriType.valueOf(doc.get("type").toString());
-					IpUriTypePair pair = new IpUriTypePair(ipAddress, uriType);
-					return pair;
-				} catch (UnknownHostException e) {
-					e.printStackTrace();
-				}
-				return null;
+				return documentToPair((Document) cursor.next());
 			}
 		};
 
 		return ipUriTypePairIterator;
 	}
 
+	protected IpUriTypePair documentToPair(Document doc) {
+		try {
+			InetAddress ipAddress = InetAddress.getByName(doc.get("ipAddress").toString());
+			UriType uriType = UriType.valueOf(doc.get("type").toString());
+			return new IpUriTypePair(ipAddress, uriType);
+		} catch (UnknownHostException e) {
+			LOGGER.error("Couldn't parse the IP of the queue entry " + doc, e);
+		}
+		return null;
+	}
+
 	@Override
 	protected List<CrawleableUri> getUris(IpUriTypePair pair) {
-
-		Iterator<Document> uriDocs = mongoDB.getCollection(COLLECTION_URIS).find(
-				new Document("ipAddress", pair.ip.getHostAddress().toString()).append("type", pair.type.toString()))
-				.iterator();
+		Document pairFilter = new Document("ipAddress", pair.ip.getHostAddress()).append("type", pair.type.toString());
+		// The IP is blocked now, i.e., its other pairs shouldn't be claimed
+		mongoDB.getCollection(COLLECTION_QUEUE).updateMany(Filters.eq("ipAddress", pair.ip.getHostAddress()),
+				Updates.set(COLUMN_CLAIMED_UNTIL, CLAIMED_UNTIL_RELEASED));
+		// Remove the pair first and only lease the URIs that have been read. A
+		// concurrent bulk write inserts the URIs before the pair, i.e., URIs that are
+		// added in the meantime are kept together with a new pair document.
+		mongoDB.getCollection(COLLECTION_QUEUE).deleteOne(pairFilter);
+
+		int maxChunkSize = getMaxChunkSize();
+		FindIterable<Document> findResult = mongoDB.getCollection(COLLECTION_URIS)
+				.find(Filters.and(pairFilter, Filters.ne(COLUMN_LEASED, true)));
+		if ((maxChunkSize > 0) && (maxChunkSize < Integer.MAX_VALUE)) {
+			// read one additional document to see whether URIs will be left
+			findResult = findResult.limit(maxChunkSize + 1);
+		} else {
+			maxChunkSize = Integer.MAX_VALUE;
+		}
+		Iterator<Document> uriDocs = findResult.iterator();
 
 		List<CrawleableUri> listUris = new ArrayList<CrawleableUri>();
+		List<Object> ids = new ArrayList<Object>();
+		boolean urisLeft = false;
 
 		try {
 			while (uriDocs.hasNext()) {
 
 				Document doc = uriDocs.next();
+				if (ids.size() >= maxChunkSize) {
+					urisLeft = true;
+					break;
+				}
 
+				ids.add(doc.get("_id"));
 				listUris.add(serializer.deserialize(((Binary) doc.get("uri")).getData()));
 
 			}
@@ -184,10 +656,18 @@ public class MongoDBQueue extends AbstractIpAddressBasedQueue {
 			LOGGER.error("Error while retrieving uri from MongoDBQueue", e);
 		}
 
-		mongoDB.getCollection(COLLECTION_QUEUE)
-				.deleteOne(new Document("ipAddress", pair.ip.getHostAddress()).append("type", pair.type.toString()));
-		mongoDB.getCollection(COLLECTION_URIS)
-				.deleteMany(new Document("ipAddress", pair.ip.getHostAddress()).append("type", pair.type.toString()));
+		if (!ids.isEmpty()) {
+			// the URIs are deleted when the chunk has been finished
+			mongoDB.getCollection(COLLECTION_URIS).updateMany(Filters.in("_id", ids),
+					Updates.set(COLUMN_LEASED, true));
+		}
+		if (urisLeft) {
+			// Put the pair back for the remaining URIs. It stays claimed until the IP is
+			// released. Since it is re-inserted, the pairs of other IPs are typically
+			// claimed before the remaining URIs of this IP.
+			mongoDB.getCollection(COLLECTION_QUEUE).updateOne(pairFilter,
+					Updates.set(COLUMN_CLAIMED_UNTIL, CLAIMED_UNTIL_RELEASED), new UpdateOptions().upsert(true));
+		}
 
 		return listUris;
 	}
@@ -232,8 +712,9 @@ public class MongoDBQueue extends AbstractIpAddressBasedQueue {
 	public void addCrawleableUri(CrawleableUri uri) {
 
 		try {
-			mongoDB.getCollection(COLLECTION_QUEUE).insertOne(crawleableUriToMongoDocument(uri)[0]);
-			mongoDB.getCollection(COLLECTION_URIS).insertOne(crawleableUriToMongoDocument(uri)[1]);
+			Document docs[] = crawleableUriToMongoDocument(uri);
+			mongoDB.getCollection(COLLECTION_URIS).insertOne(docs[1]);
+			mongoDB.getCollection(COLLECTION_QUEUE).insertOne(docs[0].append(COLUMN_CLAIMED_UNTIL, NOT_CLAIMED));
 			LOGGER.warn("Added " + uri.getUri().toString() + " to the queue");
 		} catch (Exception e) {
 			if (e instanceof MongoWriteException)
@@ -321,8 +802,10 @@ public class MongoDBQueue extends AbstractIpAddressBasedQueue {
 				IpUriTypePair pair = cursor.next();
 
 				Iterator<Document> uriDocs = mongoDB.getCollection(COLLECTION_URIS)
-						.find(new Document("ipAddress", pair.ip.getHostAddress().toString()).append("type",
-								pair.type.toString()))
+						.find(Filters.and(
+								new Document("ipAddress", pair.ip.getHostAddress().toString()).append("type",
+										pair.type.toString()),
+								Filters.ne(COLUMN_LEASED, true)))
 						.iterator();
 				List<CrawleableUri> value = new ArrayList<CrawleableUri>();
 				while (uriDocs.hasNext()) {
@@ -344,6 +827,11 @@ public class MongoDBQueue extends AbstractIpAddressBasedQueue {
 
 	@Override
 	public boolean isEmpty() {
+		synchronized (bufferMutex) {
+			if (!writeBuffer.isEmpty()) {
+				return false;
+			}
+		}
 		if (length() == 0L)
 			return true;
 		else
@@ -12,6 +12,8 @@ import org.dice_research.squirrel.data.uri.serialize.java.SnappyJavaUriSerialize
 import org.dice_research.squirrel.model.RDBConnector;
 import org.dice_research.squirrel.queue.AbstractIpAddressBasedQueue;
 import org.dice_research.squirrel.queue.IpUriTypePair;
+import org.dice_research.squirrel.queue.scheduling.RoundRobinSchedulingPolicy;
+import org.dice_research.squirrel.queue.scheduling.SchedulingPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,11 +31,29 @@ public class RDBQueue extends AbstractIpAddressBasedQueue {
     private Serializer serializer;
 
     public RDBQueue(String hostname, Integer port) {
-        this.serializer = new SnappyJavaUriSerializer();
-        connector = new RDBConnector(hostname, port);
+        this(hostname, port, new SnappyJavaUriSerializer());
     }
 
     public RDBQueue(String hostname, Integer port, Serializer serializer) {
+        this(hostname, port, serializer, new RoundRobinSchedulingPolicy());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param hostname
+     *            the host name of the RethinkDB
+     * @param port
+     *            the port of the RethinkDB
+     * @param serializer
+     *            the serializer used for the URIs
+     * @param schedulingPolicy
+     *            the policy that decides which pair is served next or null if
+     *            the pairs should be served in the order of the
+     *            {@code ipAddressType} index
+     */
+    public RDBQueue(String hostname, Integer port, Serializer serializer, SchedulingPolicy schedulingPolicy) {
+        super(schedulingPolicy);
         this.serializer = serializer;
         connector = new RDBConnector(hostname, port);
     }
@@ -48,6 +68,9 @@ public class RDBQueue extends AbstractIpAddressBasedQueue {
             r.db("squirrel").table("queue").indexCreate("ipAddressType",
                 row -> r.array(row.g("ipAddress"), row.g("type"))).run(this.connector.connection);
             r.db("squirrel").table("queue").indexWait("ipAddressType").run(this.connector.connection);
+        } else {
+            // the table might already contain URIs
+            scheduleQueuedPairs();
         }
     }
 
@@ -224,18 +247,30 @@ public class RDBQueue extends AbstractIpAddressBasedQueue {
             .run(connector.connection);
 
         if (cursor.hasNext()) {
-            //remove all URIs for the pair
             HashMap result = (HashMap) cursor.next();
             ArrayList uriStringList = (ArrayList) result.get("uris");
             LOGGER.debug("query result {}",result.toString());
-            uris = createCrawleableUriList(uriStringList);
-            //remove from the queue
-            r.db("squirrel")
-                .table("queue")
-                .getAll(ipAddressTypeKey)
-                .optArg("index", "ipAddressType")
-                .delete()
-                .run(connector.connection);
+            int maxChunkSize = getMaxChunkSize();
+            if ((maxChunkSize > 0) && (uriStringList.size() > maxChunkSize)) {
+                //take the first URIs and keep the remaining URIs for the pair
+                uris = createCrawleableUriList(new ArrayList(uriStringList.subList(0, maxChunkSize)));
+                r.db("squirrel")
+                    .table("queue")
+                    .getAll(ipAddressTypeKey)
+                    .optArg("index", "ipAddressType")
+                    .update(queueItem -> r.hashMap("uris", queueItem.g("uris").slice(maxChunkSize)))
+                    .run(connector.connection);
+            } else {
+                //remove all URIs for the pair
+                uris = createCrawleableUriList(uriStringList);
+                //remove from the queue
+                r.db("squirrel")
+                    .table("queue")
+                    .getAll(ipAddressTypeKey)
+                    .optArg("index", "ipAddressType")
+                    .delete()
+                    .run(connector.connection);
+            }
         }
         // return the URIs
         return uris;
@@ -0,0 +1,111 @@
+package org.dice_research.squirrel.components;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the ordering, the back pressure and the shutdown of the
+ * {@link MessageLane}.
+ */
+public class MessageLaneTest {
+
+    @Test
+    public void testOrdering() throws Exception {
+        MessageLane lane = new MessageLane("test", 1, 10);
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            final int id = i;
+            lane.execute(() -> processed.add(id));
+            expected.add(id);
+        }
+        Assert.assertTrue(lane.shutdown(10000));
+        Assert.assertEquals(expected, processed);
+        Assert.assertEquals(100, lane.getNumberOfProcessedMessages());
+    }
+
+    @Test
+    public void testBackPressure() throws Exception {
+        MessageLane lane = new MessageLane("test", 1, 2);
+        CountDownLatch blocker = new CountDownLatch(1);
+        AtomicInteger processed = new AtomicInteger();
+        Runnable task = () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            processed.incrementAndGet();
+        };
+        // one running and two waiting messages fill the lane
+        for (int i = 0; i < 3; ++i) {
+            lane.execute(task);
+        }
+        CountDownLatch submitted = new CountDownLatch(1);
+        Thread submitter = new Thread(() -> {
+            lane.execute(task);
+            submitted.countDown();
+        });
+        submitter.start();
+        Assert.assertFalse("The full lane accepted another message.", submitted.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(2, lane.getNumberOfWaitingMessages());
+
+        blocker.countDown();
+        Assert.assertTrue("The message has not been accepted.", submitted.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(lane.shutdown(10000));
+        Assert.assertEquals(4, processed.get());
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        MessageLane lane = new MessageLane("test", 2, 20);
+        AtomicInteger processed = new AtomicInteger();
+        for (int i = 0; i < 20; ++i) {
+            lane.execute(() -> {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                processed.incrementAndGet();
+            });
+        }
+        // the waiting messages are processed before the lane stops
+        lane.close();
+        Assert.assertEquals(20, processed.get());
+        Assert.assertTrue(lane.isIdle());
+        try {
+            lane.execute(() -> processed.incrementAndGet());
+            Assert.fail("The closed lane accepted a message.");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testShutdownTimeout() throws Exception {
+        MessageLane lane = new MessageLane("test", 1, 5);
+        CountDownLatch blocker = new CountDownLatch(1);
+        AtomicInteger processed = new AtomicInteger();
+        for (int i = 0; i < 5; ++i) {
+            lane.execute(() -> {
+                try {
+                    blocker.await();
+                    processed.incrementAndGet();
+                } catch (InterruptedException e) {
+                    // the running message is interrupted
+                }
+            });
+        }
+        Assert.assertFalse(lane.shutdown(100));
+        Assert.assertEquals(0, processed.get());
+    }
+}
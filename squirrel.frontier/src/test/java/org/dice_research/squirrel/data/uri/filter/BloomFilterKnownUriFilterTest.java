@@ -0,0 +1,198 @@
+package org.dice_research.squirrel.data.uri.filter;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link BloomFilterKnownUriFilter} using an
+ * {@link InMemoryKnownUriFilter} that counts the requests it gets.
+ */
+public class BloomFilterKnownUriFilterTest {
+
+    private static final int NUMBER_OF_URIS = 1000;
+
+    @Test
+    public void testNewUrisAreAnsweredLocally() throws Exception {
+        CountingKnownUriFilter backend = new CountingKnownUriFilter();
+        BloomFilterKnownUriFilter filter = new BloomFilterKnownUriFilter(backend, 100, 0.01, null, 0);
+        Assert.assertTrue(filter.isComplete());
+
+        for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+            CrawleableUri uri = createUri("known", i);
+            Assert.assertTrue(filter.isUriGood(uri));
+            filter.add(uri, System.currentTimeMillis() + 100000);
+        }
+        // the first stage has been too small
+        Assert.assertTrue(filter.getBloomFilter().getNumberOfStages() > 1);
+        Assert.assertTrue("Too many requests reached the backend: " + backend.requests,
+                backend.requests < (NUMBER_OF_URIS / 20));
+
+        // all known URIs have to be checked by the backend
+        backend.requests = 0;
+        for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+            Assert.assertFalse(filter.isUriGood(createUri("known", i)));
+        }
+        Assert.assertEquals(NUMBER_OF_URIS, backend.requests);
+
+        // new URIs are (mostly) not forwarded
+        backend.requests = 0;
+        for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+            Assert.assertTrue(filter.isUriGood(createUri("new", i)));
+        }
+        Assert.assertTrue("Too many requests reached the backend: " + backend.requests,
+                backend.requests < (NUMBER_OF_URIS / 20));
+        filter.close();
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        CountingKnownUriFilter backend = new CountingKnownUriFilter();
+        BloomFilterKnownUriFilter filter = new BloomFilterKnownUriFilter(backend, 100, 0.01, null, 0);
+        List<CrawleableUri> knownUris = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+            knownUris.add(createUri("known", i));
+        }
+        Assert.assertEquals(knownUris, filter.filterGood(knownUris));
+        filter.addAll(knownUris, System.currentTimeMillis() + 100000);
+        Assert.assertEquals(NUMBER_OF_URIS, backend.count());
+
+        List<CrawleableUri> mixedUris = new ArrayList<>();
+        List<CrawleableUri> expectedUris = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+            CrawleableUri uri = createUri((i % 2) == 0 ? "known" : "new", i);
+            mixedUris.add(uri);
+            if ((i % 2) != 0) {
+                expectedUris.add(uri);
+            }
+        }
+        backend.batches = 0;
+        Assert.assertEquals(expectedUris, filter.filterGood(mixedUris));
+        // the possibly known URIs are checked with a single request
+        Assert.assertEquals(1, backend.batches);
+        filter.close();
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        File snapshotFile = File.createTempFile("bloom-filter", ".snapshot");
+        Assert.assertTrue(snapshotFile.delete());
+        try {
+            CountingKnownUriFilter backend = new CountingKnownUriFilter();
+            BloomFilterKnownUriFilter filter = new BloomFilterKnownUriFilter(backend, 100, 0.01, snapshotFile, 0);
+            for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+                filter.add(createUri("known", i), System.currentTimeMillis() + 100000);
+            }
+            filter.close();
+            Assert.assertTrue(snapshotFile.exists());
+
+            // without the snapshot, the filter is rebuilt from the backend
+            BloomFilterKnownUriFilter rebuiltFilter = new BloomFilterKnownUriFilter(backend, 100, 0.01, null, 0);
+            Assert.assertTrue(rebuiltFilter.isComplete());
+            backend.requests = 0;
+            Assert.assertTrue(rebuiltFilter.isUriGood(createUri("new", 0)));
+            Assert.assertEquals(0, backend.requests);
+            backend.requests = 0;
+            for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+                Assert.assertFalse(rebuiltFilter.isUriGood(createUri("known", i)));
+            }
+            Assert.assertEquals(NUMBER_OF_URIS, backend.requests);
+
+            // with the snapshot, all known URIs are found
+            BloomFilterKnownUriFilter restoredFilter = new BloomFilterKnownUriFilter(backend, 100, 0.01,
+                    snapshotFile, 0);
+            Assert.assertTrue(restoredFilter.isComplete());
+            Assert.assertEquals(filter.getBloomFilter().getNumberOfStages(),
+                    restoredFilter.getBloomFilter().getNumberOfStages());
+            backend.requests = 0;
+            for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+                Assert.assertFalse(restoredFilter.isUriGood(createUri("known", i)));
+            }
+            Assert.assertEquals(NUMBER_OF_URIS, backend.requests);
+        } finally {
+            snapshotFile.delete();
+        }
+    }
+
+    @Test
+    public void testOutdatedSnapshot() throws Exception {
+        File snapshotFile = File.createTempFile("bloom-filter", ".snapshot");
+        Assert.assertTrue(snapshotFile.delete());
+        try {
+            CountingKnownUriFilter backend = new CountingKnownUriFilter();
+            BloomFilterKnownUriFilter filter = new BloomFilterKnownUriFilter(backend, 100, 0.01, snapshotFile, 0);
+            for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+                filter.add(createUri("known", i), System.currentTimeMillis() + 100000);
+            }
+            Assert.assertTrue(filter.writeSnapshot());
+            // URIs added after the last snapshot (e.g., before a crash)
+            CrawleableUri lateUri = createUri("late", 0);
+            filter.add(lateUri, System.currentTimeMillis() + 100000);
+
+            // the snapshot does not match the backend anymore, i.e., the filter is rebuilt
+            BloomFilterKnownUriFilter restoredFilter = new BloomFilterKnownUriFilter(backend, 100, 0.01,
+                    snapshotFile, 0);
+            Assert.assertTrue(restoredFilter.isComplete());
+            Assert.assertFalse(restoredFilter.isUriGood(lateUri));
+            backend.requests = 0;
+            for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+                Assert.assertTrue(restoredFilter.isUriGood(createUri("new", i)));
+            }
+            Assert.assertTrue("Too many requests reached the backend: " + backend.requests,
+                    backend.requests < (NUMBER_OF_URIS / 20));
+            // the rebuilt filter replaces the outdated snapshot
+            Assert.assertTrue(restoredFilter.writeSnapshot());
+            Assert.assertTrue(new BloomFilterKnownUriFilter(backend, 100, 0.01, snapshotFile, 0).isComplete());
+        } finally {
+            snapshotFile.delete();
+        }
+    }
+
+    @Test
+    public void testBackendWithoutUriListing() throws Exception {
+        CountingKnownUriFilter backend = new CountingKnownUriFilter() {
+            @Override
+            public boolean forEachKnownUri(Consumer<String> consumer) {
+                return false;
+            }
+        };
+        backend.add(createUri("known", 0), System.currentTimeMillis() + 100000);
+
+        // the filter can not be rebuilt, i.e., all requests are forwarded
+        BloomFilterKnownUriFilter filter = new BloomFilterKnownUriFilter(backend, 100, 0.01, null, 0);
+        Assert.assertFalse(filter.isComplete());
+        Assert.assertFalse(filter.isUriGood(createUri("known", 0)));
+        backend.requests = 0;
+        Assert.assertTrue(filter.isUriGood(createUri("new", 0)));
+        Assert.assertEquals(1, backend.requests);
+        // an incomplete filter must not write snapshots
+        Assert.assertFalse(filter.writeSnapshot());
+    }
+
+    private static CrawleableUri createUri(String prefix, int id) throws Exception {
+        return new CrawleableUri(new URI("http://example.org/" + prefix + "/" + id));
+    }
+
+    private static class CountingKnownUriFilter extends InMemoryKnownUriFilter {
+        private int requests = 0;
+        private int batches = 0;
+
+        @Override
+        public boolean isUriGood(CrawleableUri uri) {
+            ++requests;
+            return super.isUriGood(uri);
+        }
+
+        @Override
+        public List<CrawleableUri> filterGood(List<CrawleableUri> uris) {
+            ++batches;
+            return super.filterGood(uris);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.dice_research.squirrel.data.uri.filter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link FingerprintKnownUriFilter}.
+ */
+public class FingerprintKnownUriFilterTest {
+
+    private static final int NUMBER_OF_URIS = 10000;
+
+    @Test
+    public void testAddAndResize() throws Exception {
+        FingerprintKnownUriFilter filter = new FingerprintKnownUriFilter(false, 0, false, 16);
+        for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+            CrawleableUri uri = createUri(i);
+            Assert.assertTrue(filter.isUriGood(uri));
+            filter.add(uri, System.currentTimeMillis());
+        }
+        Assert.assertEquals(NUMBER_OF_URIS, filter.count());
+        for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+            Assert.assertFalse(filter.isUriGood(createUri(i)));
+        }
+        // adding a known URI again does not change the number of URIs
+        filter.add(createUri(0), System.currentTimeMillis());
+        Assert.assertEquals(NUMBER_OF_URIS, filter.count());
+        Assert.assertTrue(filter.isUriGood(createUri(NUMBER_OF_URIS)));
+    }
+
+    @Test
+    public void testCollisions() throws Exception {
+        // all URIs have the same fingerprint
+        FingerprintKnownUriFilter filter = new FingerprintKnownUriFilter(false, 0, true, 16) {
+            @Override
+            protected long fingerprint(String uriString) {
+                return 42;
+            }
+        };
+        for (int i = 0; i < 100; ++i) {
+            Assert.assertTrue(filter.isUriGood(createUri(i)));
+            filter.add(createUri(i), System.currentTimeMillis());
+        }
+        Assert.assertEquals(100, filter.count());
+        for (int i = 0; i < 100; ++i) {
+            Assert.assertFalse(filter.isUriGood(createUri(i)));
+        }
+        Assert.assertTrue(filter.isUriGood(createUri(100)));
+    }
+
+    @Test
+    public void testRecrawling() throws Exception {
+        FingerprintKnownUriFilter filter = new FingerprintKnownUriFilter(true, 100000, true);
+        long now = System.currentTimeMillis();
+        Set<String> outdatedUris = new HashSet<>();
+        for (int i = 0; i < 100; ++i) {
+            CrawleableUri uri = createUri(i);
+            if ((i % 2) == 0) {
+                filter.add(uri, now - 1000, now - 1);
+                outdatedUris.add(uri.getUri().toString());
+            } else {
+                filter.add(uri, now, now + 100000);
+            }
+        }
+        Assert.assertTrue(filter.isUriGood(createUri(0)));
+        Assert.assertFalse(filter.isUriGood(createUri(1)));
+
+        List<CrawleableUri> uris = filter.getOutdatedUris();
+        Assert.assertEquals(outdatedUris.size(), uris.size());
+        for (CrawleableUri uri : uris) {
+            Assert.assertTrue(outdatedUris.contains(uri.getUri().toString()));
+        }
+        // the URIs are in process now
+        Assert.assertEquals(0, filter.getOutdatedUris().size());
+        // after they have been crawled, they are not outdated anymore
+        filter.addAll(uris, System.currentTimeMillis() + 100000);
+        Assert.assertEquals(0, filter.getOutdatedUris().size());
+        Assert.assertFalse(filter.isUriGood(createUri(0)));
+    }
+
+    @Test
+    public void testOutdatedUrisInBatches() throws Exception {
+        FingerprintKnownUriFilter filter = new FingerprintKnownUriFilter(true, 100000, true);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 250; ++i) {
+            filter.add(createUri(i), now - 1000, now - 1 - i);
+        }
+        // URIs that have been added again with a later time stamp are not outdated anymore
+        for (int i = 0; i < 50; ++i) {
+            filter.add(createUri(i), now, now + 100000);
+        }
+        Set<String> retrievedUris = new HashSet<>();
+        List<CrawleableUri> uris;
+        int batches = 0;
+        do {
+            uris = filter.getOutdatedUris(100);
+            Assert.assertTrue(uris.size() <= 100);
+            for (CrawleableUri uri : uris) {
+                Assert.assertTrue("Got URI twice: " + uri.getUri(), retrievedUris.add(uri.getUri().toString()));
+            }
+            ++batches;
+        } while (uris.size() == 100);
+        Assert.assertEquals(3, batches);
+        Assert.assertEquals(200, retrievedUris.size());
+        for (int i = 0; i < 50; ++i) {
+            Assert.assertFalse(retrievedUris.contains(createUri(i).getUri().toString()));
+        }
+    }
+
+    @Test
+    public void testReAddedUris() throws Exception {
+        FingerprintKnownUriFilter filter = new FingerprintKnownUriFilter(true, 100000, true);
+        long now = System.currentTimeMillis();
+        // add the same URIs several times with different time stamps
+        for (int j = 0; j < 10; ++j) {
+            for (int i = 0; i < 10; ++i) {
+                filter.add(createUri(i), now - 1000, now - 1 - j);
+            }
+        }
+        Assert.assertEquals(10, filter.count());
+        List<CrawleableUri> uris = filter.getOutdatedUris();
+        Set<String> retrievedUris = new HashSet<>();
+        for (CrawleableUri uri : uris) {
+            Assert.assertTrue("Got URI twice: " + uri.getUri(), retrievedUris.add(uri.getUri().toString()));
+        }
+        Assert.assertEquals(10, retrievedUris.size());
+        Assert.assertEquals(0, filter.getOutdatedUris().size());
+    }
+
+    @Test
+    public void testExpiredClaims() throws Exception {
+        // claimed URIs have to be crawled within 3 times the recrawl time
+        FingerprintKnownUriFilter filter = new FingerprintKnownUriFilter(true, 10, true);
+        long now = System.currentTimeMillis();
+        filter.add(createUri(0), now - 1000, now - 1);
+        Assert.assertEquals(1, filter.getOutdatedUris().size());
+        Assert.assertEquals(0, filter.getOutdatedUris().size());
+        Thread.sleep(50);
+        Assert.assertEquals(1, filter.getOutdatedUris().size());
+    }
+
+    @Test
+    public void testRecrawlingAfterResizeAndReading() throws Exception {
+        FingerprintKnownUriFilter filter = new FingerprintKnownUriFilter(true, 100000, true, 16);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 200; ++i) {
+            filter.add(createUri(i), now - 1000, ((i % 2) == 0) ? (now - 1) : (now + 100000));
+        }
+        // claim the first half of the outdated URIs
+        Assert.assertEquals(50, filter.getOutdatedUris(50).size());
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bout));
+        FingerprintKnownUriFilter readFilter = new FingerprintKnownUriFilter(true, 100000, true, 16);
+        readFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bout.toByteArray())));
+        Assert.assertEquals(200, readFilter.count());
+        // only the outdated URIs that have not been claimed are returned
+        Assert.assertEquals(50, filter.getOutdatedUris().size());
+        Assert.assertEquals(50, readFilter.getOutdatedUris().size());
+        Assert.assertEquals(0, readFilter.getOutdatedUris().size());
+    }
+
+    private static CrawleableUri createUri(int id) throws Exception {
+        return new CrawleableUri(new URI("http://example" + (id % 7) + ".org/resource/" + id));
+    }
+}
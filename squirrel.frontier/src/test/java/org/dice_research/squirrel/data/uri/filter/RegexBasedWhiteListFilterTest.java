@@ -0,0 +1,52 @@
+package org.dice_research.squirrel.data.uri.filter;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the reloading of the white list of the
+ * {@link RegexBasedWhiteListFilter}.
+ */
+public class RegexBasedWhiteListFilterTest {
+
+    @Test
+    public void testReload() throws Exception {
+        File whiteListFile = File.createTempFile("white-list", ".txt");
+        try {
+            Files.write(whiteListFile.toPath(), Arrays.asList("dbpedia"), StandardCharsets.UTF_8);
+            RegexBasedWhiteListFilter filter = RegexBasedWhiteListFilter.create(new InMemoryKnownUriFilter(),
+                    whiteListFile);
+            Assert.assertNotNull(filter);
+            Assert.assertTrue(filter.isUriGood(createUri("http://dbpedia.org/resource/Leipzig")));
+            Assert.assertFalse(filter.isUriGood(createUri("http://example.org/data.ttl")));
+            // nothing has changed
+            Assert.assertFalse(filter.reloadIfChanged());
+
+            Files.write(whiteListFile.toPath(), Arrays.asList("example\\.org", "\\.ttl$"), StandardCharsets.UTF_8);
+            // make sure that the change is visible even if the file system has a coarse time resolution
+            Assert.assertTrue(whiteListFile.setLastModified(whiteListFile.lastModified() + 2000));
+            Assert.assertTrue(filter.reloadIfChanged());
+            Assert.assertFalse(filter.isUriGood(createUri("http://dbpedia.org/resource/Leipzig")));
+            Assert.assertTrue(filter.isUriGood(createUri("http://example.org/data.ttl")));
+            Assert.assertFalse(filter.reloadIfChanged());
+
+            // a missing file keeps the old white list
+            Assert.assertTrue(whiteListFile.delete());
+            Assert.assertFalse(filter.reloadIfChanged());
+            Assert.assertTrue(filter.isUriGood(createUri("http://example.org/data.ttl")));
+        } finally {
+            whiteListFile.delete();
+        }
+    }
+
+    private static CrawleableUri createUri(String uri) throws Exception {
+        return new CrawleableUri(new URI(uri));
+    }
+}
@@ -0,0 +1,75 @@
+package org.dice_research.squirrel.data.uri.filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link WhiteListMatcher}.
+ */
+public class WhiteListMatcherTest {
+
+    @Test
+    public void testLiterals() {
+        WhiteListMatcher matcher = WhiteListMatcher
+                .create(Arrays.asList("dbpedia", "wikidata", "data.gov", "pedia.org/page"));
+        Assert.assertEquals(4, matcher.size());
+        Assert.assertTrue(matcher.matches("http://dbpedia.org/resource/Leipzig"));
+        Assert.assertTrue(matcher.matches("https://www.wikidata.org/wiki/Q2079"));
+        // "data.gov" contains a dot, i.e., it is handled as regular expression
+        Assert.assertTrue(matcher.matches("https://catalog.dataxgov.example/"));
+        // the literal can only be found using the failure links of the automaton
+        Assert.assertTrue(matcher.matches("http://wikipedia.org/page/Leipzig"));
+        Assert.assertFalse(matcher.matches("http://example.org/resource/Leipzig"));
+        Assert.assertFalse(matcher.matches("http://dbpedi.org/"));
+    }
+
+    @Test
+    public void testRegularExpressions() {
+        WhiteListMatcher matcher = WhiteListMatcher
+                .create(Arrays.asList("^https?://[a-z]+\\.example\\.org/", "\\.ttl$", "(x+)y\\1"));
+        Assert.assertEquals(3, matcher.size());
+        Assert.assertTrue(matcher.matches("http://data.example.org/dataset"));
+        Assert.assertFalse(matcher.matches("ftp://data.example.org/dataset"));
+        Assert.assertTrue(matcher.matches("ftp://data.example.com/dump.ttl"));
+        // the back reference has to refer to its own group
+        Assert.assertTrue(matcher.matches("http://other.org/xxyxx"));
+        Assert.assertFalse(matcher.matches("http://other.org/xxyz"));
+    }
+
+    @Test
+    public void testUncombinableExpressions() {
+        // the comment of the first expression would swallow the end of its group in the combined pattern
+        WhiteListMatcher matcher = WhiteListMatcher.create(Arrays.asList("(?x)dump #comment", "\\.ttl$", "dbpedia"));
+        Assert.assertEquals(3, matcher.size());
+        Assert.assertTrue(matcher.matches("http://example.org/dump.nt"));
+        Assert.assertTrue(matcher.matches("http://example.org/data.ttl"));
+        Assert.assertTrue(matcher.matches("http://dbpedia.org/resource/Leipzig"));
+        Assert.assertFalse(matcher.matches("http://example.org/data.nt"));
+    }
+
+    @Test
+    public void testCaseInsensitivity() {
+        WhiteListMatcher matcher = WhiteListMatcher.create(Arrays.asList("DBpedia", "Example\\.ORG"));
+        Assert.assertTrue(matcher.matches("http://DBPEDIA.org/resource/Leipzig"));
+        Assert.assertTrue(matcher.matches("http://www.EXAMPLE.org/"));
+    }
+
+    @Test
+    public void testInvalidAndEmptyExpressions() {
+        WhiteListMatcher matcher = WhiteListMatcher.create(Arrays.asList("[invalid", "example"));
+        Assert.assertEquals(1, matcher.size());
+        Assert.assertTrue(matcher.matches("http://example.org/"));
+        Assert.assertFalse(matcher.matches("http://[invalid.org/"));
+
+        // an empty line matches every URI
+        matcher = WhiteListMatcher.create(Arrays.asList("example", ""));
+        Assert.assertTrue(matcher.matches("http://dbpedia.org/"));
+
+        matcher = WhiteListMatcher.create(Collections.<String> emptyList());
+        Assert.assertTrue(matcher.isEmpty());
+        Assert.assertFalse(matcher.matches("http://example.org/"));
+    }
+}
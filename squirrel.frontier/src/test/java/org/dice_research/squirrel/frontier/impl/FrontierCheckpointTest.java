@@ -0,0 +1,182 @@
+package org.dice_research.squirrel.frontier.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.data.uri.filter.FingerprintKnownUriFilter;
+import org.dice_research.squirrel.data.uri.norm.NormalizerImpl;
+import org.dice_research.squirrel.data.uri.serialize.java.GzipJavaUriSerializer;
+import org.dice_research.squirrel.queue.InMemoryQueue;
+import org.dice_research.squirrel.uri.processing.CachingDnsResolver;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the restart of a frontier from the snapshot and the journal of a
+ * {@link FrontierCheckpoint}.
+ */
+public class FrontierCheckpointTest {
+
+    private static final int NUMBER_OF_HOSTS = 5;
+    private static final int NUMBER_OF_URIS = 100;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("frontier-checkpoint").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testRestartAfterCrash() throws Exception {
+        InMemoryQueue queue = new InMemoryQueue();
+        FingerprintKnownUriFilter filter = createFilter();
+        FrontierCheckpoint checkpoint = createCheckpoint(queue, filter);
+        checkpoint.open();
+        FrontierImpl frontier = createFrontier(queue, filter, checkpoint);
+        List<CrawleableUri> crawledUris;
+        List<CrawleableUri> leasedUris;
+        try {
+            // the first half is part of a snapshot while the second half is
+            // only part of the journal
+            frontier.addNewUris(createUris(0, NUMBER_OF_URIS / 2));
+            Assert.assertTrue(checkpoint.writeSnapshot());
+            frontier.addNewUris(createUris(NUMBER_OF_URIS / 2, NUMBER_OF_URIS));
+            crawledUris = frontier.getNextUris();
+            Assert.assertFalse(crawledUris.isEmpty());
+            frontier.crawlingDone(crawledUris);
+            // these URIs are handed out but not finished before the crash
+            leasedUris = frontier.getNextUris();
+            Assert.assertFalse(leasedUris.isEmpty());
+        } finally {
+            // the checkpoint is not closed to simulate a crash
+            frontier.close();
+        }
+
+        InMemoryQueue restoredQueue = new InMemoryQueue();
+        FingerprintKnownUriFilter restoredFilter = createFilter();
+        FrontierCheckpoint restoredCheckpoint = createCheckpoint(restoredQueue, restoredFilter);
+        restoredCheckpoint.open();
+        try {
+            Assert.assertEquals(NUMBER_OF_URIS, restoredFilter.count());
+            for (CrawleableUri uri : createUris(0, NUMBER_OF_URIS)) {
+                Assert.assertFalse(restoredFilter.isUriGood(uri));
+            }
+            Set<URI> queuedUris = new HashSet<>();
+            for (CrawleableUri uri : restoredQueue.getQueuedUris()) {
+                Assert.assertTrue("Got URI twice: " + uri.getUri(), queuedUris.add(uri.getUri()));
+                Assert.assertNotNull(uri.getIpAddress());
+                Assert.assertNotNull(uri.getType());
+            }
+            // all URIs except the crawled URIs are queued again
+            Assert.assertEquals(NUMBER_OF_URIS - crawledUris.size(), queuedUris.size());
+            for (CrawleableUri uri : crawledUris) {
+                Assert.assertFalse(queuedUris.contains(uri.getUri()));
+            }
+            for (CrawleableUri uri : leasedUris) {
+                Assert.assertTrue(queuedUris.contains(uri.getUri()));
+            }
+        } finally {
+            restoredCheckpoint.close();
+        }
+
+        // a clean restart leads to the same state
+        InMemoryQueue secondQueue = new InMemoryQueue();
+        FingerprintKnownUriFilter secondFilter = createFilter();
+        FrontierCheckpoint secondCheckpoint = createCheckpoint(secondQueue, secondFilter);
+        secondCheckpoint.open();
+        try {
+            Assert.assertEquals(NUMBER_OF_URIS, secondFilter.count());
+            Assert.assertEquals(NUMBER_OF_URIS - crawledUris.size(), secondQueue.getQueuedUris().size());
+        } finally {
+            secondCheckpoint.close();
+        }
+    }
+
+    @Test
+    public void testIncompleteJournal() throws Exception {
+        InMemoryQueue queue = new InMemoryQueue();
+        FingerprintKnownUriFilter filter = createFilter();
+        FrontierCheckpoint checkpoint = createCheckpoint(queue, filter);
+        checkpoint.open();
+        FrontierImpl frontier = createFrontier(queue, filter, checkpoint);
+        try {
+            frontier.addNewUris(createUris(0, NUMBER_OF_URIS));
+        } finally {
+            frontier.close();
+        }
+        // append the beginning of a record to every journal
+        for (File file : directory.listFiles()) {
+            if (file.getName().endsWith(".log")) {
+                try (FileOutputStream out = new FileOutputStream(file, true)) {
+                    out.write(new byte[] { 2, 0, 0, 1, 0, 42 });
+                }
+            }
+        }
+
+        InMemoryQueue restoredQueue = new InMemoryQueue();
+        FingerprintKnownUriFilter restoredFilter = createFilter();
+        FrontierCheckpoint restoredCheckpoint = createCheckpoint(restoredQueue, restoredFilter);
+        restoredCheckpoint.open();
+        try {
+            Assert.assertEquals(NUMBER_OF_URIS, restoredFilter.count());
+            Assert.assertEquals(NUMBER_OF_URIS, restoredQueue.getQueuedUris().size());
+        } finally {
+            restoredCheckpoint.close();
+        }
+    }
+
+    private static FingerprintKnownUriFilter createFilter() {
+        // without recrawling, the known URIs are never good again
+        return new FingerprintKnownUriFilter(false, FrontierImpl.DEFAULT_GENERAL_RECRAWL_TIME, true);
+    }
+
+    private FrontierCheckpoint createCheckpoint(InMemoryQueue queue, FingerprintKnownUriFilter filter) {
+        return new FrontierCheckpoint(directory, queue, filter, new GzipJavaUriSerializer(), 0);
+    }
+
+    private static FrontierImpl createFrontier(InMemoryQueue queue, FingerprintKnownUriFilter filter,
+            FrontierCheckpoint checkpoint) {
+        FrontierImpl frontier = new FrontierImpl(new NormalizerImpl(), filter, queue);
+        frontier.setDnsResolver(new LocalDnsResolver());
+        frontier.setCheckpoint(checkpoint);
+        return frontier;
+    }
+
+    private static List<CrawleableUri> createUris(int start, int end) throws Exception {
+        List<CrawleableUri> uris = new ArrayList<>();
+        for (int i = start; i < end; ++i) {
+            uris.add(new CrawleableUri(new URI("http://host" + (i % NUMBER_OF_HOSTS) + ".org/resource/" + i)));
+        }
+        return uris;
+    }
+
+    /**
+     * Resolves hostN.org to 127.0.0.(N+1).
+     */
+    private static class LocalDnsResolver extends CachingDnsResolver {
+        @Override
+        protected InetAddress lookup(String host) throws UnknownHostException {
+            int id = Integer.parseInt(host.substring(4, host.indexOf('.')));
+            return InetAddress.getByAddress(host, new byte[] { 127, 0, 0, (byte) (id + 1) });
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package org.dice_research.squirrel.frontier.impl;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.data.uri.filter.InMemoryKnownUriFilter;
+import org.dice_research.squirrel.data.uri.norm.NormalizerImpl;
+import org.dice_research.squirrel.queue.InMemoryQueue;
+import org.dice_research.squirrel.uri.processing.CachingDnsResolver;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link UriIngestionPipeline} with several threads that add
+ * overlapping batches of URIs to a {@link FrontierImpl}.
+ */
+public class UriIngestionPipelineTest {
+
+    private static final int NUMBER_OF_THREADS = 8;
+    private static final int NUMBER_OF_URIS = 1000;
+    private static final int BATCH_SIZE = 100;
+
+    @Test
+    public void testConcurrentBatches() throws Exception {
+        RecordingQueue queue = new RecordingQueue();
+        FrontierImpl frontier = new FrontierImpl(new NormalizerImpl(), new InMemoryKnownUriFilter(), queue);
+        frontier.setDnsResolver(new LocalDnsResolver());
+        try {
+            List<Thread> threads = new ArrayList<>();
+            List<Throwable> exceptions = Collections.synchronizedList(new ArrayList<>());
+            for (int t = 0; t < NUMBER_OF_THREADS; ++t) {
+                final int offset = t * 10;
+                Thread thread = new Thread(() -> {
+                    try {
+                        // every thread adds all URIs (starting at a different
+                        // position)
+                        for (int b = 0; b < (NUMBER_OF_URIS / BATCH_SIZE); ++b) {
+                            List<CrawleableUri> batch = new ArrayList<>();
+                            for (int i = 0; i < BATCH_SIZE; ++i) {
+                                batch.add(createUri((offset + (b * BATCH_SIZE) + i) % NUMBER_OF_URIS));
+                            }
+                            // duplicates within a batch
+                            batch.add(createUri(offset));
+                            frontier.addNewUris(batch);
+                        }
+                    } catch (Throwable e) {
+                        exceptions.add(e);
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            Assert.assertEquals(Collections.emptyList(), exceptions);
+
+            // every URI has been added exactly once
+            Set<URI> addedUris = new HashSet<>();
+            for (CrawleableUri uri : queue.addedUris) {
+                Assert.assertTrue("Got URI twice: " + uri.getUri(), addedUris.add(uri.getUri()));
+                Assert.assertNotNull(uri.getIpAddress());
+                Assert.assertNotNull(uri.getType());
+            }
+            Assert.assertEquals(NUMBER_OF_URIS, addedUris.size());
+            Assert.assertFalse(frontier.knownUriFilter.isUriGood(createUri(0)));
+        } finally {
+            frontier.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentSingleAndBatchAdds() throws Exception {
+        RecordingQueue queue = new RecordingQueue();
+        FrontierImpl frontier = new FrontierImpl(new NormalizerImpl(), new InMemoryKnownUriFilter(), queue);
+        frontier.setDnsResolver(new LocalDnsResolver());
+        try {
+            List<Thread> threads = new ArrayList<>();
+            List<Throwable> exceptions = Collections.synchronizedList(new ArrayList<>());
+            for (int t = 0; t < NUMBER_OF_THREADS; ++t) {
+                final boolean useBatches = (t % 2) == 0;
+                Thread thread = new Thread(() -> {
+                    try {
+                        List<CrawleableUri> batch = new ArrayList<>();
+                        for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+                            if (useBatches) {
+                                batch.add(createUri(i));
+                                if (batch.size() == 10) {
+                                    frontier.addNewUris(batch);
+                                    batch = new ArrayList<>();
+                                }
+                            } else {
+                                frontier.addNewUri(createUri(i));
+                            }
+                        }
+                    } catch (Throwable e) {
+                        exceptions.add(e);
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            Assert.assertEquals(Collections.emptyList(), exceptions);
+            Set<URI> addedUris = new HashSet<>();
+            for (CrawleableUri uri : queue.addedUris) {
+                Assert.assertTrue("Got URI twice: " + uri.getUri(), addedUris.add(uri.getUri()));
+            }
+            Assert.assertEquals(NUMBER_OF_URIS, addedUris.size());
+        } finally {
+            frontier.close();
+        }
+    }
+
+    @Test
+    public void testUnknownHostsAndSchemes() throws Exception {
+        RecordingQueue queue = new RecordingQueue();
+        FrontierImpl frontier = new FrontierImpl(new NormalizerImpl(), new InMemoryKnownUriFilter(), queue);
+        frontier.setDnsResolver(new LocalDnsResolver());
+        try {
+            List<CrawleableUri> uris = new ArrayList<>();
+            uris.add(createUri(0));
+            uris.add(new CrawleableUri(new URI("http://unknown.org/resource/1")));
+            uris.add(new CrawleableUri(new URI("mailto:someone@example.org")));
+            frontier.addNewUris(uris);
+
+            Assert.assertEquals(1, queue.addedUris.size());
+            Assert.assertEquals(createUri(0), queue.addedUris.get(0));
+            // the URI with the unknown host is known while the unsupported one
+            // is not
+            Assert.assertFalse(frontier.knownUriFilter.isUriGood(uris.get(1)));
+            Assert.assertTrue(frontier.knownUriFilter.isUriGood(uris.get(2)));
+
+            // single URIs are handled in the same way
+            CrawleableUri unknownHostUri = new CrawleableUri(new URI("http://unknown.org/resource/2"));
+            frontier.addNewUri(unknownHostUri);
+            CrawleableUri unsupportedUri = new CrawleableUri(new URI("mailto:somebody@example.org"));
+            frontier.addNewUri(unsupportedUri);
+            Assert.assertEquals(1, queue.addedUris.size());
+            Assert.assertFalse(frontier.knownUriFilter.isUriGood(unknownHostUri));
+            Assert.assertTrue(frontier.knownUriFilter.isUriGood(unsupportedUri));
+        } finally {
+            frontier.close();
+        }
+    }
+
+    @Test
+    public void testSkippedUriOfFailedBatch() throws Exception {
+        CountDownLatch queueReached = new CountDownLatch(1);
+        CountDownLatch failQueue = new CountDownLatch(1);
+        AtomicBoolean firstCall = new AtomicBoolean(true);
+        RecordingQueue queue = new RecordingQueue() {
+            @Override
+            public void addUri(CrawleableUri uri) {
+                if (firstCall.getAndSet(false)) {
+                    queueReached.countDown();
+                    try {
+                        failQueue.await();
+                    } catch (InterruptedException e) {
+                        // fail anyway
+                    }
+                    throw new IllegalStateException("Simulated queue failure.");
+                }
+                super.addUri(uri);
+            }
+        };
+        FrontierImpl frontier = new FrontierImpl(new NormalizerImpl(), new InMemoryKnownUriFilter(), queue);
+        frontier.setDnsResolver(new LocalDnsResolver());
+        try {
+            List<Throwable> exceptions = Collections.synchronizedList(new ArrayList<>());
+            Thread failingCaller = new Thread(() -> {
+                try {
+                    frontier.addNewUris(Collections.singletonList(createUri(0)));
+                    exceptions.add(new AssertionError("Expected an exception of the queue."));
+                } catch (IllegalStateException e) {
+                    // expected
+                } catch (Throwable e) {
+                    exceptions.add(e);
+                }
+            });
+            failingCaller.start();
+            Assert.assertTrue(queueReached.await(10, TimeUnit.SECONDS));
+            // the URI is reserved by the failing batch and skipped
+            frontier.addNewUri(createUri(0));
+            Assert.assertEquals(0, queue.addedUris.size());
+            failQueue.countDown();
+            failingCaller.join();
+            Assert.assertEquals(Collections.emptyList(), exceptions);
+
+            // the pipeline adds the skipped URI again
+            long deadline = System.currentTimeMillis() + 10000;
+            while (queue.addedUris.isEmpty() && (System.currentTimeMillis() < deadline)) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(1, queue.addedUris.size());
+            Assert.assertEquals(createUri(0), queue.addedUris.get(0));
+            Assert.assertFalse(frontier.knownUriFilter.isUriGood(createUri(0)));
+        } finally {
+            frontier.close();
+        }
+    }
+
+    @Test
+    public void testFailingQueue() throws Exception {
+        RecordingQueue queue = new RecordingQueue();
+        FrontierImpl frontier = new FrontierImpl(new NormalizerImpl(), new InMemoryKnownUriFilter(), queue);
+        frontier.setDnsResolver(new LocalDnsResolver());
+        try {
+            queue.failing = true;
+            List<CrawleableUri> uris = Collections.singletonList(createUri(0));
+            try {
+                frontier.addNewUris(uris);
+                Assert.fail("Expected an exception of the queue.");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            // the URI has not been marked as known, i.e., it can be added again
+            Assert.assertTrue(frontier.knownUriFilter.isUriGood(createUri(0)));
+            queue.failing = false;
+            frontier.addNewUris(uris);
+            Assert.assertEquals(1, queue.addedUris.size());
+            Assert.assertFalse(frontier.knownUriFilter.isUriGood(createUri(0)));
+        } finally {
+            frontier.close();
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        CountDownLatch blockQueue = new CountDownLatch(1);
+        RecordingQueue queue = new RecordingQueue() {
+            @Override
+            public void addUri(CrawleableUri uri) {
+                try {
+                    blockQueue.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                super.addUri(uri);
+            }
+        };
+        FrontierImpl frontier = new FrontierImpl(new NormalizerImpl(), new InMemoryKnownUriFilter(), queue);
+        frontier.setDnsResolver(new LocalDnsResolver());
+        // more callers than the pipeline can take
+        int numberOfCallers = UriIngestionPipeline.DEFAULT_QUEUE_CAPACITY * 6;
+        AtomicInteger addedBatches = new AtomicInteger();
+        AtomicInteger rejectedBatches = new AtomicInteger();
+        List<Throwable> exceptions = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numberOfCallers; ++t) {
+            final int id = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    frontier.addNewUris(Collections.singletonList(createUri(id)));
+                    addedBatches.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    rejectedBatches.incrementAndGet();
+                } catch (Throwable e) {
+                    exceptions.add(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        Thread.sleep(200);
+        Thread closer = new Thread(() -> frontier.close());
+        closer.start();
+        Thread.sleep(100);
+        // the closing waits for the stages
+        Assert.assertTrue(closer.isAlive());
+        blockQueue.countDown();
+        closer.join(10000);
+        Assert.assertFalse("close() did not return.", closer.isAlive());
+        // no caller stays blocked
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+            Assert.assertFalse("A caller is still blocked.", thread.isAlive());
+        }
+        Assert.assertEquals(Collections.emptyList(), exceptions);
+        Assert.assertEquals(numberOfCallers, addedBatches.get() + rejectedBatches.get());
+        // all batches that have been accepted are in the queue
+        Assert.assertEquals(addedBatches.get(), queue.addedUris.size());
+        Assert.assertTrue(addedBatches.get() > 0);
+    }
+
+    private static CrawleableUri createUri(int id) throws Exception {
+        return new CrawleableUri(new URI("http://example" + (id % 13) + ".org/resource/" + id));
+    }
+
+    private static class RecordingQueue extends InMemoryQueue {
+        private List<CrawleableUri> addedUris = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean failing = false;
+
+        // addUris(List) is based on this method
+        @Override
+        public void addUri(CrawleableUri uri) {
+            if (failing) {
+                throw new IllegalStateException("Simulated queue failure.");
+            }
+            addedUris.add(uri);
+            super.addUri(uri);
+        }
+    }
+
+    private static class LocalDnsResolver extends CachingDnsResolver {
+        @Override
+        protected InetAddress lookup(String host) throws UnknownHostException {
+            if (host.startsWith("unknown")) {
+                throw new UnknownHostException(host);
+            }
+            return InetAddress.getByAddress(host, new byte[] { 127, 0, 0, 1 });
+        }
+    }
+}
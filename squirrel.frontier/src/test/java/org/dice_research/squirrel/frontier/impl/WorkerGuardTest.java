@@ -0,0 +1,91 @@
+package org.dice_research.squirrel.frontier.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the detection of dead workers by the {@link WorkerGuard}.
+ */
+public class WorkerGuardTest {
+
+    private static final long DEAD_TIMEOUT = 300;
+    private static final long TICK_DURATION = 50;
+
+    private Map<String, List<CrawleableUri>> deadWorkers;
+    private WorkerGuard guard;
+
+    @Before
+    public void setUp() {
+        deadWorkers = new ConcurrentHashMap<>();
+        guard = new WorkerGuard((id, uris) -> deadWorkers.put(id, uris), DEAD_TIMEOUT, TICK_DURATION);
+    }
+
+    @After
+    public void tearDown() {
+        guard.shutdown();
+    }
+
+    @Test
+    public void testDeadWorker() throws Exception {
+        List<CrawleableUri> uris = createUris(0, 1000);
+        guard.putUrisForWorker("worker1", true, uris);
+        guard.putUrisForWorker("worker2", true, createUris(1000, 10));
+        // the first worker finishes most of its URIs
+        guard.removeUrisForWorker("worker1", new ArrayList<>(uris.subList(0, 990)));
+
+        // both workers stay alive as long as they send alive messages
+        for (int i = 0; i < 10; ++i) {
+            Thread.sleep(TICK_DURATION);
+            guard.putNewTimestamp("worker1");
+            guard.putNewTimestamp("worker2");
+        }
+        Assert.assertEquals(0, guard.getNumberOfDeadWorker());
+        Assert.assertEquals(2, guard.getNumberOfLiveWorkers());
+
+        // the first worker stops sending alive messages
+        for (int i = 0; (i < 20) && deadWorkers.isEmpty(); ++i) {
+            Thread.sleep(TICK_DURATION);
+            guard.putNewTimestamp("worker2");
+        }
+        Assert.assertEquals(1, guard.getNumberOfDeadWorker());
+        Assert.assertEquals(1, guard.getNumberOfLiveWorkers());
+        Assert.assertTrue(deadWorkers.containsKey("worker1"));
+        Assert.assertEquals(toUriSet(uris.subList(990, 1000)), toUriSet(deadWorkers.get("worker1")));
+        Assert.assertTrue(guard.getMapWorkerInfo().containsKey("worker2"));
+    }
+
+    @Test
+    public void testWorkerWithoutAliveMessages() throws Exception {
+        guard.putUrisForWorker("worker1", false, createUris(0, 10));
+        Thread.sleep(DEAD_TIMEOUT * 2);
+        Assert.assertEquals(0, guard.getNumberOfDeadWorker());
+        Assert.assertEquals(10, guard.getMapWorkerInfo().get("worker1").getUrisCrawling().size());
+    }
+
+    private static List<CrawleableUri> createUris(int start, int count) throws Exception {
+        List<CrawleableUri> uris = new ArrayList<>();
+        for (int i = start; i < (start + count); ++i) {
+            uris.add(new CrawleableUri(new URI("http://example.org/resource_" + i)));
+        }
+        return uris;
+    }
+
+    private static Set<URI> toUriSet(List<CrawleableUri> uris) {
+        Set<URI> set = new HashSet<>();
+        for (CrawleableUri uri : uris) {
+            set.add(uri.getUri());
+        }
+        return set;
+    }
+}
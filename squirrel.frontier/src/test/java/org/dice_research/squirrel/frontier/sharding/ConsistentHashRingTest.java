@@ -0,0 +1,111 @@
+package org.dice_research.squirrel.frontier.sharding;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the distribution of hosts over shards by the
+ * {@link ConsistentHashRing}.
+ */
+public class ConsistentHashRingTest {
+
+    private static final int NUMBER_OF_HOSTS = 10000;
+
+    @Test
+    public void testDistribution() {
+        int numberOfShards = 4;
+        ConsistentHashRing ring = new ConsistentHashRing(numberOfShards);
+        // a second ring with the same configuration (e.g., of a worker) agrees
+        ConsistentHashRing otherRing = new ConsistentHashRing(numberOfShards);
+        int counts[] = new int[numberOfShards];
+        int shard;
+        for (int i = 0; i < NUMBER_OF_HOSTS; ++i) {
+            shard = ring.getShard(createHost(i));
+            Assert.assertEquals(shard, otherRing.getShard(createHost(i)));
+            ++counts[shard];
+        }
+        double expected = NUMBER_OF_HOSTS / (double) numberOfShards;
+        for (int i = 0; i < numberOfShards; ++i) {
+            Assert.assertTrue("Shard " + i + " got " + counts[i] + " hosts.",
+                    Math.abs(counts[i] - expected) < (expected * 0.25));
+        }
+    }
+
+    @Test
+    public void testAddingAShard() {
+        ConsistentHashRing ring = new ConsistentHashRing(4);
+        ConsistentHashRing largerRing = new ConsistentHashRing(5);
+        int moved = 0;
+        int oldShard, newShard;
+        for (int i = 0; i < NUMBER_OF_HOSTS; ++i) {
+            oldShard = ring.getShard(createHost(i));
+            newShard = largerRing.getShard(createHost(i));
+            if (oldShard != newShard) {
+                // hosts only move to the new shard
+                Assert.assertEquals(4, newShard);
+                ++moved;
+            }
+        }
+        // about a fifth of the hosts should move
+        Assert.assertTrue("Moved " + moved + " hosts.", moved < (NUMBER_OF_HOSTS * 0.3));
+        Assert.assertTrue("Moved " + moved + " hosts.", moved > (NUMBER_OF_HOSTS * 0.1));
+    }
+
+    @Test
+    public void testPartition() throws Exception {
+        ConsistentHashRing ring = new ConsistentHashRing(3);
+        List<CrawleableUri> uris = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            uris.add(new CrawleableUri(new URI("http://" + createHost(i % 10) + "/resource_" + i)));
+        }
+        List<List<CrawleableUri>> partitions = ring.partition(uris);
+        Assert.assertEquals(3, partitions.size());
+        int count = 0;
+        for (int i = 0; i < partitions.size(); ++i) {
+            for (CrawleableUri uri : partitions.get(i)) {
+                Assert.assertEquals(i, ring.getShard(uri.getUri().getHost()));
+                ++count;
+            }
+        }
+        Assert.assertEquals(uris.size(), count);
+
+        // a single shard owns everything
+        ConsistentHashRing singleRing = new ConsistentHashRing(1);
+        Assert.assertEquals(0, singleRing.getShard("example.org"));
+        Assert.assertEquals(uris, singleRing.partition(uris).get(0));
+    }
+
+    @Test
+    public void testPartitionByIp() throws Exception {
+        ConsistentHashRing ring = new ConsistentHashRing(3);
+        List<CrawleableUri> uris = new ArrayList<>();
+        // many hosts share a few IP addresses
+        for (int i = 0; i < 100; ++i) {
+            uris.add(new CrawleableUri(new URI("http://" + createHost(i) + "/resource_" + i),
+                    InetAddress.getByAddress(new byte[] { 10, 0, 0, (byte) (i % 5) })));
+        }
+        List<List<CrawleableUri>> partitions = ring.partition(uris);
+        int count = 0;
+        for (int i = 0; i < partitions.size(); ++i) {
+            for (CrawleableUri uri : partitions.get(i)) {
+                Assert.assertEquals(i, ring.getShard(uri.getIpAddress()));
+                ++count;
+            }
+        }
+        Assert.assertEquals(uris.size(), count);
+
+        // a URI without IP address is assigned by its host
+        CrawleableUri uri = new CrawleableUri(new URI("http://" + createHost(1) + "/resource"));
+        Assert.assertEquals(ring.getShard(createHost(1)), ring.getShard(uri));
+    }
+
+    private static String createHost(int id) {
+        return "host" + id + ".example.org";
+    }
+}
@@ -0,0 +1,75 @@
+package org.dice_research.squirrel.frontier.sharding;
+
+import org.dice_research.squirrel.rabbit.msgs.ShardStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ShardTerminationDetector}.
+ */
+public class ShardTerminationDetectorTest {
+
+    @Test
+    public void testTwoWaves() {
+        ShardTerminationDetector detector = new ShardTerminationDetector(2);
+        detector.update(new ShardStatus(0, 1, true, true, 2, 1, false));
+        // the status of the second shard is missing
+        Assert.assertFalse(detector.canTerminate());
+        detector.update(new ShardStatus(1, 1, true, false, 1, 2, false));
+        // first wave
+        Assert.assertFalse(detector.canTerminate());
+        detector.update(new ShardStatus(0, 2, true, true, 2, 1, false));
+        // the second shard has not sent a new status
+        Assert.assertFalse(detector.canTerminate());
+        detector.update(new ShardStatus(1, 2, true, false, 1, 2, false));
+        Assert.assertTrue(detector.canTerminate());
+        Assert.assertFalse(detector.isTerminating());
+        detector.update(new ShardStatus(1, 3, true, false, 1, 2, true));
+        Assert.assertTrue(detector.isTerminating());
+    }
+
+    @Test
+    public void testUrisInTransit() {
+        ShardTerminationDetector detector = new ShardTerminationDetector(2);
+        // the first shard forwarded URIs the second shard has not processed
+        detector.update(new ShardStatus(0, 1, true, true, 1, 0, false));
+        detector.update(new ShardStatus(1, 1, true, true, 0, 0, false));
+        Assert.assertFalse(detector.canTerminate());
+        detector.update(new ShardStatus(0, 2, true, true, 1, 0, false));
+        detector.update(new ShardStatus(1, 2, false, true, 0, 1, false));
+        Assert.assertFalse(detector.canTerminate());
+        // the second shard processed the URIs and is idle again
+        detector.update(new ShardStatus(0, 3, true, true, 1, 0, false));
+        detector.update(new ShardStatus(1, 3, true, true, 0, 1, false));
+        Assert.assertFalse(detector.canTerminate());
+        detector.update(new ShardStatus(0, 4, true, true, 1, 0, false));
+        detector.update(new ShardStatus(1, 4, true, true, 0, 1, false));
+        Assert.assertTrue(detector.canTerminate());
+    }
+
+    @Test
+    public void testChangedCounters() {
+        ShardTerminationDetector detector = new ShardTerminationDetector(2);
+        detector.update(new ShardStatus(0, 1, true, true, 0, 0, false));
+        detector.update(new ShardStatus(1, 1, true, true, 0, 0, false));
+        Assert.assertFalse(detector.canTerminate());
+        // URIs have been exchanged between the two waves
+        detector.update(new ShardStatus(0, 2, true, true, 1, 0, false));
+        detector.update(new ShardStatus(1, 2, true, true, 0, 1, false));
+        Assert.assertFalse(detector.canTerminate());
+        // an old status is ignored
+        detector.update(new ShardStatus(0, 1, false, true, 0, 0, false));
+        detector.update(new ShardStatus(0, 3, true, true, 1, 0, false));
+        detector.update(new ShardStatus(1, 3, true, true, 0, 1, false));
+        Assert.assertTrue(detector.canTerminate());
+    }
+
+    @Test
+    public void testNothingCrawled() {
+        ShardTerminationDetector detector = new ShardTerminationDetector(1);
+        for (int i = 1; i < 4; ++i) {
+            detector.update(new ShardStatus(0, i, true, false, 0, 0, false));
+            Assert.assertFalse(detector.canTerminate());
+        }
+    }
+}
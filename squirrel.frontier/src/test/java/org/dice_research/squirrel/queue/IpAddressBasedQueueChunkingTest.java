@@ -0,0 +1,62 @@
+package org.dice_research.squirrel.queue;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.data.uri.CrawleableUriFactory4Tests;
+import org.dice_research.squirrel.data.uri.UriType;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * This class tests the bounded chunk size of the {@link InMemoryQueue}. A large
+ * IP should be served in several chunks that do not exceed the maximum chunk
+ * size while a smaller IP gets its turn in between.
+ * </p>
+ */
+public class IpAddressBasedQueueChunkingTest {
+
+    private static final int MAX_CHUNK_SIZE = 3;
+
+    @Test
+    public void test() throws Exception {
+        InMemoryQueue queue = new InMemoryQueue();
+        queue.setMaxChunkSize(MAX_CHUNK_SIZE);
+        CrawleableUriFactory4Tests factory = new CrawleableUriFactory4Tests();
+        InetAddress largeIp = InetAddress.getByName("192.168.100.1");
+        InetAddress smallIp = InetAddress.getByName("192.168.100.2");
+        Set<String> expectedUris = new HashSet<String>();
+        for (int i = 0; i < 7; ++i) {
+            queue.addUri(factory.create(new URI("http://example.org/large_" + i), largeIp, UriType.DUMP));
+            expectedUris.add("http://example.org/large_" + i);
+        }
+        for (int i = 0; i < 2; ++i) {
+            queue.addUri(factory.create(new URI("http://example.org/small_" + i), smallIp, UriType.DUMP));
+            expectedUris.add("http://example.org/small_" + i);
+        }
+
+        // the large IP comes first, is served in slices and the small IP gets
+        // its turn after the first slice
+        InetAddress expectedIps[] = new InetAddress[] { largeIp, smallIp, largeIp, largeIp };
+        int expectedSizes[] = new int[] { 3, 2, 3, 1 };
+        List<CrawleableUri> chunk;
+        for (int i = 0; i < expectedIps.length; ++i) {
+            chunk = queue.getNextUris();
+            Assert.assertNotNull("Got no chunk #" + i, chunk);
+            Assert.assertEquals("Chunk #" + i + " has a wrong size.", expectedSizes[i], chunk.size());
+            for (CrawleableUri uri : chunk) {
+                Assert.assertEquals(expectedIps[i], uri.getIpAddress());
+                Assert.assertTrue("Got unexpected or duplicate URI " + uri.getUri(),
+                        expectedUris.remove(uri.getUri().toString()));
+            }
+            queue.markIpAddressAsAccessible(chunk.get(0).getIpAddress());
+        }
+        Assert.assertTrue("Some URIs have not been retrieved: " + expectedUris, expectedUris.isEmpty());
+        Assert.assertNull(queue.getNextUris());
+    }
+}
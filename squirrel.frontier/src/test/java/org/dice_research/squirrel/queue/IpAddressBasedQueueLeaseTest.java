@@ -0,0 +1,170 @@
+package org.dice_research.squirrel.queue;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.data.uri.CrawleableUriFactory4Tests;
+import org.dice_research.squirrel.data.uri.UriType;
+import org.dice_research.squirrel.queue.scheduling.RoundRobinSchedulingPolicy;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the leases of the chunks of an {@link AbstractIpAddressBasedQueue},
+ * i.e., that the URIs of a chunk are served again if the IP has not been
+ * marked as accessible before the lease expired.
+ */
+public class IpAddressBasedQueueLeaseTest {
+
+    private static final long LEASE_DURATION = 200;
+    private static final int NUMBER_OF_URIS = 5;
+
+    private CrawleableUriFactory4Tests factory = new CrawleableUriFactory4Tests();
+
+    @Test
+    public void testExpiredLease() throws Exception {
+        checkExpiredLease(new InMemoryQueue());
+    }
+
+    @Test
+    public void testExpiredLeaseWithSchedulingPolicy() throws Exception {
+        checkExpiredLease(new InMemoryQueue(new RoundRobinSchedulingPolicy()));
+    }
+
+    private void checkExpiredLease(AbstractIpAddressBasedQueue queue) throws Exception {
+        queue.setLeaseDuration(LEASE_DURATION);
+        InetAddress ip = InetAddress.getByName("192.168.100.1");
+        Set<URI> uris = addUris(queue, ip);
+
+        List<CrawleableUri> chunk = queue.getNextUris();
+        Assert.assertEquals(uris, toUriSet(chunk));
+        Assert.assertEquals(1, queue.getNumberOfLeases());
+        // the IP is blocked until the lease expires
+        Assert.assertNull(queue.getNextUris());
+        Thread.sleep(LEASE_DURATION + 50);
+        chunk = queue.getNextUris();
+        Assert.assertNotNull(chunk);
+        Assert.assertEquals(uris, toUriSet(chunk));
+        Assert.assertEquals(1, queue.getNumberOfBlockedIps());
+        Assert.assertEquals(1, queue.getNumberOfLeases());
+
+        queue.markIpAddressAsAccessible(ip);
+        Assert.assertEquals(0, queue.getNumberOfLeases());
+        Thread.sleep(LEASE_DURATION + 50);
+        // the URIs of a finished chunk are not added again
+        Assert.assertNull(queue.getNextUris());
+        Assert.assertEquals(0, queue.getNumberOfBlockedIps());
+    }
+
+    @Test
+    public void testLateFinishOfExpiredLease() throws Exception {
+        checkLateFinishOfExpiredLease(new InMemoryQueue());
+    }
+
+    @Test
+    public void testLateFinishOfExpiredLeaseWithSchedulingPolicy() throws Exception {
+        checkLateFinishOfExpiredLease(new InMemoryQueue(new RoundRobinSchedulingPolicy()));
+    }
+
+    private void checkLateFinishOfExpiredLease(AbstractIpAddressBasedQueue queue) throws Exception {
+        queue.setLeaseDuration(LEASE_DURATION);
+        InetAddress ip = InetAddress.getByName("192.168.100.1");
+        Set<URI> uris = addUris(queue, ip);
+
+        List<CrawleableUri> expiredChunk = queue.getNextUris();
+        Assert.assertNotNull(IpAddressBasedQueue.getLeaseId(expiredChunk));
+        Thread.sleep(LEASE_DURATION + 50);
+        List<CrawleableUri> chunk = queue.getNextUris();
+        Assert.assertEquals(uris, toUriSet(chunk));
+        Assert.assertNotEquals(IpAddressBasedQueue.getLeaseId(expiredChunk), IpAddressBasedQueue.getLeaseId(chunk));
+
+        // the worker of the expired lease can neither extend nor finish it
+        Assert.assertFalse(queue.extendLease(expiredChunk));
+        Assert.assertFalse(queue.finishChunk(expiredChunk, 0));
+        queue.returnChunk(expiredChunk);
+        Assert.assertEquals(1, queue.getNumberOfBlockedIps());
+        Assert.assertEquals(1, queue.getNumberOfLeases());
+        Assert.assertNull(queue.getNextUris());
+
+        Assert.assertTrue(queue.extendLease(chunk));
+        Assert.assertTrue(queue.finishChunk(chunk, 0));
+        Assert.assertEquals(0, queue.getNumberOfBlockedIps());
+        Assert.assertEquals(0, queue.getNumberOfLeases());
+        Assert.assertFalse(queue.finishChunk(chunk, 0));
+        Thread.sleep(LEASE_DURATION + 50);
+        // the finished lease does not expire
+        queue.releaseExpiredLeases();
+        Assert.assertNull(queue.getNextUris());
+    }
+
+    @Test
+    public void testExpiryWithoutRequests() throws Exception {
+        InMemoryQueue queue = new InMemoryQueue(new RoundRobinSchedulingPolicy());
+        queue.setLeaseDuration(LEASE_DURATION);
+        InetAddress ip = InetAddress.getByName("192.168.100.1");
+        addUris(queue, ip);
+
+        Assert.assertNotNull(queue.getNextUris());
+        Thread.sleep(LEASE_DURATION + 50);
+        queue.releaseExpiredLeases();
+        Assert.assertEquals(0, queue.getNumberOfBlockedIps());
+        Assert.assertEquals(0, queue.getNumberOfLeases());
+    }
+
+    @Test
+    public void testExtendedLease() throws Exception {
+        InMemoryQueue queue = new InMemoryQueue(new RoundRobinSchedulingPolicy());
+        queue.setLeaseDuration(LEASE_DURATION);
+        InetAddress ip = InetAddress.getByName("192.168.100.1");
+        addUris(queue, ip);
+
+        Assert.assertNotNull(queue.getNextUris());
+        // a worker that extends its lease keeps the IP for a longer time
+        for (int i = 0; i < 4; ++i) {
+            Thread.sleep(LEASE_DURATION / 2);
+            Assert.assertTrue(queue.extendLease(ip));
+            Assert.assertNull(queue.getNextUris());
+        }
+        queue.markIpAddressAsAccessible(ip);
+        Assert.assertFalse(queue.extendLease(ip));
+        Assert.assertNull(queue.getNextUris());
+    }
+
+    @Test
+    public void testDisabledLeases() throws Exception {
+        InMemoryQueue queue = new InMemoryQueue();
+        queue.setLeaseDuration(0);
+        InetAddress ip = InetAddress.getByName("192.168.100.1");
+        addUris(queue, ip);
+
+        Assert.assertNotNull(queue.getNextUris());
+        Assert.assertEquals(0, queue.getNumberOfLeases());
+        Assert.assertFalse(queue.extendLease(ip));
+        Thread.sleep(LEASE_DURATION);
+        // the IP stays blocked
+        Assert.assertNull(queue.getNextUris());
+        Assert.assertEquals(1, queue.getNumberOfBlockedIps());
+    }
+
+    private Set<URI> addUris(IpAddressBasedQueue queue, InetAddress ip) throws Exception {
+        Set<URI> uris = new HashSet<>();
+        for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+            URI uri = new URI("http://example.org/uri_" + i);
+            queue.addUri(factory.create(uri, ip, UriType.DUMP));
+            uris.add(uri);
+        }
+        return uris;
+    }
+
+    private static Set<URI> toUriSet(List<CrawleableUri> chunk) {
+        Set<URI> uris = new HashSet<>();
+        for (CrawleableUri uri : chunk) {
+            uris.add(uri.getUri());
+        }
+        return uris;
+    }
+}
@@ -0,0 +1,144 @@
+package org.dice_research.squirrel.queue;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.List;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.data.uri.CrawleableUriFactory4Tests;
+import org.dice_research.squirrel.data.uri.UriType;
+import org.dice_research.squirrel.queue.scheduling.OldestFirstSchedulingPolicy;
+import org.dice_research.squirrel.queue.scheduling.RoundRobinSchedulingPolicy;
+import org.dice_research.squirrel.queue.scheduling.SchedulingPolicy;
+import org.dice_research.squirrel.queue.scheduling.WeightedFairSchedulingPolicy;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the order in which an {@link InMemoryQueue} serves its IPs using the
+ * different scheduling policies and politeness delays.
+ */
+public class IpAddressBasedQueueSchedulingTest {
+
+    private CrawleableUriFactory4Tests factory = new CrawleableUriFactory4Tests();
+    private int uriCount = 0;
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        InMemoryQueue queue = new InMemoryQueue(new RoundRobinSchedulingPolicy());
+        queue.setMaxChunkSize(1);
+        InetAddress ips[] = createIps(3);
+        // the first IP has much more URIs than the others
+        addUris(queue, ips[0], 3);
+        addUris(queue, ips[1], 1);
+        addUris(queue, ips[2], 1);
+        checkOrder(queue, new InetAddress[] { ips[0], ips[1], ips[2], ips[0], ips[0] });
+    }
+
+    @Test
+    public void testOldestFirst() throws Exception {
+        InMemoryQueue queue = new InMemoryQueue(new OldestFirstSchedulingPolicy());
+        queue.setMaxChunkSize(1);
+        InetAddress ips[] = createIps(3);
+        // the order of the IPs is independent of their natural order
+        addUris(queue, ips[2], 2);
+        addUris(queue, ips[0], 1);
+        addUris(queue, ips[1], 1);
+        // the partially served pair keeps its position
+        checkOrder(queue, new InetAddress[] { ips[2], ips[2], ips[0], ips[1] });
+    }
+
+    @Test
+    public void testWeightedFair() throws Exception {
+        InetAddress ips[] = createIps(2);
+        InMemoryQueue queue = new InMemoryQueue(
+                new WeightedFairSchedulingPolicy(p -> p.ip.equals(ips[0]) ? 2.0 : 1.0));
+        queue.setMaxChunkSize(1);
+        addUris(queue, ips[0], 100);
+        addUris(queue, ips[1], 100);
+        int counts[] = new int[2];
+        List<CrawleableUri> chunk;
+        for (int i = 0; i < 30; ++i) {
+            chunk = queue.getNextUris();
+            Assert.assertNotNull(chunk);
+            ++counts[chunk.get(0).getIpAddress().equals(ips[0]) ? 0 : 1];
+            queue.markIpAddressAsAccessible(chunk.get(0).getIpAddress());
+        }
+        // the first IP should get two thirds of the URIs
+        Assert.assertEquals(20, counts[0], 1);
+        Assert.assertEquals(10, counts[1], 1);
+    }
+
+    @Test
+    public void testBlockedIpIsParked() throws Exception {
+        InMemoryQueue queue = new InMemoryQueue(new RoundRobinSchedulingPolicy());
+        InetAddress ips[] = createIps(2);
+        addUris(queue, ips[0], 1);
+        List<CrawleableUri> chunk = queue.getNextUris();
+        Assert.assertNotNull(chunk);
+        // new URIs of the blocked IP are not served until it has been released
+        queue.addUri(factory.create(new URI("http://example.org/sparql"), ips[0], UriType.SPARQL));
+        addUris(queue, ips[1], 1);
+        checkOrder(queue, new InetAddress[] { ips[1] });
+        Assert.assertNull(queue.getNextUris());
+        queue.markIpAddressAsAccessible(ips[0]);
+        chunk = queue.getNextUris();
+        Assert.assertNotNull(chunk);
+        Assert.assertEquals(ips[0], chunk.get(0).getIpAddress());
+        Assert.assertEquals(UriType.SPARQL, chunk.get(0).getType());
+    }
+
+    @Test
+    public void testPolitenessDelay() throws Exception {
+        checkPolitenessDelay(new InMemoryQueue(new RoundRobinSchedulingPolicy()));
+        // the queue should respect the delay without a policy as well
+        checkPolitenessDelay(new InMemoryQueue((SchedulingPolicy) null));
+    }
+
+    private void checkPolitenessDelay(InMemoryQueue queue) throws Exception {
+        queue.setMaxChunkSize(1);
+        InetAddress ips[] = createIps(2);
+        addUris(queue, ips[0], 2);
+        List<CrawleableUri> chunk = queue.getNextUris();
+        Assert.assertNotNull(chunk);
+        Assert.assertEquals(ips[0], chunk.get(0).getIpAddress());
+        queue.markIpAddressAsAccessible(ips[0], System.currentTimeMillis() + 500);
+        // the delayed IP is not served while other IPs are
+        Assert.assertNull(queue.getNextUris());
+        addUris(queue, ips[1], 1);
+        checkOrder(queue, new InetAddress[] { ips[1] });
+        Assert.assertNull(queue.getNextUris());
+        Thread.sleep(600);
+        checkOrder(queue, new InetAddress[] { ips[0] });
+        Assert.assertNull(queue.getNextUris());
+    }
+
+    private InetAddress[] createIps(int count) throws Exception {
+        InetAddress ips[] = new InetAddress[count];
+        for (int i = 0; i < count; ++i) {
+            ips[i] = InetAddress.getByName("192.168.100." + (i + 1));
+        }
+        return ips;
+    }
+
+    private void addUris(IpAddressBasedQueue queue, InetAddress ip, int count) throws Exception {
+        for (int i = 0; i < count; ++i) {
+            queue.addUri(factory.create(new URI("http://example.org/uri_" + (uriCount++)), ip, UriType.DUMP));
+        }
+    }
+
+    /**
+     * Retrieves chunks, compares their IPs with the given IPs and marks the IPs
+     * as accessible again.
+     */
+    private void checkOrder(IpAddressBasedQueue queue, InetAddress expectedIps[]) {
+        List<CrawleableUri> chunk;
+        for (int i = 0; i < expectedIps.length; ++i) {
+            chunk = queue.getNextUris();
+            Assert.assertNotNull("Got no chunk #" + i, chunk);
+            Assert.assertEquals("Chunk #" + i + " has an unexpected IP.", expectedIps[i],
+                    chunk.get(0).getIpAddress());
+            queue.markIpAddressAsAccessible(chunk.get(0).getIpAddress());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.dice_research.squirrel.queue;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.data.uri.CrawleableUriFactory4Tests;
+import org.dice_research.squirrel.data.uri.UriType;
+import org.dice_research.squirrel.queue.scheduling.RoundRobinSchedulingPolicy;
+
+/**
+ * <p>
+ * A simple benchmark measuring the throughput of an {@link InMemoryQueue} that
+ * is configured like the default queue of the frontier (with a
+ * {@link RoundRobinSchedulingPolicy} and leases). Every thread adds URIs for
+ * its own IP addresses and retrieves and finishes chunks with
+ * {@link AbstractIpAddressBasedQueue#getNextUris()} and
+ * {@link AbstractIpAddressBasedQueue#finishChunk(List, long)}. The benchmark
+ * prints the number of operations per second for 1, 2, 4, ... threads up to
+ * the number of available cores.
+ * </p>
+ *
+ * <p>
+ * Note that this class is not a JUnit test since its runtime and its results
+ * depend on the machine it is executed on. Run it with
+ * <code>java ... IpAddressBasedQueueThroughputBenchmark [seconds per run]</code>.
+ * </p>
+ */
+public class IpAddressBasedQueueThroughputBenchmark {
+
+    private static final int IPS_PER_THREAD = 32;
+    private static final int URIS_PER_ROUND = 16;
+    private static final long DEFAULT_DURATION = 5000;
+
+    public static void main(String[] args) throws Exception {
+        long duration = DEFAULT_DURATION;
+        if (args.length > 0) {
+            duration = Long.parseLong(args[0]) * 1000;
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        // warm up
+        run(cores, duration / 2);
+        double singleThreadThroughput = 0;
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            double throughput = run(threads, duration);
+            if (threads == 1) {
+                singleThreadThroughput = throughput;
+            }
+            System.out.println(String.format("threads=%3d   ops/s=%12.0f   speedup=%5.2f", threads, throughput,
+                    throughput / singleThreadThroughput));
+        }
+    }
+
+    protected static double run(int numberOfThreads, long duration) throws Exception {
+        AbstractIpAddressBasedQueue queue = new InMemoryQueue(new RoundRobinSchedulingPolicy());
+        AtomicLong operations = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        QueueUser users[] = new QueueUser[numberOfThreads];
+        Thread threads[] = new Thread[numberOfThreads];
+        for (int i = 0; i < numberOfThreads; ++i) {
+            users[i] = new QueueUser(queue, i, operations, start);
+            threads[i] = new Thread(users[i]);
+            threads[i].start();
+        }
+        long startTime = System.currentTimeMillis();
+        start.countDown();
+        Thread.sleep(duration);
+        for (int i = 0; i < numberOfThreads; ++i) {
+            users[i].stop();
+        }
+        for (int i = 0; i < numberOfThreads; ++i) {
+            threads[i].join();
+        }
+        long endTime = System.currentTimeMillis();
+        return (operations.get() * 1000.0) / (endTime - startTime);
+    }
+
+    /**
+     * A thread that adds URIs for its own IP addresses and retrieves and
+     * finishes chunks of all IP addresses.
+     */
+    protected static class QueueUser implements Runnable {
+
+        private AbstractIpAddressBasedQueue queue;
+        private CrawleableUri uris[];
+        private InetAddress ips[];
+        private AtomicLong operations;
+        private CountDownLatch start;
+        private volatile boolean run = true;
+
+        public QueueUser(AbstractIpAddressBasedQueue queue, int id, AtomicLong operations, CountDownLatch start)
+                throws Exception {
+            this.queue = queue;
+            this.operations = operations;
+            this.start = start;
+            CrawleableUriFactory4Tests factory = new CrawleableUriFactory4Tests();
+            ips = new InetAddress[IPS_PER_THREAD];
+            for (int i = 0; i < ips.length; ++i) {
+                ips[i] = InetAddress.getByAddress(new byte[] { 10, (byte) id, (byte) i, 1 });
+            }
+            uris = new CrawleableUri[IPS_PER_THREAD * URIS_PER_ROUND];
+            for (int i = 0; i < uris.length; ++i) {
+                int ipId = i % IPS_PER_THREAD;
+                uris[i] = factory.create(new URI("http://example" + id + "-" + ipId + ".org/uri_" + i),
+                        ips[ipId], UriType.DUMP);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long count = 0;
+            List<CrawleableUri> chunk;
+            while (run) {
+                for (int i = 0; i < uris.length; ++i) {
+                    queue.addUri(uris[i]);
+                    ++count;
+                }
+                // retrieve as many chunks as IPs have been filled
+                for (int i = 0; i < ips.length; ++i) {
+                    chunk = queue.getNextUris();
+                    if (chunk == null) {
+                        break;
+                    }
+                    ++count;
+                    queue.finishChunk(chunk, System.currentTimeMillis());
+                }
+            }
+            operations.addAndGet(count);
+        }
+
+        public void stop() {
+            run = false;
+        }
+    }
+}
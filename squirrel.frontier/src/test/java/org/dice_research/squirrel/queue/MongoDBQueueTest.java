@@ -7,8 +7,17 @@ import static org.junit.Assert.assertTrue;
 import java.net.InetAddress;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bson.Document;
 
 import org.dice_research.squirrel.MongoDBBasedTest;
 import org.dice_research.squirrel.data.uri.CrawleableUri;
@@ -122,6 +131,86 @@ public class MongoDBQueueTest  extends MongoDBBasedTest{
         mongodbQueue.close();
     }
 
+    @Test
+    public void addUris() throws Exception {
+        mongodbQueue.open();
+        mongodbQueue.purge();
+        mongodbQueue.addUris(uris);
+        mongodbQueue.flush();
+        assertEquals(3, mongodbQueue.length());
+        // adding the same URIs again should not create duplicates
+        mongodbQueue.addUris(uris);
+        mongodbQueue.flush();
+        assertEquals(3, mongodbQueue.length());
+        int count = 0;
+        List<CrawleableUri> chunk = mongodbQueue.getNextUris();
+        while (chunk != null) {
+            count += chunk.size();
+            chunk = mongodbQueue.getNextUris();
+        }
+        assertEquals(uris.size(), count);
+        mongodbQueue.close();
+    }
+
+    /**
+     * Two consumers claim pairs concurrently. Every pair has to be claimed by
+     * exactly one of them.
+     */
+    @Test
+    public void claimNextPairConcurrently() throws Exception {
+        mongodbQueue.open();
+        mongodbQueue.purge();
+        List<CrawleableUri> pairUris = createUrisOfDifferentIps(100);
+        mongodbQueue.addUris(pairUris);
+        mongodbQueue.flush();
+
+        List<List<String>> claims = runConcurrently(() -> {
+            List<String> claimedIps = new ArrayList<>();
+            Document pairDoc;
+            while ((pairDoc = mongodbQueue.claimNextPair()) != null) {
+                claimedIps.add(pairDoc.get("ipAddress").toString());
+            }
+            return claimedIps;
+        });
+        Set<String> claimedIps = new HashSet<>();
+        for (List<String> consumerClaims : claims) {
+            for (String ip : consumerClaims) {
+                assertTrue("Pair of " + ip + " has been claimed twice.", claimedIps.add(ip));
+            }
+        }
+        assertEquals(pairUris.size(), claimedIps.size());
+        mongodbQueue.close();
+    }
+
+    /**
+     * Two consumers retrieve chunks concurrently. Every URI has to be handed
+     * out exactly once.
+     */
+    @Test
+    public void getNextUrisConcurrently() throws Exception {
+        mongodbQueue.open();
+        mongodbQueue.purge();
+        List<CrawleableUri> pairUris = createUrisOfDifferentIps(100);
+        mongodbQueue.addUris(pairUris);
+        mongodbQueue.flush();
+
+        List<List<CrawleableUri>> chunks = runConcurrently(() -> {
+            List<CrawleableUri> retrievedUris = new ArrayList<>();
+            List<CrawleableUri> chunk;
+            while ((chunk = mongodbQueue.getNextUris()) != null) {
+                retrievedUris.addAll(chunk);
+            }
+            return retrievedUris;
+        });
+        Set<CrawleableUri> retrievedUris = new HashSet<>();
+        for (List<CrawleableUri> consumerUris : chunks) {
+            for (CrawleableUri uri : consumerUris) {
+                assertTrue("URI " + uri + " has been handed out twice.", retrievedUris.add(uri));
+            }
+        }
+        assertEquals(new HashSet<>(pairUris), retrievedUris);
+        mongodbQueue.close();
+    }
 
     @Test
     public void getIterator() throws Exception {
@@ -153,4 +242,39 @@ public class MongoDBQueueTest  extends MongoDBBasedTest{
         }
         mongodbQueue.close();
     }
+
+    private static List<CrawleableUri> createUrisOfDifferentIps(int count) throws Exception {
+        CrawleableUriFactory4Tests cuf = new CrawleableUriFactory4Tests();
+        List<CrawleableUri> result = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            result.add(cuf.create(new URI("http://example" + i + ".org/resource"),
+                    InetAddress.getByAddress(new byte[] { 10, 0, (byte) (i >> 8), (byte) i }), UriType.DUMP));
+        }
+        return result;
+    }
+
+    /**
+     * Runs the given consumer in two threads that start at the same time.
+     */
+    private static <T> List<T> runConcurrently(Callable<T> consumer) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < 2; ++i) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return consumer.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
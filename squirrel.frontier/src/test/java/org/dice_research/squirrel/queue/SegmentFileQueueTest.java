@@ -0,0 +1,172 @@
+package org.dice_research.squirrel.queue;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.data.uri.CrawleableUriFactory4Tests;
+import org.dice_research.squirrel.data.uri.UriType;
+import org.dice_research.squirrel.data.uri.serialize.java.GzipJavaUriSerializer;
+import org.dice_research.squirrel.queue.scheduling.RoundRobinSchedulingPolicy;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link SegmentFileQueue} with small segments, i.e., the URIs are
+ * spread over several segment files.
+ */
+public class SegmentFileQueueTest {
+
+    private static final int NUMBER_OF_IPS = 5;
+    private static final int URIS_PER_IP = 40;
+
+    private File directory;
+    private SegmentFileQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("segment-queue").toFile();
+        queue = createQueue();
+        queue.open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        queue.purge();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private SegmentFileQueue createQueue() {
+        SegmentFileQueue queue = new SegmentFileQueue(directory, new GzipJavaUriSerializer(), 4096,
+                new RoundRobinSchedulingPolicy());
+        queue.setMaxChunkSize(15);
+        return queue;
+    }
+
+    private CrawleableUri createUri(CrawleableUriFactory4Tests factory, int ipId, int uriId) throws Exception {
+        return factory.create(new URI("http://example" + ipId + ".org/resource_" + uriId),
+                InetAddress.getByName("192.168.100." + (ipId + 1)), UriType.DEREFERENCEABLE);
+    }
+
+    @Test
+    public void testAddAndRetrieve() throws Exception {
+        CrawleableUriFactory4Tests factory = new CrawleableUriFactory4Tests();
+        Set<String> expectedUris = new HashSet<String>();
+        for (int i = 0; i < URIS_PER_IP; ++i) {
+            for (int j = 0; j < NUMBER_OF_IPS; ++j) {
+                String uri = "http://example" + j + ".org/resource_" + i;
+                queue.addUri(factory.create(new URI(uri), InetAddress.getByName("192.168.100." + (j + 1)),
+                        UriType.DEREFERENCEABLE));
+                expectedUris.add(uri);
+            }
+        }
+        Assert.assertEquals(NUMBER_OF_IPS * URIS_PER_IP, queue.length());
+        Assert.assertTrue("Expected the URIs to be spread over several segments.", queue.getNumberOfSegments() > 1);
+        Assert.assertTrue(queue.getIPURIIterator().hasNext());
+
+        List<CrawleableUri> chunk = queue.getNextUris();
+        while (chunk != null) {
+            Assert.assertTrue(chunk.size() <= 15);
+            String expectedHost = chunk.get(0).getUri().getHost();
+            int lastId = -1;
+            for (CrawleableUri uri : chunk) {
+                Assert.assertEquals(expectedHost, uri.getUri().getHost());
+                Assert.assertTrue("Got unexpected or duplicate URI " + uri.getUri(),
+                        expectedUris.remove(uri.getUri().toString()));
+                // the URIs of an IP are returned in the order they have been added
+                int id = Integer.parseInt(uri.getUri().getPath().substring("/resource_".length()));
+                Assert.assertTrue(id > lastId);
+                lastId = id;
+            }
+            queue.markIpAddressAsAccessible(chunk.get(0).getIpAddress());
+            chunk = queue.getNextUris();
+        }
+        Assert.assertTrue("Some URIs have not been retrieved: " + expectedUris, expectedUris.isEmpty());
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(0, queue.length());
+        // only the segment that is currently used for appending should be left
+        Assert.assertTrue(queue.getNumberOfSegments() <= 1);
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        CrawleableUriFactory4Tests factory = new CrawleableUriFactory4Tests();
+        Set<String> expectedUris = new HashSet<String>();
+        for (int i = 0; i < URIS_PER_IP; ++i) {
+            for (int j = 0; j < NUMBER_OF_IPS; ++j) {
+                CrawleableUri uri = createUri(factory, j, i);
+                queue.addUri(uri);
+                expectedUris.add(uri.getUri().toString());
+            }
+        }
+        // finish a single chunk before the restart
+        List<CrawleableUri> chunk = queue.getNextUris();
+        Assert.assertNotNull(chunk);
+        for (CrawleableUri uri : chunk) {
+            expectedUris.remove(uri.getUri().toString());
+        }
+        queue.markIpAddressAsAccessible(chunk.get(0).getIpAddress());
+        // the URIs of a chunk that has not been finished are handed out again
+        Assert.assertNotNull(queue.getNextUris());
+        queue.close();
+
+        queue = createQueue();
+        queue.open();
+        Assert.assertEquals(expectedUris.size(), queue.length());
+        chunk = queue.getNextUris();
+        while (chunk != null) {
+            for (CrawleableUri uri : chunk) {
+                Assert.assertTrue("Got unexpected or duplicate URI " + uri.getUri(),
+                        expectedUris.remove(uri.getUri().toString()));
+            }
+            queue.markIpAddressAsAccessible(chunk.get(0).getIpAddress());
+            chunk = queue.getNextUris();
+        }
+        Assert.assertTrue("Some URIs have not been retrieved: " + expectedUris, expectedUris.isEmpty());
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        CrawleableUriFactory4Tests factory = new CrawleableUriFactory4Tests();
+        // a slow IP with a single URI in every round and a fast IP with many URIs
+        int rounds = 10;
+        for (int i = 0; i < rounds; ++i) {
+            queue.addUri(createUri(factory, 0, i));
+            for (int j = 0; j < 30; ++j) {
+                queue.addUri(createUri(factory, 1, (i * 30) + j));
+            }
+        }
+        Assert.assertTrue("Expected the URIs to be spread over several segments.", queue.getNumberOfSegments() > rounds);
+        // retrieve all URIs of the fast IP
+        IpUriTypePair fastPair = new IpUriTypePair(InetAddress.getByName("192.168.100.2"), UriType.DEREFERENCEABLE);
+        List<CrawleableUri> chunk;
+        while ((chunk = queue.claimIpAndGetUris(fastPair)) != null) {
+            queue.markIpAddressAsAccessible(fastPair.ip);
+        }
+        Assert.assertEquals(rounds, queue.length());
+        // the URIs of the slow IP keep their segments alive
+        Assert.assertTrue(queue.getNumberOfSegments() > 2);
+        Assert.assertTrue(queue.compact() > 0);
+        Assert.assertTrue("Expected the compaction to free segments.", queue.getNumberOfSegments() <= 2);
+        Assert.assertEquals(rounds, queue.length());
+        // the URIs of the slow IP are still there and in their original order
+        chunk = queue.getNextUris();
+        Assert.assertNotNull(chunk);
+        Assert.assertEquals(rounds, chunk.size());
+        int lastId = -1;
+        for (CrawleableUri uri : chunk) {
+            int id = Integer.parseInt(uri.getUri().getPath().substring("/resource_".length()));
+            Assert.assertTrue(id > lastId);
+            lastId = id;
+        }
+    }
+}
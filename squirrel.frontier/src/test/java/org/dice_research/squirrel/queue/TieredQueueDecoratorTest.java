@@ -0,0 +1,162 @@
+package org.dice_research.squirrel.queue;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.data.uri.CrawleableUriFactory4Tests;
+import org.dice_research.squirrel.data.uri.UriType;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link TieredQueueDecorator} using an {@link InMemoryQueue} as
+ * decorated queue.
+ */
+public class TieredQueueDecoratorTest {
+
+    private static final int NUMBER_OF_IPS = 10;
+    private static final int HOT_TIER_SIZE = 3;
+
+    private CrawleableUriFactory4Tests factory = new CrawleableUriFactory4Tests();
+
+    @Test
+    public void testPrefetching() throws Exception {
+        InMemoryQueue decorated = new InMemoryQueue();
+        TieredQueueDecorator queue = new TieredQueueDecorator(decorated, HOT_TIER_SIZE, 50);
+        // add the URIs before the refill thread starts. Otherwise, it could
+        // prefetch a partial chunk and block the IP for the remaining URIs.
+        Set<String> expectedUris = addUris(queue);
+        queue.open();
+        try {
+            waitForPrefetching(queue, HOT_TIER_SIZE);
+            // the prefetched IPs are blocked in the decorated queue but not counted
+            Assert.assertEquals(HOT_TIER_SIZE, decorated.getNumberOfBlockedIps());
+            Assert.assertEquals(0, queue.getNumberOfBlockedIps());
+
+            List<CrawleableUri> chunk;
+            // a chunk might be on its way into the hot tier, i.e., we might have to retry
+            for (int i = 0; (i < 100) && !expectedUris.isEmpty(); ++i) {
+                chunk = queue.getNextUris();
+                if (chunk == null) {
+                    Thread.sleep(20);
+                } else {
+                    for (CrawleableUri uri : chunk) {
+                        Assert.assertTrue("Got unexpected or duplicate URI " + uri.getUri(),
+                                expectedUris.remove(uri.getUri().toString()));
+                    }
+                    // only the handed out IP is counted as blocked
+                    Assert.assertEquals(1, queue.getNumberOfBlockedIps());
+                    queue.markIpAddressAsAccessible(chunk.get(0).getIpAddress());
+                    Assert.assertEquals(0, queue.getNumberOfBlockedIps());
+                }
+            }
+            Assert.assertTrue("Some URIs have not been retrieved: " + expectedUris, expectedUris.isEmpty());
+            Assert.assertNull(queue.getNextUris());
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void testReturnChunksOnClose() throws Exception {
+        InMemoryQueue decorated = new InMemoryQueue();
+        TieredQueueDecorator queue = new TieredQueueDecorator(decorated, HOT_TIER_SIZE, 50);
+        queue.open();
+        Set<String> expectedUris = addUris(queue);
+        waitForPrefetching(queue, HOT_TIER_SIZE);
+        queue.close();
+
+        // all URIs should be available in the decorated queue
+        Assert.assertEquals(0, decorated.getNumberOfBlockedIps());
+        List<CrawleableUri> chunk = decorated.getNextUris();
+        while (chunk != null) {
+            for (CrawleableUri uri : chunk) {
+                Assert.assertTrue("Got unexpected or duplicate URI " + uri.getUri(),
+                        expectedUris.remove(uri.getUri().toString()));
+            }
+            chunk = decorated.getNextUris();
+        }
+        Assert.assertTrue("Some URIs have been lost: " + expectedUris, expectedUris.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        AtomicInteger writes = new AtomicInteger();
+        InMemoryQueue decorated = new InMemoryQueue() {
+            @Override
+            public void addUris(List<CrawleableUri> uris) {
+                writes.incrementAndGet();
+                try {
+                    // give other threads the chance to queue their URIs
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.addUris(uris);
+            }
+        };
+        TieredQueueDecorator queue = new TieredQueueDecorator(decorated, HOT_TIER_SIZE, 50);
+        int numberOfUris = 200;
+        Set<String> expectedUris = Collections.synchronizedSet(new HashSet<String>());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<?> futures[] = new Future<?>[numberOfUris];
+            for (int i = 0; i < numberOfUris; ++i) {
+                final String uri = "http://example" + (i % NUMBER_OF_IPS) + ".org/resource_" + i;
+                final String ip = "192.168.100." + ((i % NUMBER_OF_IPS) + 1);
+                futures[i] = executor.submit(() -> {
+                    queue.addUri(factory.create(new URI(uri), InetAddress.getByName(ip), UriType.DUMP));
+                    // the URI has to be written when the call returns
+                    expectedUris.add(uri);
+                    return null;
+                });
+            }
+            for (int i = 0; i < futures.length; ++i) {
+                futures[i].get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertTrue("Expected the writes to be batched but got " + writes.get() + " writes.",
+                writes.get() < numberOfUris);
+
+        List<CrawleableUri> chunk = decorated.getNextUris();
+        while (chunk != null) {
+            for (CrawleableUri uri : chunk) {
+                Assert.assertTrue("Got unexpected or duplicate URI " + uri.getUri(),
+                        expectedUris.remove(uri.getUri().toString()));
+            }
+            chunk = decorated.getNextUris();
+        }
+        Assert.assertTrue("Some URIs have been lost: " + expectedUris, expectedUris.isEmpty());
+    }
+
+    private Set<String> addUris(IpAddressBasedQueue queue) throws Exception {
+        Set<String> uris = new HashSet<String>();
+        for (int i = 0; i < NUMBER_OF_IPS; ++i) {
+            for (int j = 0; j < 2; ++j) {
+                String uri = "http://example" + i + ".org/resource_" + j;
+                queue.addUri(factory.create(new URI(uri), InetAddress.getByName("192.168.100." + (i + 1)),
+                        UriType.DUMP));
+                uris.add(uri);
+            }
+        }
+        return uris;
+    }
+
+    private void waitForPrefetching(TieredQueueDecorator queue, int expectedChunks) throws Exception {
+        for (int i = 0; (i < 100) && (queue.getNumberOfPrefetchedChunks() < expectedChunks); ++i) {
+            Thread.sleep(20);
+        }
+        Assert.assertEquals(expectedChunks, queue.getNumberOfPrefetchedChunks());
+    }
+}
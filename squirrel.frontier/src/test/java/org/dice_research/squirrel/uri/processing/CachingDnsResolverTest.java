@@ -0,0 +1,219 @@
+package org.dice_research.squirrel.uri.processing;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CachingDnsResolver} using a resolver that does not access
+ * the network.
+ */
+public class CachingDnsResolverTest {
+
+    private static final int NUMBER_OF_HOSTS = 40;
+    private static final int NUMBER_OF_URIS = 2000;
+
+    @Test
+    public void testBatchLookup() throws Exception {
+        CountingResolver resolver = new CountingResolver(60000, 60000, 1000, 8);
+        try {
+            List<CrawleableUri> uris = new ArrayList<>();
+            for (int i = 0; i < NUMBER_OF_URIS; ++i) {
+                uris.add(new CrawleableUri(
+                        new URI("http://" + ((i % 10) == 0 ? "unknown" : "known") + (i % NUMBER_OF_HOSTS)
+                                + ".org/resource/" + i)));
+            }
+            long start = System.currentTimeMillis();
+            resolver.resolveIpAddresses(uris);
+            // the lookups of the different hosts have been done in parallel
+            Assert.assertTrue(
+                    "Resolving the URIs took too long: " + (System.currentTimeMillis() - start) + "ms",
+                    (System.currentTimeMillis() - start) < (NUMBER_OF_HOSTS * CountingResolver.LOOKUP_DURATION));
+            Assert.assertEquals(NUMBER_OF_HOSTS, resolver.lookups.get());
+            for (CrawleableUri uri : uris) {
+                if (uri.getUri().getHost().startsWith("known")) {
+                    Assert.assertEquals(uri.getUri().getHost(), uri.getIpAddress().getHostName());
+                } else {
+                    Assert.assertNull(uri.getIpAddress());
+                }
+            }
+            // a second batch is answered from the cache (including the unknown hosts)
+            resolver.resolveIpAddresses(uris);
+            Assert.assertEquals(NUMBER_OF_HOSTS, resolver.lookups.get());
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    public void testNegativeCaching() throws Exception {
+        CountingResolver resolver = new CountingResolver(60000, 60000, 1000, 2);
+        try {
+            for (int i = 0; i < 3; ++i) {
+                try {
+                    resolver.resolve("unknown.org");
+                    Assert.fail("Expected an UnknownHostException");
+                } catch (UnknownHostException e) {
+                    // expected
+                }
+            }
+            Assert.assertEquals(1, resolver.lookups.get());
+            Map<String, InetAddress> addresses = resolver.resolveAll(Arrays.asList("unknown.org"));
+            Assert.assertTrue(addresses.isEmpty());
+            Assert.assertEquals(1, resolver.lookups.get());
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    public void testExpirationAndSizeLimit() throws Exception {
+        CountingResolver resolver = new CountingResolver(0, 0, 10, 2);
+        try {
+            resolver.resolve("known.org");
+            Thread.sleep(5);
+            // the entry has expired
+            resolver.resolve("known.org");
+            Assert.assertEquals(2, resolver.lookups.get());
+        } finally {
+            resolver.close();
+        }
+        resolver = new CountingResolver(60000, 60000, 10, 2);
+        try {
+            for (int i = 0; i < 20; ++i) {
+                resolver.resolve("known" + i + ".org");
+            }
+            Assert.assertEquals(10, resolver.getCacheSize());
+            // the most recently used host is still cached
+            resolver.resolve("known19.org");
+            Assert.assertEquals(20, resolver.lookups.get());
+            // the least recently used host has been removed
+            resolver.resolve("known0.org");
+            Assert.assertEquals(21, resolver.lookups.get());
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    public void testLookupTimeout() throws Exception {
+        BlockingResolver resolver = new BlockingResolver(1);
+        resolver.setLookupTimeout(100);
+        try {
+            long start = System.currentTimeMillis();
+            try {
+                resolver.resolve("known.org");
+                Assert.fail("Expected an UnknownHostException");
+            } catch (UnknownHostException e) {
+                // expected
+            }
+            Assert.assertTrue(resolver.resolveAll(Arrays.asList("known.org", "known2.org")).isEmpty());
+            Assert.assertTrue("Waiting for the lookups took too long: " + (System.currentTimeMillis() - start) + "ms",
+                    (System.currentTimeMillis() - start) < 5000);
+            // the lookup is finished in the background and its result is cached
+            resolver.release.countDown();
+            Thread.sleep(100);
+            Assert.assertEquals("known.org", resolver.resolve("known.org").getHostName());
+        } finally {
+            resolver.release.countDown();
+            resolver.close();
+        }
+    }
+
+    @Test
+    public void testCloseWithPendingLookups() throws Exception {
+        // a single thread is blocked by the first lookup, i.e., the second lookup is queued
+        BlockingResolver resolver = new BlockingResolver(1);
+        resolver.setLookupTimeout(60000);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> running = callers.submit(() -> resolver.resolve("known1.org"));
+            Assert.assertTrue(resolver.started.await(10, TimeUnit.SECONDS));
+            Future<?> pending = callers.submit(() -> resolver.resolve("known2.org"));
+            Thread.sleep(100);
+            resolver.close();
+            for (Future<?> caller : Arrays.asList(running, pending)) {
+                try {
+                    caller.get(10, TimeUnit.SECONDS);
+                    Assert.fail("Expected an UnknownHostException");
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof UnknownHostException);
+                }
+            }
+            // lookups that are requested after closing the resolver fail as well
+            try {
+                resolver.resolve("known3.org");
+                Assert.fail("Expected an UnknownHostException");
+            } catch (UnknownHostException e) {
+                // expected
+            }
+        } finally {
+            resolver.release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    private static class CountingResolver extends CachingDnsResolver {
+
+        private static final long LOOKUP_DURATION = 50;
+
+        private AtomicInteger lookups = new AtomicInteger();
+
+        public CountingResolver(long ttl, long negativeTtl, int maxCacheSize, int numberOfThreads) {
+            super(ttl, negativeTtl, maxCacheSize, numberOfThreads);
+        }
+
+        @Override
+        protected InetAddress lookup(String host) throws UnknownHostException {
+            lookups.incrementAndGet();
+            try {
+                Thread.sleep(LOOKUP_DURATION);
+            } catch (InterruptedException e) {
+                throw new UnknownHostException(host);
+            }
+            if (host.startsWith("unknown")) {
+                throw new UnknownHostException(host);
+            }
+            return InetAddress.getByAddress(host, new byte[] { 127, 0, 0, (byte) host.hashCode() });
+        }
+    }
+
+    /**
+     * A resolver whose lookups block until {@link #release} is counted down.
+     */
+    private static class BlockingResolver extends CachingDnsResolver {
+
+        private CountDownLatch started = new CountDownLatch(1);
+        private CountDownLatch release = new CountDownLatch(1);
+
+        public BlockingResolver(int numberOfThreads) {
+            super(60000, 60000, 1000, numberOfThreads);
+        }
+
+        @Override
+        protected InetAddress lookup(String host) throws UnknownHostException {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new UnknownHostException(host);
+            }
+            return InetAddress.getByAddress(host, new byte[] { 127, 0, 0, 1 });
+        }
+    }
+}
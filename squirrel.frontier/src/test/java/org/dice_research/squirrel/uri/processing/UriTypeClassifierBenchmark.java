@@ -0,0 +1,117 @@
+package org.dice_research.squirrel.uri.processing;
+
+import java.net.URI;
+
+import org.dice_research.squirrel.data.uri.UriType;
+import org.dice_research.squirrel.data.uri.UriUtils;
+
+/**
+ * <p>
+ * A simple benchmark comparing the {@link UriTypeClassifier} with the regular
+ * expressions the {@link UriProcessor} used before. Both approaches are
+ * applied to the same set of URI paths and have to return the same types. The
+ * benchmark prints the number of classified paths per second.
+ * </p>
+ *
+ * <p>
+ * Note that this class is not a JUnit test since its runtime and its results
+ * depend on the machine it is executed on. The correctness of the classifier
+ * is checked by the {@link UriTypeClassifierTest}. Run it with
+ * <code>java ... UriTypeClassifierBenchmark [seconds per run]</code>.
+ * </p>
+ */
+public class UriTypeClassifierBenchmark {
+
+    private static final long DEFAULT_DURATION = 5000;
+
+    /**
+     * Consumes the results of the benchmark runs so that the JIT can not
+     * remove the classification.
+     */
+    private static volatile int sink = 0;
+
+    private static final String[] URIS = { "http://dbpedia.org/resource/Berlin", "http://dbpedia.org/page/Berlin",
+            "http://xmlns.com/foaf/spec/index.rdf", "http://quebec.bio2rdf.org/download/data/chebi/chebi.n3.gz",
+            "http://gendr.bio2rdf.org/sparql", "http://aemet.linkeddata.es/source/rdf/data.zip",
+            "http://example.org/some/long/path/without/any/keyword/in/it",
+            "http://www.w3.org/1999/02/22-rdf-syntax-ns#type", "http://example.org/index.html",
+            "http://example.org/" };
+
+    private static final String[] DUMP_REGEXPS = { ".*\\.rdf.*", ".*\\.ttl.*", ".*\\.nt.*", ".*\\.n3.*", ".*\\.zip.*",
+            ".*\\.tar.*" };
+    private static final String[] SPARQL_REGEXPS = { ".*sparql.*" };
+    private static final String[] DEREFERENCEABLE_REGEXPS = { ".*htm.*", ".*page.*", ".*resource.*" };
+
+    public static void main(String[] args) throws Exception {
+        long duration = DEFAULT_DURATION;
+        if (args.length > 0) {
+            duration = Long.parseLong(args[0]) * 1000;
+        }
+        String[] paths = new String[URIS.length];
+        for (int i = 0; i < URIS.length; ++i) {
+            paths[i] = new URI(URIS[i]).getPath();
+        }
+        UriTypeClassifier classifier = UriTypeClassifier.createDefault();
+        for (String path : paths) {
+            if (classifier.classify(path) != classifyWithRegexps(path)) {
+                throw new IllegalStateException("The classifier and the regular expressions disagree on " + path);
+            }
+        }
+        // warm up
+        runRegexps(paths, duration / 2);
+        runClassifier(classifier, paths, duration / 2);
+
+        double regexpThroughput = runRegexps(paths, duration);
+        double classifierThroughput = runClassifier(classifier, paths, duration);
+        System.out.println(String.format("regular expressions   paths/s=%12.0f", regexpThroughput));
+        System.out.println(String.format("classifier            paths/s=%12.0f   speedup=%6.2f", classifierThroughput,
+                classifierThroughput / regexpThroughput));
+    }
+
+    protected static double runRegexps(String[] paths, long duration) {
+        long count = 0;
+        int hash = 0;
+        long start = System.currentTimeMillis();
+        long end = start + duration;
+        while (System.currentTimeMillis() < end) {
+            for (int i = 0; i < paths.length; ++i) {
+                hash += classifyWithRegexps(paths[i]).ordinal();
+            }
+            count += paths.length;
+        }
+        // make sure that the loop is not removed
+        sink += hash;
+        return count * 1000.0 / (System.currentTimeMillis() - start);
+    }
+
+    protected static double runClassifier(UriTypeClassifier classifier, String[] paths, long duration) {
+        long count = 0;
+        int hash = 0;
+        long start = System.currentTimeMillis();
+        long end = start + duration;
+        while (System.currentTimeMillis() < end) {
+            for (int i = 0; i < paths.length; ++i) {
+                hash += classifier.classify(paths[i]).ordinal();
+            }
+            count += paths.length;
+        }
+        // make sure that the loop is not removed
+        sink += hash;
+        return count * 1000.0 / (System.currentTimeMillis() - start);
+    }
+
+    /**
+     * The classification the {@link UriProcessor} used before.
+     */
+    protected static UriType classifyWithRegexps(String path) {
+        if (path == null) {
+            return UriType.DEREFERENCEABLE;
+        } else if (UriUtils.isStringMatchRegexps(path, DUMP_REGEXPS)) {
+            return UriType.DUMP;
+        } else if (UriUtils.isStringMatchRegexps(path, SPARQL_REGEXPS)) {
+            return UriType.SPARQL;
+        } else {
+            return UriType.DEREFERENCEABLE;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.dice_research.squirrel.uri.processing;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dice_research.squirrel.data.uri.UriType;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link UriTypeClassifier} by comparing its results with the
+ * regular expressions the {@link UriProcessor} used before (see
+ * {@link UriTypeClassifierBenchmark#classifyWithRegexps(String)}).
+ */
+public class UriTypeClassifierTest {
+
+    private static final String[] PATH_PARTS = { "", "/", "/data", ".rdf", ".ttl", ".nt", ".n3", ".zip", ".tar",
+            ".gz", "sparql", "SPARQL", "spar-ql", "htm", "html", "page", "resource", "rdf", "ttl", ".RDF", ".tt",
+            "/index", ".", "#type", "?query=1" };
+
+    @Test
+    public void testSamePathsAsRegexps() throws Exception {
+        UriTypeClassifier classifier = UriTypeClassifier.createDefault();
+        List<String> paths = new ArrayList<>();
+        // all combinations of two parts, i.e., also paths with several keywords
+        for (String first : PATH_PARTS) {
+            for (String second : PATH_PARTS) {
+                paths.add("/" + first + second);
+                paths.add("/" + first + "/some/path/" + second);
+            }
+        }
+        paths.add(null);
+        paths.add(new URI("http://dbpedia.org/resource/Berlin").getPath());
+        paths.add(new URI("http://quebec.bio2rdf.org/download/data/chebi/chebi.n3.gz").getPath());
+        paths.add(new URI("http://gendr.bio2rdf.org/sparql").getPath());
+        paths.add(new URI("http://example.org/").getPath());
+        paths.add(new URI("http://example.org").getPath());
+        paths.add(new URI("mailto:someone@example.org").getPath());
+        for (String path : paths) {
+            Assert.assertEquals("Different types for path \"" + path + "\".",
+                    UriTypeClassifierBenchmark.classifyWithRegexps(path), classifier.classify(path));
+        }
+    }
+
+    @Test
+    public void testLineBreaks() throws Exception {
+        UriTypeClassifier classifier = UriTypeClassifier.createDefault();
+        // an encoded line break is decoded in the path. Other than the old
+        // regular expressions, the classifier finds the keyword behind it.
+        String path = new URI("http://example.org/a%0A/dump.ttl").getPath();
+        Assert.assertEquals(UriType.DEREFERENCEABLE, UriTypeClassifierBenchmark.classifyWithRegexps(path));
+        Assert.assertEquals(UriType.DUMP, classifier.classify(path));
+    }
+
+    @Test
+    public void testRuleOrder() throws Exception {
+        UriTypeClassifier classifier = new UriTypeClassifier(UriType.UNKNOWN).addRule(UriType.SPARQL, "sparql")
+                .addRule(UriType.DUMP, ".ttl");
+        Assert.assertEquals(UriType.SPARQL, classifier.classify("/sparql/dump.ttl"));
+        Assert.assertEquals(UriType.DUMP, classifier.classify("/dump.ttl"));
+        Assert.assertEquals(UriType.UNKNOWN, classifier.classify("/resource/Berlin"));
+        Assert.assertEquals(UriType.UNKNOWN, classifier.classify((String) null));
+    }
+}
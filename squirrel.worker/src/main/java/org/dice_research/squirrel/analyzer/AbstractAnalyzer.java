@@ -1,6 +1,17 @@
 package org.dice_research.squirrel.analyzer;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
 import org.dice_research.squirrel.collect.UriCollector;
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.metadata.ActivityUtil;
+import org.dice_research.squirrel.sink.Sink;
+import org.dice_research.squirrel.utils.TempPathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Abstract class to define a constructor
@@ -11,10 +22,33 @@ import org.dice_research.squirrel.collect.UriCollector;
  */
 public abstract class AbstractAnalyzer implements Analyzer{
 	
+	private static final Logger LOGGER = LoggerFactory.getLogger(AbstractAnalyzer.class);
+	
 	protected UriCollector collector;
 	
 	public AbstractAnalyzer(UriCollector collector) {
 		this.collector = collector;
 	}
+	
+	/**
+	 * Writes the given data into a temporary file and lets the given analyzer
+	 * analyze this file. This can be used by a {@link StreamingAnalyzer} that
+	 * needs random access to the data.
+	 */
+	public static Iterator<byte[]> analyzeAsFile(Analyzer analyzer, CrawleableUri curi, InputStream data, Sink sink) {
+		File tempFile = null;
+		try {
+			tempFile = TempPathUtils.writeToTempFile(data);
+			return analyzer.analyze(curi, tempFile, sink);
+		} catch (IOException e) {
+			LOGGER.error("Couldn't write the data into a temporary file. Aborting.", e);
+			ActivityUtil.addStep(curi, analyzer.getClass(), e.getMessage());
+			return null;
+		} finally {
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+		}
+	}
 
 }
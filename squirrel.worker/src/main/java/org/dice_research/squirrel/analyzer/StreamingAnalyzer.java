@@ -0,0 +1,24 @@
+package org.dice_research.squirrel.analyzer;
+
+import java.io.InputStream;
+import java.util.Iterator;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.sink.Sink;
+
+/**
+ * An {@link Analyzer} that can read the data directly from a stream, e.g.,
+ * while it is fetched. The stream can only be read once.
+ */
+public interface StreamingAnalyzer extends Analyzer {
+
+    public Iterator<byte[]> analyze(CrawleableUri curi, InputStream data, Sink sink);
+
+    /**
+     * Checks whether the data can be analyzed by this analyzer. The given
+     * stream supports {@link InputStream#mark(int)}. The analyzer may read the
+     * beginning of the data but has to reset the stream afterwards.
+     */
+    public boolean isElegible(CrawleableUri curi, InputStream data);
+
+}
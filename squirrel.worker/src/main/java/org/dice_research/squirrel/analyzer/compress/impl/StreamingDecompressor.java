@@ -0,0 +1,141 @@
+package org.dice_research.squirrel.analyzer.compress.impl;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
+import org.apache.commons.compress.archivers.sevenz.SevenZFile;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.dice_research.squirrel.utils.TempPathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The stream-based counterpart of the {@link FileManager}. Compressed data
+ * (gzip, bzip2) is decompressed while it is read and the entries of tar and zip
+ * archives are handed over one after the other without extracting them. Only
+ * 7z archives are written to a temporary file since they can not be read as a
+ * stream.
+ */
+public class StreamingDecompressor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamingDecompressor.class);
+
+    /**
+     * Decompresses the given data and hands every contained document to the
+     * given consumer. The streams given to the consumer support
+     * {@link InputStream#mark(int)} and do not have to be closed. The given
+     * stream is not closed.
+     *
+     * @param data
+     *            the (possibly compressed) data
+     * @param consumer
+     *            the consumer of the decompressed documents
+     * @throws IOException
+     *             if the data can not be read
+     */
+    public void decompress(InputStream data, Consumer<InputStream> consumer) throws IOException {
+        InputStream in = data.markSupported() ? data : new BufferedInputStream(data);
+        String compression = detectCompression(in);
+        if (CompressorStreamFactory.GZIP.equals(compression)) {
+            // the decompressed data might be a tar archive
+            decompress(new GzipCompressorInputStream(in, true), consumer);
+            return;
+        } else if (CompressorStreamFactory.BZIP2.equals(compression)) {
+            decompress(new BZip2CompressorInputStream(in, true), consumer);
+            return;
+        }
+        String archiveType = detectArchiveType(in);
+        if (ArchiveStreamFactory.TAR.equals(archiveType)) {
+            readEntries(new TarArchiveInputStream(in), consumer);
+        } else if (ArchiveStreamFactory.ZIP.equals(archiveType)) {
+            readEntries(new ZipArchiveInputStream(in), consumer);
+        } else if (ArchiveStreamFactory.SEVEN_Z.equals(archiveType)) {
+            readSevenZipEntries(in, consumer);
+        } else {
+            consumer.accept(new CloseShieldInputStream(in));
+        }
+    }
+
+    protected void readEntries(ArchiveInputStream archive, Consumer<InputStream> consumer) throws IOException {
+        ArchiveEntry entry;
+        while ((entry = archive.getNextEntry()) != null) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            if (!archive.canReadEntryData(entry)) {
+                LOGGER.warn("Can not read the archive entry {}. It will be ignored.", entry.getName());
+                continue;
+            }
+            consumer.accept(new BufferedInputStream(new CloseShieldInputStream(archive)));
+        }
+    }
+
+    /**
+     * 7z archives need random access, i.e., the data is written to a temporary
+     * file first.
+     */
+    protected void readSevenZipEntries(InputStream in, Consumer<InputStream> consumer) throws IOException {
+        File tempFile = TempPathUtils.writeToTempFile(in);
+        try (SevenZFile sevenZFile = new SevenZFile(tempFile)) {
+            // reads the data of the current entry
+            InputStream entryStream = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    return sevenZFile.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return sevenZFile.read(b, off, len);
+                }
+            };
+            SevenZArchiveEntry entry;
+            while ((entry = sevenZFile.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                consumer.accept(new BufferedInputStream(entryStream));
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * @return the name of the compression format or {@code null} if the data
+     *         is not compressed
+     */
+    protected static String detectCompression(InputStream in) {
+        try {
+            return CompressorStreamFactory.detect(in);
+        } catch (CompressorException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the name of the archive format or {@code null} if the data is
+     *         not an archive
+     */
+    protected static String detectArchiveType(InputStream in) {
+        try {
+            return ArchiveStreamFactory.detect(in);
+        } catch (ArchiveException e) {
+            return null;
+        }
+    }
+}
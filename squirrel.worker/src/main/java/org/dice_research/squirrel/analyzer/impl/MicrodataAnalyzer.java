@@ -1,8 +1,10 @@
 package org.dice_research.squirrel.analyzer.impl;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Iterator;
 
@@ -15,6 +17,7 @@ import org.apache.any23.writer.TripleHandler;
 import org.apache.tika.Tika;
 import org.dice_research.squirrel.Constants;
 import org.dice_research.squirrel.analyzer.AbstractAnalyzer;
+import org.dice_research.squirrel.analyzer.StreamingAnalyzer;
 import org.dice_research.squirrel.analyzer.commons.SquirrelTripleHandler;
 import org.dice_research.squirrel.collect.UriCollector;
 import org.dice_research.squirrel.data.uri.CrawleableUri;
@@ -34,7 +37,7 @@ import org.slf4j.LoggerFactory;
  *
  */
 
-public class MicrodataAnalyzer extends AbstractAnalyzer {
+public class MicrodataAnalyzer extends AbstractAnalyzer implements StreamingAnalyzer {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(MicrodataAnalyzer.class);
 
@@ -44,6 +47,17 @@ public class MicrodataAnalyzer extends AbstractAnalyzer {
 
 	@Override
 	public Iterator<byte[]> analyze(CrawleableUri curi, File data, Sink sink) {
+		try (InputStream is = new FileInputStream(data)) {
+			return analyze(curi, is, sink);
+		} catch (IOException e) {
+			LOGGER.warn("Could not read file for URI: " + curi.getUri().toString() + " :: Analyzer: "
+					+ this.getClass().getName());
+		}
+		return collector.getUris(curi);
+	}
+
+	@Override
+	public Iterator<byte[]> analyze(CrawleableUri curi, InputStream data, Sink sink) {
 		
 		HtmlCleaner cleaner = new HtmlCleaner();
 
@@ -85,13 +99,24 @@ public class MicrodataAnalyzer extends AbstractAnalyzer {
 
 	@Override
 	public boolean isElegible(CrawleableUri curi, File data) {
+		try (InputStream is = new BufferedInputStream(new FileInputStream(data))) {
+			return isElegible(curi, is);
+		} catch (Exception e) {
+			LOGGER.error("An error was found when verify eligibility", e);
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isElegible(CrawleableUri curi, InputStream data) {
 		String contentType = (String) curi.getData(Constants.URI_HTTP_MIME_TYPE_KEY);
 		if ((contentType != null && contentType.equals("text/html"))) {
 			return true;
 		}
 		Tika tika = new Tika();
-		try (InputStream is = new FileInputStream(data)) {
-			String mimeType = tika.detect(is);
+		try {
+			// Tika resets the stream after reading its beginning
+			String mimeType = tika.detect(data);
 			if (mimeType.equals("text/html")) {
 				return true;
 			}
@@ -1,12 +1,13 @@
 package org.dice_research.squirrel.analyzer.impl;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.StringWriter;
 import java.net.URI;
 import java.util.Iterator;
@@ -21,6 +22,7 @@ import org.apache.jena.riot.system.StreamRDF;
 import org.apache.tika.Tika;
 import org.dice_research.squirrel.Constants;
 import org.dice_research.squirrel.analyzer.AbstractAnalyzer;
+import org.dice_research.squirrel.analyzer.StreamingAnalyzer;
 import org.dice_research.squirrel.analyzer.commons.FilterSinkRDF;
 import org.dice_research.squirrel.collect.UriCollector;
 import org.dice_research.squirrel.data.uri.CrawleableUri;
@@ -38,7 +40,7 @@ import com.kylewm.mf2j.Mf2Parser;
  *
  */
 
-public class MicroformatMF2JParser extends AbstractAnalyzer {
+public class MicroformatMF2JParser extends AbstractAnalyzer implements StreamingAnalyzer {
 	
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(MicroformatMF2JParser.class);
@@ -49,12 +51,23 @@ public class MicroformatMF2JParser extends AbstractAnalyzer {
 
 	@Override
 	public Iterator<byte[]> analyze(CrawleableUri curi, File data, Sink sink) {
+		try (InputStream is = new FileInputStream(data)) {
+			return analyze(curi, is, sink);
+		} catch (IOException e) {
+			LOGGER.warn("Could not read file for URI: " + curi.getUri().toString() + " :: Analyzer: "
+					+ this.getClass().getName());
+		}
+		return collector.getUris(curi);
+	}
+
+	@Override
+	public Iterator<byte[]> analyze(CrawleableUri curi, InputStream data, Sink sink) {
 		String file = "";
 		BufferedReader br;
 		String line;
 		String result = "";
 		try {
-			br = new BufferedReader(new FileReader(data));
+			br = new BufferedReader(new InputStreamReader(data));
 			while ((line = br.readLine()) != null) {
 			     file+= line+"\n";
 			}
@@ -113,13 +126,24 @@ public class MicroformatMF2JParser extends AbstractAnalyzer {
 
 	@Override
 	public boolean isElegible(CrawleableUri curi, File data) {
+		try (InputStream is = new BufferedInputStream(new FileInputStream(data))) {
+			return isElegible(curi, is);
+		} catch (Exception e) {
+			LOGGER.error("An error was found when verify eligibility", e);
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isElegible(CrawleableUri curi, InputStream data) {
 		String contentType = (String) curi.getData(Constants.URI_HTTP_MIME_TYPE_KEY);
         if ((contentType != null && contentType.equals("text/html"))) {
             return true;
         }
         Tika tika = new Tika();
-        try (InputStream is = new FileInputStream(data)) {
-            String mimeType = tika.detect(is);
+        try {
+            // Tika resets the stream after reading its beginning
+            String mimeType = tika.detect(data);
             if (mimeType.equals("text/html")) {
                 return false;
             }
@@ -1,5 +1,6 @@
 package org.dice_research.squirrel.analyzer.impl;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
@@ -15,6 +16,7 @@ import org.apache.tika.Tika;
 import org.apache.tika.io.IOUtils;
 import org.dice_research.squirrel.Constants;
 import org.dice_research.squirrel.analyzer.AbstractAnalyzer;
+import org.dice_research.squirrel.analyzer.StreamingAnalyzer;
 import org.dice_research.squirrel.analyzer.commons.FilterSinkRDF;
 import org.dice_research.squirrel.collect.UriCollector;
 import org.dice_research.squirrel.data.uri.CrawleableUri;
@@ -32,7 +34,7 @@ import org.slf4j.LoggerFactory;
  * @author gsjunior gsjunior@mail.uni-paderborn.de
  */
 
-public class RDFAnalyzer extends AbstractAnalyzer {
+public class RDFAnalyzer extends AbstractAnalyzer implements StreamingAnalyzer {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RDFAnalyzer.class);
 
@@ -84,8 +86,39 @@ public class RDFAnalyzer extends AbstractAnalyzer {
         }
     }
 
+    @Override
+    public Iterator<byte[]> analyze(CrawleableUri curi, InputStream data, Sink sink) {
+        String contentType = (String) curi.getData(Constants.URI_HTTP_MIME_TYPE_KEY);
+        Lang lang = (contentType != null) ? RDFLanguages.contentTypeToLang(contentType) : null;
+        if (lang == null) {
+            // Without a language, the parsers are tried one after the other,
+            // i.e., the data has to be read several times
+            return analyzeAsFile(this, curi, data, sink);
+        }
+        try {
+            StreamRDF filtered = new FilterSinkRDF(curi, sink, collector);
+            RDFDataMgr.parse(filtered, data, lang);
+            ActivityUtil.addStep(curi, getClass());
+            return collector.getUris(curi);
+        } catch (Exception e) {
+            LOGGER.error("Exception while analyzing. Aborting. ", e);
+            ActivityUtil.addStep(curi, getClass(), e.getMessage());
+            return null;
+        }
+    }
+
 //    @Override
     public boolean isElegible(CrawleableUri curi, File data) {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(data))) {
+            return isElegible(curi, is);
+        } catch (Exception e) {
+            LOGGER.error("An error was found when trying to analyze ", e);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isElegible(CrawleableUri curi, InputStream data) {
         Tika tika = new Tika();
         // Check the content type first
         String contentType = (String) curi.getData(Constants.URI_HTTP_MIME_TYPE_KEY);
@@ -95,8 +128,9 @@ public class RDFAnalyzer extends AbstractAnalyzer {
         }
         // Try to get the tika mime type
         // TODO it might be better to do that once and add it to the URIs data
-        try (InputStream is = new FileInputStream(data)) {
-            String mimeType = tika.detect(is);
+        try {
+            // Tika resets the stream after reading its beginning
+            String mimeType = tika.detect(data);
             if (mimeType.equals("application/rdf+xml") || mimeType.equals("text/plain")
                     || mimeType.equals("application/x-turtle")) {
                 return true;
@@ -1,8 +1,10 @@
 package org.dice_research.squirrel.analyzer.impl;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Iterator;
 
@@ -12,6 +14,7 @@ import org.apache.clerezza.rdf.core.access.TcManager;
 import org.apache.tika.Tika;
 import org.dice_research.squirrel.Constants;
 import org.dice_research.squirrel.analyzer.AbstractAnalyzer;
+import org.dice_research.squirrel.analyzer.StreamingAnalyzer;
 import org.dice_research.squirrel.analyzer.commons.SquirrelClerezzaSink;
 import org.dice_research.squirrel.collect.UriCollector;
 import org.dice_research.squirrel.data.uri.CrawleableUri;
@@ -33,7 +36,7 @@ import org.slf4j.LoggerFactory;
  *
  */
 
-public class RDFaAnalyzer extends AbstractAnalyzer {
+public class RDFaAnalyzer extends AbstractAnalyzer implements StreamingAnalyzer {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(RDFaAnalyzer.class);
 
@@ -43,6 +46,17 @@ public class RDFaAnalyzer extends AbstractAnalyzer {
 
 	@Override
 	public Iterator<byte[]> analyze(CrawleableUri curi, File data, Sink sink) {
+		try (InputStream is = new FileInputStream(data)) {
+			return analyze(curi, is, sink);
+		} catch (IOException e) {
+			LOGGER.warn("Could not read file for URI: " + curi.getUri().toString() + " :: Analyzer: "
+					+ this.getClass().getName());
+		}
+		return collector.getUris(curi);
+	}
+
+	@Override
+	public Iterator<byte[]> analyze(CrawleableUri curi, InputStream data, Sink sink) {
 
 		HtmlCleaner cleaner = new HtmlCleaner();
 
@@ -86,13 +100,24 @@ public class RDFaAnalyzer extends AbstractAnalyzer {
 
 	@Override
 	public boolean isElegible(CrawleableUri curi, File data) {
+		try (InputStream is = new BufferedInputStream(new FileInputStream(data))) {
+			return isElegible(curi, is);
+		} catch (Exception e) {
+			LOGGER.error("An error was found when verify eligibility", e);
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isElegible(CrawleableUri curi, InputStream data) {
 		String contentType = (String) curi.getData(Constants.URI_HTTP_MIME_TYPE_KEY);
 		if ((contentType != null && contentType.equals("text/html"))) {
 			return true;
 		}
 		Tika tika = new Tika();
-		try (InputStream is = new FileInputStream(data)) {
-			String mimeType = tika.detect(is);
+		try {
+			// Tika resets the stream after reading its beginning
+			String mimeType = tika.detect(data);
 			if (mimeType.equals("text/html")) {
 				return true;
 			}
@@ -37,7 +37,11 @@ public class HTMLScraperAnalyzer extends AbstractAnalyzer {
     @Override
     public Iterator<byte[]> analyze(CrawleableUri curi, File data, Sink sink) {
         try {
-            List<Triple> listTriples = htmlScraper.scrape(curi.getUri().toString(), data);
+            List<Triple> listTriples;
+            // the scraper keeps the state of the current document in its fields
+            synchronized (htmlScraper) {
+                listTriples = htmlScraper.scrape(curi.getUri().toString(), data);
+            }
             for (Triple triple : listTriples) {
                 sink.addTriple(curi, triple);
                 collector.addTriple(curi, triple);
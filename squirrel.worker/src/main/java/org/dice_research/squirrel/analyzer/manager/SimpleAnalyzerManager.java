@@ -1,6 +1,8 @@
 package org.dice_research.squirrel.analyzer.manager;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -10,6 +12,7 @@ import java.util.Map.Entry;
 
 import org.dice_research.squirrel.analyzer.AbstractAnalyzer;
 import org.dice_research.squirrel.analyzer.Analyzer;
+import org.dice_research.squirrel.analyzer.StreamingAnalyzer;
 import org.dice_research.squirrel.collect.UriCollector;
 import org.dice_research.squirrel.data.uri.CrawleableUri;
 import org.dice_research.squirrel.metadata.ActivityUtil;
@@ -21,10 +24,14 @@ import org.slf4j.LoggerFactory;
  * 
  * Class responsible for managing analyzers injected by the Spring Context
  * 
+ * A stream is only handed over to an analyzer if all analyzers are
+ * {@link StreamingAnalyzer}s and only one of them is eligible. Otherwise, the
+ * data is written into a temporary file first.
+ * 
  * @author gsjunior gsjunior@mail.uni-paderborn.de
  *
  */
-public class SimpleAnalyzerManager implements Analyzer{
+public class SimpleAnalyzerManager implements StreamingAnalyzer{
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(SimpleAnalyzerManager.class);
 	public static final String LIST_ANALYZERS = "LIST_ANALYZERS";
@@ -83,18 +90,7 @@ public class SimpleAnalyzerManager implements Analyzer{
 		
 		for(Entry<String, Analyzer> analyzerEntry : analyzers.entrySet()) {
 			if(analyzerEntry.getValue().isElegible(curi, data)) {
-				if(curi.getData().containsKey(LIST_ANALYZERS)) {
-					@SuppressWarnings("unchecked")
-					List<String> analyzers = (List<String>) curi.getData().get(LIST_ANALYZERS);
-					analyzers.add(analyzerEntry.getValue().getClass().getName());
-					curi.addData(LIST_ANALYZERS, analyzers);
-				}else {
-					List<String> analyzers = new ArrayList<String>();
-					analyzers.add(analyzerEntry.getValue().getClass().getName());
-					curi.addData(LIST_ANALYZERS, analyzers);
-				}
-				
-				ActivityUtil.addStep(curi, analyzerEntry.getValue().getClass());
+				addAnalyzer(curi, analyzerEntry.getValue());
 				
 				iterator = analyzerEntry.getValue().analyze(curi, data, sink);
 				LOGGER.info(">> Using analyzer " + analyzerEntry.getValue().getClass().getName() + ".");
@@ -102,6 +98,56 @@ public class SimpleAnalyzerManager implements Analyzer{
 		}
 		return iterator;
 	}
+	
+	/**
+	 * Hands the given stream over to the eligible analyzer. If the data has to
+	 * be read more than once, it is written into a temporary file and
+	 * {@link #analyze(CrawleableUri, File, Sink)} is used.
+	 */
+	@Override
+	public Iterator<byte[]> analyze(CrawleableUri curi, InputStream data, Sink sink) {
+		InputStream in = data.markSupported() ? data : new BufferedInputStream(data);
+		List<StreamingAnalyzer> eligibleAnalyzers = new ArrayList<StreamingAnalyzer>();
+		for(Analyzer analyzer : analyzers.values()) {
+			if(!(analyzer instanceof StreamingAnalyzer)) {
+				// this analyzer needs a file
+				return AbstractAnalyzer.analyzeAsFile(this, curi, in, sink);
+			}
+			if(((StreamingAnalyzer) analyzer).isElegible(curi, in)) {
+				eligibleAnalyzers.add((StreamingAnalyzer) analyzer);
+			}
+		}
+		if(eligibleAnalyzers.size() > 1) {
+			// the stream can only be read once
+			return AbstractAnalyzer.analyzeAsFile(this, curi, in, sink);
+		}
+		Iterator<byte[]> iterator = null;
+		for(StreamingAnalyzer analyzer : eligibleAnalyzers) {
+			addAnalyzer(curi, analyzer);
+			
+			iterator = analyzer.analyze(curi, in, sink);
+			LOGGER.info(">> Using analyzer " + analyzer.getClass().getName() + ".");
+		}
+		return iterator;
+	}
+	
+	/**
+	 * Adds the given analyzer to the list of analyzers used for the given URI.
+	 */
+	protected void addAnalyzer(CrawleableUri curi, Analyzer analyzer) {
+		if(curi.getData().containsKey(LIST_ANALYZERS)) {
+			@SuppressWarnings("unchecked")
+			List<String> analyzers = (List<String>) curi.getData().get(LIST_ANALYZERS);
+			analyzers.add(analyzer.getClass().getName());
+			curi.addData(LIST_ANALYZERS, analyzers);
+		}else {
+			List<String> analyzers = new ArrayList<String>();
+			analyzers.add(analyzer.getClass().getName());
+			curi.addData(LIST_ANALYZERS, analyzers);
+		}
+		
+		ActivityUtil.addStep(curi, analyzer.getClass());
+	}
 
 
 
@@ -111,4 +157,9 @@ public class SimpleAnalyzerManager implements Analyzer{
 		return true;
 	}
 
+	@Override
+	public boolean isElegible(CrawleableUri curi, InputStream data) {
+		return true;
+	}
+
 }
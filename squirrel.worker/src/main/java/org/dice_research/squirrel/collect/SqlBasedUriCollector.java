@@ -17,9 +17,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
-import org.apache.http.annotation.NotThreadSafe;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.Triple;
 import org.dice_research.squirrel.data.uri.CrawleableUri;
@@ -35,10 +35,12 @@ import org.slf4j.LoggerFactory;
  * @author Geralod Souza Junior (gsjunior@mail.uni-paderborn.de)
  * @author Michael R&ouml;der (michael.roeder@uni-paderborn.de)
  *
- * NotThreadSafe because the prepared statement objects used internally are not
- *                stateless.
+ * The collector is thread-safe, i.e., several threads of a worker can use it
+ * for different URIs at the same time. All threads share a single database
+ * connection. Hence, all statements and commits on this connection are
+ * synchronized on the {@link #connectionLock}. The prepared statements of a
+ * URI are additionally guarded by its {@link UriTableStatus}.
  */
-@NotThreadSafe
 public class SqlBasedUriCollector implements UriCollector, Closeable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SqlBasedUriCollector.class);
@@ -61,7 +63,12 @@ public class SqlBasedUriCollector implements UriCollector, Closeable {
     protected Connection dbConnection;
     protected Serializer serializer;
     protected int bufferSize = DEFAULT_BUFFER_SIZE;
-    protected Map<String, UriTableStatus> knownUris = new HashMap<>();
+    protected Map<String, UriTableStatus> knownUris = new ConcurrentHashMap<>();
+    /**
+     * Lock guarding the {@link #dbConnection}. It is always the last lock a
+     * thread acquires.
+     */
+    protected final Object connectionLock = new Object();
     
 
 
@@ -105,9 +112,14 @@ public class SqlBasedUriCollector implements UriCollector, Closeable {
     public void openSinkForUri(CrawleableUri uri) {
         String tableName = getTableName(uri);
         try {
-            dbConnection.createStatement().executeUpdate(CREATE_TABLE_QUERY.replaceAll("\\?", tableName));
-            dbConnection.commit();
-            UriTableStatus table = UriTableStatus.create(tableName, dbConnection, bufferSize);
+            UriTableStatus table;
+            synchronized (connectionLock) {
+                try (Statement s = dbConnection.createStatement()) {
+                    s.executeUpdate(CREATE_TABLE_QUERY.replaceAll("\\?", tableName));
+                }
+                dbConnection.commit();
+                table = UriTableStatus.create(tableName, dbConnection, connectionLock, bufferSize);
+            }
             // PreparedStatement ps = dbConnection.prepareStatement(CREATE_TABLE_QUERY);
             knownUris.put(uri.getUri().toString(), table);
         } catch (Exception e) {
@@ -126,9 +138,12 @@ public class SqlBasedUriCollector implements UriCollector, Closeable {
                     // Make sure everything has been committed
                     table.commitPendingChanges();
 
-                    PreparedStatement ps = dbConnection
-                            .prepareStatement(SELECT_TABLE_QUERY.replaceFirst("\\?", tableName));
-                    return new SqlBasedIterator(ps);
+                    synchronized (connectionLock) {
+                        PreparedStatement ps = dbConnection
+                                .prepareStatement(SELECT_TABLE_QUERY.replaceFirst("\\?", tableName));
+                        // the iterator queries further pages while the other threads use the connection
+                        return new SqlBasedIterator(ps, connectionLock);
+                    }
 
                 } catch (SQLException e) {
                     LOGGER.error("Exception while querying URIs from database({}). Returning empty Iterator.",
@@ -185,8 +200,13 @@ public class SqlBasedUriCollector implements UriCollector, Closeable {
             UriTableStatus table = knownUris.remove(uriString);
             synchronized (table) {
                 try {
-                    dbConnection.createStatement().executeUpdate(DROP_TABLE_QUERY + getTableName(uri));
-                    dbConnection.commit();
+                    table.close();
+                    synchronized (connectionLock) {
+                        try (Statement s = dbConnection.createStatement()) {
+                            s.executeUpdate(DROP_TABLE_QUERY + getTableName(uri));
+                        }
+                        dbConnection.commit();
+                    }
                 } catch (SQLException e) {
                     LOGGER.warn("Couldn't drop table of URI \"" + uri + "\". It will be ignored.", e);
                 }
@@ -211,17 +231,15 @@ public class SqlBasedUriCollector implements UriCollector, Closeable {
 		                    String tableName = table.getTableName();
 		                    // Make sure everything has been committed
 		                    table.commitPendingChanges();
-		    	PreparedStatement ps = dbConnection
-		                .prepareStatement(COUNT_URIS_QUERY.replaceFirst("\\?", tableName));
-		    	
-//		    	ps.setString(1, uri.getUri().toString());
-		    	ResultSet rs = ps.executeQuery();
-		    	while(rs.next()) {
-		    		totalUris = rs.getLong(1);	
-		    	}
-		    	
-		    	ps.close();
-		    	rs.close();
+                    synchronized (connectionLock) {
+                        try (PreparedStatement ps = dbConnection
+                                .prepareStatement(COUNT_URIS_QUERY.replaceFirst("\\?", tableName));
+                                ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                totalUris = rs.getLong(1);
+                            }
+                        }
+                    }
                 }catch(Exception e) {
                 	LOGGER.error("Could not compute size for uri:. ", uri.getUri().toString());
                 }
@@ -236,7 +254,9 @@ public class SqlBasedUriCollector implements UriCollector, Closeable {
         // It might be necessary to go through the list of known URIs and close all of
         // the remaining URIs
         try {
-            dbConnection.close();
+            synchronized (connectionLock) {
+                dbConnection.close();
+            }
         } catch (SQLException e) {
         }
     }
@@ -304,23 +324,29 @@ public class SqlBasedUriCollector implements UriCollector, Closeable {
     protected static class UriTableStatus {
         private final String tableName;
         private final PreparedStatement insertStmt;
+        /**
+         * The lock of the connection the {@link #insertStmt} belongs to.
+         */
+        private final Object connectionLock;
         private final Map<String, byte[]> buffer;
         private final int bufferSize;
 
-        public static UriTableStatus create(String tableName, Connection dbConnection, int bufferSize)
-                throws SQLException {
+        public static UriTableStatus create(String tableName, Connection dbConnection, Object connectionLock,
+                int bufferSize) throws SQLException {
             StringBuilder builder = new StringBuilder();
             builder.append(INSERT_URI_QUERY_PART_1);
             builder.append(tableName);
             builder.append(INSERT_URI_QUERY_PART_2);
             PreparedStatement insertStmt = dbConnection.prepareStatement(builder.toString());
             // insertStmt.batch
-            return new UriTableStatus(tableName, insertStmt, bufferSize);
+            return new UriTableStatus(tableName, insertStmt, connectionLock, bufferSize);
         }
 
-        public UriTableStatus(String tableName, PreparedStatement insertStmt, int bufferSize) {
+        public UriTableStatus(String tableName, PreparedStatement insertStmt, Object connectionLock,
+                int bufferSize) {
             this.tableName = tableName;
             this.insertStmt = insertStmt;
+            this.connectionLock = connectionLock;
             buffer = new HashMap<>(2 * bufferSize);
             this.bufferSize = bufferSize;
 
@@ -342,7 +368,29 @@ public class SqlBasedUriCollector implements UriCollector, Closeable {
             }
         }
 
+        /**
+         * Closes the insert statement. Pending changes are discarded.
+         */
+        public void close() throws SQLException {
+            synchronized (buffer) {
+                buffer.clear();
+                synchronized (connectionLock) {
+                    insertStmt.close();
+                }
+            }
+        }
+
         private void execute_unsecured() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            // the commit affects the whole connection
+            synchronized (connectionLock) {
+                execute_locked();
+            }
+        }
+
+        private void execute_locked() {
             try {
                 for (String uri : buffer.keySet()) {
                     insertStmt.setString(1, uri);
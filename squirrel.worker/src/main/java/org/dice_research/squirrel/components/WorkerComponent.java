@@ -6,12 +6,16 @@ import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.dice_research.squirrel.Constants;
+import org.dice_research.squirrel.configurator.ShardingConfiguration;
 import org.dice_research.squirrel.data.uri.CrawleableUri;
 import org.dice_research.squirrel.data.uri.serialize.Serializer;
 import org.dice_research.squirrel.frontier.Frontier;
+import org.dice_research.squirrel.frontier.sharding.ConsistentHashRing;
 import org.dice_research.squirrel.rabbit.msgs.CrawlingResult;
+import org.dice_research.squirrel.rabbit.msgs.LeaseExtension;
 import org.dice_research.squirrel.rabbit.msgs.UriSet;
 import org.dice_research.squirrel.rabbit.msgs.UriSetRequest;
 import org.dice_research.squirrel.utils.Closer;
@@ -45,8 +49,24 @@ public class WorkerComponent extends AbstractComponent implements Frontier {
     @Qualifier("workerBean")
     @Autowired
     private Worker worker;
-    private DataSender senderFrontier, senderDeduplicator;
-    private RabbitRpcClient clientFrontier;
+    private DataSender senderDeduplicator;
+    /**
+     * Senders and RPC clients of the frontier instances (a single one if the
+     * frontier is not sharded). New URIs and crawling results are sent to the
+     * main queue of a frontier while URI requests, lease extensions and alive
+     * messages are sent to its request queue.
+     */
+    private DataSender[] sendersFrontier;
+    private DataSender[] requestSendersFrontier;
+    private RabbitRpcClient[] clientsFrontier;
+    /**
+     * Assigns the hosts of URIs to the frontier instances.
+     */
+    private ConsistentHashRing shardRing;
+    /**
+     * The frontier instance that is asked first for the next URIs.
+     */
+    private final AtomicInteger nextShard = new AtomicInteger();
     @Qualifier("sender")
     @Autowired
     private DataSender sender;
@@ -70,22 +90,35 @@ public class WorkerComponent extends AbstractComponent implements Frontier {
         deduplicationActive = EnvVariables.getBoolean(Constants.DEDUPLICATION_ACTIVE_KEY,
                 Constants.DEFAULT_DEDUPLICATION_ACTIVE, LOGGER);
 
-        senderFrontier = DataSenderImpl.builder().queue(outgoingDataQueuefactory, Constants.FRONTIER_QUEUE_NAME)
-                .build();
+        ShardingConfiguration shardingConfiguration = ShardingConfiguration.getShardingConfiguration();
+        shardRing = shardingConfiguration.createRing();
+        sendersFrontier = new DataSender[shardRing.getNumberOfShards()];
+        requestSendersFrontier = new DataSender[shardRing.getNumberOfShards()];
+        clientsFrontier = new RabbitRpcClient[shardRing.getNumberOfShards()];
+        for (int i = 0; i < sendersFrontier.length; ++i) {
+            String queueName = shardingConfiguration.getFrontierQueueName(i);
+            String requestQueueName = shardingConfiguration.getFrontierRequestQueueName(i);
+            sendersFrontier[i] = DataSenderImpl.builder().queue(outgoingDataQueuefactory, queueName).build();
+            requestSendersFrontier[i] = DataSenderImpl.builder().queue(outgoingDataQueuefactory, requestQueueName)
+                    .build();
+            clientsFrontier[i] = RabbitRpcClient.create(outgoingDataQueuefactory.getConnection(), requestQueueName);
+        }
 
         if (deduplicationActive) {
             senderDeduplicator = DataSenderImpl.builder()
                     .queue(outgoingDataQueuefactory, Constants.DEDUPLICATOR_QUEUE_NAME).build();
         }
-        clientFrontier = RabbitRpcClient.create(outgoingDataQueuefactory.getConnection(),
-                Constants.FRONTIER_QUEUE_NAME);
 
         if (worker.sendsAliveMessages()) {
             timerAliveMessages.schedule(new TimerTask() {
                 @Override
                 public void run() {
                     try {
-                        senderFrontier.sendData(serializer.serialize(new AliveMessage((worker.getUri()))));
+                        byte[] message = serializer.serialize(new AliveMessage((worker.getUri())));
+                        // every frontier instance guards the workers it sent URIs to
+                        for (DataSender sender : requestSendersFrontier) {
+                            sender.sendData(message);
+                        }
                     } catch (IOException e) {
                         LOGGER.warn(e.toString());
                     }
@@ -136,15 +169,32 @@ public class WorkerComponent extends AbstractComponent implements Frontier {
 
     @Override
     public void close() throws IOException {
-        Closer.close(senderFrontier, LOGGER);
+        if (sendersFrontier != null) {
+            for (int i = 0; i < sendersFrontier.length; ++i) {
+                Closer.close(sendersFrontier[i], LOGGER);
+                Closer.close(requestSendersFrontier[i], LOGGER);
+                Closer.close(clientsFrontier[i], LOGGER);
+            }
+        }
         Closer.close(senderDeduplicator, LOGGER);
-        Closer.close(clientFrontier, LOGGER);
         timerAliveMessages.cancel();
         super.close();
     }
 
     @Override
     public List<CrawleableUri> getNextUris() {
+        // ask the frontier instances one after the other until one of them has URIs
+        int firstShard = Math.floorMod(nextShard.getAndIncrement(), clientsFrontier.length);
+        for (int i = 0; i < clientsFrontier.length; ++i) {
+            List<CrawleableUri> uris = requestUris(clientsFrontier[(firstShard + i) % clientsFrontier.length]);
+            if (uris != null) {
+                return uris;
+            }
+        }
+        return null;
+    }
+
+    private List<CrawleableUri> requestUris(RabbitRpcClient clientFrontier) {
         UriSet set = null;
         try {
             byte[] response = clientFrontier.request(uriSetRequest);
@@ -172,10 +222,15 @@ public class WorkerComponent extends AbstractComponent implements Frontier {
 
     @Override
     public void addNewUris(List<CrawleableUri> uris) {
-        try {
-            senderFrontier.sendData(serializer.serialize(new UriSet(uris)));
-        } catch (Exception e) {
-            LOGGER.error("Exception while sending URIs to the frontier.", e);
+        List<List<CrawleableUri>> partitions = shardRing.partition(uris);
+        for (int i = 0; i < partitions.size(); ++i) {
+            if (!partitions.get(i).isEmpty()) {
+                try {
+                    sendersFrontier[i].sendData(serializer.serialize(new UriSet(partitions.get(i))));
+                } catch (Exception e) {
+                    LOGGER.error("Exception while sending URIs to the frontier.", e);
+                }
+            }
         }
     }
 
@@ -193,7 +248,14 @@ public class WorkerComponent extends AbstractComponent implements Frontier {
             // uriMapHashtable.put(key, uriMap.get(key));
             // }
             // }
-            senderFrontier.sendData(serializer.serialize(new CrawlingResult(uris, worker.getUri())));
+            // the URIs of a chunk belong to the frontier instance that sent them
+            List<List<CrawleableUri>> partitions = shardRing.partition(uris);
+            for (int i = 0; i < partitions.size(); ++i) {
+                if (!partitions.get(i).isEmpty()) {
+                    sendersFrontier[i]
+                            .sendData(serializer.serialize(new CrawlingResult(partitions.get(i), worker.getUri())));
+                }
+            }
 
             if (deduplicationActive) {
                 UriSet uriSet = new UriSet(uris);
@@ -204,6 +266,21 @@ public class WorkerComponent extends AbstractComponent implements Frontier {
         }
     }
 
+    @Override
+    public void extendLease(List<CrawleableUri> uris) {
+        List<List<CrawleableUri>> partitions = shardRing.partition(uris);
+        for (int i = 0; i < partitions.size(); ++i) {
+            if (!partitions.get(i).isEmpty()) {
+                try {
+                    requestSendersFrontier[i]
+                            .sendData(serializer.serialize(new LeaseExtension(partitions.get(i), worker.getUri())));
+                } catch (Exception e) {
+                    LOGGER.error("Exception while sending a lease extension to the frontier.", e);
+                }
+            }
+        }
+    }
+
     @Override
     public int getNumberOfPendingUris() {
         return 0;
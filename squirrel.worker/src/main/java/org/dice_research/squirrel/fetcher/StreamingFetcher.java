@@ -0,0 +1,32 @@
+package org.dice_research.squirrel.fetcher;
+
+import java.io.InputStream;
+
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+
+/**
+ * A {@link Fetcher} that can hand the fetched data over as a stream instead of
+ * storing it in a file first.
+ */
+public interface StreamingFetcher extends Fetcher {
+
+    /**
+     * Checks whether the data of the given URI can be fetched as a stream by
+     * this fetcher.
+     *
+     * @param uri The URI from which data should be fetched.
+     * @return {@code true} if {@link #fetchStream(CrawleableUri)} should be used for this URI.
+     */
+    public boolean isStreamable(CrawleableUri uri);
+
+    /**
+     * Fetches the data of the given URI and returns a stream of it. The data
+     * is read while the caller reads the stream, i.e., the caller has to close
+     * it. If an error occurs, {@code null} is returned.
+     *
+     * @param uri The URI from which data should be fetched.
+     * @return A stream of the data or {@code null} if an error occurred.
+     */
+    public InputStream fetchStream(CrawleableUri uri);
+
+}
@@ -39,7 +39,6 @@ public class FTPFetcher implements Fetcher {
     protected static final Set<String> ACCEPTED_SCHEMES = new HashSet<String>(Arrays.asList("ftp", "ftps"));
 
     protected File dataDirectory = FileUtils.getTempDirectory();
-    private FTPRecursiveFetcher recursiveFetcher;
 
     @Override
     public File fetch(CrawleableUri uri) {
@@ -79,7 +78,8 @@ public class FTPFetcher implements Fetcher {
 
             if (client.mlistFile(uri.getUri().getPath()).isDirectory()) {
                 Path path = Files.createTempDirectory("file_");
-                recursiveFetcher = new FTPRecursiveFetcher(path);
+                // a local fetcher since several threads may use this fetcher
+                FTPRecursiveFetcher recursiveFetcher = new FTPRecursiveFetcher(path);
                 recursiveFetcher.listDirectory(client, uri.getUri().getPath(), "", 0);
                 dataFile = path.toFile();
 
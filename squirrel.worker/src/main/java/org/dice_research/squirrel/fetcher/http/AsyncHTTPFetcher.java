@@ -0,0 +1,496 @@
+package org.dice_research.squirrel.fetcher.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.commons.collections.MapUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.hc.client5.http.ConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.dice_research.squirrel.Constants;
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.fetcher.Fetcher;
+import org.dice_research.squirrel.fetcher.StreamingFetcher;
+import org.dice_research.squirrel.metadata.ActivityUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Fetcher} for HTTP(S) URIs that is based on an asynchronous HTTP
+ * client. Idle connections are kept alive and HTTP/2 is used if the server
+ * offers it during the TLS handshake. Apart from that, the fetcher handles the
+ * URIs in the same way as the {@link HTTPFetcher}.
+ *
+ * <p>
+ * The fetcher keeps the synchronous {@link Fetcher} contract, i.e.,
+ * {@link #fetch(CrawleableUri)} and reading the stream of
+ * {@link #fetchStream(CrawleableUri)} block the calling thread, and the worker
+ * still needs one crawling thread per parallel request. If the calling thread
+ * is slower than the server, the client stops reading from the connection
+ * until the buffered chunks have been consumed.
+ * </p>
+ */
+public class AsyncHTTPFetcher implements StreamingFetcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncHTTPFetcher.class);
+
+    /**
+     * The default number of connections the client keeps open to a single host.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 2;
+    /**
+     * The default number of connections the client keeps open in total.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 1000;
+    /**
+     * The default maximum time (in ms) an idle connection is kept alive.
+     */
+    public static final long DEFAULT_KEEP_ALIVE_TIME = 30000;
+    /**
+     * The default time (in ms) after which a connection attempt or a request
+     * without any received data is aborted.
+     */
+    public static final long DEFAULT_TIMEOUT = 60000;
+
+    protected String acceptHeader = "application/rdf+xml";
+    protected String acceptCharset = StandardCharsets.UTF_8.name();
+    protected CloseableHttpAsyncClient client;
+    protected File dataDirectory = FileUtils.getTempDirectory();
+
+    public AsyncHTTPFetcher() {
+        this(Constants.DEFAULT_USER_AGENT);
+    }
+
+    public AsyncHTTPFetcher(String userAgent) {
+        this(userAgent, DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_CONNECTIONS_TOTAL, DEFAULT_KEEP_ALIVE_TIME,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param userAgent
+     *            the user agent that is sent with every request
+     * @param maxConnectionsPerRoute
+     *            the maximum number of connections to a single host
+     * @param maxConnectionsTotal
+     *            the maximum number of connections in total
+     * @param keepAliveTime
+     *            the maximum time (in ms) an idle connection is kept alive. A
+     *            shorter time sent by the server is preferred.
+     * @param ioThreads
+     *            the number of threads handling the I/O of all connections
+     */
+    public AsyncHTTPFetcher(String userAgent, int maxConnectionsPerRoute, int maxConnectionsTotal,
+            long keepAliveTime, int ioThreads) {
+        this(HttpAsyncClients.custom()
+                .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                        .setMaxConnPerRoute(maxConnectionsPerRoute).setMaxConnTotal(maxConnectionsTotal).build())
+                .setIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(ioThreads).build())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(DEFAULT_TIMEOUT))
+                        .setResponseTimeout(Timeout.ofMilliseconds(DEFAULT_TIMEOUT)).build())
+                .setKeepAliveStrategy(createKeepAliveStrategy(keepAliveTime))
+                .setVersionPolicy(HttpVersionPolicy.NEGOTIATE).setUserAgent(userAgent).build());
+    }
+
+    /**
+     * Constructor. The given client is started if this has not already been
+     * done.
+     *
+     * @param client
+     *            the client that is used for the requests
+     */
+    public AsyncHTTPFetcher(CloseableHttpAsyncClient client) {
+        this.client = client;
+        this.client.start();
+    }
+
+    /**
+     * Creates a strategy that uses the keep alive time of the server's
+     * response if it is shorter than the given maximum.
+     */
+    protected static ConnectionKeepAliveStrategy createKeepAliveStrategy(long keepAliveTime) {
+        return (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context)
+                    .toMilliseconds();
+            return TimeValue.ofMilliseconds((duration < 0) ? keepAliveTime : Math.min(duration, keepAliveTime));
+        };
+    }
+
+    @Override
+    public File fetch(CrawleableUri uri) {
+        // Check whether this fetcher can handle the given URI
+        if (!isStreamable(uri)) {
+            return null;
+        }
+        // create temporary file
+        File dataFile = null;
+        try {
+            dataFile = File.createTempFile("fetched_", "", dataDirectory);
+        } catch (IOException e) {
+            LOGGER.error("Couldn't create temporary file for storing fetched data. Returning null.", e);
+            return null;
+        }
+        // the data is written by the calling thread, i.e., not by the I/O threads of the client
+        try (InputStream stream = fetchStream(uri)) {
+            if (stream == null) {
+                dataFile.delete();
+                return null;
+            }
+            Files.copy(stream, dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.error("Couldn't fetch data. Returning null.", e);
+            ActivityUtil.addStep(uri, getClass(), e.getMessage());
+            dataFile.delete();
+            return null;
+        }
+        uri.addData(Constants.URI_DATA_FILE_NAME, dataFile.getAbsolutePath());
+        return dataFile;
+    }
+
+    @Override
+    public boolean isStreamable(CrawleableUri uri) {
+        return (uri != null) && (uri.getUri() != null) && HTTPFetcher.ACCEPTED_SCHEMES.contains(uri.getUri().getScheme());
+    }
+
+    /**
+     * Sends the request for the given URI and waits for the head of the
+     * response. The body is received while the returned stream is read.
+     */
+    @Override
+    public InputStream fetchStream(CrawleableUri uri) {
+        if (!isStreamable(uri)) {
+            return null;
+        }
+        AsyncRequestProducer request = AsyncRequestBuilder.get(uri.getUri())
+                .addHeader(HttpHeaders.ACCEPT,
+                        MapUtils.getString(uri.getData(), Constants.URI_HTTP_ACCEPT_HEADER, acceptHeader))
+                .addHeader(HttpHeaders.ACCEPT_CHARSET,
+                        MapUtils.getString(uri.getData(), Constants.URI_HTTP_ACCEPT_CHARSET_HEADER, acceptCharset))
+                .build();
+        ResponseStreamConsumer consumer = new ResponseStreamConsumer(uri);
+        Future<Boolean> exchange = client.execute(request, consumer, new FutureCallback<Boolean>() {
+            @Override
+            public void completed(Boolean result) {
+                // the consumer has already been informed
+            }
+
+            @Override
+            public void failed(Exception e) {
+                consumer.failed(e);
+            }
+
+            @Override
+            public void cancelled() {
+                consumer.failed(new CancellationException("The request has been cancelled."));
+            }
+        });
+        try {
+            if (consumer.awaitResponse()) {
+                ActivityUtil.addStep(uri, getClass());
+                return consumer.new BodyInputStream(exchange);
+            }
+            Exception failure = consumer.getFailure();
+            if (failure != null) {
+                LOGGER.debug("Exception while requesting uri \"{}\". Returning null. Exception: {}", uri,
+                        failure.getMessage());
+                ActivityUtil.addStep(uri, getClass(), failure.getMessage());
+            }
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted while waiting for the response of \"" + uri + "\". Returning null.", e);
+            Thread.currentThread().interrupt();
+        }
+        exchange.cancel(true);
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+
+    /**
+     * Handles the response of a single request. The headers are added to the
+     * data of the URI. The I/O threads of the client only hand the chunks of
+     * the body over to the thread reading the {@link BodyInputStream}. If this
+     * thread does not keep up, no further data is requested from the server
+     * until less than {@link #MAX_BUFFERED_BYTES} are buffered. The body of a
+     * response with a wrong status is discarded.
+     */
+    protected static class ResponseStreamConsumer implements AsyncResponseConsumer<Boolean> {
+
+        protected static final int CAPACITY_INCREMENT = 64 * 1024;
+        protected static final int MAX_BUFFERED_BYTES = 16 * CAPACITY_INCREMENT;
+        /**
+         * Marks the end of the body in the {@link #chunks} queue.
+         */
+        protected static final ByteBuffer END_OF_BODY = ByteBuffer.allocate(0);
+
+        protected final CrawleableUri uri;
+        /**
+         * Completed with {@code true} if the response has been accepted and
+         * its body can be read or with {@code false} otherwise.
+         */
+        protected final CompletableFuture<Boolean> accepted = new CompletableFuture<>();
+        protected final BlockingQueue<ByteBuffer> chunks = new LinkedBlockingQueue<>();
+        protected volatile boolean discardBody = false;
+        protected volatile Exception failure = null;
+        protected volatile FutureCallback<Boolean> resultCallback = null;
+        // the following attributes are guarded by this consumer
+        protected int bufferedBytes = 0;
+        protected CapacityChannel capacityChannel = null;
+        protected boolean capacityRequested = false;
+        protected boolean finished = false;
+
+        public ResponseStreamConsumer(CrawleableUri uri) {
+            this.uri = uri;
+        }
+
+        @Override
+        public void consumeResponse(HttpResponse response, EntityDetails entityDetails, HttpContext context,
+                FutureCallback<Boolean> resultCallback) throws HttpException, IOException {
+            this.resultCallback = resultCallback;
+            // Handle response headers (especially the status and the content type)
+            for (Header header : response.getHeaders()) {
+                uri.addData(HTTPFetcher.HTTP_RESPONSE_HEADER_PREFIX + header.getName(), header.getValue());
+            }
+            uri.addData(Constants.URI_HTTP_STATUS_CODE, response.getCode());
+            if ((response.getCode() < 200) || (response.getCode() >= 300)) {
+                LOGGER.info("Response of \"{}\" has the wrong status ({} {}). Returning null.", uri,
+                        response.getCode(), response.getReasonPhrase());
+                discardBody = true;
+                accepted.complete(false);
+            } else {
+                Header contentTypeHeader = response.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+                if (contentTypeHeader != null) {
+                    String typeValues[] = contentTypeHeader.getValue().split(";");
+                    uri.addData(Constants.URI_HTTP_MIME_TYPE_KEY, typeValues[0]);
+                    // If the content type contains a charset
+                    if (typeValues.length > 1) {
+                        uri.addData(Constants.URI_HTTP_CHARSET_KEY, typeValues[1]);
+                    }
+                } else {
+                    LOGGER.info("The response did not contain a content type header.");
+                }
+                accepted.complete(true);
+            }
+            if (entityDetails == null) {
+                // there is no body
+                streamEnd(null);
+            }
+        }
+
+        @Override
+        public void informationResponse(HttpResponse response, HttpContext context)
+                throws HttpException, IOException {
+            // nothing to do
+        }
+
+        @Override
+        public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+            boolean update;
+            synchronized (this) {
+                this.capacityChannel = capacityChannel;
+                update = discardBody || (bufferedBytes < MAX_BUFFERED_BYTES);
+                capacityRequested = !update;
+            }
+            if (update) {
+                capacityChannel.update(CAPACITY_INCREMENT);
+            }
+        }
+
+        @Override
+        public void consume(ByteBuffer src) throws IOException {
+            if (discardBody) {
+                src.position(src.limit());
+                return;
+            }
+            // copy the data since the buffer is reused by the I/O thread
+            ByteBuffer chunk = ByteBuffer.allocate(src.remaining());
+            chunk.put(src);
+            chunk.flip();
+            synchronized (this) {
+                bufferedBytes += chunk.remaining();
+            }
+            chunks.add(chunk);
+        }
+
+        @Override
+        public void streamEnd(List<? extends Header> trailers) throws HttpException, IOException {
+            finish();
+            if (resultCallback != null) {
+                resultCallback.completed(!discardBody);
+            }
+        }
+
+        @Override
+        public void failed(Exception cause) {
+            if (failure == null) {
+                failure = cause;
+            }
+            accepted.complete(false);
+            finish();
+        }
+
+        @Override
+        public void releaseResources() {
+            // make sure that a reader does not wait for further data
+            finish();
+        }
+
+        /**
+         * Waits for the head of the response.
+         *
+         * @return {@code true} if the response has been accepted and its body
+         *         can be read
+         */
+        public boolean awaitResponse() throws InterruptedException {
+            try {
+                return accepted.get();
+            } catch (ExecutionException e) {
+                // the future is never completed exceptionally
+                return false;
+            }
+        }
+
+        public Exception getFailure() {
+            return failure;
+        }
+
+        protected void finish() {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+            }
+            chunks.add(END_OF_BODY);
+        }
+
+        /**
+         * Called by the reader after it read a chunk. Requests further data
+         * from the server if the I/O thread had to stop.
+         */
+        protected void chunkRead(int size) throws IOException {
+            CapacityChannel channel = null;
+            synchronized (this) {
+                bufferedBytes -= size;
+                if (capacityRequested && (bufferedBytes < MAX_BUFFERED_BYTES)) {
+                    capacityRequested = false;
+                    channel = capacityChannel;
+                }
+            }
+            if (channel != null) {
+                channel.update(CAPACITY_INCREMENT);
+            }
+        }
+
+        /**
+         * The stream of the response body. Closing the stream before the end
+         * of the body has been reached aborts the request.
+         */
+        protected class BodyInputStream extends InputStream {
+
+            protected final Future<Boolean> exchange;
+            protected ByteBuffer current = null;
+            protected boolean endReached = false;
+
+            public BodyInputStream(Future<Boolean> exchange) {
+                this.exchange = exchange;
+            }
+
+            @Override
+            public int read() throws IOException {
+                ByteBuffer buffer = nextChunk();
+                return (buffer == null) ? -1 : (buffer.get() & 0xFF);
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                ByteBuffer buffer = nextChunk();
+                if (buffer == null) {
+                    return -1;
+                }
+                int length = Math.min(len, buffer.remaining());
+                buffer.get(b, off, length);
+                return length;
+            }
+
+            /**
+             * @return a chunk with remaining data or {@code null} if the end of
+             *         the body has been reached
+             */
+            protected ByteBuffer nextChunk() throws IOException {
+                while ((current == null) || !current.hasRemaining()) {
+                    if (current != null) {
+                        chunkRead(current.limit());
+                        current = null;
+                    }
+                    if (endReached) {
+                        return null;
+                    }
+                    ByteBuffer chunk;
+                    try {
+                        chunk = chunks.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for data of \"" + uri + "\".");
+                    }
+                    if (chunk == END_OF_BODY) {
+                        endReached = true;
+                        if (failure != null) {
+                            throw new IOException("Couldn't receive the data of \"" + uri + "\".", failure);
+                        }
+                        return null;
+                    }
+                    current = chunk;
+                }
+                return current;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!endReached) {
+                    endReached = true;
+                    exchange.cancel(true);
+                }
+            }
+        }
+    }
+}
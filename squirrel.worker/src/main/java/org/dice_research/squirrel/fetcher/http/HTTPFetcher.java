@@ -4,6 +4,7 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -30,7 +31,9 @@ import org.apache.tika.io.IOUtils;
 import org.dice_research.squirrel.Constants;
 import org.dice_research.squirrel.data.uri.CrawleableUri;
 import org.dice_research.squirrel.fetcher.Fetcher;
+import org.dice_research.squirrel.fetcher.StreamingFetcher;
 import org.dice_research.squirrel.metadata.ActivityUtil;
+import org.dice_research.squirrel.utils.Closer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -40,7 +43,7 @@ import org.springframework.stereotype.Component;
 @Component
 @Order(value = 1)
 @Qualifier("httpFetcher")
-public class HTTPFetcher implements Fetcher {
+public class HTTPFetcher implements StreamingFetcher {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HTTPFetcher.class);
 
@@ -69,7 +72,7 @@ public class HTTPFetcher implements Fetcher {
     @Override
     public File fetch(CrawleableUri uri) {
         // Check whether this fetcher can handle the given URI
-        if ((uri == null) || (uri.getUri() == null) || (!ACCEPTED_SCHEMES.contains(uri.getUri().getScheme()))) {
+        if (!isStreamable(uri)) {
             return null;
         }
         // create temporary file
@@ -100,8 +103,86 @@ public class HTTPFetcher implements Fetcher {
         return dataFile;
     }
     
+    @Override
+    public boolean isStreamable(CrawleableUri uri) {
+        return (uri != null) && (uri.getUri() != null) && ACCEPTED_SCHEMES.contains(uri.getUri().getScheme());
+    }
+
+    @Override
+    public InputStream fetchStream(CrawleableUri uri) {
+        if (!isStreamable(uri)) {
+            return null;
+        }
+        CloseableHttpResponse response = null;
+        try {
+            response = sendRequest(uri);
+            if ((response == null) || (response.getEntity() == null)) {
+                Closer.closeQuietly(response);
+                return null;
+            }
+            final CloseableHttpResponse streamedResponse = response;
+            InputStream stream = new FilterInputStream(response.getEntity().getContent()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        streamedResponse.close();
+                    }
+                }
+            };
+            ActivityUtil.addStep(uri, getClass());
+            return stream;
+        } catch (ClientProtocolException e) {
+            LOGGER.debug("HTTP Exception while requesting uri \"{}\". Returning null. Exception: {}", uri,
+                e.getMessage());
+            ActivityUtil.addStep(uri, getClass(), e.getMessage());
+        } catch (IOException e) {
+            LOGGER.error("Couldn't fetched data. Returning null.", e);
+            ActivityUtil.addStep(uri, getClass(), e.getMessage());
+        }
+        Closer.closeQuietly(response);
+        return null;
+    }
+
     protected File requestData(CrawleableUri uri, File outputFile)
         throws ClientProtocolException, FileNotFoundException, IOException {
+        CloseableHttpResponse response = sendRequest(uri);
+        if (response == null) {
+            return null;
+        }
+        HttpEntity entity = null;
+        OutputStream os = null;
+        try {
+            // store response data
+            entity = response.getEntity();
+            InputStream is = entity.getContent();
+            os = new BufferedOutputStream(new FileOutputStream(outputFile));
+            StreamUtils.copy(is, os);
+        } finally {
+            IOUtils.closeQuietly(os);
+            if (entity != null) {
+                try {
+                    EntityUtils.consume(entity);
+                } catch (IOException e1) {
+                }
+            }
+            try {
+                response.close();
+            } catch (IOException e) {
+            }
+        }
+        uri.addData(Constants.URI_DATA_FILE_NAME, outputFile.getAbsolutePath());
+        return outputFile;
+    }
+
+    /**
+     * Sends the request for the given URI and adds the response headers to
+     * the data of the URI.
+     *
+     * @return the response or {@code null} if it has the wrong status
+     */
+    protected CloseableHttpResponse sendRequest(CrawleableUri uri) throws ClientProtocolException, IOException {
         HttpGet request = null;
         request = new HttpGet(uri.getUri());
         request.addHeader(HttpHeaders.ACCEPT,
@@ -109,12 +190,8 @@ public class HTTPFetcher implements Fetcher {
         request.addHeader(HttpHeaders.ACCEPT_CHARSET,
             MapUtils.getString(uri.getData(), Constants.URI_HTTP_ACCEPT_HEADER, acceptCharset));
 
-        HttpEntity entity = null;
-        CloseableHttpResponse response = null;
-        OutputStream os = null;
+        CloseableHttpResponse response = client.execute(request);
         try {
-            response = client.execute(request);
-
             // Handle response headers (especially the status and the content type)
             for (Header header : response.getAllHeaders()) {
                 uri.addData(HTTP_RESPONSE_HEADER_PREFIX + header.getName(), header.getValue());
@@ -123,6 +200,7 @@ public class HTTPFetcher implements Fetcher {
             uri.addData(Constants.URI_HTTP_STATUS_CODE, status.getStatusCode());
             if ((status.getStatusCode() < 200) || (status.getStatusCode() >= 300)) {
                 LOGGER.info("Response of \"{}\" has the wrong status ({}). Returning null.", uri, status.toString());
+                response.close();
                 return null;
             }
             Header contentTypeHeader = response.getFirstHeader(HttpHeaders.CONTENT_TYPE);
@@ -136,29 +214,11 @@ public class HTTPFetcher implements Fetcher {
             } else {
                 LOGGER.info("The response did not contain a content type header.");
             }
-
-            // store response data
-            entity = response.getEntity();
-            InputStream is = entity.getContent();
-            os = new BufferedOutputStream(new FileOutputStream(outputFile));
-            StreamUtils.copy(is, os);
-        } finally {
-            IOUtils.closeQuietly(os);
-            if (entity != null) {
-                try {
-                    EntityUtils.consume(entity);
-                } catch (IOException e1) {
-                }
-            }
-            if (response != null) {
-                try {
-                    response.close();
-                } catch (IOException e) {
-                }
-            }
+        } catch (RuntimeException e) {
+            response.close();
+            throw e;
         }
-        uri.addData(Constants.URI_DATA_FILE_NAME, outputFile.getAbsolutePath());
-        return outputFile;
+        return response;
     }
 
     @Override
@@ -2,13 +2,16 @@ package org.dice_research.squirrel.fetcher.manage;
 
 import org.dice_research.squirrel.data.uri.CrawleableUri;
 import org.dice_research.squirrel.fetcher.Fetcher;
+import org.dice_research.squirrel.fetcher.StreamingFetcher;
 import org.dice_research.squirrel.fetcher.ftp.FTPFetcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * A very simple manager for {@link Fetcher} instances that is based on the
@@ -16,11 +19,15 @@ import java.io.IOException;
  * will first try to fetch data from the given URI using A. If this is
  * successful (i.e., {@code A.fetch(uri) != null}) the result of {@link Fetcher}
  * A is returned. Only if A returns {@code null} {@link Fetcher} B is used.
+ * A URI can be fetched as stream if one of the fetchers is a
+ * {@link StreamingFetcher} that can stream it. The fetchers are used in the
+ * same order in this case. Fetchers that can not stream the URI store its data
+ * in a file that is read as stream.
  *
  * @author Michael R&ouml;der (michael.roeder@uni-paderborn.de)
  *
  */
-public class SimpleOrderedFetcherManager implements Fetcher {
+public class SimpleOrderedFetcherManager implements StreamingFetcher {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(FTPFetcher.class);
     public static final String FETCHER = "fetcher";
@@ -55,6 +62,64 @@ public class SimpleOrderedFetcherManager implements Fetcher {
         return resultFile;
     }
 
+    @Override
+    public boolean isStreamable(CrawleableUri uri) {
+        for (Fetcher fetcher : fetchers) {
+            if (isStreamable(fetcher, uri)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public InputStream fetchStream(CrawleableUri uri) {
+        if (!isStreamable(uri)) {
+            return null;
+        }
+        InputStream stream = null;
+        int fetcherId = 0;
+        while ((stream == null) && (fetcherId < fetchers.length)) {
+            if (isStreamable(fetchers[fetcherId], uri)) {
+                stream = ((StreamingFetcher) fetchers[fetcherId]).fetchStream(uri);
+            } else {
+                stream = openFetchedFile(fetchers[fetcherId].fetch(uri));
+            }
+
+            if (stream != null) {
+                uri.addData(FETCHER, fetchers[fetcherId].getClass().getName());
+            }
+
+            ++fetcherId;
+        }
+        return stream;
+    }
+
+    protected static boolean isStreamable(Fetcher fetcher, CrawleableUri uri) {
+        return (fetcher instanceof StreamingFetcher) && ((StreamingFetcher) fetcher).isStreamable(uri);
+    }
+
+    /**
+     * Opens the file of a fetcher that can not stream its data. A directory can
+     * not be handed over as a single stream. It is ignored in the same way as
+     * an empty result.
+     */
+    protected static InputStream openFetchedFile(File file) {
+        if (file == null) {
+            return null;
+        }
+        if (file.isDirectory()) {
+            LOGGER.warn("Got the directory {} that can not be read as stream. It will be ignored.", file);
+            return null;
+        }
+        try {
+            return new FileInputStream(file);
+        } catch (IOException e) {
+            LOGGER.error("Couldn't open the fetched file " + file + ". It will be ignored.", e);
+            return null;
+        }
+    }
+
     @Override
     public void close() throws IOException {
         for(Fetcher fetcher : fetchers) {
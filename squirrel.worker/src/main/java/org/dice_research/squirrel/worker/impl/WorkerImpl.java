@@ -2,20 +2,36 @@ package org.dice_research.squirrel.worker.impl;
 
 import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.dice_research.squirrel.Constants;
 import org.dice_research.squirrel.analyzer.Analyzer;
+import org.dice_research.squirrel.analyzer.StreamingAnalyzer;
 import org.dice_research.squirrel.analyzer.compress.impl.FileManager;
+import org.dice_research.squirrel.analyzer.compress.impl.StreamingDecompressor;
 import org.dice_research.squirrel.collect.UriCollector;
 import org.dice_research.squirrel.data.uri.CrawleableUri;
 import org.dice_research.squirrel.data.uri.serialize.Serializer;
 import org.dice_research.squirrel.fetcher.Fetcher;
+import org.dice_research.squirrel.fetcher.StreamingFetcher;
 import org.dice_research.squirrel.frontier.Frontier;
 import org.dice_research.squirrel.metadata.CrawlingActivity;
 import org.dice_research.squirrel.metadata.CrawlingActivity.CrawlingURIState;
@@ -32,6 +48,37 @@ import org.slf4j.LoggerFactory;
 /**
  * Standard implementation of the {@link Worker} interface.
  *
+ * <p>
+ * By default, the worker crawls one chunk of URIs after the other. If more
+ * than one thread is configured (see {@link #setNumberOfThreads(int)}), every
+ * thread requests and crawls its own chunks, i.e., the worker crawls the
+ * chunks of several IP addresses at the same time. The frontier does not hand
+ * out a second chunk of an IP while the first is crawled. Within a chunk, the
+ * delay of the robots.txt file is kept between two requests of the same host.
+ * The threads share the frontier, fetcher, analyzer, sink, collector and
+ * robots manager, i.e., these have to be thread-safe. For the implementations
+ * of this project, this holds as follows:
+ * <ul>
+ * <li>The fetchers do not keep state of a request in their fields. The HTTP
+ * fetcher uses a pooling connection manager.</li>
+ * <li>The analyzers create their parsers per request. The
+ * {@code HTMLScraperAnalyzer} synchronizes the access to its scraper.</li>
+ * <li>The {@code FileBasedSink} and the {@code SparqlBasedSink} keep their
+ * streams and buffers per URI in synchronized maps.</li>
+ * <li>The {@code SqlBasedUriCollector} synchronizes the access to its
+ * database connection.</li>
+ * <li>The robots manager fetches robots.txt files with a
+ * {@code SimpleHttpFetcher} that gets one connection per thread.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * In the streaming mode (see {@link #setStreamingMode(boolean)}), the data of
+ * a URI is analyzed while it is fetched if the fetcher and the analyzer
+ * support this. Compressed data is decompressed on the fly. Temporary files
+ * are only written if an analyzer needs random access to the data.
+ * </p>
+ *
  * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
  */
 public class WorkerImpl implements Worker, Closeable {
@@ -45,6 +92,12 @@ public class WorkerImpl implements Worker, Closeable {
     @Deprecated
     private static final long DEFAULT_WAITING_TIME = 10000;
     private static final int MAX_URIS_PER_MESSAGE = 20;
+    /**
+     * The time (in ms) after which the worker asks the frontier to extend the
+     * lease of the chunk it is crawling. It has to be clearly shorter than the
+     * lease duration of the frontier.
+     */
+    public static final long LEASE_EXTENSION_PERIOD = 60000;
     /**
      * TODO what was this attribute for?
      */
@@ -67,12 +120,29 @@ public class WorkerImpl implements Worker, Closeable {
     protected Serializer serializer;
     protected String domainLogFile = null;
     protected long waitingTime;
-    protected long timeStampLastUriFetched = 0;
-    protected boolean terminateFlag;
+    /**
+     * The point in time (in ms) at which the last request of a host has been
+     * finished. The hosts of a chunk are removed when the chunk is done.
+     */
+    protected final Map<String, Long> lastFetchOfHost = new ConcurrentHashMap<>();
+    protected volatile boolean terminateFlag;
+    /**
+     * The number of threads that crawl chunks in parallel.
+     */
+    private int numberOfThreads = 1;
+    /**
+     * Flag indicating whether the data should be streamed from the fetcher to
+     * the analyzer if possible.
+     */
+    private boolean streamingMode = false;
     private final String uri = Constants.DEFAULT_WORKER_URI_PREFIX + UUID.randomUUID().toString();
     @Deprecated
     private final int id = (int) Math.floor(Math.random() * 100000);
     private boolean sendAliveMessages;
+    /**
+     * Timer used to extend the lease of the current chunk.
+     */
+    private final Timer leaseTimer = new Timer("lease-extension", true);
 
     /**
      * Constructor.
@@ -124,6 +194,35 @@ public class WorkerImpl implements Worker, Closeable {
     @Override
     public void run() {
         terminateFlag = false;
+        try {
+            if (numberOfThreads <= 1) {
+                crawlChunks();
+            } else {
+                LOGGER.info("Starting {} crawling threads.", numberOfThreads);
+                AtomicInteger threadCount = new AtomicInteger();
+                ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads,
+                        r -> new Thread(r, "crawler-" + threadCount.incrementAndGet()));
+                for (int i = 0; i < numberOfThreads; ++i) {
+                    executor.execute(this::crawlChunks);
+                }
+                executor.shutdown();
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    LOGGER.debug("Waiting for the crawling threads to terminate.");
+                }
+            }
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted while waiting for the crawling threads. Aborting.", e);
+        } finally {
+            Closer.close(this, LOGGER);
+        }
+    }
+
+    /**
+     * Requests chunks from the frontier and crawls them until the
+     * {@link #terminateFlag} is set. A severe exception terminates all threads
+     * of this worker.
+     */
+    protected void crawlChunks() {
         List<CrawleableUri> urisToCrawl;
         try {
             while (!terminateFlag) {
@@ -143,8 +242,7 @@ public class WorkerImpl implements Worker, Closeable {
             }
         } catch (Exception e) {
             LOGGER.error("Got a severe exception. Aborting.", e);
-        } finally {
-            Closer.close(this, LOGGER);
+            terminateFlag = true;
         }
     }
 
@@ -186,18 +284,32 @@ public class WorkerImpl implements Worker, Closeable {
 
     @Override
     public void crawl(List<CrawleableUri> uris) {
-        // perform work
-        for (CrawleableUri uri : uris) {
-            if (uri == null) {
-                LOGGER.error("Got null as CrawleableUri object. It will be ignored.");
-            } else if (uri.getUri() == null) {
-                LOGGER.error("Got a CrawleableUri object with getUri()=null. It will be ignored.");
-            } else {
-                try {
-                    performCrawling(uri);
-                } catch (Exception e) {
-                    LOGGER.error("Unhandled exception while crawling \"" + uri.getUri().toString()
-                            + "\". It will be ignored.", e);
+        // The frontier enforces the politeness delay between two chunks of the same
+        // IP. Hence, we only have to wait between the URIs of this chunk.
+        // keep the lease of the chunk while we are crawling it (e.g., a large dump)
+        TimerTask leaseExtension = createLeaseExtension(uris);
+        leaseTimer.schedule(leaseExtension, LEASE_EXTENSION_PERIOD, LEASE_EXTENSION_PERIOD);
+        try {
+            // perform work
+            for (CrawleableUri uri : uris) {
+                if (uri == null) {
+                    LOGGER.error("Got null as CrawleableUri object. It will be ignored.");
+                } else if (uri.getUri() == null) {
+                    LOGGER.error("Got a CrawleableUri object with getUri()=null. It will be ignored.");
+                } else {
+                    try {
+                        performCrawling(uri);
+                    } catch (Exception e) {
+                        LOGGER.error("Unhandled exception while crawling \"" + uri.getUri().toString()
+                                + "\". It will be ignored.", e);
+                    }
+                }
+            }
+        } finally {
+            leaseExtension.cancel();
+            for (CrawleableUri uri : uris) {
+                if ((uri != null) && (uri.getUri() != null)) {
+                    lastFetchOfHost.remove(getHost(uri.getUri()));
                 }
             }
         }
@@ -205,6 +317,31 @@ public class WorkerImpl implements Worker, Closeable {
         frontier.crawlingDone(uris);
     }
 
+    /**
+     * Creates a task that asks the frontier to extend the lease of the given
+     * chunk. Since leases are bound to IP addresses, a single URI per IP
+     * address is sent.
+     */
+    private TimerTask createLeaseExtension(List<CrawleableUri> uris) {
+        final List<CrawleableUri> leaseUris = new ArrayList<>();
+        Set<InetAddress> ips = new HashSet<>();
+        for (CrawleableUri uri : uris) {
+            if ((uri != null) && (uri.getIpAddress() != null) && ips.add(uri.getIpAddress())) {
+                leaseUris.add(uri);
+            }
+        }
+        return new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    frontier.extendLease(leaseUris);
+                } catch (Exception e) {
+                    LOGGER.warn("Couldn't extend the lease of the current chunk.", e);
+                }
+            }
+        };
+    }
+
     @Override
     public void performCrawling(CrawleableUri uri) {
         // Create the activity object for this URI
@@ -215,10 +352,15 @@ public class WorkerImpl implements Worker, Closeable {
         
         // Check robots.txt
         if (manager.isUriCrawlable(uri.getUri())) {
-            // Make sure that there is a delay between the fetching of two URIs 
+            // Make sure that there is a delay between the fetching of two URIs of the host
+            long minWaitingTime = manager.getMinWaitingTime(uri.getUri());
+            String host = getHost(uri.getUri());
+            long now = System.currentTimeMillis();
+            // reserve the next slot of the host, i.e., other threads have to wait for this request
+            long fetchSlot = lastFetchOfHost.merge(host, now,
+                    (lastFetch, current) -> Math.max(lastFetch + minWaitingTime, current));
             try {
-                long delay = timeStampLastUriFetched
-                        - (System.currentTimeMillis() + manager.getMinWaitingTime(uri.getUri()));
+                long delay = fetchSlot - now;
                 if (delay > 0) {
                     Thread.sleep(delay);
                 }
@@ -229,13 +371,22 @@ public class WorkerImpl implements Worker, Closeable {
             // Fetch the URI content
             LOGGER.debug("I start crawling {} now...", uri);
             File fetched = null;
+            InputStream fetchedStream = null;
+            long fetchStart = System.currentTimeMillis();
             try {
-                fetched = fetcher.fetch(uri);
+                if (isStreamable(uri)) {
+                    // the data is fetched while it is analyzed
+                    fetchedStream = ((StreamingFetcher) fetcher).fetchStream(uri);
+                } else {
+                    fetched = fetcher.fetch(uri);
+                }
             } catch (Exception e) {
                 LOGGER.error("Exception while Fetching Data. Skipping...", e);
                 activity.addStep(getClass(), "Exception while Fetching Data. " + e.getMessage());
             }
-            timeStampLastUriFetched = System.currentTimeMillis();
+            if (fetchedStream == null) {
+                fetchFinished(uri, host, minWaitingTime, fetchStart);
+            }
             List<File> fetchedFiles = new ArrayList<>();
             if (fetched != null && fetched.isDirectory()) {
                 fetchedFiles.addAll(TempPathUtils.searchPath4Files(fetched));
@@ -243,8 +394,15 @@ public class WorkerImpl implements Worker, Closeable {
                 fetchedFiles.add(fetched);
             }
 
-            // If there is at least one file
-            if (fetchedFiles.size() > 0) {
+            if (fetchedStream != null) {
+                try {
+                    analyzeStream(uri, fetchedStream, activity);
+                } finally {
+                    // the data has been received while it was analyzed
+                    fetchFinished(uri, host, minWaitingTime, fetchStart);
+                }
+            } else if (fetchedFiles.size() > 0) {
+                // If there is at least one file
                 FileManager fm = new FileManager();
                 List<File> fileList;
                 try {
@@ -302,6 +460,64 @@ public class WorkerImpl implements Worker, Closeable {
         // return (ret.size() > 25) ? new ArrayList<>(ret.subList(0, 25)) : ret;
     }
 
+    /**
+     * @return true if the streaming mode is enabled and the fetcher and the
+     *         analyzer can handle the data of the given URI as stream
+     */
+    protected boolean isStreamable(CrawleableUri uri) {
+        return streamingMode && (fetcher instanceof StreamingFetcher) && (analyzer instanceof StreamingAnalyzer)
+                && ((StreamingFetcher) fetcher).isStreamable(uri);
+    }
+
+    /**
+     * Analyzes the data of the given stream while it is fetched. Compressed
+     * data and archives are unpacked while they are read. The stream is closed
+     * at the end.
+     */
+    protected void analyzeStream(CrawleableUri uri, InputStream stream, CrawlingActivity activity) {
+        try {
+            // open the sink only if a fetcher has been found
+            sink.openSinkForUri(uri);
+            collector.openSinkForUri(uri);
+            LOGGER.info(" -- Processing URI: " + uri.getUri().toString());
+            new StreamingDecompressor().decompress(stream,
+                    data -> sendNewUris(((StreamingAnalyzer) analyzer).analyze(uri, data, sink)));
+            // If we reach this point, the crawling was successful
+            activity.setState(CrawlingURIState.SUCCESSFUL);
+        } catch (IOException e) {
+            LOGGER.error("Exception while reading the fetched data.", e);
+            activity.addStep(getClass(), "Exception while reading the fetched data. " + e.getMessage());
+            activity.setState(CrawlingURIState.FAILED);
+        } catch (RuntimeException e) {
+            activity.addStep(getClass(), "Unhandled exception while Fetching Data. " + e.getMessage());
+            activity.setState(CrawlingURIState.FAILED);
+            activity.finishActivity(sink);
+            throw e;
+        } finally {
+            // Make sure that sink and collector do not handle this uri anymore.
+            sink.closeSinkForUri(uri);
+            collector.closeSinkForUri(uri);
+            Closer.closeQuietly(stream);
+        }
+    }
+
+    /**
+     * Marks the end of the fetching of the given URI. The delay of the next
+     * request of the host starts now and the frontier gets to know how polite it
+     * has to be with this host.
+     */
+    private void fetchFinished(CrawleableUri uri, String host, long minWaitingTime, long fetchStart) {
+        long fetchEnd = System.currentTimeMillis();
+        lastFetchOfHost.merge(host, fetchEnd, Math::max);
+        uri.addData(Constants.URI_CRAWL_DELAY, minWaitingTime);
+        uri.addData(Constants.URI_FETCH_DURATION, fetchEnd - fetchStart);
+    }
+
+    private static String getHost(URI uri) {
+        String host = uri.getHost();
+        return (host == null) ? "" : host;
+    }
+
     private void setSpecificRecrawlTime(CrawleableUri uri) {
         // TODO: implement special cases
 
@@ -349,6 +565,7 @@ public class WorkerImpl implements Worker, Closeable {
 
     @Override
     public void close() {
+        leaseTimer.cancel();
         Closer.close(fetcher, LOGGER);
         Closer.close(sink, LOGGER);
     }
@@ -357,6 +574,37 @@ public class WorkerImpl implements Worker, Closeable {
         this.terminateFlag = terminateFlag;
     }
 
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    /**
+     * Sets the number of threads that crawl chunks in parallel. Has to be
+     * called before the worker is started.
+     *
+     * @param numberOfThreads
+     *            the number of threads (values &lt; 1 are treated as 1)
+     */
+    public void setNumberOfThreads(int numberOfThreads) {
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+    }
+
+    public boolean isStreamingMode() {
+        return streamingMode;
+    }
+
+    /**
+     * Enables or disables the streaming of the fetched data into the analyzer.
+     * It is only used if the fetcher is a {@link StreamingFetcher} and the
+     * analyzer is a {@link StreamingAnalyzer}.
+     *
+     * @param streamingMode
+     *            true if the data should be streamed
+     */
+    public void setStreamingMode(boolean streamingMode) {
+        this.streamingMode = streamingMode;
+    }
+
     @Deprecated
 	@Override
 	public int getId() {
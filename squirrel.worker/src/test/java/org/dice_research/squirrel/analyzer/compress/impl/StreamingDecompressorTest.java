@@ -0,0 +1,111 @@
+package org.dice_research.squirrel.analyzer.compress.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link StreamingDecompressor} with data that is created in memory.
+ */
+public class StreamingDecompressorTest {
+
+    private static final String DOCUMENT1 = "<http://example.org/s1> <http://example.org/p> <http://example.org/o> .\n";
+    private static final String DOCUMENT2 = "<http://example.org/s2> <http://example.org/p> \"literal\" .\n";
+
+    @Test
+    public void testPlainData() throws IOException {
+        Assert.assertEquals(listOf(DOCUMENT1), decompress(DOCUMENT1.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (GzipCompressorOutputStream out = new GzipCompressorOutputStream(bout)) {
+            out.write(DOCUMENT1.getBytes(StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(listOf(DOCUMENT1), decompress(bout.toByteArray()));
+    }
+
+    @Test
+    public void testTarGz() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream out = new TarArchiveOutputStream(new GzipCompressorOutputStream(bout))) {
+            addTarEntry(out, "doc1.nt", DOCUMENT1);
+            addTarEntry(out, "doc2.nt", DOCUMENT2);
+        }
+        Assert.assertEquals(listOf(DOCUMENT1, DOCUMENT2), decompress(bout.toByteArray()));
+    }
+
+    @Test
+    public void testTarBz2() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream out = new TarArchiveOutputStream(new BZip2CompressorOutputStream(bout))) {
+            addTarEntry(out, "doc1.nt", DOCUMENT1);
+            addTarEntry(out, "doc2.nt", DOCUMENT2);
+        }
+        Assert.assertEquals(listOf(DOCUMENT1, DOCUMENT2), decompress(bout.toByteArray()));
+    }
+
+    @Test
+    public void testZip() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(bout)) {
+            addZipEntry(out, "doc1.nt", DOCUMENT1);
+            addZipEntry(out, "doc2.nt", DOCUMENT2);
+        }
+        Assert.assertEquals(listOf(DOCUMENT1, DOCUMENT2), decompress(bout.toByteArray()));
+    }
+
+    private static List<String> decompress(byte[] data) throws IOException {
+        List<String> documents = new ArrayList<>();
+        try (InputStream in = new ByteArrayInputStream(data)) {
+            new StreamingDecompressor().decompress(in, document -> {
+                Assert.assertTrue(document.markSupported());
+                try {
+                    documents.add(IOUtils.toString(document, StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+        return documents;
+    }
+
+    private static void addTarEntry(ArchiveOutputStream out, String name, String content) throws IOException {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(data.length);
+        out.putArchiveEntry(entry);
+        out.write(data);
+        out.closeArchiveEntry();
+    }
+
+    private static void addZipEntry(ArchiveOutputStream out, String name, String content) throws IOException {
+        out.putArchiveEntry(new ZipArchiveEntry(name));
+        out.write(content.getBytes(StandardCharsets.UTF_8));
+        out.closeArchiveEntry();
+    }
+
+    private static List<String> listOf(String... documents) {
+        List<String> list = new ArrayList<>();
+        for (String document : documents) {
+            list.add(document);
+        }
+        return list;
+    }
+}
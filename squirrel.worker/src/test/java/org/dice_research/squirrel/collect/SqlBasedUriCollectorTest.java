@@ -4,9 +4,14 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -102,4 +107,46 @@ public class SqlBasedUriCollectorTest {
     	
     }
 
+    /**
+     * Several threads use the collector for different URIs at the same time
+     * (like the crawling threads of a worker).
+     */
+    @Test
+    public void testParallelUsage() throws Exception {
+        SqlBasedUriCollector collector = new SqlBasedUriCollector(serializer, "testUris");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Set<String>>> results = new ArrayList<>();
+            List<Set<String>> expectedSets = new ArrayList<>();
+            for (int t = 0; t < 8; ++t) {
+                final int id = t;
+                Set<String> expectedUris = new TreeSet<String>();
+                for (int i = 0; i < 250; ++i) {
+                    expectedUris.add("http://example" + id + ".org/entity" + i);
+                }
+                expectedSets.add(expectedUris);
+                results.add(executor.submit(() -> {
+                    CrawleableUri uri = new CrawleableUri(new URI("http://example" + id + ".org/dump"));
+                    collector.openSinkForUri(uri);
+                    for (String newUri : expectedUris) {
+                        collector.addNewUri(uri, new CrawleableUri(new URI(newUri)));
+                    }
+                    Set<String> listCuris = new TreeSet<String>();
+                    Iterator<byte[]> iterator = collector.getUris(uri);
+                    while (iterator.hasNext()) {
+                        listCuris.add(((CrawleableUri) serializer.deserialize(iterator.next())).getUri().toString());
+                    }
+                    collector.closeSinkForUri(uri);
+                    return listCuris;
+                }));
+            }
+            for (int t = 0; t < results.size(); ++t) {
+                Assert.assertEquals(expectedSets.get(t), results.get(t).get());
+            }
+        } finally {
+            executor.shutdownNow();
+            collector.close();
+        }
+    }
+
 }
\ No newline at end of file
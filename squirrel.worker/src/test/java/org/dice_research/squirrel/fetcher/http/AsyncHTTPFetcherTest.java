@@ -0,0 +1,169 @@
+package org.dice_research.squirrel.fetcher.http;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.dice_research.squirrel.Constants;
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.simulation.AbstractServerMockUsingTest;
+import org.junit.Assert;
+import org.junit.Test;
+import org.simpleframework.http.Request;
+import org.simpleframework.http.Response;
+import org.simpleframework.http.Status;
+import org.simpleframework.http.core.Container;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests the {@link AsyncHTTPFetcher} against a local HTTP server.
+ */
+public class AsyncHTTPFetcherTest extends AbstractServerMockUsingTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncHTTPFetcherTest.class);
+
+    private static final String CONTENT = "<http://example.org/s> <http://example.org/p> <http://example.org/o> .\n";
+    /**
+     * A body that is larger than the data the fetcher buffers for a single
+     * response.
+     */
+    private static final byte[] LARGE_CONTENT = createLargeContent(4 * 1024 * 1024);
+
+    public AsyncHTTPFetcherTest() {
+        super(new SingleDocumentContainer());
+    }
+
+    @Test
+    public void testFetch() throws Exception {
+        try (AsyncHTTPFetcher fetcher = new AsyncHTTPFetcher()) {
+            CrawleableUri uri = new CrawleableUri(new URI(HTTP_SERVER_ADDRESS + "/data"));
+            File file = fetcher.fetch(uri);
+            Assert.assertNotNull(file);
+            try {
+                Assert.assertEquals(CONTENT, FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+                Assert.assertEquals(200, uri.getData(Constants.URI_HTTP_STATUS_CODE));
+                Assert.assertEquals("application/n-triples", uri.getData(Constants.URI_HTTP_MIME_TYPE_KEY));
+                Assert.assertEquals(file.getAbsolutePath(), uri.getData(Constants.URI_DATA_FILE_NAME));
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testWrongStatus() throws Exception {
+        try (AsyncHTTPFetcher fetcher = new AsyncHTTPFetcher()) {
+            CrawleableUri uri = new CrawleableUri(new URI(HTTP_SERVER_ADDRESS + "/missing"));
+            Assert.assertNull(fetcher.fetch(uri));
+            Assert.assertEquals(404, uri.getData(Constants.URI_HTTP_STATUS_CODE));
+            // URIs of other schemes are not handled
+            Assert.assertNull(fetcher.fetch(new CrawleableUri(new URI("ftp://localhost/data"))));
+        }
+    }
+
+    @Test
+    public void testFetchStream() throws Exception {
+        try (AsyncHTTPFetcher fetcher = new AsyncHTTPFetcher()) {
+            CrawleableUri uri = new CrawleableUri(new URI(HTTP_SERVER_ADDRESS + "/large"));
+            Assert.assertTrue(fetcher.isStreamable(uri));
+            try (InputStream stream = fetcher.fetchStream(uri)) {
+                Assert.assertNotNull(stream);
+                Assert.assertEquals(200, uri.getData(Constants.URI_HTTP_STATUS_CODE));
+                // read slowly to make the client pause reading from the connection
+                Thread.sleep(500);
+                Assert.assertTrue(Arrays.equals(LARGE_CONTENT, IOUtils.toByteArray(stream)));
+            }
+            // closing a stream before its end aborts the request
+            uri = new CrawleableUri(new URI(HTTP_SERVER_ADDRESS + "/large"));
+            try (InputStream stream = fetcher.fetchStream(uri)) {
+                Assert.assertNotNull(stream);
+                Assert.assertEquals(LARGE_CONTENT[0], (byte) stream.read());
+            }
+            uri = new CrawleableUri(new URI(HTTP_SERVER_ADDRESS + "/missing"));
+            Assert.assertNull(fetcher.fetchStream(uri));
+            Assert.assertEquals(404, uri.getData(Constants.URI_HTTP_STATUS_CODE));
+            // the fetcher can still be used
+            uri = new CrawleableUri(new URI(HTTP_SERVER_ADDRESS + "/data"));
+            try (InputStream stream = fetcher.fetchStream(uri)) {
+                Assert.assertEquals(CONTENT, IOUtils.toString(stream, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentFetches() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (AsyncHTTPFetcher fetcher = new AsyncHTTPFetcher()) {
+            List<Future<File>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; ++i) {
+                String path = (i % 10 == 0) ? "/large" : "/data";
+                CrawleableUri uri = new CrawleableUri(new URI(HTTP_SERVER_ADDRESS + path));
+                futures.add(executor.submit(() -> fetcher.fetch(uri)));
+            }
+            for (int i = 0; i < futures.size(); ++i) {
+                File file = futures.get(i).get();
+                Assert.assertNotNull(file);
+                try {
+                    if (i % 10 == 0) {
+                        Assert.assertTrue(Arrays.equals(LARGE_CONTENT, FileUtils.readFileToByteArray(file)));
+                    } else {
+                        Assert.assertEquals(CONTENT, FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+                    }
+                } finally {
+                    file.delete();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] createLargeContent(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < content.length; ++i) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+
+    /**
+     * Returns {@link #CONTENT} for /data, {@link #LARGE_CONTENT} for /large and
+     * 404 for every other path.
+     */
+    private static class SingleDocumentContainer implements Container {
+
+        @Override
+        public void handle(Request request, Response response) {
+            try (OutputStream out = response.getOutputStream()) {
+                if (request.getTarget().equals("/data")) {
+                    byte data[] = CONTENT.getBytes(StandardCharsets.UTF_8);
+                    response.setCode(Status.OK.code);
+                    response.setValue("Content-Type", "application/n-triples");
+                    response.setContentLength(data.length);
+                    out.write(data);
+                } else if (request.getTarget().equals("/large")) {
+                    response.setCode(Status.OK.code);
+                    response.setValue("Content-Type", "application/octet-stream");
+                    response.setContentLength(LARGE_CONTENT.length);
+                    out.write(LARGE_CONTENT);
+                } else {
+                    response.setCode(Status.NOT_FOUND.code);
+                }
+            } catch (Exception e) {
+                // the client may have aborted the request
+                LOGGER.error("Exception while answering request.", e);
+            }
+        }
+    }
+}
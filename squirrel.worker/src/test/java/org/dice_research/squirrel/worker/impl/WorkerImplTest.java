@@ -0,0 +1,384 @@
+package org.dice_research.squirrel.worker.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.commons.io.IOUtils;
+import org.dice_research.squirrel.Constants;
+import org.dice_research.squirrel.analyzer.Analyzer;
+import org.dice_research.squirrel.analyzer.StreamingAnalyzer;
+import org.dice_research.squirrel.collect.SqlBasedUriCollector;
+import org.dice_research.squirrel.collect.UriCollector;
+import org.dice_research.squirrel.data.uri.CrawleableUri;
+import org.dice_research.squirrel.data.uri.serialize.java.GzipJavaUriSerializer;
+import org.dice_research.squirrel.fetcher.Fetcher;
+import org.dice_research.squirrel.fetcher.StreamingFetcher;
+import org.dice_research.squirrel.frontier.Frontier;
+import org.dice_research.squirrel.robots.RobotsManager;
+import org.dice_research.squirrel.sink.Sink;
+import org.dice_research.squirrel.sink.impl.mem.InMemorySink;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link WorkerImpl} with several crawling threads with and without
+ * the streaming mode.
+ */
+public class WorkerImplTest {
+
+    private static final String LINK_PROPERTY = "http://example.org/links";
+
+    @Test
+    public void testParallelCrawling() throws Exception {
+        GzipJavaUriSerializer serializer = new GzipJavaUriSerializer();
+        SqlBasedUriCollector collector = new SqlBasedUriCollector(serializer, "testUris");
+        ChunkFrontier frontier = new ChunkFrontier();
+        Set<String> expectedNewUris = addChunks(frontier);
+        SlowFetcher fetcher = new SlowFetcher();
+        SynchronizedSink sink = new SynchronizedSink();
+
+        WorkerImpl worker = new WorkerImpl(frontier, fetcher, sink, new LinkAnalyzer(collector),
+                new PermissiveRobotsManager(), serializer, collector, 10, null, false);
+        worker.setNumberOfThreads(4);
+        frontier.worker = worker;
+
+        Thread workerThread = new Thread(worker);
+        workerThread.start();
+        workerThread.join(60000);
+        Assert.assertFalse("The worker did not terminate.", workerThread.isAlive());
+        collector.close();
+
+        Assert.assertEquals(24, frontier.crawledUris.size());
+        Assert.assertEquals(expectedNewUris, frontier.newUris);
+        Assert.assertTrue("The chunks have not been crawled in parallel.", fetcher.maxRunning.get() > 1);
+        Assert.assertTrue(sink.isSinkHealthy());
+        Assert.assertEquals(24, sink.getCrawledRdfData().size() - 1);
+    }
+
+    @Test
+    public void testStreamingCrawling() throws Exception {
+        GzipJavaUriSerializer serializer = new GzipJavaUriSerializer();
+        SqlBasedUriCollector collector = new SqlBasedUriCollector(serializer, "testStreamedUris");
+        ChunkFrontier frontier = new ChunkFrontier();
+        Set<String> expectedNewUris = addChunks(frontier);
+        SlowStreamingFetcher fetcher = new SlowStreamingFetcher();
+        SynchronizedSink sink = new SynchronizedSink();
+
+        WorkerImpl worker = new WorkerImpl(frontier, fetcher, sink, new StreamingLinkAnalyzer(collector),
+                new PermissiveRobotsManager(), serializer, collector, 10, null, false);
+        worker.setNumberOfThreads(4);
+        worker.setStreamingMode(true);
+        frontier.worker = worker;
+
+        Thread workerThread = new Thread(worker);
+        workerThread.start();
+        workerThread.join(60000);
+        Assert.assertFalse("The worker did not terminate.", workerThread.isAlive());
+        collector.close();
+
+        Assert.assertEquals(24, frontier.crawledUris.size());
+        Assert.assertEquals(expectedNewUris, frontier.newUris);
+        Assert.assertEquals("The data has not been streamed.", 24, fetcher.streamedUris.get());
+        Assert.assertTrue("The chunks have not been crawled in parallel.", fetcher.maxRunning.get() > 1);
+        for (CrawleableUri uri : frontier.crawledUris) {
+            // the data is received while it is analyzed
+            long duration = ((Number) uri.getData(Constants.URI_FETCH_DURATION)).longValue();
+            Assert.assertTrue("The fetch duration " + duration + " does not cover the reading of the stream.",
+                    duration >= SlowStreamingFetcher.READ_DELAY);
+        }
+        Assert.assertTrue(sink.isSinkHealthy());
+        Assert.assertEquals(24, sink.getCrawledRdfData().size() - 1);
+    }
+
+    /**
+     * Adds 8 chunks with 3 URIs of the same host each to the given frontier.
+     *
+     * @return the URIs the analyzers are expected to find
+     */
+    protected static Set<String> addChunks(ChunkFrontier frontier) throws Exception {
+        Set<String> expectedNewUris = new TreeSet<>();
+        for (int c = 0; c < 8; ++c) {
+            List<CrawleableUri> chunk = new ArrayList<>();
+            for (int u = 0; u < 3; ++u) {
+                String uri = "http://host" + c + ".example.org/resource" + u;
+                chunk.add(new CrawleableUri(new URI(uri)));
+                expectedNewUris.add(uri);
+                expectedNewUris.add(uri + "/linked");
+            }
+            frontier.addChunk(chunk);
+        }
+        expectedNewUris.add(LINK_PROPERTY);
+        return expectedNewUris;
+    }
+
+    /**
+     * A frontier that hands out the given chunks and terminates the worker
+     * after all chunks have been crawled.
+     */
+    protected static class ChunkFrontier implements Frontier {
+
+        protected final Queue<List<CrawleableUri>> chunks = new ConcurrentLinkedQueue<>();
+        protected final AtomicInteger pendingChunks = new AtomicInteger();
+        protected final List<CrawleableUri> crawledUris = Collections.synchronizedList(new ArrayList<>());
+        protected final Set<String> newUris = Collections.synchronizedSet(new TreeSet<>());
+        protected volatile WorkerImpl worker;
+
+        public void addChunk(List<CrawleableUri> chunk) {
+            chunks.add(chunk);
+            pendingChunks.incrementAndGet();
+        }
+
+        @Override
+        public List<CrawleableUri> getNextUris() {
+            List<CrawleableUri> chunk = chunks.poll();
+            if (chunk != null) {
+                return chunk;
+            }
+            if (pendingChunks.get() == 0) {
+                worker.setTerminateFlag(true);
+            }
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void addNewUri(CrawleableUri uri) {
+            newUris.add(uri.getUri().toString());
+        }
+
+        @Override
+        public void addNewUris(List<CrawleableUri> uris) {
+            for (CrawleableUri uri : uris) {
+                addNewUri(uri);
+            }
+        }
+
+        @Override
+        public void crawlingDone(List<CrawleableUri> uris) {
+            crawledUris.addAll(uris);
+            pendingChunks.decrementAndGet();
+        }
+
+        @Override
+        public int getNumberOfPendingUris() {
+            return 0;
+        }
+
+        @Override
+        public boolean doesRecrawling() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    /**
+     * A fetcher that needs some time for every URI and writes a single triple
+     * linking the URI to a new URI.
+     */
+    protected static class SlowFetcher implements Fetcher {
+
+        protected final AtomicInteger running = new AtomicInteger();
+        protected final AtomicInteger maxRunning = new AtomicInteger();
+
+        @Override
+        public File fetch(CrawleableUri uri) {
+            int current = running.incrementAndGet();
+            maxRunning.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(50);
+                File file = File.createTempFile("fetched", ".nt");
+                file.deleteOnExit();
+                String uriString = uri.getUri().toString();
+                Files.write(file.toPath(), Collections.singletonList(uriString + " " + uriString + "/linked"),
+                        StandardCharsets.UTF_8);
+                return file;
+            } catch (Exception e) {
+                Assert.fail("Couldn't create file: " + e.getMessage());
+                return null;
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    /**
+     * A fetcher that returns the data of the {@link SlowFetcher} as a stream
+     * that needs some time before its data can be read.
+     */
+    protected static class SlowStreamingFetcher extends SlowFetcher implements StreamingFetcher {
+
+        protected static final long READ_DELAY = 50;
+
+        protected final AtomicInteger streamedUris = new AtomicInteger();
+
+        @Override
+        public File fetch(CrawleableUri uri) {
+            Assert.fail("The data should be streamed.");
+            return null;
+        }
+
+        @Override
+        public boolean isStreamable(CrawleableUri uri) {
+            return true;
+        }
+
+        @Override
+        public InputStream fetchStream(CrawleableUri uri) {
+            streamedUris.incrementAndGet();
+            String uriString = uri.getUri().toString();
+            byte[] data = (uriString + " " + uriString + "/linked\n").getBytes(StandardCharsets.UTF_8);
+            return new FilterInputStream(new ByteArrayInputStream(data)) {
+                protected boolean delayed = false;
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (!delayed) {
+                        // the data is still on its way
+                        delayed = true;
+                        int current = running.incrementAndGet();
+                        maxRunning.accumulateAndGet(current, Math::max);
+                        try {
+                            Thread.sleep(READ_DELAY);
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        } finally {
+                            running.decrementAndGet();
+                        }
+                    }
+                    return super.read(b, off, len);
+                }
+            };
+        }
+    }
+
+    /**
+     * An analyzer reading pairs of linked URIs.
+     */
+    protected static class LinkAnalyzer implements Analyzer {
+
+        protected UriCollector collector;
+
+        public LinkAnalyzer(UriCollector collector) {
+            this.collector = collector;
+        }
+
+        @Override
+        public Iterator<byte[]> analyze(CrawleableUri curi, File data, Sink sink) {
+            try {
+                return analyze(curi, Files.readAllLines(data.toPath(), StandardCharsets.UTF_8), sink);
+            } catch (IOException e) {
+                Assert.fail("Couldn't read file: " + e.getMessage());
+                return null;
+            }
+        }
+
+        protected Iterator<byte[]> analyze(CrawleableUri curi, List<String> lines, Sink sink) {
+            for (String line : lines) {
+                String[] uris = line.split(" ");
+                Triple triple = Triple.create(NodeFactory.createURI(uris[0]), NodeFactory.createURI(LINK_PROPERTY),
+                        NodeFactory.createURI(uris[1]));
+                sink.addTriple(curi, triple);
+                collector.addTriple(curi, triple);
+            }
+            return collector.getUris(curi);
+        }
+
+        @Override
+        public boolean isElegible(CrawleableUri curi, File data) {
+            return true;
+        }
+    }
+
+    /**
+     * A {@link LinkAnalyzer} that reads the pairs of linked URIs from a
+     * stream.
+     */
+    protected static class StreamingLinkAnalyzer extends LinkAnalyzer implements StreamingAnalyzer {
+
+        public StreamingLinkAnalyzer(UriCollector collector) {
+            super(collector);
+        }
+
+        @Override
+        public Iterator<byte[]> analyze(CrawleableUri curi, InputStream data, Sink sink) {
+            try {
+                return analyze(curi, IOUtils.readLines(data, StandardCharsets.UTF_8), sink);
+            } catch (IOException e) {
+                Assert.fail("Couldn't read stream: " + e.getMessage());
+                return null;
+            }
+        }
+
+        @Override
+        public boolean isElegible(CrawleableUri curi, InputStream data) {
+            return true;
+        }
+    }
+
+    protected static class PermissiveRobotsManager implements RobotsManager {
+
+        @Override
+        public boolean isUriCrawlable(URI uri) {
+            return true;
+        }
+
+        @Override
+        public long getMinWaitingTime(URI uri) {
+            return 0;
+        }
+    }
+
+    /**
+     * An {@link InMemorySink} that can be used by several threads.
+     */
+    protected static class SynchronizedSink extends InMemorySink {
+
+        @Override
+        public synchronized void addTriple(CrawleableUri uri, Triple triple) {
+            super.addTriple(uri, triple);
+        }
+
+        @Override
+        public synchronized void openSinkForUri(CrawleableUri uri) {
+            super.openSinkForUri(uri);
+        }
+
+        @Override
+        public synchronized void closeSinkForUri(CrawleableUri uri) {
+            super.closeSinkForUri(uri);
+        }
+
+        @Override
+        public synchronized void addData(CrawleableUri uri, byte[] data) {
+            super.addData(uri, data);
+        }
+
+        @Override
+        public synchronized boolean isSinkHealthy() {
+            return super.isSinkHealthy();
+        }
+    }
+}